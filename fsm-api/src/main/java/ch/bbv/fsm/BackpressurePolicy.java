@@ -0,0 +1,41 @@
+package ch.bbv.fsm;
+
+/**
+ * Defines what happens to an event fired on a state machine whose event queue
+ * is full, see {@link StateMachineDefinition#limitEventQueue(int, BackpressurePolicy)}.
+ */
+public enum BackpressurePolicy {
+
+	/**
+	 * The firing thread waits until there is space in the queue. Events fired on
+	 * the thread processing the events of the state machine (e.g. in an action) can
+	 * not wait and are rejected. A passive state machine processes its events on
+	 * the firing thread, therefore it always rejects. Note that a thread of a
+	 * shared executor waiting for space does not process other state machines.
+	 */
+	BLOCK,
+
+	/**
+	 * The event is rejected: {@link StateMachine#fire(Enum, Object...)} throws an
+	 * {@link IllegalStateException}.
+	 */
+	REJECT,
+
+	/**
+	 * The fired event is dropped.
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * The queued event which would be processed next is dropped to make space for
+	 * the fired event.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * An event equal to an already queued event (same event id and equal
+	 * arguments) is not queued again, also if the queue is not full. Any other
+	 * event is dropped if the queue is full.
+	 */
+	COALESCE
+}
@@ -0,0 +1,70 @@
+package ch.bbv.fsm;
+
+/**
+ * The outcome of a batch of events fired with
+ * {@link StateMachine#fireBatch(Enum[], Object[][])}. Events processed before
+ * the batch call returned are counted as accepted, declined or failed, the
+ * others as queued.
+ */
+public final class BatchResult {
+
+	private final int accepted;
+
+	private final int declined;
+
+	private final int failed;
+
+	private final int queued;
+
+	/**
+	 * Creates a result.
+	 *
+	 * @param accepted the number of processed events which caused a transition.
+	 * @param declined the number of processed events without a transition.
+	 * @param failed   the number of processed events whose transition threw an
+	 *                 exception.
+	 * @param queued   the number of events queued for later processing.
+	 */
+	public BatchResult(final int accepted, final int declined, final int failed, final int queued) {
+		this.accepted = accepted;
+		this.declined = declined;
+		this.failed = failed;
+		this.queued = queued;
+	}
+
+	/**
+	 * Returns the number of processed events which caused a transition.
+	 */
+	public int getAccepted() {
+		return this.accepted;
+	}
+
+	/**
+	 * Returns the number of processed events which were declined because no
+	 * transition was possible.
+	 */
+	public int getDeclined() {
+		return this.declined;
+	}
+
+	/**
+	 * Returns the number of processed events whose guards, actions or entry and
+	 * exit actions threw an exception.
+	 */
+	public int getFailed() {
+		return this.failed;
+	}
+
+	/**
+	 * Returns the number of events which were queued and not processed yet.
+	 */
+	public int getQueued() {
+		return this.queued;
+	}
+
+	@Override
+	public String toString() {
+		return "accepted=" + this.accepted + ", declined=" + this.declined + ", failed=" + this.failed + ", queued="
+				+ this.queued;
+	}
+}
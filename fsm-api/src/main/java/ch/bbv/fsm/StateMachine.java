@@ -48,6 +48,25 @@ public interface StateMachine<S extends Enum<?>, E extends Enum<?>> {
 	 */
 	void fire(E eventId, Object... eventArguments);
 
+	/**
+	 * Fires the specified event if it can be queued without waiting. Never blocks
+	 * and never throws because the event queue is full, see
+	 * {@link BackpressurePolicy}. Fires the event with {@link #fire(Enum, Object...)}
+	 * unless overridden by the state machine.
+	 * 
+	 * @param eventId
+	 *            the event
+	 * @param eventArguments
+	 *            the event arguments
+	 * @return <code>true</code> if the event was accepted, i.e. it is queued,
+	 *         processed or coalesced with an equal queued event;
+	 *         <code>false</code> if it was dropped.
+	 */
+	default boolean tryFire(final E eventId, final Object... eventArguments) {
+		fire(eventId, eventArguments);
+		return true;
+	}
+
 	/**
 	 * Fires the specified priority event. The event will be handled before any
 	 * already queued event.
@@ -59,6 +78,31 @@ public interface StateMachine<S extends Enum<?>, E extends Enum<?>> {
 	 */
 	void firePriority(E eventId, Object... eventArguments);
 
+	/**
+	 * Fires a batch of events in the given order. A passive state machine which
+	 * is not processing an event processes the whole batch before returning and
+	 * takes its lock once for the batch, the events fired by the actions of an
+	 * event are processed before the next event of the batch. Other state
+	 * machines queue the batch.
+	 * 
+	 * @param eventIds
+	 *            the events
+	 * @param eventArguments
+	 *            the arguments per event or <code>null</code> if the events
+	 *            have no arguments
+	 * @return the number of accepted, declined, failed and queued events
+	 */
+	default BatchResult fireBatch(final E[] eventIds, final Object[][] eventArguments) {
+		if (eventArguments != null && eventArguments.length != eventIds.length) {
+			throw new IllegalArgumentException("There are " + eventIds.length + " events but " + eventArguments.length
+					+ " arguments.");
+		}
+		for (int i = 0; i < eventIds.length; i++) {
+			fire(eventIds[i], eventArguments != null ? eventArguments[i] : new Object[0]);
+		}
+		return new BatchResult(0, 0, 0, eventIds.length);
+	}
+
 	/**
 	 * Returns the live cycles state of this state machine.
 	 */
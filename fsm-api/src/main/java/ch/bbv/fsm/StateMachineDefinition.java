@@ -18,6 +18,8 @@
  *******************************************************************************/
 package ch.bbv.fsm;
 
+import java.util.concurrent.ThreadFactory;
+
 import ch.bbv.fsm.dsl.EntryActionSyntax;
 import ch.bbv.fsm.events.StateMachineEventHandler;
 
@@ -63,6 +65,25 @@ public interface StateMachineDefinition<SM extends StateMachine<S, E>, S extends
 	 */
 	void addEventHandler(StateMachineEventHandler<SM, S, E> handler);
 
+	/**
+	 * Limits the number of queued events of the state machines created afterwards.
+	 * By default the event queue is unbounded.
+	 * 
+	 * @param capacity the maximum number of queued events.
+	 * @param policy   defines what happens if an event is fired while the queue is
+	 *                 full.
+	 */
+	void limitEventQueue(int capacity, BackpressurePolicy policy);
+
+	/**
+	 * Sets the factory creating the own worker thread of the active state machines
+	 * created afterwards. Use a factory of virtual threads to run the event loops
+	 * without holding a platform thread per state machine.
+	 * 
+	 * @param threadFactory the thread factory.
+	 */
+	void setWorkerThreadFactory(ThreadFactory threadFactory);
+
 
 	
 
@@ -1,5 +1,7 @@
 package ch.bbv.fsm;
 
+import java.util.concurrent.Executor;
+
 /**
  * State Machine Factory.
  * @author Ueli Kurmann
@@ -26,6 +28,30 @@ public interface StateMachineFactory<SM extends StateMachine<S, E>, S extends En
 	 */
 	SM createActiveStateMachine(String name);
 
+	/**
+	 * Creates an active state-machine from this definition which processes its
+	 * events on the given executor instead of an own worker thread. Many state
+	 * machines can share the same executor: the events of one state machine are
+	 * still processed one after the other in the order they are queued, but never
+	 * concurrently. The executor is not shut down when the state machine is
+	 * terminated.
+	 * 
+	 * @param name         the state machine's name
+	 * @param initialState The state to which the state machine is initialized.
+	 * @param executor     the executor processing the events.
+	 */
+	SM createActiveStateMachine(String name, S initialState, Executor executor);
+
+	/**
+	 * Creates an active state-machine from this definition with the default
+	 * initial state which processes its events on the given executor, see
+	 * {@link #createActiveStateMachine(String, Enum, Executor)}.
+	 * 
+	 * @param name     the state machine's name
+	 * @param executor the executor processing the events.
+	 */
+	SM createActiveStateMachine(String name, Executor executor);
+
 	/**
 	 * Creates a passive state-machine from definition.
 	 * 
@@ -0,0 +1,35 @@
+package ch.bbv.fsm.events;
+
+import java.util.List;
+
+import ch.bbv.fsm.StateMachine;
+
+/**
+ * Receives the transition events of state machines in batches, on a thread
+ * other than the one firing the events. The events of each state machine are
+ * delivered in the order they occurred, consecutive events of the same kind
+ * are delivered in one batch.
+ *
+ * @param <SM> the type of the state machine
+ * @param <S>  the type of the states.
+ * @param <E>  the type of the events.
+ */
+public interface BatchEventHandler<SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> {
+
+	/**
+	 * Occurs after transitions completed.
+	 *
+	 * @param events the completion events in the order they occurred.
+	 */
+	void onTransitionsCompleted(List<TransitionCompletedEvent<SM, S, E>> events);
+
+	/**
+	 * Occurs after events could not be executed because no transition was
+	 * possible.
+	 *
+	 * @param events the declined events in the order they occurred.
+	 */
+	default void onTransitionsDeclined(final List<TransitionEvent<SM, S, E>> events) {
+		// ignore by default
+	}
+}
@@ -0,0 +1,33 @@
+package ch.bbv.fsm.events;
+
+/**
+ * The callbacks of a {@link StateMachineEventHandler}, see
+ * {@link StateMachineEventHandler#callbacks()}.
+ */
+public enum EventHandlerCallback {
+
+	/**
+	 * {@link StateMachineEventHandler#onExceptionThrown(ExceptionEvent)}.
+	 */
+	EXCEPTION_THROWN,
+
+	/**
+	 * {@link StateMachineEventHandler#onTransitionBegin(TransitionEvent)}.
+	 */
+	TRANSITION_BEGIN,
+
+	/**
+	 * {@link StateMachineEventHandler#onTransitionCompleted(TransitionCompletedEvent)}.
+	 */
+	TRANSITION_COMPLETED,
+
+	/**
+	 * {@link StateMachineEventHandler#onTransitionDeclined(TransitionEvent)}.
+	 */
+	TRANSITION_DECLINED,
+
+	/**
+	 * {@link StateMachineEventHandler#onTransitionThrowsException(TransitionExceptionEvent)}.
+	 */
+	TRANSITION_THROWS_EXCEPTION
+}
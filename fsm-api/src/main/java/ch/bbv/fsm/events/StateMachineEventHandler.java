@@ -18,6 +18,9 @@
  *******************************************************************************/
 package ch.bbv.fsm.events;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import ch.bbv.fsm.StateMachine;
 
 /**
@@ -65,4 +68,25 @@ public interface StateMachineEventHandler<SM extends StateMachine<S, E>, S exten
 	 */
 	void onTransitionThrowsException(TransitionExceptionEvent<SM, S, E> arg);
 
+	/**
+	 * Returns the callbacks this handler wants to be called for. The state machine
+	 * does not call the other callbacks and does not create their events.
+	 * 
+	 * @return the callbacks, all by default.
+	 */
+	default Set<EventHandlerCallback> callbacks() {
+		return EnumSet.allOf(EventHandlerCallback.class);
+	}
+
+	/**
+	 * Returns <code>true</code> if this handler reads the states exited and
+	 * entered by the transitions, see {@link TransitionCompletedEvent#getRecords()}.
+	 * The state machine only records them while at least one handler does.
+	 * 
+	 * @return <code>false</code> by default.
+	 */
+	default boolean recordsTransitions() {
+		return false;
+	}
+
 }
@@ -18,10 +18,14 @@
  *******************************************************************************/
 package ch.bbv.fsm.events;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import ch.bbv.fsm.StateMachine;
 
 /**
  * Abstract implementation of a StateMachineEventHandler. All methods have an empty body.
+ * Only the callbacks overridden by a subclass are called.
  * 
  * @author Ueli Kurmann  
  * @param <S>
@@ -58,4 +62,30 @@ public abstract class StateMachineEventHandlerAdapter<SM extends StateMachine<S,
 	public void onTransitionThrowsException(final TransitionExceptionEvent<SM, S, E> arg) {
 		// empty method body
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the callbacks overridden by the subclass.
+	 */
+	@Override
+	public Set<EventHandlerCallback> callbacks() {
+		final Set<EventHandlerCallback> result = EnumSet.noneOf(EventHandlerCallback.class);
+		addIfOverridden(result, EventHandlerCallback.EXCEPTION_THROWN, "onExceptionThrown", ExceptionEvent.class);
+		addIfOverridden(result, EventHandlerCallback.TRANSITION_BEGIN, "onTransitionBegin", TransitionEvent.class);
+		addIfOverridden(result, EventHandlerCallback.TRANSITION_COMPLETED, "onTransitionCompleted", TransitionCompletedEvent.class);
+		addIfOverridden(result, EventHandlerCallback.TRANSITION_DECLINED, "onTransitionDeclined", TransitionEvent.class);
+		addIfOverridden(result, EventHandlerCallback.TRANSITION_THROWS_EXCEPTION, "onTransitionThrowsException",
+				TransitionExceptionEvent.class);
+		return result;
+	}
+
+	private void addIfOverridden(final Set<EventHandlerCallback> callbacks, final EventHandlerCallback callback,
+			final String methodName, final Class<?> parameterType) {
+		try {
+			if (getClass().getMethod(methodName, parameterType).getDeclaringClass() != StateMachineEventHandlerAdapter.class) {
+				callbacks.add(callback);
+			}
+		} catch (final NoSuchMethodException e) {
+			callbacks.add(callback);
+		}
+	}
+}
@@ -38,4 +38,14 @@ public interface TransitionCompletedEvent<TStateMachine extends StateMachine<S,
 	 */
 	S getNewStateId();
 
+	/**
+	 * Gets the states exited and entered by the transition, e.g.
+	 * <code> -> Exit A -> Enter B</code>. Empty unless a handler of the state
+	 * machine records transitions, see
+	 * {@link StateMachineEventHandler#recordsTransitions()}.
+	 * 
+	 * @return the states exited and entered by the transition.
+	 */
+	String getRecords();
+
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package ch.bbv.fsm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bbv.fsm.benchmarks.Definitions.Shape;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+
+/**
+ * Fires events on an active state machine and waits until the worker thread
+ * processed them.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Fork(1)
+public class ActiveStateMachineBenchmark {
+
+	private static final int BATCH = 1000;
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private SimpleStateMachine<States, Events> fsm;
+
+	/**
+	 * Creates and starts the state machine.
+	 */
+	@Setup
+	public void setup() {
+		this.fsm = Definitions.toggle(Shape.FLAT, true).createActiveStateMachine("active");
+		this.fsm.start();
+	}
+
+	/**
+	 * Terminates the state machine.
+	 */
+	@TearDown
+	public void tearDown() {
+		this.fsm.terminate();
+	}
+
+	/**
+	 * Fires a batch of events and waits until all of them are processed.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OperationsPerInvocation(BATCH)
+	public void throughput() {
+		for (int i = 0; i < BATCH; i++) {
+			this.fsm.fire(Events.Toggle, NO_ARGUMENTS);
+		}
+		awaitIdle();
+	}
+
+	/**
+	 * Fires a single event and waits until it is processed.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	public void latency() {
+		this.fsm.fire(Events.Toggle, NO_ARGUMENTS);
+		awaitIdle();
+	}
+
+	private void awaitIdle() {
+		while (!this.fsm.isIdle()) {
+			Thread.yield();
+		}
+	}
+}
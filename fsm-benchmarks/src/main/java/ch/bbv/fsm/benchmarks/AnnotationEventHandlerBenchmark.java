@@ -0,0 +1,130 @@
+package ch.bbv.fsm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bbv.fsm.events.StateMachineEventHandlerAdapter;
+import ch.bbv.fsm.events.TransitionCompletedEvent;
+import ch.bbv.fsm.events.TransitionEvent;
+import ch.bbv.fsm.events.annotation.OnTransitionBegin;
+import ch.bbv.fsm.events.annotation.OnTransitionCompleted;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.impl.SimpleStateMachineWithContext;
+import ch.bbv.fsm.impl.StatemachineBuilder;
+
+/**
+ * Compares the callbacks of annotated context methods with an event handler
+ * calling the same methods directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Fork(1)
+public class AnnotationEventHandlerBenchmark {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	/**
+	 * The context with annotated handler methods.
+	 */
+	public static class Context {
+
+		private long begun;
+
+		private long completed;
+
+		/**
+		 * Counts the begun transitions.
+		 *
+		 * @param event the event
+		 */
+		@OnTransitionBegin
+		public void begin(final TransitionEvent<?, ?, ?> event) {
+			this.begun++;
+		}
+
+		/**
+		 * Counts the completed transitions.
+		 *
+		 * @param event the event
+		 */
+		@OnTransitionCompleted
+		public void complete(final TransitionCompletedEvent<?, ?, ?> event) {
+			this.completed++;
+		}
+	}
+
+	/**
+	 * Calls the methods of the context directly.
+	 */
+	private static final class DirectHandler extends StateMachineEventHandlerAdapter<SimpleStateMachine<States, Events>, States, Events> {
+
+		private final Context context = new Context();
+
+		@Override
+		public void onTransitionBegin(final TransitionEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			this.context.begin(arg);
+		}
+
+		@Override
+		public void onTransitionCompleted(final TransitionCompletedEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			this.context.complete(arg);
+		}
+	}
+
+	private SimpleStateMachineWithContext<States, Events, Context> annotated;
+
+	private SimpleStateMachine<States, Events> direct;
+
+	/**
+	 * Creates and starts the state machines.
+	 */
+	@Setup
+	public void setup() {
+		this.annotated = StatemachineBuilder.<States, Events, Context>createWithContext(States.Idle, definition -> {
+			definition.in(States.Idle).on(Events.Toggle).goTo(States.Active);
+			definition.in(States.Active).on(Events.Toggle).goTo(States.Idle);
+		}).context(new Context()).buildPassive("annotated");
+		this.annotated.start();
+
+		final SimpleStateMachineDefinition<States, Events> definition = Definitions.toggle(Definitions.Shape.FLAT, true);
+		definition.addEventHandler(new DirectHandler());
+		this.direct = definition.createPassiveStateMachine("direct");
+		this.direct.start();
+	}
+
+	/**
+	 * Fires one event calling the annotated methods of the context.
+	 *
+	 * @return the new state
+	 */
+	@Benchmark
+	public States annotated() {
+		this.annotated.fire(Events.Toggle, NO_ARGUMENTS);
+		return this.annotated.getCurrentState();
+	}
+
+	/**
+	 * Fires one event calling the methods of the context directly.
+	 *
+	 * @return the new state
+	 */
+	@Benchmark
+	public States direct() {
+		this.direct.fire(Events.Toggle, NO_ARGUMENTS);
+		return this.direct.getCurrentState();
+	}
+}
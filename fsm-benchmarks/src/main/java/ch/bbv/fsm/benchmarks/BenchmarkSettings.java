@@ -0,0 +1,16 @@
+package ch.bbv.fsm.benchmarks;
+
+/**
+ * The settings shared by the benchmarks.
+ */
+public final class BenchmarkSettings {
+
+	/**
+	 * The number of warmup and of measurement iterations, one second each.
+	 */
+	public static final int ITERATIONS = 5;
+
+	private BenchmarkSettings() {
+		// utility class
+	}
+}
@@ -0,0 +1,115 @@
+package ch.bbv.fsm.benchmarks;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+
+/**
+ * The state machine definitions used by the benchmarks.
+ */
+public final class Definitions {
+
+	/**
+	 * The shape of the state machine definition.
+	 */
+	public enum Shape {
+		/**
+		 * Two states toggling between each other.
+		 */
+		FLAT,
+
+		/**
+		 * Two hierarchies with six levels each. The transitions are defined on the
+		 * top level states and fired from the leaf states.
+		 */
+		HIERARCHICAL
+	}
+
+	private Definitions() {
+		// utility class
+	}
+
+	/**
+	 * Creates a definition which toggles between two states on
+	 * {@link Events#Toggle}.
+	 *
+	 * @param shape    the shape of the definition
+	 * @param compiled <code>true</code> to compile the definition
+	 * @return the definition
+	 */
+	public static SimpleStateMachineDefinition<States, Events> toggle(final Shape shape, final boolean compiled) {
+		final SimpleStateMachineDefinition<States, Events> definition;
+		switch (shape) {
+		case FLAT:
+			definition = new SimpleStateMachineDefinition<>(States.Idle);
+			definition.in(States.Idle).on(Events.Toggle).goTo(States.Active);
+			definition.in(States.Active).on(Events.Toggle).goTo(States.Idle);
+			break;
+		case HIERARCHICAL:
+			definition = new SimpleStateMachineDefinition<>(States.L1);
+			definition.defineHierarchyOn(States.L1, States.L2, HistoryType.NONE, States.L2);
+			definition.defineHierarchyOn(States.L2, States.L3, HistoryType.NONE, States.L3);
+			definition.defineHierarchyOn(States.L3, States.L4, HistoryType.NONE, States.L4);
+			definition.defineHierarchyOn(States.L4, States.L5, HistoryType.NONE, States.L5);
+			definition.defineHierarchyOn(States.L5, States.L6, HistoryType.NONE, States.L6);
+			definition.defineHierarchyOn(States.M1, States.M2, HistoryType.NONE, States.M2);
+			definition.defineHierarchyOn(States.M2, States.M3, HistoryType.NONE, States.M3);
+			definition.defineHierarchyOn(States.M3, States.M4, HistoryType.NONE, States.M4);
+			definition.defineHierarchyOn(States.M4, States.M5, HistoryType.NONE, States.M5);
+			definition.defineHierarchyOn(States.M5, States.M6, HistoryType.NONE, States.M6);
+			definition.in(States.L1).on(Events.Toggle).goTo(States.M1);
+			definition.in(States.M1).on(Events.Toggle).goTo(States.L1);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown shape: " + shape);
+		}
+		return compile(definition, compiled);
+	}
+
+	/**
+	 * Creates a definition with several guarded candidates for
+	 * {@link Events#Guarded}. The guard of candidate <code>i</code> passes if the
+	 * first event argument is <code>i</code>. {@link Events#Toggle} leads back to
+	 * the initial state.
+	 *
+	 * @param candidates the number of guarded transitions
+	 * @param compiled   <code>true</code> to compile the definition
+	 * @return the definition
+	 */
+	public static SimpleStateMachineDefinition<States, Events> guarded(final int candidates, final boolean compiled) {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.Idle);
+		for (int i = 0; i < candidates; i++) {
+			final Integer candidate = i;
+			definition.in(States.Idle).on(Events.Guarded).goTo(States.Active).onlyIf((fsm, args) -> candidate.equals(args[0]));
+		}
+		definition.in(States.Active).on(Events.Toggle).goTo(States.Idle);
+		return compile(definition, compiled);
+	}
+
+	/**
+	 * Creates a definition with a super state {@link States#H} of the given
+	 * history type which is left with {@link Events#Leave} and re-entered with
+	 * {@link Events#Enter}. {@link Events#Next} moves to the nested sub state
+	 * {@link States#H1b}.
+	 *
+	 * @param historyType the history type of the super state
+	 * @param compiled    <code>true</code> to compile the definition
+	 * @return the definition
+	 */
+	public static SimpleStateMachineDefinition<States, Events> history(final HistoryType historyType, final boolean compiled) {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.Idle);
+		definition.defineHierarchyOn(States.H, States.H1, historyType, States.H1, States.H2);
+		definition.defineHierarchyOn(States.H1, States.H1a, historyType, States.H1a, States.H1b);
+		definition.in(States.Idle).on(Events.Enter).goTo(States.H);
+		definition.in(States.H1a).on(Events.Next).goTo(States.H1b);
+		definition.in(States.H).on(Events.Leave).goTo(States.Idle);
+		return compile(definition, compiled);
+	}
+
+	private static SimpleStateMachineDefinition<States, Events> compile(final SimpleStateMachineDefinition<States, Events> definition,
+			final boolean compiled) {
+		if (compiled) {
+			definition.compile();
+		}
+		return definition;
+	}
+}
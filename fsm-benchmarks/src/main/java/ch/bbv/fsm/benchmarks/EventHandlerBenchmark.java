@@ -0,0 +1,77 @@
+package ch.bbv.fsm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bbv.fsm.benchmarks.Definitions.Shape;
+import ch.bbv.fsm.events.StateMachineEventHandlerAdapter;
+import ch.bbv.fsm.events.TransitionCompletedEvent;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+
+/**
+ * Fires events on a state machine with several event handlers registered.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Fork(1)
+public class EventHandlerBenchmark {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	/**
+	 * Counts the completed transitions.
+	 */
+	private static final class CountingHandler extends StateMachineEventHandlerAdapter<SimpleStateMachine<States, Events>, States, Events> {
+
+		private long completed;
+
+		@Override
+		public void onTransitionCompleted(final TransitionCompletedEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			this.completed++;
+		}
+	}
+
+	@Param({ "0", "1", "4", "16" })
+	private int handlers;
+
+	private SimpleStateMachine<States, Events> fsm;
+
+	/**
+	 * Creates and starts the state machine.
+	 */
+	@Setup
+	public void setup() {
+		final SimpleStateMachineDefinition<States, Events> definition = Definitions.toggle(Shape.FLAT, true);
+		for (int i = 0; i < this.handlers; i++) {
+			definition.addEventHandler(new CountingHandler());
+		}
+		this.fsm = definition.createPassiveStateMachine("handlers");
+		this.fsm.start();
+	}
+
+	/**
+	 * Fires one event which is delivered to all handlers.
+	 *
+	 * @return the new state
+	 */
+	@Benchmark
+	public States fire() {
+		this.fsm.fire(Events.Toggle, NO_ARGUMENTS);
+		return this.fsm.getCurrentState();
+	}
+}
@@ -0,0 +1,8 @@
+package ch.bbv.fsm.benchmarks;
+
+/**
+ * The events used by the benchmark definitions.
+ */
+public enum Events {
+	Toggle, Guarded, Enter, Leave, Next
+}
@@ -0,0 +1,64 @@
+package ch.bbv.fsm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bbv.fsm.impl.SimpleStateMachine;
+
+/**
+ * Fires an event with several guarded candidate transitions. Only the guard of
+ * the last candidate passes, so all guards are evaluated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Fork(1)
+public class GuardedTransitionBenchmark {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	@Param({ "1", "4", "8" })
+	private int candidates;
+
+	@Param({ "false", "true" })
+	private boolean compiled;
+
+	private SimpleStateMachine<States, Events> fsm;
+
+	private Object[] lastCandidate;
+
+	/**
+	 * Creates and starts the state machine.
+	 */
+	@Setup
+	public void setup() {
+		this.fsm = Definitions.guarded(this.candidates, this.compiled).createPassiveStateMachine("guarded");
+		this.fsm.start();
+		this.lastCandidate = new Object[] { this.candidates - 1 };
+	}
+
+	/**
+	 * Fires the guarded event and returns to the initial state.
+	 *
+	 * @return the new state
+	 */
+	@Benchmark
+	public States fireGuarded() {
+		this.fsm.fire(Events.Guarded, this.lastCandidate);
+		this.fsm.fire(Events.Toggle, NO_ARGUMENTS);
+		return this.fsm.getCurrentState();
+	}
+}
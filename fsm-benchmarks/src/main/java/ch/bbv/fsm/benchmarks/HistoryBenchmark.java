@@ -0,0 +1,64 @@
+package ch.bbv.fsm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+
+/**
+ * Leaves and re-enters a super state with history.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	@Param({ "NONE", "SHALLOW", "DEEP" })
+	private HistoryType historyType;
+
+	@Param({ "false", "true" })
+	private boolean compiled;
+
+	private SimpleStateMachine<States, Events> fsm;
+
+	/**
+	 * Creates and starts the state machine and moves into the nested sub state,
+	 * so that the history points to it.
+	 */
+	@Setup
+	public void setup() {
+		this.fsm = Definitions.history(this.historyType, this.compiled).createPassiveStateMachine("history");
+		this.fsm.start();
+		this.fsm.fire(Events.Enter, NO_ARGUMENTS);
+		this.fsm.fire(Events.Next, NO_ARGUMENTS);
+	}
+
+	/**
+	 * Leaves the super state and re-enters it by its history.
+	 *
+	 * @return the new state
+	 */
+	@Benchmark
+	public States leaveAndReenter() {
+		this.fsm.fire(Events.Leave, NO_ARGUMENTS);
+		this.fsm.fire(Events.Enter, NO_ARGUMENTS);
+		return this.fsm.getCurrentState();
+	}
+}
@@ -0,0 +1,78 @@
+package ch.bbv.fsm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Passivates a state machine with history into a memento and activates a new
+ * state machine from it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Fork(1)
+public class PassivateActivateBenchmark {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private SimpleStateMachineDefinition<States, Events> definition;
+
+	private SimpleStateMachine<States, Events> fsm;
+
+	private StateMachineMemento<States, Events> memento;
+
+	/**
+	 * Creates a state machine whose history is set and passivates it once.
+	 */
+	@Setup
+	public void setup() {
+		this.definition = Definitions.history(HistoryType.DEEP, true);
+		this.fsm = this.definition.createPassiveStateMachine("passivate");
+		this.fsm.start();
+		this.fsm.fire(Events.Enter, NO_ARGUMENTS);
+		this.fsm.fire(Events.Next, NO_ARGUMENTS);
+		this.fsm.fire(Events.Leave, NO_ARGUMENTS);
+		this.memento = passivate();
+	}
+
+	/**
+	 * Passivates the state machine into a new memento.
+	 *
+	 * @return the memento
+	 */
+	@Benchmark
+	public StateMachineMemento<States, Events> passivate() {
+		final StateMachineMemento<States, Events> result = new StateMachineMemento<>();
+		this.fsm.passivate(result);
+		return result;
+	}
+
+	/**
+	 * Creates a new state machine and activates it from the memento.
+	 *
+	 * @return the activated state machine
+	 */
+	@Benchmark
+	public SimpleStateMachine<States, Events> activate() {
+		final SimpleStateMachine<States, Events> result = this.definition.createPassiveStateMachine("activate");
+		result.activate(this.memento);
+		return result;
+	}
+}
@@ -0,0 +1,60 @@
+package ch.bbv.fsm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.bbv.fsm.benchmarks.Definitions.Shape;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+
+/**
+ * Fires events on a passive state machine on the caller thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Measurement(iterations = BenchmarkSettings.ITERATIONS, time = 1)
+@Fork(1)
+public class PassiveFireBenchmark {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	@Param({ "FLAT", "HIERARCHICAL" })
+	private Shape shape;
+
+	@Param({ "false", "true" })
+	private boolean compiled;
+
+	private SimpleStateMachine<States, Events> fsm;
+
+	/**
+	 * Creates and starts the state machine.
+	 */
+	@Setup
+	public void setup() {
+		this.fsm = Definitions.toggle(this.shape, this.compiled).createPassiveStateMachine("passive");
+		this.fsm.start();
+	}
+
+	/**
+	 * Fires one event which toggles the state.
+	 *
+	 * @return the new state
+	 */
+	@Benchmark
+	public States fire() {
+		this.fsm.fire(Events.Toggle, NO_ARGUMENTS);
+		return this.fsm.getCurrentState();
+	}
+}
@@ -0,0 +1,17 @@
+package ch.bbv.fsm.benchmarks;
+
+/**
+ * The states used by the benchmark definitions.
+ */
+public enum States {
+	Idle, Active,
+
+	/** Six nested levels. */
+	L1, L2, L3, L4, L5, L6,
+
+	/** Six nested levels. */
+	M1, M2, M3, M4, M5, M6,
+
+	/** History super state with a nested sub state. */
+	H, H1, H1a, H1b, H2
+}
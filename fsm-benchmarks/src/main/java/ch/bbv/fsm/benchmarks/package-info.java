@@ -0,0 +1,4 @@
+/**
+ * JMH benchmarks of the state machine hot paths.
+ */
+package ch.bbv.fsm.benchmarks;
@@ -1,5 +1,6 @@
 package ch.bbv.fsm.impl;
 
+import ch.bbv.fsm.BatchResult;
 import ch.bbv.fsm.StateMachine;
 import ch.bbv.fsm.memento.StateMachineMemento;
 
@@ -29,6 +30,16 @@ public abstract class AbstractStateMachine<SM extends StateMachine<S, E>, S exte
 		driver.fire(eventId, eventArguments);
 	}
 
+	@Override
+	public final boolean tryFire(final E eventId, final Object... eventArguments) {
+		return driver.tryFire(eventId, eventArguments);
+	}
+
+	@Override
+	public final BatchResult fireBatch(final E[] eventIds, final Object[][] eventArguments) {
+		return driver.fireBatch(eventIds, eventArguments);
+	}
+
 	@Override
 	public final void firePriority(final E eventId, final Object... eventArguments) {
 		driver.firePriority(eventId, eventArguments);
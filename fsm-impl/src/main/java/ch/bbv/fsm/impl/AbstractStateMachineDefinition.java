@@ -1,22 +1,32 @@
 package ch.bbv.fsm.impl;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.bbv.fsm.BackpressurePolicy;
 import ch.bbv.fsm.HistoryType;
 import ch.bbv.fsm.StateMachine;
 import ch.bbv.fsm.StateMachineDefinition;
 import ch.bbv.fsm.dsl.EntryActionSyntax;
 import ch.bbv.fsm.events.StateMachineEventHandler;
 import ch.bbv.fsm.impl.internal.driver.ActiveStateMachineDriver;
+import ch.bbv.fsm.impl.internal.driver.PartitionedStateMachineDriver;
 import ch.bbv.fsm.impl.internal.driver.PassiveStateMachineDriver;
 import ch.bbv.fsm.impl.internal.dsl.StateBuilder;
+import ch.bbv.fsm.impl.internal.statemachine.PopulationInterpreter;
 import ch.bbv.fsm.impl.internal.statemachine.state.InternalState;
 import ch.bbv.fsm.impl.internal.statemachine.state.StateDictionary;
+import ch.bbv.fsm.impl.internal.statemachine.transition.TransitionTable;
+import ch.bbv.fsm.impl.jmx.JmxExporter;
 
 /**
  * Implementation of the definition of the finite state machine.
@@ -32,8 +42,38 @@ public abstract class AbstractStateMachineDefinition<SM extends StateMachine<S,
 
 	private final List<StateMachineEventHandler<SM, S, E>> eventHandler;
 
+	/**
+	 * The instrumentations, read without locking by every created state machine.
+	 */
+	private final List<Instrumentation<S, E>> instrumentations = new CopyOnWriteArrayList<>();
+
 	private final SimpleStateMachineModel<SM, S, E> model;
 
+	/**
+	 * Registers the management beans. <code>null</code> if they are not enabled.
+	 * Written under the lock of this definition.
+	 */
+	private volatile JmxExporter<S, E> jmxExporter;
+
+	/**
+	 * The compiled transitions. <code>null</code> until {@link #compile()} is
+	 * called.
+	 */
+	private volatile TransitionTable<SM, S, E> transitionTable;
+
+	/**
+	 * The capacity of the event queue of the created state machines.
+	 * <code>0</code> if the queue is unbounded.
+	 */
+	private int eventQueueCapacity;
+
+	private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+	/**
+	 * Creates the own worker threads of the active state machines.
+	 */
+	private ThreadFactory workerThreadFactory = Executors.defaultThreadFactory();
+
 	/**
 	 * Initializes the state machine.
 	 * 
@@ -53,6 +93,7 @@ public abstract class AbstractStateMachineDefinition<SM extends StateMachine<S,
 	@Override
 	@SuppressWarnings("unchecked")
 	public void defineHierarchyOn(final S superStateId, final S initialSubStateId, final HistoryType historyType, final S... subStateIds) {
+		checkNotCompiled();
 
 		final InternalState<SM, S, E> superState = this.model.getStates().getState(superStateId);
 		superState.setHistoryType(historyType);
@@ -68,6 +109,7 @@ public abstract class AbstractStateMachineDefinition<SM extends StateMachine<S,
 
 	@Override
 	public EntryActionSyntax<SM, S, E> in(final S state) {
+		checkNotCompiled();
 		final InternalState<SM, S, E> newState = this.model.getStates().getState(state);
 		return new StateBuilder<>(newState, this.model.getStates());
 	}
@@ -78,40 +120,187 @@ public abstract class AbstractStateMachineDefinition<SM extends StateMachine<S,
 		this.eventHandler.add(Objects.requireNonNull(handler));
 	}
 
+	/**
+	 * Adds an instrumentation to the state machines created afterwards, e.g. a
+	 * {@link ch.bbv.fsm.impl.metrics.StateMachineMetrics}.
+	 * 
+	 * @param instrumentation the instrumentation.
+	 */
+	public void addInstrumentation(final Instrumentation<S, E> instrumentation) {
+		this.instrumentations.add(Objects.requireNonNull(instrumentation));
+	}
+
+	/**
+	 * Registers a management bean for this definition and for each state machine
+	 * created afterwards with the platform MBean server. The bean of a state
+	 * machine is unregistered when the state machine is terminated.
+	 * 
+	 * @param name the name of this definition in the names of the beans.
+	 * @throws IllegalStateException    if the beans are already enabled.
+	 * @throws IllegalArgumentException if a definition with the same name is
+	 *                                  already registered.
+	 * @see JmxExporter
+	 */
+	public synchronized void enableJmx(final String name) {
+		if (this.jmxExporter != null) {
+			throw new IllegalStateException("The management beans are already enabled.");
+		}
+		this.jmxExporter = new JmxExporter<>(Objects.requireNonNull(name), ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Unregisters the management beans of this definition and of its state
+	 * machines. State machines created afterwards are not registered.
+	 */
+	public synchronized void disableJmx() {
+		if (this.jmxExporter != null) {
+			this.jmxExporter.close();
+			this.jmxExporter = null;
+		}
+	}
+
+	@Override
+	public void limitEventQueue(final int capacity, final BackpressurePolicy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity of the event queue must be positive but is " + capacity + ".");
+		}
+		this.eventQueueCapacity = capacity;
+		this.backpressurePolicy = Objects.requireNonNull(policy);
+	}
+
+	@Override
+	public void setWorkerThreadFactory(final ThreadFactory threadFactory) {
+		this.workerThreadFactory = Objects.requireNonNull(threadFactory);
+	}
+
+	/**
+	 * Compiles this definition into a read-only model. The transitions are
+	 * resolved into a table indexed by state and event ordinal, including the
+	 * transitions inherited from super states, so that firing an event on a state
+	 * machine created afterwards does not walk the state hierarchy any longer.
+	 * <p>
+	 * The definition can not be modified after it is compiled. Calling this method
+	 * more than once has no effect.
+	 */
+	public synchronized void compile() {
+		if (this.transitionTable == null) {
+			LOG.debug("Compile state machine definition with initial state {}.", getInitialState());
+			this.transitionTable = TransitionTable.compile(getStates(), getInitialState());
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if this definition is compiled.
+	 */
+	public boolean isCompiled() {
+		return this.transitionTable != null;
+	}
+
+	/**
+	 * Throws an exception if this definition is already compiled.
+	 */
+	private void checkNotCompiled() {
+		if (isCompiled()) {
+			throw new IllegalStateException("The state machine definition is compiled and can not be modified any longer.");
+		}
+	}
+
 	private StateDictionary<SM, S, E> getStates() {
 		return this.model.getStates();
 	}
 
 	@Override
 	public SM createActiveStateMachine(final String name, final S initialState) {
-		final ActiveStateMachineDriver<SM, S, E> activeStateMachine = new ActiveStateMachineDriver<>();
-		final SM stateMachine = createStateMachine(activeStateMachine);
-		activeStateMachine.initialize(stateMachine, name, getStates(), initialState, eventHandler);
-		return stateMachine;
+		return createActiveStateMachine(name, initialState, null);
 	}
 
 	@Override
 	public SM createActiveStateMachine(final String name) {
-		final ActiveStateMachineDriver<SM, S, E> activeStateMachine = new ActiveStateMachineDriver<>();
+		return createActiveStateMachine(name, getInitialState(), null);
+	}
+
+	@Override
+	public SM createActiveStateMachine(final String name, final S initialState, final Executor executor) {
+		final ActiveStateMachineDriver<SM, S, E> activeStateMachine = new ActiveStateMachineDriver<>(executor, workerThreadFactory,
+				eventQueueCapacity, backpressurePolicy);
 		final SM stateMachine = createStateMachine(activeStateMachine);
-		activeStateMachine.initialize(stateMachine, name, getStates(), getInitialState(), eventHandler);
+		activeStateMachine.initialize(stateMachine, name, getStates(), this.transitionTable, initialState, eventHandler,
+				instrumentations(activeStateMachine, name));
 		return stateMachine;
 	}
 
+	@Override
+	public SM createActiveStateMachine(final String name, final Executor executor) {
+		return createActiveStateMachine(name, getInitialState(), executor);
+	}
+
 	@Override
 	public SM createPassiveStateMachine(final String name, final S initialState) {
-		final PassiveStateMachineDriver<SM, S, E> passiveStateMachine = new PassiveStateMachineDriver<>();
+		final PassiveStateMachineDriver<SM, S, E> passiveStateMachine = new PassiveStateMachineDriver<>(eventQueueCapacity,
+				backpressurePolicy);
 		final SM stateMachine = createStateMachine(passiveStateMachine);
-		passiveStateMachine.initialize(stateMachine, name, getStates(), initialState, eventHandler);
+		passiveStateMachine.initialize(stateMachine, name, getStates(), this.transitionTable, initialState, eventHandler,
+				instrumentations(passiveStateMachine, name));
 		return stateMachine;
 	}
 
 	@Override
 	public SM createPassiveStateMachine(final String name) {
-		final PassiveStateMachineDriver<SM, S, E> passiveStateMachine = new PassiveStateMachineDriver<>();
-		final SM stateMachine = createStateMachine(passiveStateMachine);
-		passiveStateMachine.initialize(stateMachine, name, getStates(), getInitialState(), eventHandler);
-		return stateMachine;
+		return createPassiveStateMachine(name, getInitialState());
+	}
+
+	/**
+	 * Creates an engine which shards the state machines by key across the given
+	 * number of worker threads, created by the worker thread factory, see
+	 * {@link PartitionedStateMachineEngine}. The state machines are named after
+	 * their key.
+	 *
+	 * @param partitions the number of partitions and worker threads.
+	 * @return the engine.
+	 */
+	public <K> PartitionedStateMachineEngine<K, SM, S, E> createPartitionedEngine(final int partitions) {
+		return new PartitionedStateMachineEngine<>(partitions, workerThreadFactory, (name, worker) -> {
+			final PartitionedStateMachineDriver<SM, S, E> driver = new PartitionedStateMachineDriver<>(worker);
+			final SM stateMachine = createStateMachine(driver);
+			driver.initialize(stateMachine, name, getStates(), this.transitionTable, getInitialState(), eventHandler,
+					instrumentations(driver, name));
+			return stateMachine;
+		});
+	}
+
+	/**
+	 * Creates a population of passive state machines which are started in the
+	 * initial state. The population keeps the states of its state machines in
+	 * arrays, see {@link StateMachinePopulation}.
+	 *
+	 * @param name the name of the population used in log messages.
+	 * @param size the number of state machines.
+	 * @return the population.
+	 */
+	public StateMachinePopulation<S, E> createPopulation(final String name, final int size) {
+		final StateMachinePopulation.Driver<S, E> driver = new StateMachinePopulation.Driver<>();
+		final SM stateMachine = createStateMachine(driver);
+		final PopulationInterpreter<SM, S, E> interpreter = new PopulationInterpreter<>(stateMachine, name, getStates(),
+				this.transitionTable, getInitialState(), size);
+		this.eventHandler.forEach(interpreter::addEventHandler);
+		final StateMachinePopulation<S, E> population = new StateMachinePopulation<>(driver, interpreter);
+		population.initialize();
+		return population;
+	}
+
+	/**
+	 * Returns the instrumentations of a new state machine, including its
+	 * management bean if enabled. Does not lock, so state machines are created
+	 * concurrently.
+	 */
+	private List<Instrumentation<S, E>> instrumentations(final StateMachine<S, E> driver, final String name) {
+		final JmxExporter<S, E> exporter = this.jmxExporter;
+		if (exporter == null) {
+			return this.instrumentations;
+		}
+		final List<Instrumentation<S, E>> result = new ArrayList<>(this.instrumentations);
+		result.add(exporter.export(driver, name));
+		return result;
 	}
 
 	protected abstract SM createStateMachine(StateMachine<S, E> driver);
@@ -0,0 +1,261 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.bbv.fsm.BackpressurePolicy;
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.events.BatchEventHandler;
+import ch.bbv.fsm.events.StateMachineEventHandlerAdapter;
+import ch.bbv.fsm.events.TransitionCompletedEvent;
+import ch.bbv.fsm.events.TransitionEvent;
+import ch.bbv.fsm.impl.internal.driver.EventQueue;
+
+/**
+ * Delivers the transition events of state machines to a
+ * {@link BatchEventHandler} on another thread, so that slow handlers (e.g.
+ * auditing) are not executed within the transitions:
+ *
+ * <pre>
+ * AsyncEventHandler&lt;...&gt; audit = new AsyncEventHandler&lt;&gt;(batchHandler, 1024, BackpressurePolicy.DROP_OLDEST);
+ * definition.addEventHandler(audit);
+ * ...
+ * audit.close();
+ * </pre>
+ *
+ * The events are buffered in a queue of limited capacity. The
+ * {@link BackpressurePolicy} defines what happens if the handler does not keep
+ * up: {@link BackpressurePolicy#BLOCK} delays the state machines,
+ * {@link BackpressurePolicy#REJECT} reports an exception to the other event
+ * handlers of the state machine and the drop policies lose events. The events
+ * are not equal to each other, therefore {@link BackpressurePolicy#COALESCE}
+ * drops the new events like {@link BackpressurePolicy#DROP_NEWEST}.
+ * <p>
+ * The handler is called by one thread at a time and receives the events of a
+ * state machine in the order they occurred. The same instance may be added to
+ * several definitions.
+ *
+ * @param <SM> the type of the state machine
+ * @param <S>  the type of the states.
+ * @param <E>  the type of the events.
+ */
+public class AsyncEventHandler<SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>>
+		extends StateMachineEventHandlerAdapter<SM, S, E> implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncEventHandler.class);
+
+	/**
+	 * The maximum number of events delivered per run, so that a shared executor
+	 * is not occupied for too long.
+	 */
+	private static final int MAX_EVENTS_PER_RUN = 256;
+
+	private static final long CLOSE_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final BatchEventHandler<SM, S, E> handler;
+
+	private final EventQueue<TransitionEvent<SM, S, E>> events;
+
+	private final Executor executor;
+
+	/**
+	 * The own delivery thread or <code>null</code> if a shared executor is used.
+	 */
+	private final ExecutorService ownExecutor;
+
+	/**
+	 * <code>true</code> while a delivery run is scheduled or the handler is
+	 * closed. Ensures that only one thread delivers events at a time.
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/**
+	 * The thread delivering the events.
+	 */
+	private volatile Thread consumer;
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a handler delivering the events on its own daemon thread.
+	 *
+	 * @param handler  the handler receiving the events.
+	 * @param capacity the maximum number of buffered events.
+	 * @param policy   the policy applied if the buffer is full.
+	 */
+	public AsyncEventHandler(final BatchEventHandler<SM, S, E> handler, final int capacity, final BackpressurePolicy policy) {
+		this(handler, capacity, policy, null);
+	}
+
+	/**
+	 * Creates a handler delivering the events on the given executor.
+	 *
+	 * @param handler  the handler receiving the events.
+	 * @param capacity the maximum number of buffered events.
+	 * @param policy   the policy applied if the buffer is full.
+	 * @param executor the executor or <code>null</code> to use an own daemon
+	 *                 thread.
+	 */
+	public AsyncEventHandler(final BatchEventHandler<SM, S, E> handler, final int capacity, final BackpressurePolicy policy,
+			final Executor executor) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity of the event buffer must be positive but is " + capacity + ".");
+		}
+		if (handler == null || policy == null) {
+			throw new IllegalArgumentException("The handler and the policy must not be null.");
+		}
+		this.handler = handler;
+		this.events = EventQueue.create(capacity, policy);
+		if (executor == null) {
+			this.ownExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "fsm-event-handler");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.executor = this.ownExecutor;
+		} else {
+			this.ownExecutor = null;
+			this.executor = executor;
+		}
+	}
+
+	@Override
+	public void onTransitionCompleted(final TransitionCompletedEvent<SM, S, E> arg) {
+		enqueue(arg);
+	}
+
+	@Override
+	public void onTransitionDeclined(final TransitionEvent<SM, S, E> arg) {
+		enqueue(arg);
+	}
+
+	/**
+	 * Returns the number of buffered events.
+	 */
+	public int numberOfQueuedEvents() {
+		return this.events.size();
+	}
+
+	/**
+	 * Delivers the buffered events and stops the delivery. Events occurring
+	 * afterwards are dropped.
+	 */
+	@Override
+	public void close() {
+		if (Thread.currentThread() == this.consumer) {
+			throw new IllegalStateException("The handler can not be closed while it delivers events.");
+		}
+		this.closed = true;
+		this.events.close();
+		// wait for the running delivery and take over
+		while (!this.scheduled.compareAndSet(false, true)) {
+			LockSupport.parkNanos(this, CLOSE_WAIT_NANOS);
+		}
+		this.consumer = Thread.currentThread();
+		try {
+			while (!this.events.isEmpty()) {
+				deliver();
+			}
+		} finally {
+			this.consumer = null;
+			if (this.ownExecutor != null) {
+				this.ownExecutor.shutdown();
+			}
+		}
+	}
+
+	private void enqueue(final TransitionEvent<SM, S, E> event) {
+		if (this.closed) {
+			return;
+		}
+		this.events.put(event, false, Thread.currentThread() != this.consumer);
+		schedule();
+	}
+
+	/**
+	 * Schedules a delivery run unless one is already scheduled.
+	 */
+	private void schedule() {
+		if (!this.closed && this.scheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this::run);
+			} catch (final RuntimeException e) {
+				this.scheduled.set(false);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Delivers the buffered events. Reschedules itself if there are events left
+	 * after {@link #MAX_EVENTS_PER_RUN} events.
+	 */
+	private void run() {
+		this.consumer = Thread.currentThread();
+		try {
+			deliver();
+		} finally {
+			this.consumer = null;
+			this.scheduled.set(false);
+			if (!this.events.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+
+	/**
+	 * Delivers up to {@link #MAX_EVENTS_PER_RUN} events, consecutive events of the
+	 * same kind in one batch.
+	 */
+	@SuppressWarnings("unchecked")
+	private void deliver() {
+		final List<TransitionCompletedEvent<SM, S, E>> completed = new ArrayList<>();
+		final List<TransitionEvent<SM, S, E>> declined = new ArrayList<>();
+		for (int i = 0; i < MAX_EVENTS_PER_RUN; i++) {
+			final TransitionEvent<SM, S, E> event = this.events.poll();
+			if (event == null) {
+				break;
+			}
+			if (event instanceof TransitionCompletedEvent) {
+				deliverDeclined(declined);
+				completed.add((TransitionCompletedEvent<SM, S, E>) event);
+			} else {
+				deliverCompleted(completed);
+				declined.add(event);
+			}
+		}
+		deliverDeclined(declined);
+		deliverCompleted(completed);
+	}
+
+	private void deliverCompleted(final List<TransitionCompletedEvent<SM, S, E>> batch) {
+		if (!batch.isEmpty()) {
+			try {
+				this.handler.onTransitionsCompleted(new ArrayList<>(batch));
+			} catch (final RuntimeException e) {
+				LOG.error("Error delivering " + batch.size() + " completed transitions.", e);
+			}
+			batch.clear();
+		}
+	}
+
+	private void deliverDeclined(final List<TransitionEvent<SM, S, E>> batch) {
+		if (!batch.isEmpty()) {
+			try {
+				this.handler.onTransitionsDeclined(new ArrayList<>(batch));
+			} catch (final RuntimeException e) {
+				LOG.error("Error delivering " + batch.size() + " declined transitions.", e);
+			}
+			batch.clear();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package ch.bbv.fsm.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import ch.bbv.fsm.BatchResult;
+import ch.bbv.fsm.StateMachine;
+
+/**
+ * The progress of an event broadcast to all state machines of a
+ * {@link StateMachineRegistry} or {@link PartitionedStateMachineEngine}. The
+ * counters are updated while the broadcast runs:
+ *
+ * <pre>
+ * Broadcast&lt;String&gt; broadcast = registry.broadcast(Events.Shutdown);
+ * while (!broadcast.isDone()) {
+ * 	LOG.info("{} of {} state machines", broadcast.getCompleted(), broadcast.getTotal());
+ * 	...
+ * }
+ * broadcast.toCompletableFuture().join();
+ * </pre>
+ *
+ * @param <K> the type of the keys.
+ */
+public final class Broadcast<K> {
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final LongAdder accepted = new LongAdder();
+
+	private final LongAdder declined = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private final LongAdder queued = new LongAdder();
+
+	private final Map<K, RuntimeException> failures = new ConcurrentHashMap<>();
+
+	private final CompletableFuture<Broadcast<K>> completion = new CompletableFuture<>();
+
+	Broadcast() {
+	}
+
+	/**
+	 * Adds state machines to the expected total.
+	 */
+	void expect(final long stateMachines) {
+		this.total.addAndGet(stateMachines);
+	}
+
+	/**
+	 * Fires the event on a state machine and counts the outcome.
+	 */
+	<S extends Enum<?>, E extends Enum<?>> void fire(final K key, final StateMachine<S, E> stateMachine,
+			final E[] eventIds, final Object[][] eventArguments) {
+		try {
+			final BatchResult result = stateMachine.fireBatch(eventIds, eventArguments);
+			this.accepted.add(result.getAccepted());
+			this.declined.add(result.getDeclined());
+			this.failed.add(result.getFailed());
+			this.queued.add(result.getQueued());
+		} catch (final RuntimeException e) {
+			this.failures.put(key, e);
+			this.failed.increment();
+		}
+	}
+
+	/**
+	 * Marks the broadcast as done.
+	 */
+	void complete() {
+		this.completion.complete(this);
+	}
+
+	/**
+	 * Marks the broadcast as aborted.
+	 */
+	void abort(final Throwable cause) {
+		this.completion.completeExceptionally(cause);
+	}
+
+	/**
+	 * Returns the number of state machines the event is broadcast to. The total
+	 * may grow while the broadcast runs.
+	 */
+	public long getTotal() {
+		return this.total.get();
+	}
+
+	/**
+	 * Returns the number of state machines the event was fired on so far.
+	 */
+	public long getCompleted() {
+		return this.accepted.sum() + this.declined.sum() + this.failed.sum() + this.queued.sum();
+	}
+
+	/**
+	 * Returns the number of state machines which processed the event with a
+	 * transition.
+	 */
+	public long getAccepted() {
+		return this.accepted.sum();
+	}
+
+	/**
+	 * Returns the number of state machines which declined the event.
+	 */
+	public long getDeclined() {
+		return this.declined.sum();
+	}
+
+	/**
+	 * Returns the number of state machines which failed to process the event,
+	 * because an action or guard threw an exception or because the event was
+	 * rejected.
+	 */
+	public long getFailed() {
+		return this.failed.sum();
+	}
+
+	/**
+	 * Returns the number of state machines which queued the event for later
+	 * processing, e.g. active state machines.
+	 */
+	public long getQueued() {
+		return this.queued.sum();
+	}
+
+	/**
+	 * Returns the exceptions thrown when the event was fired, by key.
+	 */
+	public Map<K, RuntimeException> getFailures() {
+		return Collections.unmodifiableMap(this.failures);
+	}
+
+	/**
+	 * Returns <code>true</code> once the event was fired on all state machines.
+	 */
+	public boolean isDone() {
+		return this.completion.isDone();
+	}
+
+	/**
+	 * Returns a future completed with this broadcast once the event was fired on
+	 * all state machines.
+	 */
+	public CompletableFuture<Broadcast<K>> toCompletableFuture() {
+		return this.completion.thenApply(Function.identity());
+	}
+
+	@Override
+	public String toString() {
+		return getCompleted() + " of " + getTotal() + ": accepted=" + getAccepted() + ", declined=" + getDeclined()
+				+ ", failed=" + getFailed() + ", queued=" + getQueued();
+	}
+}
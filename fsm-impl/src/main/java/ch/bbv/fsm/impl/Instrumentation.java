@@ -0,0 +1,151 @@
+package ch.bbv.fsm.impl;
+
+/**
+ * Observes the processing of events by the state machines of a definition, see
+ * {@link AbstractStateMachineDefinition#addInstrumentation(Instrumentation)}.
+ * The callbacks are called on the thread processing the events, within the
+ * transitions, and must return quickly. The durations are measured with
+ * {@link System#nanoTime()} and the callbacks observing the events are only
+ * called while at least one instrumentation of a state machine is
+ * {@link #isActive() active}.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public interface Instrumentation<S extends Enum<?>, E extends Enum<?>> {
+
+	/**
+	 * Returns <code>true</code> if the instrumentation currently observes the
+	 * events. Checked for every event, guard and action, so it must be cheap.
+	 * While no instrumentation of a state machine is active, its durations are
+	 * not measured and only the callbacks of its live cycle are called:
+	 * {@link #onInitialized(String, Enum)}, {@link #onPassivated(String)},
+	 * {@link #onActivated(String, Enum)} and {@link #onTerminated(String)}.
+	 *
+	 * @return <code>true</code> by default.
+	 */
+	default boolean isActive() {
+		return true;
+	}
+
+	/**
+	 * Occurs when a state machine takes an event for processing.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param eventId      the event.
+	 * @param queueDepth   the number of events still queued.
+	 */
+	default void onEventDequeued(final String stateMachine, final E eventId, final int queueDepth) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after the guard of a transition was evaluated.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param stateId      the source state of the transition.
+	 * @param eventId      the event.
+	 * @param nanos        the time the guard took.
+	 */
+	default void onGuardEvaluated(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after the actions of a transition were performed.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param stateId      the source state of the transition.
+	 * @param eventId      the event.
+	 * @param nanos        the time the actions took.
+	 */
+	default void onActionsPerformed(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after a transition completed.
+	 *
+	 * @param stateMachine  the name of the state machine.
+	 * @param sourceStateId the state the state machine was in.
+	 * @param eventId       the event.
+	 * @param targetStateId the state the state machine is in now.
+	 * @param nanos         the time the transition took, including guards,
+	 *                      actions and the exit and entry actions.
+	 */
+	default void onTransitionCompleted(final String stateMachine, final S sourceStateId, final E eventId,
+			final S targetStateId, final long nanos) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after an event was declined because no transition was possible.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param stateId      the state the state machine is in.
+	 * @param eventId      the event.
+	 * @param nanos        the time the evaluation of the guards took.
+	 */
+	default void onTransitionDeclined(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs when a state machine leaves a state for another state.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param stateId      the state left.
+	 * @param dwellNanos   the time the state machine was in the state.
+	 */
+	default void onStateLeft(final String stateMachine, final S stateId, final long dwellNanos) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs when an exception was thrown by an action or a guard.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param exception    the exception.
+	 */
+	default void onExceptionThrown(final String stateMachine, final Exception exception) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after a state machine entered its initial state when it was started.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param stateId      the state the state machine is in now.
+	 */
+	default void onInitialized(final String stateMachine, final S stateId) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after a state machine was passivated into a memento.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 */
+	default void onPassivated(final String stateMachine) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after a state machine was activated from a memento.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @param stateId      the state the state machine is in now.
+	 */
+	default void onActivated(final String stateMachine, final S stateId) {
+		// ignore by default
+	}
+
+	/**
+	 * Occurs after a state machine was terminated.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 */
+	default void onTerminated(final String stateMachine) {
+		// ignore by default
+	}
+}
@@ -0,0 +1,232 @@
+package ch.bbv.fsm.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.internal.driver.PartitionWorker;
+
+/**
+ * Holds state machines by key and shards them across a fixed number of worker
+ * threads by the hash of the key, see
+ * {@link AbstractStateMachineDefinition#createPartitionedEngine(int)}:
+ *
+ * <pre>
+ * PartitionedStateMachineEngine&lt;String, SimpleStateMachine&lt;States, Events&gt;, States, Events&gt; engine = definition
+ * 		.createPartitionedEngine(Runtime.getRuntime().availableProcessors());
+ * engine.fire("device-42", Events.Connect);
+ * ...
+ * engine.close();
+ * </pre>
+ *
+ * Every state machine is created, started and fired on by the worker of its
+ * partition only, so neither the state machines nor the map of a partition are
+ * locked. Firing an event queues it in the lock-free mailbox of the partition
+ * and returns, the events of one key are processed in the order they were
+ * fired by a thread.
+ * <p>
+ * The state machines must only be accessed by the worker of their partition,
+ * use {@link #submit(Object, Function)} to read them. A {@link StateIndex}
+ * added to the definition before the engine is created tracks the current
+ * state of every key without going through the workers.
+ *
+ * @param <K>  the type of the keys.
+ * @param <SM> the type of the state machines.
+ * @param <S>  the type of the states.
+ * @param <E>  the type of the events.
+ */
+public final class PartitionedStateMachineEngine<K, SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>>
+		implements AutoCloseable {
+
+	/**
+	 * The shift folding the upper half of the hash into the lower half.
+	 */
+	private static final int HASH_SPREAD_SHIFT = 16;
+
+	private final Partition<K, SM>[] partitions;
+
+	/**
+	 * Creates the state machine with a name owned by a worker.
+	 */
+	private final BiFunction<String, PartitionWorker, SM> factory;
+
+	@SuppressWarnings("unchecked")
+	PartitionedStateMachineEngine(final int partitions, final ThreadFactory threadFactory,
+			final BiFunction<String, PartitionWorker, SM> factory) {
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("The number of partitions must be positive but is " + partitions + ".");
+		}
+		this.factory = factory;
+		this.partitions = new Partition[partitions];
+		for (int i = 0; i < partitions; i++) {
+			this.partitions[i] = new Partition<>(new PartitionWorker(threadFactory));
+		}
+	}
+
+	/**
+	 * Fires an event on the state machine of the key, which is created and
+	 * started if it does not exist yet. The event is processed asynchronously by
+	 * the worker of the partition.
+	 *
+	 * @param key            the key of the state machine.
+	 * @param eventId        the event.
+	 * @param eventArguments the arguments of the event.
+	 */
+	public void fire(final K key, final E eventId, final Object... eventArguments) {
+		final Partition<K, SM> partition = partition(key);
+		partition.worker.execute(() -> stateMachine(partition, key).fire(eventId, eventArguments));
+	}
+
+	/**
+	 * Applies a function to the state machine of the key on the worker of its
+	 * partition, after the events fired before. The state machine is created and
+	 * started if it does not exist yet.
+	 *
+	 * @param key      the key of the state machine.
+	 * @param function the function.
+	 * @return the result of the function.
+	 */
+	public <R> CompletableFuture<R> submit(final K key, final Function<? super SM, ? extends R> function) {
+		final Partition<K, SM> partition = partition(key);
+		final CompletableFuture<R> result = new CompletableFuture<>();
+		partition.worker.execute(() -> {
+			try {
+				result.complete(function.apply(stateMachine(partition, key)));
+			} catch (final RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Terminates and removes the state machine of the key, after the events
+	 * fired before.
+	 *
+	 * @param key the key of the state machine.
+	 * @return completes with <code>true</code> if the state machine existed.
+	 */
+	public CompletableFuture<Boolean> remove(final K key) {
+		final Partition<K, SM> partition = partition(key);
+		final CompletableFuture<Boolean> result = new CompletableFuture<>();
+		partition.worker.execute(() -> {
+			final SM removed = partition.stateMachines.remove(key);
+			if (removed != null) {
+				removed.terminate();
+			}
+			result.complete(removed != null);
+		});
+		return result;
+	}
+
+	/**
+	 * Fires an event on all state machines, each worker fires it on the state
+	 * machines of its partition in parallel to the other workers. The broadcast
+	 * is queued like other events, so each state machine gets it after the
+	 * events fired on it before and before the events fired after. State
+	 * machines created later do not get the event. The broadcast is aborted if a
+	 * worker fails to fire the event, for example because an action threw an
+	 * {@link Error}.
+	 *
+	 * @param eventId        the event.
+	 * @param eventArguments the arguments of the event.
+	 * @return the progress of the broadcast.
+	 */
+	@SuppressWarnings("unchecked")
+	public Broadcast<K> broadcast(final E eventId, final Object... eventArguments) {
+		final E[] eventIds = (E[]) new Enum<?>[] { eventId };
+		final Object[][] arguments = { eventArguments };
+		final Broadcast<K> broadcast = new Broadcast<>();
+		final AtomicInteger remaining = new AtomicInteger(this.partitions.length);
+		for (final Partition<K, SM> partition : this.partitions) {
+			partition.worker.execute(() -> {
+				try {
+					broadcast.expect(partition.stateMachines.size());
+					partition.stateMachines
+							.forEach((key, stateMachine) -> broadcast.fire(key, stateMachine, eventIds, arguments));
+				} catch (final RuntimeException | Error e) {
+					broadcast.abort(e);
+				} finally {
+					if (remaining.decrementAndGet() == 0) {
+						broadcast.complete();
+					}
+				}
+			});
+		}
+		return broadcast;
+	}
+
+	/**
+	 * Returns the number of partitions.
+	 */
+	public int numberOfPartitions() {
+		return this.partitions.length;
+	}
+
+	/**
+	 * Returns the number of tasks queued for the workers.
+	 */
+	public int numberOfQueuedTasks() {
+		int queued = 0;
+		for (final Partition<K, SM> partition : this.partitions) {
+			queued += partition.worker.numberOfQueuedTasks();
+		}
+		return queued;
+	}
+
+	/**
+	 * Stops accepting events, processes the queued events and stops the workers.
+	 * The state machines are not terminated.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		for (final Partition<K, SM> partition : this.partitions) {
+			partition.worker.stop();
+		}
+	}
+
+	private Partition<K, SM> partition(final K key) {
+		final int h = key.hashCode();
+		return this.partitions[Math.floorMod(h ^ (h >>> HASH_SPREAD_SHIFT), this.partitions.length)];
+	}
+
+	/**
+	 * Returns the state machine of the key, creates and starts it if it does not
+	 * exist yet. Called by the worker of the partition.
+	 */
+	private SM stateMachine(final Partition<K, SM> partition, final K key) {
+		SM stateMachine = partition.stateMachines.get(key);
+		if (stateMachine == null) {
+			stateMachine = Objects.requireNonNull(this.factory.apply(String.valueOf(key), partition.worker));
+			partition.stateMachines.put(key, stateMachine);
+			stateMachine.start();
+		}
+		return stateMachine;
+	}
+
+	/**
+	 * A worker and the state machines it owns.
+	 *
+	 * @param <K>  the type of the keys.
+	 * @param <SM> the type of the state machines.
+	 */
+	private static final class Partition<K, SM> {
+
+		private final PartitionWorker worker;
+
+		/**
+		 * The state machines by key. Only accessed by the worker.
+		 */
+		private final Map<K, SM> stateMachines = new HashMap<>();
+
+		Partition(final PartitionWorker worker) {
+			this.worker = worker;
+		}
+	}
+}
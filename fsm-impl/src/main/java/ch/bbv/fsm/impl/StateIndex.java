@@ -0,0 +1,176 @@
+package ch.bbv.fsm.impl;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes the state machines of a definition by their current state, so that
+ * the state machines in a state are found without asking every state machine
+ * for its state:
+ *
+ * <pre>
+ * StateIndex&lt;States, Events&gt; index = new StateIndex&lt;&gt;(States.class);
+ * definition.addInstrumentation(index);
+ * StateMachineRegistry&lt;String, SimpleStateMachine&lt;States, Events&gt;, States, Events&gt; registry = new StateMachineRegistry&lt;&gt;(
+ * 		definition);
+ * ...
+ * for (String key : index.find(States.Connecting)) {
+ * 	registry.fire(key, Events.Timeout);
+ * }
+ * </pre>
+ *
+ * The state machines are identified by their names, which must be unique
+ * among the state machines of the definition. The {@link StateMachineRegistry}
+ * created from a definition, the {@link PartitionedStateMachineEngine} and the
+ * evicting registry of the persistence module name their state machines after
+ * their keys.
+ * <p>
+ * A state machine is added when it is started or activated, moved by every
+ * transition to another state and removed when it is terminated. A passivated
+ * state machine stays in its state until it is activated again or terminated.
+ * Only the innermost state is indexed, not its super states. The index is
+ * updated by the threads processing the events without locking. A state
+ * machine moving to another state is removed from its previous state before
+ * it is added to the new one. The queries read the states one after the
+ * other, so a state machine moving while {@link #countByState()} or a sequence
+ * of queries runs may be counted in both states or in neither. The counts are
+ * exact while the state machines are idle.
+ * <p>
+ * The index is an {@link Instrumentation#isActive() active} instrumentation:
+ * while it is added, the state machines of the definition measure the
+ * durations of their guards, actions and transitions with
+ * {@link System#nanoTime()}.
+ *
+ * @see AbstractStateMachineDefinition#addInstrumentation(Instrumentation)
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public final class StateIndex<S extends Enum<S>, E extends Enum<E>> implements Instrumentation<S, E> {
+
+	private final Class<S> stateType;
+
+	/**
+	 * The current state by the name of the state machine.
+	 */
+	private final Map<String, S> currentStates = new ConcurrentHashMap<>();
+
+	/**
+	 * The names of the state machines indexed by the ordinal of their current
+	 * state.
+	 */
+	private final Set<String>[] stateMachines;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param stateType the type of the states.
+	 */
+	@SuppressWarnings("unchecked")
+	public StateIndex(final Class<S> stateType) {
+		this.stateType = stateType;
+		this.stateMachines = new Set[stateType.getEnumConstants().length];
+		for (int i = 0; i < this.stateMachines.length; i++) {
+			this.stateMachines[i] = ConcurrentHashMap.newKeySet();
+		}
+	}
+
+	/**
+	 * Returns the number of state machines in a state in constant time.
+	 *
+	 * @param state the state.
+	 * @return the number of state machines.
+	 */
+	public int count(final S state) {
+		return this.stateMachines[state.ordinal()].size();
+	}
+
+	/**
+	 * Returns the number of state machines per state, for every state with at
+	 * least one state machine. Takes time proportional to the number of states,
+	 * the states are counted one after the other.
+	 *
+	 * @return the counts in the order of the states.
+	 */
+	public Map<S, Integer> countByState() {
+		final Map<S, Integer> result = new EnumMap<>(this.stateType);
+		final S[] states = this.stateType.getEnumConstants();
+		for (int ordinal = 0; ordinal < this.stateMachines.length; ordinal++) {
+			final int count = this.stateMachines[ordinal].size();
+			if (count > 0) {
+				result.put(states[ordinal], count);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the names of the state machines in a state. Takes time
+	 * proportional to the number of state machines found.
+	 *
+	 * @param state the state.
+	 * @return a copy of the names.
+	 */
+	public Set<String> find(final S state) {
+		return new HashSet<>(this.stateMachines[state.ordinal()]);
+	}
+
+	/**
+	 * Returns the current state of a state machine.
+	 *
+	 * @param stateMachine the name of the state machine.
+	 * @return the state or <code>null</code> if the state machine is not indexed.
+	 */
+	public S getCurrentState(final String stateMachine) {
+		return this.currentStates.get(stateMachine);
+	}
+
+	/**
+	 * Returns the number of indexed state machines.
+	 */
+	public int size() {
+		return this.currentStates.size();
+	}
+
+	@Override
+	public void onInitialized(final String stateMachine, final S stateId) {
+		enter(stateMachine, stateId);
+	}
+
+	@Override
+	public void onActivated(final String stateMachine, final S stateId) {
+		enter(stateMachine, stateId);
+	}
+
+	@Override
+	public void onTransitionCompleted(final String stateMachine, final S sourceStateId, final E eventId,
+			final S targetStateId, final long nanos) {
+		enter(stateMachine, targetStateId);
+	}
+
+	@Override
+	public void onTerminated(final String stateMachine) {
+		final S previous = this.currentStates.remove(stateMachine);
+		if (previous != null) {
+			this.stateMachines[previous.ordinal()].remove(stateMachine);
+		}
+	}
+
+	/**
+	 * Moves a state machine to its current state. The events of a state machine
+	 * are processed by one thread at a time, so its entries are not updated
+	 * concurrently. The sets are updated before the current state is published.
+	 */
+	private void enter(final String stateMachine, final S state) {
+		final S previous = this.currentStates.get(stateMachine);
+		if (previous != state) {
+			if (previous != null) {
+				this.stateMachines[previous.ordinal()].remove(stateMachine);
+			}
+			this.stateMachines[state.ordinal()].add(stateMachine);
+			this.currentStates.put(stateMachine, state);
+		}
+	}
+}
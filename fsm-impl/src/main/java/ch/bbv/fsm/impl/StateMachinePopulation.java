@@ -0,0 +1,292 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.internal.statemachine.PopulationInterpreter;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * A fixed number of state machines of the same definition, addressed by their
+ * index. The population keeps the current state of each state machine in an
+ * <code>int[]</code> and the history of its super states in <code>short</code>
+ * arrays instead of creating a state machine, driver and interpreter per state
+ * machine, see
+ * {@link AbstractStateMachineDefinition#createPopulation(String, int)}:
+ *
+ * <pre>
+ * StateMachinePopulation&lt;States, Events&gt; devices = definition.createPopulation("devices", 10_000_000);
+ * devices.fire(42, Events.Connect);
+ * devices.fireAll(Events.Tick);
+ * </pre>
+ *
+ * The state machines are passive: the events are processed on the calling
+ * thread. The custom state machine passed to the actions, guards and event
+ * handlers is shared by the population, events it fires are processed by the
+ * state machine processing the current event after that event, and
+ * {@link #getCurrentMachineIndex()} tells which state machine is processing.
+ * <p>
+ * The state machines are created in the initial state of the definition. The
+ * entry actions of the initial state are executed once for the population, not
+ * per state machine, events they fire are processed by every state machine.
+ * The instrumentations of the definition are not applied to populations.
+ * <p>
+ * The population counts its state machines per state, see
+ * {@link #count(Enum)} and {@link #find(Enum)}.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public final class StateMachinePopulation<S extends Enum<?>, E extends Enum<?>> {
+
+	private final PopulationInterpreter<?, S, E> interpreter;
+
+	private final Driver<S, E> driver;
+
+	<SM extends StateMachine<S, E>> StateMachinePopulation(final Driver<S, E> driver,
+			final PopulationInterpreter<SM, S, E> interpreter) {
+		this.driver = driver;
+		this.interpreter = interpreter;
+		driver.population = this;
+	}
+
+	/**
+	 * Enters the initial state. Events fired by the entry actions are processed
+	 * by every state machine.
+	 */
+	void initialize() {
+		this.interpreter.initialize();
+		final List<E> events = new ArrayList<>(this.driver.events);
+		final List<Object[]> arguments = new ArrayList<>(this.driver.arguments);
+		this.driver.events.clear();
+		this.driver.arguments.clear();
+		for (int i = 0; i < events.size(); i++) {
+			for (int machine = 0; machine < this.interpreter.size(); machine++) {
+				this.interpreter.fire(machine, events.get(i), arguments.get(i));
+				this.driver.drain(machine);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of state machines.
+	 *
+	 * @return the size of the population.
+	 */
+	public int size() {
+		return this.interpreter.size();
+	}
+
+	/**
+	 * Fires an event on a state machine and processes it, including the events
+	 * fired by its actions, before returning.
+	 *
+	 * @param machine        the index of the state machine.
+	 * @param eventId        the event.
+	 * @param eventArguments the event arguments.
+	 */
+	public synchronized void fire(final int machine, final E eventId, final Object... eventArguments) {
+		this.interpreter.fire(machine, eventId, eventArguments);
+		this.driver.drain(machine);
+	}
+
+	/**
+	 * Fires an event on all state machines, in the order of their index.
+	 *
+	 * @param eventId        the event.
+	 * @param eventArguments the event arguments.
+	 */
+	public synchronized void fireAll(final E eventId, final Object... eventArguments) {
+		final int size = this.interpreter.size();
+		for (int machine = 0; machine < size; machine++) {
+			this.interpreter.fire(machine, eventId, eventArguments);
+			this.driver.drain(machine);
+		}
+	}
+
+	/**
+	 * Returns the current state of a state machine.
+	 *
+	 * @param machine the index of the state machine.
+	 * @return the current state.
+	 */
+	public synchronized S getCurrentState(final int machine) {
+		return this.interpreter.getCurrentStateId(machine);
+	}
+
+	/**
+	 * Returns the number of state machines in a state in constant time. Only the
+	 * innermost state of a state machine is counted, not its super states.
+	 *
+	 * @param state the state.
+	 * @return the number of state machines.
+	 */
+	public synchronized int count(final S state) {
+		return this.interpreter.count(state);
+	}
+
+	/**
+	 * Returns the number of state machines per state, for every state with at
+	 * least one state machine. Takes time proportional to the number of states.
+	 *
+	 * @return the counts in the order of the states.
+	 */
+	public synchronized Map<S, Integer> countByState() {
+		return this.interpreter.countByState();
+	}
+
+	/**
+	 * Returns the indexes of the state machines in a state. Takes time
+	 * proportional to the number of state machines found if the state index is
+	 * enabled, otherwise the population is scanned.
+	 *
+	 * @param state the state.
+	 * @return the indexes of the state machines.
+	 * @see #enableStateIndex()
+	 */
+	public synchronized int[] find(final S state) {
+		return this.interpreter.find(state);
+	}
+
+	/**
+	 * Links the state machines in the same state into a list per state, which
+	 * is updated with every transition, so that {@link #find(Enum)} does not scan
+	 * the population. Takes 8 more bytes per state machine.
+	 */
+	public synchronized void enableStateIndex() {
+		this.interpreter.enableStateIndex();
+	}
+
+	/**
+	 * Returns the index of the state machine processing an event, to be called
+	 * by actions, guards and event handlers.
+	 *
+	 * @return the index, <code>-1</code> if no event is processed.
+	 */
+	public int getCurrentMachineIndex() {
+		return this.interpreter.getIndex();
+	}
+
+	/**
+	 * Sets the state of a state machine from a memento.
+	 *
+	 * @param machine the index of the state machine.
+	 * @param memento the memento.
+	 */
+	public synchronized void activate(final int machine, final StateMachineMemento<S, E> memento) {
+		this.interpreter.activate(machine, memento);
+	}
+
+	/**
+	 * Saves the state of a state machine into a memento.
+	 *
+	 * @param machine the index of the state machine.
+	 * @param memento the memento.
+	 */
+	public synchronized void passivate(final int machine, final StateMachineMemento<S, E> memento) {
+		this.interpreter.passivate(machine, memento);
+	}
+
+	/**
+	 * The driver of the custom state machine shared by the population. Events
+	 * fired from within a transition are queued and processed by the same state
+	 * machine after the transition.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	static final class Driver<S extends Enum<?>, E extends Enum<?>> implements StateMachine<S, E> {
+
+		private final List<E> events = new ArrayList<>();
+
+		private final List<Object[]> arguments = new ArrayList<>();
+
+		private StateMachinePopulation<S, E> population;
+
+		@Override
+		public void fire(final E eventId, final Object... eventArguments) {
+			checkProcessing();
+			this.events.add(eventId);
+			this.arguments.add(eventArguments);
+		}
+
+		@Override
+		public boolean tryFire(final E eventId, final Object... eventArguments) {
+			fire(eventId, eventArguments);
+			return true;
+		}
+
+		@Override
+		public void firePriority(final E eventId, final Object... eventArguments) {
+			checkProcessing();
+			this.events.add(0, eventId);
+			this.arguments.add(0, eventArguments);
+		}
+
+		@Override
+		public LiveCycle getStatus() {
+			return LiveCycle.Running;
+		}
+
+		@Override
+		public int numberOfQueuedEvents() {
+			return this.events.size();
+		}
+
+		@Override
+		public boolean isIdle() {
+			return this.events.isEmpty();
+		}
+
+		@Override
+		public void start() {
+			throw new UnsupportedOperationException("The state machines of a population are started when it is created.");
+		}
+
+		@Override
+		public void terminate() {
+			throw new UnsupportedOperationException("The state machines of a population can not be terminated.");
+		}
+
+		@Override
+		public S getCurrentState() {
+			checkProcessing();
+			return this.population.interpreter.getCurrentStateId();
+		}
+
+		@Override
+		public void activate(final StateMachineMemento<S, E> stateMachineMemento) {
+			throw new UnsupportedOperationException("Use StateMachinePopulation.activate(int, StateMachineMemento).");
+		}
+
+		@Override
+		public void passivate(final StateMachineMemento<S, E> stateMachineMemento) {
+			throw new UnsupportedOperationException("Use StateMachinePopulation.passivate(int, StateMachineMemento).");
+		}
+
+		/**
+		 * Processes the events queued by the transitions of a state machine.
+		 */
+		void drain(final int machine) {
+			try {
+				while (!this.events.isEmpty()) {
+					final E eventId = this.events.remove(0);
+					final Object[] eventArguments = this.arguments.remove(0);
+					this.population.interpreter.fire(machine, eventId, eventArguments);
+				}
+			} finally {
+				this.events.clear();
+				this.arguments.clear();
+			}
+		}
+
+		private void checkProcessing() {
+			if (this.population.interpreter.getIndex() < 0) {
+				throw new IllegalStateException(
+						"Events can only be fired on a state machine of a population while it processes an event.");
+			}
+		}
+	}
+}
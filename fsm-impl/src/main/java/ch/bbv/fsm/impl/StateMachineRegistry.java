@@ -0,0 +1,229 @@
+package ch.bbv.fsm.impl;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.StateMachineDefinition;
+
+/**
+ * Holds state machines by key and creates them on demand:
+ *
+ * <pre>
+ * StateMachineRegistry&lt;String, SimpleStateMachine&lt;States, Events&gt;, States, Events&gt; registry = new StateMachineRegistry&lt;&gt;(
+ * 		definition);
+ * registry.fire("device-42", Events.Connect);
+ * </pre>
+ *
+ * Looking up a state machine does not lock. Creating and removing state
+ * machines locks one of a fixed number of stripes selected by the hash of the
+ * key, so a key never gets two state machines while unrelated keys are created
+ * concurrently. Events are fired on the calling thread without further locking
+ * by the registry, the driver of the state machine serializes the events of one
+ * state machine.
+ * <p>
+ * The state machines are named after their keys if the registry is created
+ * from a definition, a {@link StateIndex} added to the definition finds them by
+ * their current state.
+ *
+ * @param <K>  the type of the keys.
+ * @param <SM> the type of the state machines.
+ * @param <S>  the type of the states.
+ * @param <E>  the type of the events.
+ */
+public class StateMachineRegistry<K, SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> {
+
+	/**
+	 * The number of state machines from which a broadcast is split into parallel
+	 * tasks.
+	 */
+	private static final long BROADCAST_PARALLELISM_THRESHOLD = 1024;
+
+	/**
+	 * The number of stripes per processor of a registry created from a
+	 * definition.
+	 */
+	private static final int STRIPES_PER_PROCESSOR = 4;
+
+	/**
+	 * The largest number of stripes.
+	 */
+	private static final int MAX_STRIPES = 65536;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	/**
+	 * The shift folding the upper half of the hash into the lower half.
+	 */
+	private static final int HASH_SPREAD_SHIFT = 16;
+
+	private final Function<? super K, ? extends SM> factory;
+
+	private final ConcurrentHashMap<K, SM> stateMachines;
+
+	private final Object[] stripes;
+
+	/**
+	 * Creates a registry of passive state machines named after their key.
+	 *
+	 * @param definition the definition of the state machines.
+	 */
+	public StateMachineRegistry(final StateMachineDefinition<SM, S, E> definition) {
+		this(key -> definition.createPassiveStateMachine(String.valueOf(key)),
+				STRIPES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a registry.
+	 *
+	 * @param factory     creates the state machine of a key, which is not
+	 *                    started yet.
+	 * @param concurrency the expected number of threads creating state machines
+	 *                    concurrently, rounded up to a power of two to get the
+	 *                    number of stripes.
+	 */
+	public StateMachineRegistry(final Function<? super K, ? extends SM> factory, final int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("The concurrency must be positive but is " + concurrency + ".");
+		}
+		this.factory = Objects.requireNonNull(factory);
+		final int size = concurrency > MAX_STRIPES ? MAX_STRIPES : Integer.highestOneBit(concurrency * 2 - 1);
+		this.stateMachines = new ConcurrentHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, size);
+		this.stripes = new Object[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Object();
+		}
+	}
+
+	/**
+	 * Fires an event on the state machine of the key, creates and starts it if
+	 * it does not exist yet.
+	 *
+	 * @param key            the key of the state machine.
+	 * @param eventId        the event.
+	 * @param eventArguments the arguments of the event.
+	 */
+	public void fire(final K key, final E eventId, final Object... eventArguments) {
+		get(key).fire(eventId, eventArguments);
+	}
+
+	/**
+	 * Fires an event on the state machine of the key unless its event queue is
+	 * full, creates and starts the state machine if it does not exist yet.
+	 *
+	 * @param key            the key of the state machine.
+	 * @param eventId        the event.
+	 * @param eventArguments the arguments of the event.
+	 * @return <code>false</code> if the event was rejected.
+	 */
+	public boolean tryFire(final K key, final E eventId, final Object... eventArguments) {
+		return get(key).tryFire(eventId, eventArguments);
+	}
+
+	/**
+	 * Returns the state machine of the key, creates and starts it if it does not
+	 * exist yet.
+	 *
+	 * @param key the key of the state machine.
+	 * @return the state machine.
+	 */
+	public SM get(final K key) {
+		final SM existing = this.stateMachines.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		synchronized (stripe(key)) {
+			final SM stateMachine = this.stateMachines.get(key);
+			if (stateMachine != null) {
+				return stateMachine;
+			}
+			final SM created = Objects.requireNonNull(this.factory.apply(key));
+			created.start();
+			this.stateMachines.put(key, created);
+			return created;
+		}
+	}
+
+	/**
+	 * Returns the state machine of the key if it exists.
+	 *
+	 * @param key the key of the state machine.
+	 * @return the state machine or <code>null</code>.
+	 */
+	public SM find(final K key) {
+		return this.stateMachines.get(key);
+	}
+
+	/**
+	 * Removes the state machine of the key and terminates it.
+	 *
+	 * @param key the key of the state machine.
+	 * @return the removed state machine or <code>null</code> if there is none.
+	 */
+	public SM remove(final K key) {
+		final SM removed;
+		synchronized (stripe(key)) {
+			removed = this.stateMachines.remove(key);
+		}
+		if (removed != null) {
+			removed.terminate();
+		}
+		return removed;
+	}
+
+	/**
+	 * Performs the action for each state machine. State machines created or
+	 * removed concurrently may or may not be included.
+	 *
+	 * @param action the action.
+	 */
+	public void forEach(final BiConsumer<? super K, ? super SM> action) {
+		this.stateMachines.forEach(action);
+	}
+
+	/**
+	 * Fires an event on all state machines in parallel on the
+	 * {@link ForkJoinPool#commonPool()} and returns immediately. Each state
+	 * machine gets the event once, ordered with the events fired on it
+	 * concurrently by its driver. State machines created or removed during the
+	 * broadcast may or may not get the event.
+	 *
+	 * @param eventId        the event.
+	 * @param eventArguments the arguments of the event.
+	 * @return the progress of the broadcast.
+	 */
+	@SuppressWarnings("unchecked")
+	public Broadcast<K> broadcast(final E eventId, final Object... eventArguments) {
+		final E[] eventIds = (E[]) new Enum<?>[] { eventId };
+		final Object[][] arguments = { eventArguments };
+		final Broadcast<K> broadcast = new Broadcast<>();
+		broadcast.expect(this.stateMachines.mappingCount());
+		ForkJoinPool.commonPool().execute(() -> {
+			try {
+				this.stateMachines.forEach(BROADCAST_PARALLELISM_THRESHOLD,
+						(key, stateMachine) -> broadcast.fire(key, stateMachine, eventIds, arguments));
+				broadcast.complete();
+			} catch (final RuntimeException | Error e) {
+				broadcast.abort(e);
+			}
+		});
+		return broadcast;
+	}
+
+	/**
+	 * Returns the number of state machines.
+	 */
+	public int size() {
+		return this.stateMachines.size();
+	}
+
+	private Object stripe(final K key) {
+		final int h = key.hashCode();
+		return this.stripes[(h ^ (h >>> HASH_SPREAD_SHIFT)) & (this.stripes.length - 1)];
+	}
+}
@@ -42,6 +42,7 @@ public final class StatemachineBuilder<C, S extends Enum<?>, E extends Enum<?>>
 			final Consumer<SimpleStateMachineDefinitionWithContext<S, E, C>> definition) {
 		final SimpleStateMachineDefinitionWithContext<S, E, C> result = new SimpleStateMachineDefinitionWithContext<S, E, C>(initialState);
 		definition.accept(result);
+		result.compile();
 		result.addEventHandler(new AnnotationEventHandler<S, E, C>());
 
 		final StatemachineBuilder<C, S, E> builder = new StatemachineBuilder<C, S, E>();
@@ -53,6 +54,7 @@ public final class StatemachineBuilder<C, S extends Enum<?>, E extends Enum<?>>
 			final Consumer<SimpleStateMachineDefinition<S, E>> definition) {
 		final SimpleStateMachineDefinition<S, E> result = new SimpleStateMachineDefinition<S, E>(initialState);
 		definition.accept(result);
+		result.compile();
 		return result;
 	}
 
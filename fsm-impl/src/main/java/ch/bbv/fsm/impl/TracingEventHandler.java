@@ -0,0 +1,57 @@
+package ch.bbv.fsm.impl;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.events.StateMachineEventHandlerAdapter;
+import ch.bbv.fsm.events.TransitionCompletedEvent;
+import ch.bbv.fsm.events.TransitionEvent;
+
+/**
+ * Logs the events processed by a state machine. The state machine itself does
+ * not log while dispatching events, add this handler to trace them:
+ *
+ * <pre>
+ * definition.addEventHandler(new TracingEventHandler&lt;&gt;());
+ * </pre>
+ *
+ * While this handler is attached the state machine also records the states
+ * exited and entered by each transition, which are logged on debug level.
+ *
+ * @param <SM> the type of the state machine
+ * @param <S>  the type of the states.
+ * @param <E>  the type of the events.
+ */
+public class TracingEventHandler<SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>>
+		extends StateMachineEventHandlerAdapter<SM, S, E> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TracingEventHandler.class);
+
+	@Override
+	public void onTransitionBegin(final TransitionEvent<SM, S, E> arg) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Fire event {} on state machine {} with current state {} and event arguments {}.", arg.getEventId(),
+					arg.getSource(), arg.getStateId(), Arrays.toString(arg.getEventArguments()));
+		}
+	}
+
+	@Override
+	public void onTransitionCompleted(final TransitionCompletedEvent<SM, S, E> arg) {
+		LOG.info("Statemachine {} switched from state {} to state {} on event {}.", arg.getSource(), arg.getStateId(),
+				arg.getNewStateId(), arg.getEventId());
+		LOG.debug("Statemachine {} performed {}.", arg.getSource(), arg.getRecords());
+	}
+
+	@Override
+	public boolean recordsTransitions() {
+		return true;
+	}
+
+	@Override
+	public void onTransitionDeclined(final TransitionEvent<SM, S, E> arg) {
+		LOG.warn("No transition possible. Current state: {}, fired event: {}", arg.getStateId(), arg.getEventId());
+	}
+}
@@ -0,0 +1,67 @@
+package ch.bbv.fsm.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 and later while the library is
+ * built for Java 8. Pass {@link #threadFactory()} to
+ * {@link AbstractStateMachineDefinition#setWorkerThreadFactory(ThreadFactory)}
+ * to run the event loop of each active state machine on its own virtual thread,
+ * so that actions doing blocking I/O do not hold a platform thread:
+ *
+ * <pre>
+ * definition.setWorkerThreadFactory(VirtualThreads.threadFactory());
+ * </pre>
+ */
+public final class VirtualThreads {
+
+	private static final String NAME_PREFIX = "fsm-worker-";
+
+	/**
+	 * The factory of virtual threads, <code>null</code> if the runtime does not
+	 * support them.
+	 */
+	private static final ThreadFactory FACTORY = lookupFactory();
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Returns <code>true</code> if the runtime supports virtual threads.
+	 */
+	public static boolean isAvailable() {
+		return FACTORY != null;
+	}
+
+	/**
+	 * Returns a factory creating virtual threads.
+	 *
+	 * @return the thread factory.
+	 * @throws UnsupportedOperationException if the runtime does not support
+	 *                                       virtual threads.
+	 */
+	public static ThreadFactory threadFactory() {
+		if (FACTORY == null) {
+			throw new UnsupportedOperationException(
+					"Virtual threads are not supported by the Java runtime " + System.getProperty("java.version") + ".");
+		}
+		return FACTORY;
+	}
+
+	/**
+	 * Looks up <code>Thread.ofVirtual().name(prefix, 0).factory()</code>.
+	 */
+	private static ThreadFactory lookupFactory() {
+		try {
+			final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			final Object namedBuilder = builderType.getMethod("name", String.class, long.class).invoke(builder, NAME_PREFIX, 0L);
+			final Method factory = builderType.getMethod("factory");
+			return (ThreadFactory) factory.invoke(namedBuilder);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			// before Java 21 or preview features not enabled
+			return null;
+		}
+	}
+}
@@ -2,10 +2,13 @@ package ch.bbv.fsm.impl.internal.driver;
 
 import java.util.List;
 
+import ch.bbv.fsm.BatchResult;
 import ch.bbv.fsm.StateMachine;
 import ch.bbv.fsm.events.StateMachineEventHandler;
+import ch.bbv.fsm.impl.Instrumentation;
 import ch.bbv.fsm.impl.internal.statemachine.StateMachineInterpreter;
 import ch.bbv.fsm.impl.internal.statemachine.state.StateDictionary;
+import ch.bbv.fsm.impl.internal.statemachine.transition.TransitionTable;
 import ch.bbv.fsm.memento.StateMachineMemento;
 
 /**
@@ -18,7 +21,9 @@ import ch.bbv.fsm.memento.StateMachineMemento;
 abstract class AbstractStateMachineDriver<SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>>
 		implements StateMachine<S, E> {
 
-	private LiveCycle liveCycle = LiveCycle.Created;
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private volatile LiveCycle liveCycle = LiveCycle.Created;
 
 	/**
 	 * The internal state machine.
@@ -31,14 +36,19 @@ abstract class AbstractStateMachineDriver<SM extends StateMachine<S, E>, S exten
 	/**
 	 * Initializes the state machine.
 	 * 
-	 * @param stateMachine the custom state machine
-	 * @param name         the name of the state machine used in the logs.
-	 * @param states       the states
+	 * @param stateMachine    the custom state machine
+	 * @param name            the name of the state machine used in the logs.
+	 * @param states          the states
+	 * @param transitionTable the compiled transitions or <code>null</code> if the
+	 *                        definition is not compiled
+	 * @param instrumentations the instrumentations
 	 */
-	public void initialize(final SM stateMachine, final String name, final StateDictionary<SM, S, E> states, final S initialState,
-			final List<StateMachineEventHandler<SM, S, E>> eventHandlers) {
-		this.stateMachineInterpreter = new StateMachineInterpreter<>(stateMachine, name, states, initialState);
+	public void initialize(final SM stateMachine, final String name, final StateDictionary<SM, S, E> states,
+			final TransitionTable<SM, S, E> transitionTable, final S initialState,
+			final List<StateMachineEventHandler<SM, S, E>> eventHandlers, final List<Instrumentation<S, E>> instrumentations) {
+		this.stateMachineInterpreter = new StateMachineInterpreter<>(stateMachine, name, states, transitionTable, initialState);
 		eventHandlers.forEach(stateMachineInterpreter::addEventHandler);
+		instrumentations.forEach(stateMachineInterpreter::addInstrumentation);
 	}
 
 	@Override
@@ -72,9 +82,75 @@ abstract class AbstractStateMachineDriver<SM extends StateMachine<S, E>, S exten
 	 * @param e the event to be fired on the state machine.
 	 */
 	void fireEventOnStateMachine(final EventHolder<E> e) {
+		if (stateMachineInterpreter.isInstrumented()) {
+			stateMachineInterpreter.onEventDequeued(e.getEventId(), numberOfQueuedEvents());
+		}
 		stateMachineInterpreter.fire(e.getEventId(), e.getEventArguments());
 	}
 
+	/**
+	 * Fires the event on the state machine.
+	 * 
+	 * @param eventId        the event id.
+	 * @param eventArguments the event arguments.
+	 */
+	void fireEventOnStateMachine(final E eventId, final Object[] eventArguments) {
+		if (stateMachineInterpreter.isInstrumented()) {
+			stateMachineInterpreter.onEventDequeued(eventId, 0);
+		}
+		stateMachineInterpreter.fire(eventId, eventArguments);
+	}
+
+	/**
+	 * Fires the events of a batch on the interpreter one after the other and
+	 * classifies them by the declined events and exceptions counted by the
+	 * interpreter.
+	 * 
+	 * @param eventIds        the events.
+	 * @param eventArguments  the arguments per event or <code>null</code>.
+	 * @param afterEachEvent  processes the events queued while processing an
+	 *                        event of the batch.
+	 * @return the result of the batch.
+	 */
+	BatchResult fireBatchOnStateMachine(final E[] eventIds, final Object[][] eventArguments,
+			final Runnable afterEachEvent) {
+		int accepted = 0;
+		int declined = 0;
+		int failed = 0;
+		for (int i = 0; i < eventIds.length; i++) {
+			final long declinedBefore = stateMachineInterpreter.getNumberOfDeclinedEvents();
+			final long exceptionsBefore = stateMachineInterpreter.getNumberOfExceptions();
+			fireEventOnStateMachine(eventIds[i], arguments(eventArguments, i));
+			if (stateMachineInterpreter.getNumberOfExceptions() != exceptionsBefore) {
+				failed++;
+			} else if (stateMachineInterpreter.getNumberOfDeclinedEvents() != declinedBefore) {
+				declined++;
+			} else {
+				accepted++;
+			}
+			afterEachEvent.run();
+		}
+		return new BatchResult(accepted, declined, failed, 0);
+	}
+
+	/**
+	 * Checks that there are arguments for every event of a batch.
+	 */
+	static void checkBatch(final Object[] eventIds, final Object[][] eventArguments) {
+		if (eventArguments != null && eventArguments.length != eventIds.length) {
+			throw new IllegalArgumentException("There are " + eventIds.length + " events but " + eventArguments.length
+					+ " arguments.");
+		}
+	}
+
+	/**
+	 * Returns the arguments of an event of a batch, no arguments like
+	 * {@link #fire(Enum, Object...)} without arguments if the batch has none.
+	 */
+	static Object[] arguments(final Object[][] eventArguments, final int index) {
+		return eventArguments != null ? eventArguments[index] : NO_ARGUMENTS;
+	}
+
 	@Override
 	public void activate(final StateMachineMemento<S, E> stateMachineMemento) {
 		stateMachineInterpreter.activate(stateMachineMemento);
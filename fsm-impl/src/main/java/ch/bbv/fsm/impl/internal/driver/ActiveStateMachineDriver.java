@@ -18,17 +18,30 @@
  *******************************************************************************/
 package ch.bbv.fsm.impl.internal.driver;
 
-import java.util.concurrent.BlockingDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
+import ch.bbv.fsm.BackpressurePolicy;
+import ch.bbv.fsm.BatchResult;
 import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.memento.StateMachineMemento;
 
 /**
  * An active state machine. This state machine reacts to events on a separate
  * worker thread.
+ * <p>
+ * By default each state machine owns a worker thread. If an {@link Executor} is
+ * passed, the state machine does not own a thread but schedules itself on the
+ * executor whenever events are queued, so that many state machines can share a
+ * bounded pool of workers. The events of one state machine are processed one
+ * after the other in the queued order, but never concurrently.
  * 
  * @author Ueli Kurmann
  * 
@@ -39,82 +52,324 @@ import ch.bbv.fsm.StateMachine;
 public class ActiveStateMachineDriver<TStateMachine extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>>
 		extends AbstractStateMachineDriver<TStateMachine, S, E> {
 
-	private static final int BLOCKING_TIME_ON_EVENT_MS = 10;
-
 	private static final int WAIT_FOR_TERMINATION_MS = 10000;
 
 	/**
-	 * List of all queued events.
+	 * The maximum number of events processed on the shared executor before the
+	 * worker is handed over to the next state machine.
+	 */
+	private static final int MAX_EVENTS_PER_RUN = 64;
+
+	/**
+	 * The queued events.
 	 */
-	private final BlockingDeque<EventHolder<E>> events;
+	private final EventQueue<EventHolder<E>> events;
 
+	/**
+	 * The shared executor or <code>null</code> if this state machine owns its
+	 * worker thread.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Creates the own worker thread.
+	 */
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * <code>true</code> while a run of this state machine is scheduled on the
+	 * shared executor.
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/**
+	 * <code>true</code> while the event loop runs on the own worker thread, so
+	 * that activating a passivated state machine whose loop did not exit yet does
+	 * not queue a second loop.
+	 */
+	private final AtomicBoolean looping = new AtomicBoolean();
+
+	/**
+	 * The own worker thread. <code>null</code> until the state machine is started.
+	 */
 	private ExecutorService executorService;
 
-	private final Object checkProcessingLock = new Object();
+	/**
+	 * The thread executing the queued events, the own worker thread or the thread
+	 * of the shared executor.
+	 */
+	private volatile Thread worker;
+
+	/**
+	 * <code>true</code> while the own worker thread is about to park because there
+	 * are no queued events.
+	 */
+	private volatile boolean waiting;
 
 	/**
-	 * <code>true</code> while the driver is processing an event.
+	 * <code>true</code> while the driver is processing an event. Raised before the
+	 * event is taken from the mailbox, see {@link #isIdle()}.
 	 */
-	private boolean processing;
+	private volatile boolean processing;
 
 	/**
-	 * Create an active state machine.
+	 * Create an active state machine with an own worker thread.
 	 */
 	public ActiveStateMachineDriver() {
-		this.events = new LinkedBlockingDeque<>();
-		this.executorService = Executors.newFixedThreadPool(1);
+		this(null);
 	}
 
 	/**
-	 * Executes all queued events.
+	 * Create an active state machine which processes its events on the given
+	 * executor.
+	 * 
+	 * @param executor the shared executor or <code>null</code> to use an own
+	 *                 worker thread.
+	 */
+	public ActiveStateMachineDriver(final Executor executor) {
+		this(executor, Executors.defaultThreadFactory(), 0, BackpressurePolicy.BLOCK);
+	}
+
+	/**
+	 * Create an active state machine with a bounded event queue which processes
+	 * its events on the given executor.
+	 * 
+	 * @param executor      the shared executor or <code>null</code> to use an own
+	 *                      worker thread.
+	 * @param threadFactory creates the own worker thread, e.g. a virtual thread.
+	 * @param capacity      the maximum number of queued events or <code>0</code>
+	 *                      for an unbounded queue.
+	 * @param policy        the policy applied if an event is fired while the queue
+	 *                      is full.
+	 */
+	public ActiveStateMachineDriver(final Executor executor, final ThreadFactory threadFactory, final int capacity,
+			final BackpressurePolicy policy) {
+		this.events = EventQueue.create(capacity, policy);
+		this.executor = executor;
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Runs the event loop on the own worker thread until the state machine is no
+	 * longer running. Runs it again if the state machine was activated while the
+	 * loop exited.
 	 */
 	private void execute() {
+		boolean interrupted;
+		do {
+			interrupted = !executeWhileRunning();
+			this.looping.set(false);
+		} while (!interrupted && LiveCycle.Running == getStatus() && this.looping.compareAndSet(false, true));
+	}
+
+	/**
+	 * Executes all queued events. Parks the worker thread while there are no
+	 * queued events until it is signaled by {@link #fire(Enum, Object...)},
+	 * {@link #firePriority(Enum, Object...)} or {@link #terminate()}.
+	 * 
+	 * @return <code>false</code> if the worker thread was interrupted.
+	 */
+	private boolean executeWhileRunning() {
+		this.worker = Thread.currentThread();
 		try {
 			while (LiveCycle.Running == getStatus()) {
-				final EventHolder<E> eventToProcess;
-				synchronized (checkProcessingLock) {
-					eventToProcess = this.getNextEventToProcess();
-					processing = eventToProcess != null;
+				final EventHolder<E> eventToProcess = takeEvent();
+				if (eventToProcess == null) {
+					if (!awaitEvent()) {
+						// Interrupted - just terminate
+						return false;
+					}
+					continue;
 				}
 				try {
-					if (eventToProcess != null) {
-						this.fireEventOnStateMachine(eventToProcess);
-					}
+					this.fireEventOnStateMachine(eventToProcess);
 				} finally {
 					processing = false;
 				}
 			}
-		} catch (InterruptedException e) {
-			// Interrupted - just terminate
-			return;
+			return true;
+		} finally {
+			this.worker = null;
+		}
+	}
+
+	/**
+	 * Takes the next event from the mailbox. Raises the processing flag if there
+	 * is one.
+	 * 
+	 * @return the next event or <code>null</code> if there is none.
+	 */
+	private EventHolder<E> takeEvent() {
+		processing = true;
+		final EventHolder<E> eventToProcess = this.events.poll();
+		if (eventToProcess == null) {
+			processing = false;
+		}
+		return eventToProcess;
+	}
+
+	/**
+	 * Parks the worker thread until an event is queued or the life cycle changes.
+	 * The waiting flag is raised before the queue is checked again, so that a
+	 * producer either sees the flag and unparks the worker or its event is seen
+	 * by the worker.
+	 * 
+	 * @return <code>false</code> if the worker thread was interrupted.
+	 */
+	private boolean awaitEvent() {
+		this.waiting = true;
+		try {
+			if (this.events.isEmpty() && LiveCycle.Running == getStatus()) {
+				LockSupport.park(this);
+			}
+		} finally {
+			this.waiting = false;
+		}
+		return !Thread.interrupted();
+	}
+
+	/**
+	 * Schedules a run on the shared executor or wakes up the own worker thread
+	 * after an event is queued.
+	 */
+	private void eventQueued() {
+		if (this.executor != null) {
+			schedule();
+		} else {
+			signal();
+		}
+	}
+
+	/**
+	 * Wakes up the own worker thread if it is waiting for events.
+	 */
+	private void signal() {
+		if (this.waiting) {
+			unparkWorker();
+		}
+	}
+
+	private void unparkWorker() {
+		final Thread thread = this.worker;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Executes the queued events on the shared executor. Reschedules this state
+	 * machine if there are events left after {@link #MAX_EVENTS_PER_RUN} events.
+	 */
+	private void executeScheduled() {
+		this.worker = Thread.currentThread();
+		try {
+			for (int i = 0; i < MAX_EVENTS_PER_RUN && LiveCycle.Running == getStatus(); i++) {
+				final EventHolder<E> eventToProcess = takeEvent();
+				if (eventToProcess == null) {
+					break;
+				}
+				try {
+					this.fireEventOnStateMachine(eventToProcess);
+				} finally {
+					processing = false;
+				}
+			}
+		} finally {
+			this.worker = null;
+			scheduled.set(false);
+			if (!this.events.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+
+	/**
+	 * Schedules a run of this state machine on the shared executor unless one is
+	 * already scheduled.
+	 */
+	private void schedule() {
+		if (this.executor != null && LiveCycle.Running == getStatus() && scheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this::executeScheduled);
+			} catch (final RuntimeException e) {
+				scheduled.set(false);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Starts the own worker thread or schedules the already queued events on the
+	 * shared executor. Wakes up the own worker thread if its loop is still
+	 * running.
+	 */
+	private void startWorker() {
+		if (this.executor != null) {
+			schedule();
+		} else if (this.looping.compareAndSet(false, true)) {
+			if (this.executorService == null) {
+				this.executorService = Executors.newSingleThreadExecutor(this.threadFactory);
+			}
+			this.executorService.execute(this::execute);
+		} else {
+			unparkWorker();
 		}
 	}
 
 	@Override
 	public boolean isIdle() {
-		synchronized (checkProcessingLock) {
-			return !processing & events.size() == 0;
-		}
+		// the processing flag is raised before an event is taken, so it must be
+		// read after the mailbox.
+		return events.isEmpty() && !processing;
 	}
 
 	@Override
 	public void fire(final E eventId, final Object... eventArguments) {
-		this.events.addLast(EventHolder.create(eventId, eventArguments));
+		this.events.put(EventHolder.create(eventId, eventArguments), false, canWait());
+		eventQueued();
+	}
+
+	@Override
+	public boolean tryFire(final E eventId, final Object... eventArguments) {
+		if (!this.events.offer(EventHolder.create(eventId, eventArguments), false)) {
+			return false;
+		}
+		eventQueued();
+		return true;
+	}
+
+	/**
+	 * Queues the batch and schedules or wakes up the worker once.
+	 */
+	@Override
+	public BatchResult fireBatch(final E[] eventIds, final Object[][] eventArguments) {
+		checkBatch(eventIds, eventArguments);
+		final List<EventHolder<E>> batch = new ArrayList<>(eventIds.length);
+		for (int i = 0; i < eventIds.length; i++) {
+			batch.add(EventHolder.create(eventIds[i], arguments(eventArguments, i)));
+		}
+		final int queued;
+		try {
+			queued = this.events.putAll(batch, canWait());
+		} finally {
+			// the events added before a blocked put was interrupted are processed
+			eventQueued();
+		}
+		return new BatchResult(0, 0, 0, queued);
 	}
 
 	@Override
 	public void firePriority(final E eventId, final Object... eventArguments) {
-		this.events.addFirst(EventHolder.create(eventId, eventArguments));
+		this.events.put(EventHolder.create(eventId, eventArguments), true, canWait());
+		eventQueued();
 	}
 
 	/**
-	 * Gets the next event to process for the queue.
-	 * 
-	 * @return The next queued event.
-	 * @throws InterruptedException
+	 * Returns <code>false</code> if the current thread executes the queued events
+	 * and therefore must not wait for space in the event queue.
 	 */
-	private EventHolder<E> getNextEventToProcess() throws InterruptedException {
-		return this.events.pollFirst(BLOCKING_TIME_ON_EVENT_MS, TimeUnit.MILLISECONDS);
+	private boolean canWait() {
+		return Thread.currentThread() != this.worker;
 	}
 
 	@Override
@@ -125,19 +380,28 @@ public class ActiveStateMachineDriver<TStateMachine extends StateMachine<S, E>,
 	@Override
 	public synchronized void start() {
 		super.start();
-		this.executorService = Executors.newFixedThreadPool(1);
-		this.executorService.execute(this::execute);
+		startWorker();
+	}
+
+	@Override
+	public synchronized void activate(final StateMachineMemento<S, E> stateMachineMemento) {
+		super.activate(stateMachineMemento);
+		startWorker();
 	}
 
 	@Override
 	public synchronized void terminate() {
 		super.terminate();
+		this.events.close();
+		if (this.executorService == null) {
+			return;
+		}
+		unparkWorker();
 		this.executorService.shutdown();
 		try {
 			this.executorService.awaitTermination(WAIT_FOR_TERMINATION_MS, TimeUnit.MILLISECONDS);
 		} catch (final InterruptedException e) {
-			return;
+			Thread.currentThread().interrupt();
 		}
-		super.terminate();
 	}
 }
@@ -0,0 +1,182 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ch.bbv.fsm.BackpressurePolicy;
+
+/**
+ * Event queue with a limited capacity. Applies a {@link BackpressurePolicy}
+ * when an item is added to the full queue.
+ *
+ * @param <T> the type of the items
+ */
+final class BoundedEventQueue<T> implements EventQueue<T> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final ArrayDeque<T> items;
+
+	private final int capacity;
+
+	private final BackpressurePolicy policy;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notFull = lock.newCondition();
+
+	private boolean closed;
+
+	/**
+	 * Creates an empty queue.
+	 *
+	 * @param capacity the maximum number of queued items.
+	 * @param policy   the policy applied if the queue is full.
+	 */
+	BoundedEventQueue(final int capacity, final BackpressurePolicy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity must be positive but is " + capacity + ".");
+		}
+		this.items = new ArrayDeque<>(Math.min(capacity, INITIAL_CAPACITY));
+		this.capacity = capacity;
+		this.policy = policy;
+	}
+
+	@Override
+	public boolean offer(final T item, final boolean priority) {
+		lock.lock();
+		try {
+			return add(item, priority, false);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(final T item, final boolean priority, final boolean wait) {
+		lock.lock();
+		try {
+			if (!add(item, priority, wait) && !closed && (policy == BackpressurePolicy.REJECT || policy == BackpressurePolicy.BLOCK)) {
+				throw new IllegalStateException("The event queue is full (capacity " + capacity + "), the event " + item + " is rejected.");
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the items under one lock acquisition. A batch which would be rejected
+	 * in part is rejected as a whole. The items of the batch dropped by
+	 * {@link BackpressurePolicy#DROP_OLDEST} once the older items are dropped are
+	 * not counted as queued.
+	 */
+	@Override
+	public int putAll(final List<T> batch, final boolean wait) {
+		lock.lock();
+		try {
+			final boolean rejecting = policy == BackpressurePolicy.REJECT || (policy == BackpressurePolicy.BLOCK && !wait);
+			if (rejecting && !closed && items.size() + batch.size() > capacity) {
+				throw new IllegalStateException("The event queue is full (capacity " + capacity + ", " + items.size()
+						+ " queued), the batch of " + batch.size() + " events is rejected.");
+			}
+			int queued = 0;
+			int older = items.size();
+			for (final T item : batch) {
+				if (policy == BackpressurePolicy.COALESCE && items.contains(item)) {
+					continue;
+				}
+				if (policy == BackpressurePolicy.DROP_OLDEST && items.size() >= capacity) {
+					if (older > 0) {
+						older--;
+					} else {
+						queued--;
+					}
+				}
+				if (add(item, false, wait)) {
+					queued++;
+				} else if (!closed && (policy == BackpressurePolicy.REJECT || policy == BackpressurePolicy.BLOCK)) {
+					throw new IllegalStateException("The event queue is full (capacity " + capacity + "), the event " + item + " is rejected.");
+				}
+			}
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the item, the lock must be held.
+	 */
+	private boolean add(final T item, final boolean priority, final boolean wait) {
+		if (policy == BackpressurePolicy.COALESCE && items.contains(item)) {
+			return true;
+		}
+		while (items.size() >= capacity) {
+			if (policy == BackpressurePolicy.DROP_OLDEST) {
+				items.pollFirst();
+			} else if (policy == BackpressurePolicy.BLOCK && wait && !closed) {
+				try {
+					notFull.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			} else {
+				return false;
+			}
+		}
+		if (priority) {
+			items.addFirst(item);
+		} else {
+			items.addLast(item);
+		}
+		return true;
+	}
+
+	@Override
+	public T poll() {
+		lock.lock();
+		try {
+			final T item = items.pollFirst();
+			if (item != null) {
+				notFull.signal();
+			}
+			return item;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		lock.lock();
+		try {
+			return items.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return items.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -18,6 +18,9 @@
  *******************************************************************************/
 package ch.bbv.fsm.impl.internal.driver;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Provides information about an event: event-id and arguments.
  *
@@ -25,6 +28,8 @@ package ch.bbv.fsm.impl.internal.driver;
  * @param <E> the type of the event.
  */
 final class EventHolder<E> {
+	private static final int HASH_MULTIPLIER = 31;
+
 	private final E eventId;
 	private final Object[] eventArguments;
 
@@ -61,4 +66,30 @@ final class EventHolder<E> {
 		return this.eventId;
 	}
 
+	/**
+	 * Two event holders are equal if they have the same event id and equal event
+	 * arguments.
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof EventHolder)) {
+			return false;
+		}
+		final EventHolder<?> other = (EventHolder<?>) obj;
+		return Objects.equals(this.eventId, other.eventId) && Arrays.equals(this.eventArguments, other.eventArguments);
+	}
+
+	@Override
+	public int hashCode() {
+		return HASH_MULTIPLIER * Objects.hashCode(this.eventId) + Arrays.hashCode(this.eventArguments);
+	}
+
+	@Override
+	public String toString() {
+		return this.eventId + Arrays.toString(this.eventArguments);
+	}
+
 }
@@ -0,0 +1,94 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.List;
+
+import ch.bbv.fsm.BackpressurePolicy;
+
+/**
+ * The queue of the events fired on a state machine. Any thread may add items,
+ * only the thread processing the events of the state machine may take them.
+ *
+ * @param <T> the type of the items
+ */
+public interface EventQueue<T> {
+
+	/**
+	 * Creates an event queue.
+	 *
+	 * @param capacity the maximum number of queued items or <code>0</code> for an
+	 *                 unbounded queue.
+	 * @param policy   the policy applied if the bounded queue is full.
+	 * @return the event queue.
+	 */
+	static <T> EventQueue<T> create(final int capacity, final BackpressurePolicy policy) {
+		if (capacity == 0) {
+			return new Mailbox<>();
+		}
+		return new BoundedEventQueue<>(capacity, policy);
+	}
+
+	/**
+	 * Adds an item if it can be done without waiting.
+	 *
+	 * @param item     the item.
+	 * @param priority <code>true</code> if the item is taken before all queued
+	 *                 items.
+	 * @return <code>true</code> if the item was queued or coalesced with an equal
+	 *         queued item, <code>false</code> if it was dropped.
+	 */
+	boolean offer(T item, boolean priority);
+
+	/**
+	 * Adds an item and applies the {@link BackpressurePolicy} if the queue is
+	 * full.
+	 *
+	 * @param item     the item.
+	 * @param priority <code>true</code> if the item is taken before all queued
+	 *                 items.
+	 * @param wait     <code>false</code> if the caller must not wait for space,
+	 *                 e.g. because it is the thread taking the items.
+	 * @throws IllegalStateException if the queue is full and the item is rejected.
+	 */
+	void put(T item, boolean priority, boolean wait);
+
+	/**
+	 * Adds items in the given order and applies the {@link BackpressurePolicy} to
+	 * each item if the queue is full. A bounded queue rejects a batch which does
+	 * not fit as a whole without adding any of its items.
+	 *
+	 * @param items the items.
+	 * @param wait  <code>false</code> if the caller must not wait for space.
+	 * @return the number of items of the batch which were queued, without the
+	 *         items which were dropped or coalesced.
+	 * @throws IllegalStateException if the queue is full and an item is rejected.
+	 */
+	default int putAll(final List<T> items, final boolean wait) {
+		for (final T item : items) {
+			put(item, false, wait);
+		}
+		return items.size();
+	}
+
+	/**
+	 * Takes the next item.
+	 *
+	 * @return the next item or <code>null</code> if the queue is empty.
+	 */
+	T poll();
+
+	/**
+	 * Returns <code>true</code> if there are no queued items.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Returns the number of queued items.
+	 */
+	int size();
+
+	/**
+	 * Releases the threads waiting for space. Items added afterwards are dropped
+	 * instead of waiting or being rejected if the queue is full.
+	 */
+	void close();
+}
@@ -0,0 +1,202 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free multi-producer/single-consumer mailbox, the unbounded
+ * {@link EventQueue}.
+ * <p>
+ * Any thread may add items, only the worker of the state machine may take
+ * them. Normal items are stored in a linked sequence of array segments:
+ * producers claim a slot by incrementing the producer index and never contend
+ * on a lock. Priority items are pushed onto a separate stack which is always
+ * drained first, so that the most recent priority item is taken before any
+ * other queued item.
+ *
+ * @param <T> the type of the items
+ */
+final class Mailbox<T> implements EventQueue<T> {
+
+	/**
+	 * The number of slots per segment.
+	 */
+	private static final int SEGMENT_SIZE = 64;
+
+	/**
+	 * The producer index of the next normal item.
+	 */
+	private final AtomicLong producerIndex = new AtomicLong();
+
+	/**
+	 * The segment producers start to search their slot from.
+	 */
+	private final AtomicReference<Segment<T>> tail;
+
+	/**
+	 * The top of the priority stack.
+	 */
+	private final AtomicReference<Node<T>> priority = new AtomicReference<>();
+
+	private final AtomicInteger numberOfPriorityItems = new AtomicInteger();
+
+	/**
+	 * The index of the next normal item to take. Only written by the consumer.
+	 */
+	private volatile long consumerIndex;
+
+	/**
+	 * The segment of the next normal item to take. Only accessed by the consumer.
+	 */
+	private Segment<T> head;
+
+	/**
+	 * Creates an empty mailbox.
+	 */
+	Mailbox() {
+		this.head = new Segment<>(0);
+		this.tail = new AtomicReference<>(this.head);
+	}
+
+	/**
+	 * Adds an item at the end of the mailbox. May be called by any thread.
+	 *
+	 * @param item the item.
+	 */
+	void offer(final T item) {
+		// read the tail before claiming the index, the tail never passes the
+		// segment of an index claimed later.
+		Segment<T> segment = this.tail.get();
+		final long index = this.producerIndex.getAndIncrement();
+		while (index >= segment.base + SEGMENT_SIZE) {
+			Segment<T> next = segment.next.get();
+			if (next == null) {
+				final Segment<T> created = new Segment<>(segment.base + SEGMENT_SIZE);
+				next = segment.next.compareAndSet(null, created) ? created : segment.next.get();
+			}
+			this.tail.compareAndSet(segment, next);
+			segment = next;
+		}
+		segment.slots.set((int) (index - segment.base), item);
+	}
+
+	/**
+	 * Adds a priority item which is taken before all other queued items. May be
+	 * called by any thread.
+	 *
+	 * @param item the item.
+	 */
+	void offerPriority(final T item) {
+		final Node<T> node = new Node<>(item);
+		do {
+			node.next = this.priority.get();
+		} while (!this.priority.compareAndSet(node.next, node));
+		this.numberOfPriorityItems.incrementAndGet();
+	}
+
+	@Override
+	public boolean offer(final T item, final boolean priority) {
+		if (priority) {
+			offerPriority(item);
+		} else {
+			offer(item);
+		}
+		return true;
+	}
+
+	@Override
+	public void put(final T item, final boolean priority, final boolean wait) {
+		offer(item, priority);
+	}
+
+	@Override
+	public T poll() {
+		Node<T> node = this.priority.get();
+		if (node != null) {
+			// only the consumer removes nodes, a failed CAS is caused by a push.
+			while (!this.priority.compareAndSet(node, node.next)) {
+				node = this.priority.get();
+			}
+			this.numberOfPriorityItems.decrementAndGet();
+			return node.item;
+		}
+
+		final long index = this.consumerIndex;
+		if (index >= this.producerIndex.get()) {
+			return null;
+		}
+		Segment<T> segment = this.head;
+		if (index == segment.base + SEGMENT_SIZE) {
+			Segment<T> next;
+			while ((next = segment.next.get()) == null) {
+				// the producer of the index is about to link the next segment
+				Thread.yield();
+			}
+			this.head = next;
+			segment = next;
+		}
+		final int offset = (int) (index - segment.base);
+		T item;
+		while ((item = segment.slots.get(offset)) == null) {
+			// the producer claimed the slot but has not stored its item yet
+			Thread.yield();
+		}
+		segment.slots.lazySet(offset, null);
+		this.consumerIndex = index + 1;
+		return item;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.priority.get() == null && this.consumerIndex >= this.producerIndex.get();
+	}
+
+	@Override
+	public int size() {
+		// read the consumer index first, it never passes the producer index.
+		final long consumed = this.consumerIndex;
+		final long size = this.producerIndex.get() - consumed + this.numberOfPriorityItems.get();
+		return (int) Math.max(0, size);
+	}
+
+	@Override
+	public void close() {
+		// never full
+	}
+
+	/**
+	 * An array segment of normal items.
+	 *
+	 * @param <T> the type of the items.
+	 */
+	private static final class Segment<T> {
+
+		private final long base;
+
+		private final AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(SEGMENT_SIZE);
+
+		private final AtomicReference<Segment<T>> next = new AtomicReference<>();
+
+		Segment(final long base) {
+			this.base = base;
+		}
+	}
+
+	/**
+	 * A node of the priority stack.
+	 *
+	 * @param <T> the type of the item.
+	 */
+	private static final class Node<T> {
+
+		private final T item;
+
+		private Node<T> next;
+
+		Node(final T item) {
+			this.item = item;
+		}
+	}
+}
@@ -63,4 +63,37 @@ public interface Notifier<SM extends StateMachine<S, E>, S extends Enum<?>, E ex
 	 *            the context.
 	 */
 	void onTransitionBegin(StateContext<SM, S, E> context);
+
+	/**
+	 * Returns <code>true</code> if the execution times of guards and actions are
+	 * measured, that is while at least one instrumentation is active.
+	 * 
+	 * @return <code>true</code> if the state machine is instrumented.
+	 */
+	boolean isInstrumented();
+
+	/**
+	 * Called after a guard was evaluated, only if {@link #isInstrumented()}.
+	 * 
+	 * @param context
+	 *            the transition context.
+	 * @param stateId
+	 *            the source state of the transition.
+	 * @param nanos
+	 *            the time the guard took.
+	 */
+	void onGuardEvaluated(TransitionContext<SM, S, E> context, S stateId, long nanos);
+
+	/**
+	 * Called after the actions of a transition were performed, only if
+	 * {@link #isInstrumented()}.
+	 * 
+	 * @param context
+	 *            the transition context.
+	 * @param stateId
+	 *            the source state of the transition.
+	 * @param nanos
+	 *            the time the actions took.
+	 */
+	void onActionsPerformed(TransitionContext<SM, S, E> context, S stateId, long nanos);
 }
@@ -0,0 +1,172 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A worker thread owning a partition of state machines. Any thread may submit
+ * tasks, the worker executes them one after the other in the submitted order,
+ * so the state machines of the partition are only accessed by the worker.
+ * <p>
+ * The tasks are queued in a lock-free {@link Mailbox}. The worker drains all
+ * queued tasks before it parks until the next task is queued.
+ * <p>
+ * A task is either rejected or executed, even if it is queued while the worker
+ * is stopped: the worker only terminates once no thread is between checking
+ * the stopped flag and queuing its task.
+ */
+public final class PartitionWorker {
+
+	private final Mailbox<Runnable> tasks = new Mailbox<>();
+
+	private final Thread thread;
+
+	/**
+	 * <code>true</code> while the worker is about to park because there are no
+	 * queued tasks.
+	 */
+	private volatile boolean waiting;
+
+	/**
+	 * <code>true</code> once no more tasks are accepted.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * The number of threads queuing a task after they found the worker not
+	 * stopped.
+	 */
+	private final AtomicInteger submitting = new AtomicInteger();
+
+	/**
+	 * Creates and starts a worker.
+	 *
+	 * @param threadFactory creates the worker thread.
+	 */
+	public PartitionWorker(final ThreadFactory threadFactory) {
+		this.thread = threadFactory.newThread(this::run);
+		this.thread.start();
+	}
+
+	/**
+	 * Queues a task.
+	 *
+	 * @param task the task.
+	 * @throws IllegalStateException if the worker is stopped.
+	 */
+	public void execute(final Runnable task) {
+		this.submitting.incrementAndGet();
+		try {
+			if (this.stopped) {
+				throw new IllegalStateException("The partition worker is stopped.");
+			}
+			this.tasks.offer(task);
+		} finally {
+			this.submitting.decrementAndGet();
+		}
+		if (this.waiting) {
+			LockSupport.unpark(this.thread);
+		}
+	}
+
+	/**
+	 * Executes a task on the worker and waits for it, executes it directly if
+	 * called by the worker.
+	 *
+	 * @param task the task.
+	 */
+	public void executeAndWait(final Runnable task) {
+		if (isWorkerThread()) {
+			task.run();
+			return;
+		}
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		execute(() -> {
+			try {
+				task.run();
+				done.complete(null);
+			} catch (final RuntimeException | Error e) {
+				done.completeExceptionally(e);
+			}
+		});
+		done.join();
+	}
+
+	/**
+	 * Returns <code>true</code> if called by the worker thread.
+	 */
+	public boolean isWorkerThread() {
+		return Thread.currentThread() == this.thread;
+	}
+
+	/**
+	 * Returns the number of queued tasks.
+	 */
+	public int numberOfQueuedTasks() {
+		return this.tasks.size();
+	}
+
+	/**
+	 * Stops accepting tasks, executes the queued tasks and waits for the worker
+	 * thread to terminate.
+	 *
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void stop() throws InterruptedException {
+		this.stopped = true;
+		LockSupport.unpark(this.thread);
+		if (!isWorkerThread()) {
+			this.thread.join();
+		}
+	}
+
+	private void run() {
+		while (true) {
+			Runnable task;
+			while ((task = this.tasks.poll()) != null) {
+				runTask(task);
+			}
+			if (this.stopped) {
+				// a thread which found the worker not stopped is about to queue a task
+				if (this.submitting.get() == 0 && this.tasks.isEmpty()) {
+					return;
+				}
+				Thread.yield();
+			} else {
+				awaitTask();
+			}
+		}
+	}
+
+	/**
+	 * Executes a task. An exception or error thrown by the task is passed to the
+	 * uncaught exception handler of the worker thread, the worker continues with
+	 * the next task.
+	 */
+	private void runTask(final Runnable task) {
+		try {
+			task.run();
+		} catch (final RuntimeException | Error e) {
+			this.thread.getUncaughtExceptionHandler().uncaughtException(this.thread, e);
+		}
+	}
+
+	/**
+	 * Parks the worker until a task is queued or the worker is stopped. The
+	 * waiting flag is raised before the mailbox is checked again, so that a
+	 * producer either sees the flag and unparks the worker or its task is seen by
+	 * the worker.
+	 */
+	private void awaitTask() {
+		this.waiting = true;
+		try {
+			if (this.tasks.isEmpty() && !this.stopped) {
+				LockSupport.park(this);
+			}
+		} finally {
+			this.waiting = false;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.ArrayDeque;
+
+import ch.bbv.fsm.BatchResult;
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * A state machine owned by a {@link PartitionWorker}. The events are processed
+ * on the worker thread without locking: events fired by other threads are
+ * submitted to the worker, events fired by the worker while it processes an
+ * event of this state machine are queued and processed after that event.
+ *
+ * @param <TStateMachine> the type of state machine
+ * @param <S>             the enumeration type of the states.
+ * @param <E>             the enumeration type of the events.
+ */
+public class PartitionedStateMachineDriver<TStateMachine extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>>
+		extends AbstractStateMachineDriver<TStateMachine, S, E> {
+
+	private final PartitionWorker worker;
+
+	/**
+	 * The events fired while processing an event. Only accessed by the worker.
+	 */
+	private final ArrayDeque<EventHolder<E>> events = new ArrayDeque<>();
+
+	/**
+	 * <code>true</code> while an event is processed. Only accessed by the worker.
+	 */
+	private boolean processing;
+
+	/**
+	 * Creates a state machine owned by the worker.
+	 *
+	 * @param worker the worker processing the events.
+	 */
+	public PartitionedStateMachineDriver(final PartitionWorker worker) {
+		this.worker = worker;
+	}
+
+	@Override
+	public void fire(final E eventId, final Object... eventArguments) {
+		if (!this.worker.isWorkerThread()) {
+			this.worker.execute(() -> fire(eventId, eventArguments));
+		} else if (this.processing || LiveCycle.Running != getStatus()) {
+			this.events.addLast(EventHolder.create(eventId, eventArguments));
+		} else {
+			execute(eventId, eventArguments);
+		}
+	}
+
+	@Override
+	public boolean tryFire(final E eventId, final Object... eventArguments) {
+		fire(eventId, eventArguments);
+		return true;
+	}
+
+	/**
+	 * Processes the batch if called by the worker while the state machine is not
+	 * processing an event, otherwise submits the whole batch as one task.
+	 */
+	@Override
+	public BatchResult fireBatch(final E[] eventIds, final Object[][] eventArguments) {
+		checkBatch(eventIds, eventArguments);
+		if (!this.worker.isWorkerThread()) {
+			this.worker.execute(() -> fireBatch(eventIds, eventArguments));
+		} else if (this.processing || LiveCycle.Running != getStatus()) {
+			for (int i = 0; i < eventIds.length; i++) {
+				this.events.addLast(EventHolder.create(eventIds[i], arguments(eventArguments, i)));
+			}
+		} else {
+			try {
+				this.processing = true;
+				return fireBatchOnStateMachine(eventIds, eventArguments, this::processQueuedEvents);
+			} finally {
+				this.processing = false;
+			}
+		}
+		return new BatchResult(0, 0, 0, eventIds.length);
+	}
+
+	@Override
+	public void firePriority(final E eventId, final Object... eventArguments) {
+		if (!this.worker.isWorkerThread()) {
+			this.worker.execute(() -> firePriority(eventId, eventArguments));
+		} else if (this.processing || LiveCycle.Running != getStatus()) {
+			this.events.addFirst(EventHolder.create(eventId, eventArguments));
+		} else {
+			execute(eventId, eventArguments);
+		}
+	}
+
+	/**
+	 * Returns the number of events fired while processing an event, only
+	 * meaningful on the worker thread.
+	 */
+	@Override
+	public int numberOfQueuedEvents() {
+		return this.events.size();
+	}
+
+	/**
+	 * Returns <code>true</code> if no event is processed or queued, only
+	 * meaningful on the worker thread.
+	 */
+	@Override
+	public boolean isIdle() {
+		return !this.processing && this.events.isEmpty();
+	}
+
+	@Override
+	public void start() {
+		this.worker.executeAndWait(() -> {
+			super.start();
+			execute();
+		});
+	}
+
+	@Override
+	public void terminate() {
+		this.worker.executeAndWait(super::terminate);
+	}
+
+	@Override
+	public void activate(final StateMachineMemento<S, E> stateMachineMemento) {
+		this.worker.executeAndWait(() -> {
+			super.activate(stateMachineMemento);
+			execute();
+		});
+	}
+
+	@Override
+	public void passivate(final StateMachineMemento<S, E> stateMachineMemento) {
+		this.worker.executeAndWait(() -> super.passivate(stateMachineMemento));
+	}
+
+	/**
+	 * Executes an event and the events queued while processing it.
+	 */
+	private void execute(final E eventId, final Object[] eventArguments) {
+		try {
+			this.processing = true;
+			fireEventOnStateMachine(eventId, eventArguments);
+			processQueuedEvents();
+		} finally {
+			this.processing = false;
+		}
+	}
+
+	/**
+	 * Executes the events queued before the state machine was started.
+	 */
+	private void execute() {
+		if (!this.processing) {
+			try {
+				this.processing = true;
+				processQueuedEvents();
+			} finally {
+				this.processing = false;
+			}
+		}
+	}
+
+	private void processQueuedEvents() {
+		while (LiveCycle.Running == getStatus()) {
+			final EventHolder<E> eventToProcess = this.events.pollFirst();
+			if (eventToProcess == null) {
+				return;
+			}
+			fireEventOnStateMachine(eventToProcess);
+		}
+	}
+}
@@ -18,8 +18,11 @@
  *******************************************************************************/
 package ch.bbv.fsm.impl.internal.driver;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
+import ch.bbv.fsm.BackpressurePolicy;
+import ch.bbv.fsm.BatchResult;
 import ch.bbv.fsm.StateMachine;
 
 /**
@@ -38,7 +41,7 @@ public class PassiveStateMachineDriver<TStateMachine extends StateMachine<S, E>,
 	/**
 	 * List of all queued events.
 	 */
-	private final LinkedList<EventHolder<E>> events;
+	private final EventQueue<EventHolder<E>> events;
 
 	/**
 	 * Do not process event while already processing an event. This happens if an
@@ -50,29 +53,94 @@ public class PassiveStateMachineDriver<TStateMachine extends StateMachine<S, E>,
 	 * Creates the state machine.
 	 */
 	public PassiveStateMachineDriver() {
-		this.events = new LinkedList<>();
+		this(0, BackpressurePolicy.REJECT);
+	}
+
+	/**
+	 * Creates the state machine with a bounded event queue. The events are fired
+	 * on the processing thread, so {@link BackpressurePolicy#BLOCK} rejects events
+	 * like {@link BackpressurePolicy#REJECT}.
+	 * 
+	 * @param capacity the maximum number of queued events or <code>0</code> for
+	 *                 an unbounded queue.
+	 * @param policy   the policy applied if an event is fired while the queue is
+	 *                 full.
+	 */
+	public PassiveStateMachineDriver(final int capacity, final BackpressurePolicy policy) {
+		this.events = EventQueue.create(capacity, policy);
 	}
 
 	@Override
 	public synchronized void fire(final E eventId, final Object... eventArguments) {
-		this.events.addLast(EventHolder.create(eventId, eventArguments));
+		if (canExecuteDirectly()) {
+			this.execute(eventId, eventArguments);
+		} else {
+			this.events.put(EventHolder.create(eventId, eventArguments), false, false);
+			this.execute();
+		}
+	}
+
+	@Override
+	public synchronized boolean tryFire(final E eventId, final Object... eventArguments) {
+		if (canExecuteDirectly()) {
+			this.execute(eventId, eventArguments);
+		} else if (this.events.offer(EventHolder.create(eventId, eventArguments), false)) {
+			this.execute();
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Processes the whole batch under one lock acquisition if the state machine
+	 * is running and not processing an event, otherwise queues it.
+	 */
+	@Override
+	public synchronized BatchResult fireBatch(final E[] eventIds, final Object[][] eventArguments) {
+		checkBatch(eventIds, eventArguments);
+		if (canExecuteDirectly()) {
+			try {
+				processing = true;
+				return this.fireBatchOnStateMachine(eventIds, eventArguments, this::processQueuedEvents);
+			} finally {
+				processing = false;
+			}
+		}
+		final List<EventHolder<E>> batch = new ArrayList<>(eventIds.length);
+		for (int i = 0; i < eventIds.length; i++) {
+			batch.add(EventHolder.create(eventIds[i], arguments(eventArguments, i)));
+		}
+		final int queued = this.events.putAll(batch, false);
 		this.execute();
+		return new BatchResult(0, 0, 0, queued);
 	}
 
 	@Override
 	public synchronized void firePriority(final E eventId, final Object... eventArguments) {
-		this.events.addFirst(EventHolder.create(eventId, eventArguments));
+		this.events.put(EventHolder.create(eventId, eventArguments), true, false);
 		this.execute();
 	}
 
+	/**
+	 * Returns <code>true</code> if an event can be executed without queuing it.
+	 */
+	private boolean canExecuteDirectly() {
+		return !processing && this.events.isEmpty() && LiveCycle.Running == getStatus();
+	}
+
+	/**
+	 * Returns the number of queued events without waiting for the event being
+	 * processed, the event queue is thread-safe.
+	 */
 	@Override
-	public synchronized int numberOfQueuedEvents() {
+	public int numberOfQueuedEvents() {
 		return this.events.size();
 	}
 
 	@Override
 	public synchronized boolean isIdle() {
-		return numberOfQueuedEvents() == 0;
+		return this.events.isEmpty();
 	}
 
 	@Override
@@ -98,22 +166,29 @@ public class PassiveStateMachineDriver<TStateMachine extends StateMachine<S, E>,
 	}
 
 	/**
-	 * Gets the next event to process for the queue.
+	 * Executes the given event directly without queuing it, followed by all events
+	 * queued while processing it. The driver must be running, idle and not
+	 * processing.
 	 * 
-	 * @return The next queued event.
+	 * @param eventId        the event id.
+	 * @param eventArguments the event arguments.
 	 */
-	private EventHolder<E> getNextEventToProcess() {
-		final EventHolder<E> e = this.events.getFirst();
-		this.events.removeFirst();
-		return e;
+	private void execute(final E eventId, final Object[] eventArguments) {
+		try {
+			processing = true;
+			this.fireEventOnStateMachine(eventId, eventArguments);
+			processQueuedEvents();
+		} finally {
+			processing = false;
+		}
 	}
 
 	/**
 	 * Processes the queued events.
 	 */
 	private void processQueuedEvents() {
-		while (!this.events.isEmpty()) {
-			final EventHolder<E> eventToProcess = this.getNextEventToProcess();
+		EventHolder<E> eventToProcess;
+		while ((eventToProcess = this.events.poll()) != null) {
 			this.fireEventOnStateMachine(eventToProcess);
 		}
 	}
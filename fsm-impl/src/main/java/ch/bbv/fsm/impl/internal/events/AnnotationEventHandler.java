@@ -1,6 +1,12 @@
 package ch.bbv.fsm.impl.internal.events;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,7 +26,10 @@ import ch.bbv.fsm.impl.SimpleStateMachineWithContext;
 
 /**
  * Event Handler described by annotations.
- * 
+ * <p>
+ * The annotated methods of a context class are looked up once and cached as
+ * method handles, so a callback costs about as much as a direct call.
+ *
  * @author Ueli Kurmann
  *
  * @param <S> the state
@@ -32,42 +41,126 @@ public class AnnotationEventHandler<S extends Enum<?>, E extends Enum<?>, O exte
 
 	private static final Logger LOG = LoggerFactory.getLogger(AnnotationEventHandler.class);
 
+	/**
+	 * The type all handler methods are adapted to: the context and the event.
+	 */
+	private static final MethodType HANDLER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	/**
+	 * The handler methods per context class.
+	 */
+	private static final ClassValue<Handlers> HANDLERS = new ClassValue<Handlers>() {
+		@Override
+		protected Handlers computeValue(final Class<?> type) {
+			return new Handlers(type);
+		}
+	};
+
+	/**
+	 * The callbacks of the handler.
+	 */
+	private enum Callback {
+		EXCEPTION_THROWN(OnExceptionThrown.class), TRANSITION_BEGIN(OnTransitionBegin.class),
+		TRANSITION_COMPLETED(OnTransitionCompleted.class), TRANSITION_DECLINED(OnTransitionDeclined.class),
+		TRANSITION_THROWS_EXCEPTION(OnTransitionThrowsException.class);
+
+		private final Class<? extends Annotation> annotation;
+
+		Callback(final Class<? extends Annotation> annotation) {
+			this.annotation = annotation;
+		}
+	}
+
+	/**
+	 * The handler methods of a context class.
+	 */
+	private static final class Handlers {
+
+		private final Class<?> type;
+
+		/**
+		 * The handler methods indexed by the ordinal of their {@link Callback},
+		 * <code>null</code> if the class has no handler for the callback.
+		 */
+		private final MethodHandle[] methods;
+
+		Handlers(final Class<?> type) {
+			this.type = type;
+			final Callback[] callbacks = Callback.values();
+			this.methods = new MethodHandle[callbacks.length];
+			for (final Callback callback : callbacks) {
+				this.methods[callback.ordinal()] = resolve(callback.annotation, type);
+			}
+		}
+	}
+
+	/**
+	 * The handler methods of the last context class, usually all contexts of a
+	 * definition are of the same class.
+	 */
+	private Handlers last;
+
 	@Override
 	public void onExceptionThrown(final ExceptionEvent<SimpleStateMachineWithContext<S, E, O>, S, E> arg) {
-		callMethod(OnExceptionThrown.class, arg);
+		callMethod(Callback.EXCEPTION_THROWN, arg);
 	}
 
 	@Override
 	public void onTransitionBegin(final TransitionEvent<SimpleStateMachineWithContext<S, E, O>, S, E> arg) {
-		callMethod(OnTransitionBegin.class, arg);
+		callMethod(Callback.TRANSITION_BEGIN, arg);
 	}
 
 	@Override
 	public void onTransitionCompleted(final TransitionCompletedEvent<SimpleStateMachineWithContext<S, E, O>, S, E> arg) {
-		callMethod(OnTransitionCompleted.class, arg);
+		callMethod(Callback.TRANSITION_COMPLETED, arg);
 	}
 
 	@Override
 	public void onTransitionDeclined(final TransitionEvent<SimpleStateMachineWithContext<S, E, O>, S, E> arg) {
-		callMethod(OnTransitionDeclined.class, arg);
+		callMethod(Callback.TRANSITION_DECLINED, arg);
 
 	}
 
 	@Override
 	public void onTransitionThrowsException(final TransitionExceptionEvent<SimpleStateMachineWithContext<S, E, O>, S, E> arg) {
-		callMethod(OnTransitionThrowsException.class, arg);
+		callMethod(Callback.TRANSITION_THROWS_EXCEPTION, arg);
 	}
 
-	private <A extends Annotation> void callMethod(final Class<A> annotation,
-			final ContextEvent<SimpleStateMachineWithContext<S, E, O>, S, E> arg) {
+	private void callMethod(final Callback callback, final ContextEvent<SimpleStateMachineWithContext<S, E, O>, S, E> arg) {
 		final O o = arg.getSource().get();
-		Annotations.find(annotation, o.getClass()).ifPresent(method -> {
+		Handlers handlers = this.last;
+		if (handlers == null || handlers.type != o.getClass()) {
+			handlers = HANDLERS.get(o.getClass());
+			this.last = handlers;
+		}
+		final MethodHandle handler = handlers.methods[callback.ordinal()];
+		if (handler != null) {
 			try {
-				method.invoke(o, arg);
-			} catch (final Exception e) {
-				LOG.error("Error executing " + annotation.getName(), e);
+				handler.invokeExact(o, (Object) arg);
+			} catch (final Throwable e) {
+				LOG.error("Error executing " + callback.annotation.getName(), e);
 			}
-		});
+		}
 	}
 
+	/**
+	 * Returns the handler method of the given class for the annotation adapted to
+	 * {@link #HANDLER_TYPE}. A static method ignores the context.
+	 */
+	private static MethodHandle resolve(final Class<? extends Annotation> annotation, final Class<?> type) {
+		final Optional<Method> method = Annotations.find(annotation, type);
+		if (!method.isPresent()) {
+			return null;
+		}
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflect(method.get());
+			if (Modifier.isStatic(method.get().getModifiers())) {
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			}
+			return handle.asType(HANDLER_TYPE);
+		} catch (final IllegalAccessException e) {
+			LOG.error("Error executing " + annotation.getName(), e);
+			return null;
+		}
+	}
 }
@@ -0,0 +1,369 @@
+package ch.bbv.fsm.impl.internal.statemachine;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.internal.statemachine.state.InternalState;
+import ch.bbv.fsm.impl.internal.statemachine.state.StateDictionary;
+import ch.bbv.fsm.impl.internal.statemachine.transition.TransitionTable;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Interprets a population of state machines of the same definition. The
+ * population is kept in arrays instead of an interpreter per state machine:
+ * the ordinal of the current state per state machine and, per super state with
+ * a history, the ordinal of the last active sub state per state machine
+ * (<code>0</code> if there is none, the ordinal plus one otherwise).
+ * <p>
+ * The interpreter switches to a state machine of the population before
+ * dispatching an event and stores the state it is in afterwards, so a state
+ * machine takes 4 bytes plus 2 bytes per super state with a history. The
+ * interpreter is not thread safe.
+ * <p>
+ * The number of state machines per state is counted. The state machines in a
+ * state are found by scanning the population unless the state index is
+ * enabled, which links the state machines in the same state into a list per
+ * state at the cost of 8 more bytes per state machine.
+ *
+ * @param <TStateMachine> the type of state machine
+ * @param <S>             the type of the states
+ * @param <E>             the type of the events
+ */
+public class PopulationInterpreter<TStateMachine extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>>
+		extends StateMachineInterpreter<TStateMachine, S, E> {
+
+	/**
+	 * The ordinal of the current state per state machine.
+	 */
+	private final int[] currentStates;
+
+	/**
+	 * The last active sub states per history slot and state machine.
+	 */
+	private final short[][] history;
+
+	/**
+	 * The history slot per ordinal of a super state, <code>-1</code> if the state
+	 * has no history.
+	 */
+	private final int[] historySlots;
+
+	private final InternalState<TStateMachine, S, E>[] statesByOrdinal;
+
+	/**
+	 * The number of state machines per state ordinal.
+	 */
+	private final int[] counts;
+
+	/**
+	 * The first state machine per state ordinal, <code>-1</code> if there is
+	 * none. <code>null</code> if the state index is not enabled.
+	 */
+	private int[] heads;
+
+	/**
+	 * The next and previous state machine in the same state per state machine,
+	 * <code>-1</code> at the ends of the list.
+	 */
+	private int[] next;
+
+	private int[] previous;
+
+	/**
+	 * The index of the state machine the interpreter is switched to.
+	 */
+	private int index = -1;
+
+	/**
+	 * Initializes a new population.
+	 *
+	 * @param stateMachine    the custom's state machine shared by the population
+	 * @param name            the name of the population used in log messages
+	 * @param states          the states
+	 * @param transitionTable the compiled transitions or <code>null</code> if the
+	 *                        definition is not compiled
+	 * @param initialState    the initial state
+	 * @param size            the number of state machines
+	 */
+	@SuppressWarnings("unchecked")
+	public PopulationInterpreter(final TStateMachine stateMachine, final String name,
+			final StateDictionary<TStateMachine, S, E> states, final TransitionTable<TStateMachine, S, E> transitionTable,
+			final S initialState, final int size) {
+		super(stateMachine, name, states, transitionTable, initialState);
+		if (size <= 0) {
+			throw new IllegalArgumentException("The size of the population must be positive but is " + size + ".");
+		}
+		int length = 0;
+		for (final InternalState<TStateMachine, S, E> state : states.getStates()) {
+			length = Math.max(length, state.getId().ordinal() + 1);
+		}
+		if (length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("A population supports at most " + Short.MAX_VALUE + " states.");
+		}
+		this.statesByOrdinal = new InternalState[length];
+		this.historySlots = new int[length];
+		Arrays.fill(this.historySlots, -1);
+		int slots = 0;
+		for (final InternalState<TStateMachine, S, E> state : states.getStates()) {
+			final int ordinal = state.getId().ordinal();
+			this.statesByOrdinal[ordinal] = state;
+			if (!HistoryType.NONE.equals(state.getHistoryType())) {
+				this.historySlots[ordinal] = slots++;
+			}
+		}
+		this.currentStates = new int[size];
+		this.counts = new int[length];
+		this.history = new short[slots][size];
+	}
+
+	/**
+	 * Initializes all state machines of the population. The initial state is
+	 * entered once for the whole population, the entry actions are not executed
+	 * per state machine.
+	 */
+	@Override
+	public void initialize() {
+		this.index = 0;
+		try {
+			super.initialize();
+			final int initialState = getCurrentState().getId().ordinal();
+			Arrays.fill(this.currentStates, initialState);
+			Arrays.fill(this.counts, 0);
+			this.counts[initialState] = this.currentStates.length;
+			if (this.heads != null) {
+				enableStateIndex();
+			}
+		} finally {
+			this.index = -1;
+		}
+	}
+
+	/**
+	 * Returns the number of state machines.
+	 *
+	 * @return the size of the population.
+	 */
+	public int size() {
+		return this.currentStates.length;
+	}
+
+	/**
+	 * Returns the index of the state machine processing an event, <code>-1</code>
+	 * if no event is processed.
+	 *
+	 * @return the index of the current state machine.
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Fires the event on a state machine of the population.
+	 *
+	 * @param machine        the index of the state machine.
+	 * @param eventId        the event id.
+	 * @param eventArguments the event arguments.
+	 */
+	public void fire(final int machine, final E eventId, final Object[] eventArguments) {
+		switchTo(machine);
+		try {
+			fire(eventId, eventArguments);
+		} finally {
+			moveTo(machine, getCurrentState().getId().ordinal());
+			this.index = -1;
+		}
+	}
+
+	/**
+	 * Returns the id of the current state of a state machine of the population.
+	 *
+	 * @param machine the index of the state machine.
+	 * @return the current state.
+	 */
+	public S getCurrentStateId(final int machine) {
+		return this.statesByOrdinal[this.currentStates[machine]].getId();
+	}
+
+	@Override
+	public InternalState<TStateMachine, S, E> getLastActiveSubState(final InternalState<TStateMachine, S, E> superState) {
+		final int slot = this.historySlots[superState.getId().ordinal()];
+		if (slot < 0) {
+			return null;
+		}
+		final int subState = this.history[slot][this.index];
+		return subState == 0 ? null : this.statesByOrdinal[subState - 1];
+	}
+
+	@Override
+	public void setLastActiveSubState(final InternalState<TStateMachine, S, E> superState,
+			final InternalState<TStateMachine, S, E> subState) {
+		final int slot = this.historySlots[superState.getId().ordinal()];
+		if (slot >= 0) {
+			this.history[slot][this.index] = (short) (subState.getId().ordinal() + 1);
+		}
+	}
+
+	/**
+	 * Activates a state machine of the population.
+	 *
+	 * @param machine the index of the state machine.
+	 * @param memento the memento to use
+	 */
+	public void activate(final int machine, final StateMachineMemento<S, E> memento) {
+		final int[] subStates = new int[this.history.length];
+		for (final InternalState<TStateMachine, S, E> state : this.statesByOrdinal) {
+			if (state != null && this.historySlots[state.getId().ordinal()] >= 0) {
+				final S subState = memento.getSavedHistoryStates().get(state.getId());
+				subStates[this.historySlots[state.getId().ordinal()]] = subState == null ? 0 : subState.ordinal() + 1;
+			}
+		}
+		moveTo(machine, memento.getCurrentState().ordinal());
+		for (int slot = 0; slot < subStates.length; slot++) {
+			this.history[slot][machine] = (short) subStates[slot];
+		}
+	}
+
+	/**
+	 * Deactivates a state machine of the population.
+	 *
+	 * @param machine the index of the state machine.
+	 * @param memento the memento to use
+	 */
+	public void passivate(final int machine, final StateMachineMemento<S, E> memento) {
+		memento.setCurrentState(getCurrentStateId(machine));
+		for (final InternalState<TStateMachine, S, E> state : this.statesByOrdinal) {
+			if (state != null && this.historySlots[state.getId().ordinal()] >= 0) {
+				final int subState = this.history[this.historySlots[state.getId().ordinal()]][machine];
+				if (subState != 0) {
+					memento.putHistoryState(state.getId(), this.statesByOrdinal[subState - 1].getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of state machines whose current state is the given
+	 * state.
+	 *
+	 * @param stateId the state.
+	 * @return the number of state machines.
+	 */
+	public int count(final S stateId) {
+		final int ordinal = stateId.ordinal();
+		return ordinal < this.counts.length ? this.counts[ordinal] : 0;
+	}
+
+	/**
+	 * Returns the number of state machines per state with at least one state
+	 * machine.
+	 *
+	 * @return the counts in the order of the states.
+	 */
+	public Map<S, Integer> countByState() {
+		final Map<S, Integer> result = new LinkedHashMap<>();
+		for (int ordinal = 0; ordinal < this.counts.length; ordinal++) {
+			if (this.counts[ordinal] > 0) {
+				result.put(this.statesByOrdinal[ordinal].getId(), this.counts[ordinal]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the state machines whose current state is the given state, in the
+	 * order of their index if the state index is not enabled.
+	 *
+	 * @param stateId the state.
+	 * @return the indexes of the state machines.
+	 */
+	public int[] find(final S stateId) {
+		final int ordinal = stateId.ordinal();
+		final int[] result = new int[count(stateId)];
+		int found = 0;
+		if (result.length == 0) {
+			// also a state which is not part of the definition
+			return result;
+		}
+		if (this.heads != null) {
+			for (int machine = this.heads[ordinal]; machine >= 0; machine = this.next[machine]) {
+				result[found++] = machine;
+			}
+		} else {
+			for (int machine = 0; found < result.length; machine++) {
+				if (this.currentStates[machine] == ordinal) {
+					result[found++] = machine;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Links the state machines in the same state so that {@link #find(Enum)}
+	 * takes time proportional to the number of state machines found.
+	 */
+	public void enableStateIndex() {
+		this.heads = new int[this.counts.length];
+		Arrays.fill(this.heads, -1);
+		this.next = new int[this.currentStates.length];
+		this.previous = new int[this.currentStates.length];
+		for (int machine = this.currentStates.length - 1; machine >= 0; machine--) {
+			link(machine, this.currentStates[machine]);
+		}
+	}
+
+	/**
+	 * Stores the current state of a state machine and updates the counts and the
+	 * state index.
+	 */
+	private void moveTo(final int machine, final int state) {
+		final int previousState = this.currentStates[machine];
+		if (previousState == state) {
+			return;
+		}
+		this.currentStates[machine] = state;
+		this.counts[previousState]--;
+		this.counts[state]++;
+		if (this.heads != null) {
+			unlink(machine, previousState);
+			link(machine, state);
+		}
+	}
+
+	private void link(final int machine, final int state) {
+		final int head = this.heads[state];
+		this.next[machine] = head;
+		this.previous[machine] = -1;
+		if (head >= 0) {
+			this.previous[head] = machine;
+		}
+		this.heads[state] = machine;
+	}
+
+	private void unlink(final int machine, final int state) {
+		final int before = this.previous[machine];
+		final int after = this.next[machine];
+		if (before >= 0) {
+			this.next[before] = after;
+		} else {
+			this.heads[state] = after;
+		}
+		if (after >= 0) {
+			this.previous[after] = before;
+		}
+	}
+
+	private void switchTo(final int machine) {
+		if (this.index >= 0) {
+			throw new IllegalStateException("The population is processing an event of state machine " + this.index + ".");
+		}
+		if (machine < 0 || machine >= this.currentStates.length) {
+			throw new IndexOutOfBoundsException("The population has no state machine " + machine + ".");
+		}
+		this.index = machine;
+		resumeIn(this.statesByOrdinal[this.currentStates[machine]]);
+	}
+}
@@ -18,16 +18,22 @@
  *******************************************************************************/
 package ch.bbv.fsm.impl.internal.statemachine;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.events.EventHandlerCallback;
+import ch.bbv.fsm.events.ExceptionEvent;
 import ch.bbv.fsm.events.StateMachineEventHandler;
+import ch.bbv.fsm.events.TransitionCompletedEvent;
+import ch.bbv.fsm.events.TransitionEvent;
+import ch.bbv.fsm.events.TransitionExceptionEvent;
+import ch.bbv.fsm.impl.Instrumentation;
 import ch.bbv.fsm.impl.internal.driver.Notifier;
 import ch.bbv.fsm.impl.internal.statemachine.events.ExceptionEventImpl;
 import ch.bbv.fsm.impl.internal.statemachine.events.TransitionCompletedEventImpl;
@@ -38,6 +44,7 @@ import ch.bbv.fsm.impl.internal.statemachine.state.StateContext;
 import ch.bbv.fsm.impl.internal.statemachine.state.StateDictionary;
 import ch.bbv.fsm.impl.internal.statemachine.transition.TransitionContext;
 import ch.bbv.fsm.impl.internal.statemachine.transition.TransitionResult;
+import ch.bbv.fsm.impl.internal.statemachine.transition.TransitionTable;
 import ch.bbv.fsm.memento.StateMachineMemento;
 
 /**
@@ -75,23 +82,84 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 	 */
 	private final StateDictionary<TStateMachine, S, E> states;
 
-	private final List<StateMachineEventHandler<TStateMachine, S, E>> eventHandler;
+	/**
+	 * The compiled transitions. <code>null</code> if the definition is not
+	 * compiled.
+	 */
+	private final TransitionTable<TStateMachine, S, E> transitionTable;
+
+	/**
+	 * The event handlers per callback, see
+	 * {@link StateMachineEventHandler#callbacks()}.
+	 */
+	private StateMachineEventHandler<TStateMachine, S, E>[] exceptionThrownHandlers = noHandlers();
+
+	private StateMachineEventHandler<TStateMachine, S, E>[] transitionBeginHandlers = noHandlers();
+
+	private StateMachineEventHandler<TStateMachine, S, E>[] transitionCompletedHandlers = noHandlers();
+
+	private StateMachineEventHandler<TStateMachine, S, E>[] transitionDeclinedHandlers = noHandlers();
+
+	private StateMachineEventHandler<TStateMachine, S, E>[] transitionThrowsExceptionHandlers = noHandlers();
+
+	/**
+	 * The transition context reused by every fired event.
+	 */
+	private final TransitionContext<TStateMachine, S, E> dispatchContext;
+
+	/**
+	 * <code>true</code> while {@link #dispatchContext} is in use.
+	 */
+	private boolean dispatching;
+
+	/**
+	 * <code>true</code> if an event handler records transitions, see
+	 * {@link StateMachineEventHandler#recordsTransitions()}. The states exited and
+	 * entered by the transitions are only recorded while tracing.
+	 */
+	private boolean tracing;
+
+	/**
+	 * The instrumentations, empty if the state machine is not instrumented.
+	 */
+	private Instrumentation<S, E>[] instrumentations = noInstrumentations();
+
+	/**
+	 * The time the current state was entered. Only maintained if the state machine
+	 * is instrumented, <code>0</code> if the state was entered while no
+	 * instrumentation was active.
+	 */
+	private long stateEnteredNanos;
+
+	/**
+	 * The number of declined events, see {@link #getNumberOfDeclinedEvents()}.
+	 */
+	private long declinedEvents;
+
+	/**
+	 * The number of thrown exceptions, see {@link #getNumberOfExceptions()}.
+	 */
+	private long exceptions;
 
 	/**
 	 * Initializes a new instance of the StateMachineImpl<TState,TEvent> class.
 	 * 
 	 * @param stateMachine the custom's state machine
 	 * @param name         The name of this state machine used in log messages.
-	 * @param states       the states
-	 * @param initialState the initial state
+	 * @param states          the states
+	 * @param transitionTable the compiled transitions or <code>null</code> if the
+	 *                        definition is not compiled
+	 * @param initialState    the initial state
 	 */
 	public StateMachineInterpreter(final TStateMachine stateMachine, final String name,
-			final StateDictionary<TStateMachine, S, E> states, final S initialState) {
+			final StateDictionary<TStateMachine, S, E> states, final TransitionTable<TStateMachine, S, E> transitionTable,
+			final S initialState) {
 		this.name = name;
 		this.states = states;
+		this.transitionTable = transitionTable;
 		this.stateMachine = stateMachine;
 		this.initialStateId = initialState;
-		this.eventHandler = new ArrayList<>();
+		this.dispatchContext = new TransitionContext<>(stateMachine, null, null, null, this, this);
 	}
 
 	/**
@@ -104,32 +172,78 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 	}
 
 	/**
-	 * Fires the specified event.
+	 * Fires the specified event. The transition context is reused for every event,
+	 * so firing an event does not allocate any objects on its own. If the
+	 * interpreter is re-entered while dispatching, a new context is created.
+	 * <p>
+	 * Dispatching does not log, attach a {@link ch.bbv.fsm.impl.TracingEventHandler} to trace the
+	 * events.
 	 * 
 	 * @param eventId        the event id.
 	 * @param eventArguments the event arguments.
 	 */
 	public void fire(final E eventId, final Object[] eventArguments) {
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("Fire event {} on state machine {} with current state {} and event arguments {}.",
-					new Object[] { eventId, this.getName(), this.getCurrentStateId(), eventArguments });
+		if (this.dispatching) {
+			fire(new TransitionContext<>(stateMachine, null, null, null, this, this), eventId, eventArguments);
+		} else {
+			this.dispatching = true;
+			try {
+				fire(this.dispatchContext, eventId, eventArguments);
+			} finally {
+				this.dispatching = false;
+			}
 		}
+	}
 
-		final TransitionContext<TStateMachine, S, E> context = new TransitionContext<>(stateMachine, getCurrentState(), eventId,
-				eventArguments, this, this);
-		final TransitionResult<TStateMachine, S, E> result = this.currentState.fire(context);
+	private void fire(final TransitionContext<TStateMachine, S, E> context, final E eventId, final Object[] eventArguments) {
+		final InternalState<TStateMachine, S, E> sourceState = getCurrentState();
+		final boolean instrumented = isInstrumented();
+		final long start = instrumented ? System.nanoTime() : 0L;
+		context.reset(sourceState, eventId, eventArguments, this.tracing);
+		final TransitionResult<TStateMachine, S, E> result = this.transitionTable != null ? this.transitionTable.fire(context)
+				: this.currentState.fire(context);
 
 		if (!result.isFired()) {
-			LOG.warn("No transition possible. Current state: {}, fired event: {}", getCurrentStateId(), eventArguments);
+			this.declinedEvents++;
+			if (instrumented) {
+				instrumentDeclined(sourceState.getId(), eventId, start);
+			}
 			this.onTransitionDeclined(context);
 			return;
 		}
 
-		this.setCurrentState(result.getNewState());
+		this.currentState = result.getNewState();
+		if (instrumented) {
+			instrumentCompleted(sourceState, eventId, start);
+		} else {
+			// the dwell time of the current state is unknown
+			this.stateEnteredNanos = 0L;
+		}
+		this.onTransitionCompleted(context);
+	}
 
-		LOG.debug("Statemachine \"{}\" performed {}.", this, context.getRecords());
+	private void instrumentDeclined(final S stateId, final E eventId, final long start) {
+		final long nanos = System.nanoTime() - start;
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onTransitionDeclined(this.name, stateId, eventId, nanos);
+		}
+	}
 
-		this.onTransitionCompleted(context);
+	private void instrumentCompleted(final InternalState<TStateMachine, S, E> sourceState, final E eventId, final long start) {
+		final long now = System.nanoTime();
+		final S targetStateId = this.currentState.getId();
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onTransitionCompleted(this.name, sourceState.getId(), eventId, targetStateId, now - start);
+		}
+		if (sourceState != this.currentState) {
+			if (this.stateEnteredNanos != 0L) {
+				final long dwell = start - this.stateEnteredNanos;
+				for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+					instrumentation.onStateLeft(this.name, sourceState.getId(), dwell);
+				}
+			}
+			this.stateEnteredNanos = now;
+		}
 	}
 
 	/**
@@ -137,10 +251,20 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 	 * 
 	 * @return the current state.
 	 */
-	private InternalState<TStateMachine, S, E> getCurrentState() {
+	protected InternalState<TStateMachine, S, E> getCurrentState() {
 		return this.currentState;
 	}
 
+	/**
+	 * Continues in the given state without exiting or entering any states, e.g.
+	 * to switch to a state kept outside of this interpreter.
+	 * 
+	 * @param state the current state.
+	 */
+	protected void resumeIn(final InternalState<TStateMachine, S, E> state) {
+		this.currentState = state;
+	}
+
 	/**
 	 * Gets the id of the current state.
 	 * 
@@ -187,6 +311,10 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 		LOG.info("Statemachine \"{}\" initializes to state {}.", this, initialStateId);
 		final StateContext<TStateMachine, S, E> stateContext = new StateContext<>(stateMachine, null, this, this);
 		this.initialize(this.states.getState(initialStateId), stateContext);
+		this.stateEnteredNanos = isInstrumented() ? System.nanoTime() : 0L;
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onInitialized(this.name, getCurrentStateId());
+		}
 		LOG.info("Statemachine \"{}\" performed {}.", this, stateContext.getRecords());
 	}
 
@@ -200,36 +328,163 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 			o.exit(stateContext);
 			o = o.getSuperState();
 		}
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onTerminated(this.name);
+		}
 	}
 
 	/**
-	 * Adds an event handler.
+	 * Adds an event handler. The handler is only called for the callbacks it
+	 * subscribes to. A callback creates one event shared by all its handlers and
+	 * no event at all if it has no handlers.
 	 * 
 	 * @param handler the event handler.
 	 */
 	public void addEventHandler(final StateMachineEventHandler<TStateMachine, S, E> handler) {
-		this.eventHandler.add(handler);
+		final Set<EventHandlerCallback> callbacks = handler.callbacks();
+		if (callbacks.contains(EventHandlerCallback.EXCEPTION_THROWN)) {
+			this.exceptionThrownHandlers = append(this.exceptionThrownHandlers, handler);
+		}
+		if (callbacks.contains(EventHandlerCallback.TRANSITION_BEGIN)) {
+			this.transitionBeginHandlers = append(this.transitionBeginHandlers, handler);
+		}
+		if (callbacks.contains(EventHandlerCallback.TRANSITION_COMPLETED)) {
+			this.transitionCompletedHandlers = append(this.transitionCompletedHandlers, handler);
+		}
+		if (callbacks.contains(EventHandlerCallback.TRANSITION_DECLINED)) {
+			this.transitionDeclinedHandlers = append(this.transitionDeclinedHandlers, handler);
+		}
+		if (callbacks.contains(EventHandlerCallback.TRANSITION_THROWS_EXCEPTION)) {
+			this.transitionThrowsExceptionHandlers = append(this.transitionThrowsExceptionHandlers, handler);
+		}
+		this.tracing |= handler.recordsTransitions();
+	}
+
+	/**
+	 * Adds an instrumentation. The execution times of transitions, guards and
+	 * actions are only measured if at least one instrumentation is added.
+	 * 
+	 * @param instrumentation the instrumentation.
+	 */
+	public void addInstrumentation(final Instrumentation<S, E> instrumentation) {
+		this.instrumentations = append(this.instrumentations, instrumentation);
+	}
+
+	@Override
+	public boolean isInstrumented() {
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			if (instrumentation.isActive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Called by the driver when it takes an event for processing, only if
+	 * {@link #isInstrumented()}.
+	 * 
+	 * @param eventId    the event.
+	 * @param queueDepth the number of events still queued.
+	 */
+	public void onEventDequeued(final E eventId, final int queueDepth) {
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onEventDequeued(this.name, eventId, queueDepth);
+		}
+	}
+
+	@Override
+	public void onGuardEvaluated(final TransitionContext<TStateMachine, S, E> context, final S stateId, final long nanos) {
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onGuardEvaluated(this.name, stateId, context.getEventId(), nanos);
+		}
+	}
+
+	@Override
+	public void onActionsPerformed(final TransitionContext<TStateMachine, S, E> context, final S stateId, final long nanos) {
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onActionsPerformed(this.name, stateId, context.getEventId(), nanos);
+		}
+	}
+
+	/**
+	 * Returns the number of events declined because no transition was possible.
+	 * 
+	 * @return the number of declined events.
+	 */
+	public long getNumberOfDeclinedEvents() {
+		return this.declinedEvents;
+	}
+
+	/**
+	 * Returns the number of exceptions thrown by guards and actions.
+	 * 
+	 * @return the number of exceptions.
+	 */
+	public long getNumberOfExceptions() {
+		return this.exceptions;
+	}
+
+	private void recordException(final Exception exception) {
+		this.exceptions++;
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onExceptionThrown(this.name, exception);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <S extends Enum<?>, E extends Enum<?>> Instrumentation<S, E>[] noInstrumentations() {
+		return new Instrumentation[0];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <TStateMachine extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> StateMachineEventHandler<TStateMachine, S, E>[] noHandlers() {
+		return new StateMachineEventHandler[0];
+	}
+
+	private static <T> T[] append(final T[] handlers, final T handler) {
+		final T[] result = Arrays.copyOf(handlers, handlers.length + 1);
+		result[handlers.length] = handler;
+		return result;
 	}
 
 	@Override
 	public void onExceptionThrown(final StateContext<TStateMachine, S, E> stateContext, final Exception exception) {
-		for (final StateMachineEventHandler<TStateMachine, S, E> handler : this.eventHandler) {
-			handler.onExceptionThrown(new ExceptionEventImpl<>(stateContext, exception));
+		recordException(exception);
+		final StateMachineEventHandler<TStateMachine, S, E>[] handlers = this.exceptionThrownHandlers;
+		if (handlers.length == 0) {
+			return;
+		}
+		final ExceptionEvent<TStateMachine, S, E> event = new ExceptionEventImpl<>(stateContext, exception);
+		for (final StateMachineEventHandler<TStateMachine, S, E> handler : handlers) {
+			handler.onExceptionThrown(event);
 		}
 	}
 
 	@Override
 	public void onExceptionThrown(final TransitionContext<TStateMachine, S, E> transitionContext, final Exception exception) {
-		for (final StateMachineEventHandler<TStateMachine, S, E> handler : this.eventHandler) {
-			handler.onTransitionThrowsException(new TransitionExceptionEventImpl<>(transitionContext, exception));
+		recordException(exception);
+		final StateMachineEventHandler<TStateMachine, S, E>[] handlers = this.transitionThrowsExceptionHandlers;
+		if (handlers.length == 0) {
+			return;
+		}
+		final TransitionExceptionEvent<TStateMachine, S, E> event = new TransitionExceptionEventImpl<>(transitionContext,
+				exception);
+		for (final StateMachineEventHandler<TStateMachine, S, E> handler : handlers) {
+			handler.onTransitionThrowsException(event);
 		}
 	}
 
 	@Override
 	public void onTransitionBegin(final StateContext<TStateMachine, S, E> transitionContext) {
+		final StateMachineEventHandler<TStateMachine, S, E>[] handlers = this.transitionBeginHandlers;
+		if (handlers.length == 0) {
+			return;
+		}
 		try {
-			for (final StateMachineEventHandler<TStateMachine, S, E> handler : this.eventHandler) {
-				handler.onTransitionBegin(new TransitionEventImpl<>(transitionContext));
+			final TransitionEvent<TStateMachine, S, E> event = new TransitionEventImpl<>(transitionContext);
+			for (final StateMachineEventHandler<TStateMachine, S, E> handler : handlers) {
+				handler.onTransitionBegin(event);
 			}
 		} catch (final Exception e) {
 			onExceptionThrown(transitionContext, e);
@@ -242,9 +497,15 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 	 * @param transitionContext the transition context
 	 */
 	protected void onTransitionCompleted(final StateContext<TStateMachine, S, E> transitionContext) {
+		final StateMachineEventHandler<TStateMachine, S, E>[] handlers = this.transitionCompletedHandlers;
+		if (handlers.length == 0) {
+			return;
+		}
 		try {
-			for (final StateMachineEventHandler<TStateMachine, S, E> handler : this.eventHandler) {
-				handler.onTransitionCompleted(new TransitionCompletedEventImpl<>(this.getCurrentStateId(), transitionContext));
+			final TransitionCompletedEvent<TStateMachine, S, E> event = new TransitionCompletedEventImpl<>(
+					this.getCurrentStateId(), transitionContext);
+			for (final StateMachineEventHandler<TStateMachine, S, E> handler : handlers) {
+				handler.onTransitionCompleted(event);
 			}
 		} catch (final Exception e) {
 			onExceptionThrown(transitionContext, e);
@@ -257,9 +518,14 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 	 * @param transitionContext the transition context.
 	 */
 	protected void onTransitionDeclined(final StateContext<TStateMachine, S, E> transitionContext) {
+		final StateMachineEventHandler<TStateMachine, S, E>[] handlers = this.transitionDeclinedHandlers;
+		if (handlers.length == 0) {
+			return;
+		}
 		try {
-			for (final StateMachineEventHandler<TStateMachine, S, E> handler : this.eventHandler) {
-				handler.onTransitionDeclined(new TransitionEventImpl<>(transitionContext));
+			final TransitionEvent<TStateMachine, S, E> event = new TransitionEventImpl<>(transitionContext);
+			for (final StateMachineEventHandler<TStateMachine, S, E> handler : handlers) {
+				handler.onTransitionDeclined(event);
 			}
 		} catch (final Exception e) {
 			onExceptionThrown(transitionContext, e);
@@ -310,9 +576,13 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 	 */
 	public void activate(final StateMachineMemento<S, E> memento) {
 		currentState = states.getState(memento.getCurrentState());
+		stateEnteredNanos = isInstrumented() ? System.nanoTime() : 0L;
 		for (final Map.Entry<S, S> e : memento.getSavedHistoryStates().entrySet()) {
 			superToSubState.put(states.getState(e.getKey()), states.getState(e.getValue()));
 		}
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onActivated(this.name, getCurrentStateId());
+		}
 	}
 
 	/**
@@ -326,5 +596,8 @@ public class StateMachineInterpreter<TStateMachine extends StateMachine<S, E>, S
 				.entrySet()) {
 			memento.putHistoryState(e.getKey().getId(), e.getValue().getId());
 		}
+		for (final Instrumentation<S, E> instrumentation : this.instrumentations) {
+			instrumentation.onPassivated(this.name);
+		}
 	}
 }
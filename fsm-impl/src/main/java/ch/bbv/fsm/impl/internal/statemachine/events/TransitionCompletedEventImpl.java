@@ -41,6 +41,12 @@ public class TransitionCompletedEventImpl<TStateMachine extends StateMachine<TSt
 	 */
 	private final TState newStateId;
 
+	/**
+	 * The records of the transition, taken from the context because it is reused
+	 * by the next transition.
+	 */
+	private final String records;
+
 	/**
 	 * Constructor.
 	 * 
@@ -52,6 +58,7 @@ public class TransitionCompletedEventImpl<TStateMachine extends StateMachine<TSt
 	public TransitionCompletedEventImpl(final TState newStateId, final StateContext<TStateMachine, TState, TEvent> context) {
 		super(context);
 		this.newStateId = newStateId;
+		this.records = context.isRecording() ? context.getRecords() : "";
 	}
 
 	@Override
@@ -59,4 +66,9 @@ public class TransitionCompletedEventImpl<TStateMachine extends StateMachine<TSt
 		return this.newStateId;
 	}
 
+	@Override
+	public String getRecords() {
+		return this.records;
+	}
+
 }
@@ -35,6 +35,17 @@ import ch.bbv.fsm.impl.internal.statemachine.transition.TransitionContext;
  */
 public class TransitionEventImpl<TStateMachine extends StateMachine<TState, TEvent>, TState extends Enum<?>, TEvent extends Enum<?>>
 		extends ContextEventImpl<TStateMachine, TState, TEvent> implements TransitionEvent<TStateMachine, TState, TEvent> {
+
+	/**
+	 * The event arguments. The values are taken from the transition context when
+	 * the event is created because the context is reused by the next transition.
+	 */
+	private final Object[] eventArguments;
+
+	private final TEvent eventId;
+
+	private final TState stateId;
+
 	/**
 	 * Initializes a new instance.
 	 * 
@@ -43,30 +54,25 @@ public class TransitionEventImpl<TStateMachine extends StateMachine<TState, TEve
 	 */
 	public TransitionEventImpl(final StateContext<TStateMachine, TState, TEvent> transitionContext) {
 		super(transitionContext);
+		final TransitionContext<TStateMachine, TState, TEvent> context = (TransitionContext<TStateMachine, TState, TEvent>) transitionContext;
+		this.eventArguments = context.getEventArguments();
+		this.eventId = context.getEventId();
+		this.stateId = context.getState().getId();
 	}
 
 	@Override
 	public Object[] getEventArguments() {
-		return this.getTransitionContext().getEventArguments();
+		return this.eventArguments;
 	}
 
 	@Override
 	public TEvent getEventId() {
-		return this.getTransitionContext().getEventId();
+		return this.eventId;
 	}
 
 	@Override
 	public TState getStateId() {
-		return this.getTransitionContext().getState().getId();
-	}
-
-	/**
-	 * Returns the transition context.
-	 * 
-	 * @return the transition context.
-	 */
-	private TransitionContext<TStateMachine, TState, TEvent> getTransitionContext() {
-		return (TransitionContext<TStateMachine, TState, TEvent>) this.getStateContext();
+		return this.stateId;
 	}
 
 	/**
@@ -18,9 +18,6 @@ package ch.bbv.fsm.impl.internal.statemachine.state;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import ch.bbv.fsm.HistoryType;
 import ch.bbv.fsm.StateMachine;
 import ch.bbv.fsm.impl.internal.action.FsmCall;
@@ -42,8 +39,6 @@ import ch.bbv.fsm.model.State;
  */
 public class InternalState<SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> implements State<SM, S, E> {
 
-	private static final Logger LOG = LoggerFactory.getLogger(InternalState.class);
-
 	/**
 	 * The level of this state within the state hierarchy [1..maxLevel].
 	 */
@@ -241,7 +236,6 @@ public class InternalState<SM extends StateMachine<S, E>, S extends Enum<?>, E e
 		stateContext.addRecord(this.getId(), RecordType.Enter);
 		if (this.entryAction != null) {
 			try {
-				LOG.debug("Execute EntryAction: {}",this.entryAction);
 				this.entryAction.execOn(stateContext.getStateMachine());
 			} catch (final Exception e) {
 				handleException(e, stateContext);
@@ -260,7 +254,6 @@ public class InternalState<SM extends StateMachine<S, E>, S extends Enum<?>, E e
 		stateContext.addRecord(this.getId(), StateContext.RecordType.Exit);
 		if (this.exitAction != null) {
 			try {
-				LOG.debug("Execute ExitAction: {}",this.exitAction);
 				this.exitAction.execOn(stateContext.getStateMachine());
 			} catch (final Exception e) {
 				handleException(e, stateContext);
@@ -288,17 +281,14 @@ public class InternalState<SM extends StateMachine<S, E>, S extends Enum<?>, E e
 
 		final List<Transition<SM, S, E>> transitionsForEvent = this.transitions.getTransitions(context.getEventId());
 		if (transitionsForEvent != null) {
-			for (final Transition<SM, S, E> transition : transitionsForEvent) {
-				result = transition.fire(context);
+			for (int i = 0; i < transitionsForEvent.size(); i++) {
+				result = transitionsForEvent.get(i).fire(context);
 				if (result.isFired()) {
 					return result;
 				}
 			}
 		}
-		LOG.info("No transition available in this state ({}).", this.getId());
-
 		if (this.getSuperState() != null) {
-			LOG.info("Fire the same event on the super state.");
 			result = this.getSuperState().fire(context);
 		}
 
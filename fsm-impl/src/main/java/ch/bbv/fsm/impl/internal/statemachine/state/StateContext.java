@@ -95,7 +95,12 @@ public class StateContext<SM extends StateMachine<S, E>, S extends Enum<?>, E ex
 		Exit
 	}
 
-	private final InternalState<SM, S, E> sourceState;
+	private InternalState<SM, S, E> sourceState;
+
+	/**
+	 * <code>true</code> if state exits and entries are recorded.
+	 */
+	private boolean recording = true;
 
 	/**
 	 * The exceptions that occurred during performing an operation.
@@ -138,7 +143,33 @@ public class StateContext<SM extends StateMachine<S, E>, S extends Enum<?>, E ex
 	 * @param recordType the record type.
 	 */
 	public void addRecord(final S stateId, final RecordType recordType) {
-		this.records.add(new Record(stateId, recordType));
+		if (this.recording) {
+			this.records.add(new Record(stateId, recordType));
+		}
+	}
+
+	/**
+	 * Resets this context so that it can be reused for the next operation. The
+	 * exceptions and records of the previous operation are cleared.
+	 * 
+	 * @param state     the source state of the transition.
+	 * @param recording <code>true</code> if state exits and entries should be
+	 *                  recorded.
+	 */
+	protected void reset(final InternalState<SM, S, E> state, final boolean recording) {
+		this.sourceState = state;
+		this.recording = recording;
+		this.exceptions.clear();
+		this.records.clear();
+	}
+
+	/**
+	 * Returns <code>true</code> if state exits and entries are recorded.
+	 * 
+	 * @return <code>true</code> if recording.
+	 */
+	public boolean isRecording() {
+		return this.recording;
 	}
 
 	/**
@@ -18,6 +18,8 @@
  *******************************************************************************/
 package ch.bbv.fsm.impl.internal.statemachine.state;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -57,4 +59,13 @@ public class StateDictionary<SM extends StateMachine<S, E>, S extends Enum<?>, E
 		return this.dictionary.get(stateId);
 	}
 
+	/**
+	 * Returns all states of this dictionary.
+	 * 
+	 * @return the states.
+	 */
+	public Collection<InternalState<SM, S, E>> getStates() {
+		return Collections.unmodifiableCollection(this.dictionary.values());
+	}
+
 }
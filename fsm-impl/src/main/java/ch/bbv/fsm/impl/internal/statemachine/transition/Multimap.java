@@ -1,6 +1,7 @@
 package ch.bbv.fsm.impl.internal.statemachine.transition;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -20,7 +21,7 @@ public class Multimap<K, V> extends HashMap<K, List<V>> {
 	public List<V> get(final Object key) {
 		final List<V> result = super.get(key);
 		if (result == null) {
-			return new ArrayList<>();
+			return Collections.emptyList();
 		}
 		return result;
 	}
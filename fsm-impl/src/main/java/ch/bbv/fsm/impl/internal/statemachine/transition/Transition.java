@@ -138,15 +138,11 @@ public class Transition<SM extends StateMachine<S, E>, S extends Enum<?>, E exte
 	 * @return The result of the transition.
 	 */
 	public TransitionResult<SM, S, E> fire(final TransitionContext<SM, S, E> context) {
-		LOG.debug("Start transition1 {}", this);
 		if (!this.shouldFire(context.getEventArguments(), context)) {
-			LOG.debug("Start transition2 {}", this);
 			@SuppressWarnings("unchecked")
 			final TransitionResult<SM, S, E> result = TransitionResult.getNotFired();
 			return result;
 		}
-		LOG.debug("Start transition3 {}", this);
-
 		context.getNotifier().onTransitionBegin(context);
 
 		InternalState<SM, S, E> newState = context.getState();
@@ -161,7 +157,7 @@ public class Transition<SM extends StateMachine<S, E>, S extends Enum<?>, E exte
 			this.performActions(context.getEventArguments(), context);
 		}
 
-		return new TransitionResult<>(true, newState, context.getExceptions());
+		return context.fired(newState);
 	}
 
 	/**
@@ -216,7 +212,7 @@ public class Transition<SM extends StateMachine<S, E>, S extends Enum<?>, E exte
 	 * Gets a value indicating whether this is an internal transition. true =
 	 * internal.
 	 */
-	private boolean isInternalTransition() {
+	boolean isInternalTransition() {
 		return this.target == null;
 	}
 
@@ -226,15 +222,23 @@ public class Transition<SM extends StateMachine<S, E>, S extends Enum<?>, E exte
 	 * @param eventArguments the event arguments
 	 * @param context        the transition context
 	 */
-	private void performActions(final Object[] eventArguments, final TransitionContext<SM, S, E> context) {
-		for (final FsmCall<SM, S, E> action : this.getActions()) {
+	void performActions(final Object[] eventArguments, final TransitionContext<SM, S, E> context) {
+		if (this.actions.isEmpty()) {
+			return;
+		}
+		final boolean instrumented = context.getNotifier().isInstrumented();
+		final long start = instrumented ? System.nanoTime() : 0L;
+		for (int i = 0; i < this.actions.size(); i++) {
 			try {
-				action.execOn(context.getStateMachine(), eventArguments);
+				this.actions.get(i).execOn(context.getStateMachine(), eventArguments);
 			} catch (final Exception exception) {
 				LOG.error("Exception in action of transition {}: {}", this, exception);
 				this.handleException(exception, context);
 			}
 		}
+		if (instrumented) {
+			context.getNotifier().onActionsPerformed(context, this.source.getId(), System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -271,18 +275,22 @@ public class Transition<SM extends StateMachine<S, E>, S extends Enum<?>, E exte
 	 * @param context        the context
 	 * @return true if the transition should fire
 	 */
-	private boolean shouldFire(final Object[] eventArguments, final TransitionContext<SM, S, E> context) {
+	boolean shouldFire(final Object[] eventArguments, final TransitionContext<SM, S, E> context) {
+		if (this.getGuard() == null) {
+			return true;
+		}
+		final boolean instrumented = context.getNotifier().isInstrumented();
+		final long start = instrumented ? System.nanoTime() : 0L;
 		try {
-			boolean result = true;
-			if (this.getGuard() != null) {
-				result = this.getGuard().execute(context.getStateMachine(), eventArguments);
-				LOG.debug("Checked guard: {} for {}, result is " + result, getGuard(), this);
-			}
-			return result;
+			return this.getGuard().execute(context.getStateMachine(), eventArguments);
 		} catch (final Exception exception) {
 			LOG.error("Exception in guard of transition {}: {}", this, exception);
 			this.handleException(exception, context);
 			return false;
+		} finally {
+			if (instrumented) {
+				context.getNotifier().onGuardEvaluated(context, this.source.getId(), System.nanoTime() - start);
+			}
 		}
 	}
 
@@ -40,12 +40,17 @@ public class TransitionContext<TStateMachine extends StateMachine<TState, TEvent
 	/**
 	 * The event that causes the transition.
 	 */
-	private final TEvent eventId;
+	private TEvent eventId;
 
 	/**
 	 * The event arguments.
 	 */
-	private final Object[] eventArguments;
+	private Object[] eventArguments;
+
+	/**
+	 * The result of the transition. Reused together with this context.
+	 */
+	private final TransitionResult<TStateMachine, TState, TEvent> result;
 
 	/**
 	 * Creates a new instance.
@@ -69,6 +74,39 @@ public class TransitionContext<TStateMachine extends StateMachine<TState, TEvent
 		super(stateMachine, state, stateMachineInterpreter, notifier);
 		this.eventId = eventId;
 		this.eventArguments = eventArguments;
+		this.result = new TransitionResult<>(false, null, null);
+	}
+
+	/**
+	 * Resets this context so that it can be reused for the next transition.
+	 * 
+	 * @param state
+	 *            the source state
+	 * @param eventId
+	 *            the event id
+	 * @param eventArguments
+	 *            the event arguments
+	 * @param recording
+	 *            <code>true</code> if state exits and entries should be
+	 *            recorded.
+	 */
+	public void reset(final InternalState<TStateMachine, TState, TEvent> state, final TEvent eventId, final Object[] eventArguments,
+			final boolean recording) {
+		super.reset(state, recording);
+		this.eventId = eventId;
+		this.eventArguments = eventArguments;
+	}
+
+	/**
+	 * Returns the result of a fired transition. The result is owned by this
+	 * context and is only valid until the context is reset.
+	 * 
+	 * @param newState
+	 *            the new state
+	 * @return the result.
+	 */
+	TransitionResult<TStateMachine, TState, TEvent> fired(final InternalState<TStateMachine, TState, TEvent> newState) {
+		return this.result.fired(newState, getExceptions());
 	}
 
 	/**
@@ -18,8 +18,9 @@
  *******************************************************************************/
 package ch.bbv.fsm.impl.internal.statemachine.transition;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import ch.bbv.fsm.StateMachine;
 import ch.bbv.fsm.impl.internal.statemachine.state.InternalState;
@@ -64,13 +65,23 @@ public class TransitionDictionary<SM extends StateMachine<S, E>, S extends Enum<
 	}
 
 	/**
-	 * Returns a list of transitions for the given event.
+	 * Returns a list of transitions for the given event. The list is not copied
+	 * and must not be modified.
 	 *
 	 * @param eventId the event id
 	 * @return a list of transitions
 	 */
 	public List<Transition<SM, S, E>> getTransitions(final E eventId) {
-		return new ArrayList<>(this.transitions.get(eventId));
+		return this.transitions.get(eventId);
+	}
+
+	/**
+	 * Returns the events for which transitions are defined.
+	 *
+	 * @return the events
+	 */
+	public Set<E> getEvents() {
+		return Collections.unmodifiableSet(this.transitions.keySet());
 	}
 
 }
@@ -0,0 +1,123 @@
+package ch.bbv.fsm.impl.internal.statemachine.transition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.internal.statemachine.state.InternalState;
+
+/**
+ * A transition together with the precomputed states to exit and to enter when
+ * the transition is fired from a given active state.
+ * <p>
+ * The paths are computed once when the definition is compiled, so firing the
+ * transition is a linear loop of exit actions, transition actions and entry
+ * actions instead of the recursive traversal in
+ * {@link Transition#fire(TransitionContext)}.
+ *
+ * @author Ueli Kurmann
+ *
+ * @param <SM> the type of state machine
+ * @param <S>  the type of the states
+ * @param <E>  the type of the events
+ */
+final class TransitionPath<SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> {
+
+	private final Transition<SM, S, E> transition;
+
+	/**
+	 * The states to exit, from the active state upwards.
+	 */
+	private final InternalState<SM, S, E>[] exits;
+
+	/**
+	 * The states to enter, from the top down to the target state.
+	 */
+	private final InternalState<SM, S, E>[] entries;
+
+	/**
+	 * Creates the path of the transition for the given active state.
+	 *
+	 * @param transition  the transition
+	 * @param activeState the active state when the transition is fired. This is
+	 *                    the source state of the transition or one of its sub
+	 *                    states.
+	 */
+	@SuppressWarnings("unchecked")
+	TransitionPath(final Transition<SM, S, E> transition, final InternalState<SM, S, E> activeState) {
+		this.transition = transition;
+
+		final List<InternalState<SM, S, E>> exitList = new ArrayList<>();
+		final List<InternalState<SM, S, E>> entryList = new ArrayList<>();
+		if (!transition.isInternalTransition()) {
+			for (InternalState<SM, S, E> o = activeState; o != transition.getSource(); o = o.getSuperState()) {
+				exitList.add(o);
+			}
+			collect(transition.getSource(), transition.getTarget(), exitList, entryList);
+		}
+		this.exits = exitList.toArray(new InternalState[exitList.size()]);
+		this.entries = entryList.toArray(new InternalState[entryList.size()]);
+	}
+
+	/**
+	 * Collects the states to exit and to enter. Follows the same scenarios as the
+	 * recursive traversal of {@link Transition}.
+	 */
+	private void collect(final InternalState<SM, S, E> source, final InternalState<SM, S, E> target,
+			final List<InternalState<SM, S, E>> exitList, final List<InternalState<SM, S, E>> entryList) {
+		if (source == this.transition.getTarget()) {
+			exitList.add(source);
+			entryList.add(this.transition.getTarget());
+		} else if (source == target) {
+			return;
+		} else if (source.getSuperState() == target.getSuperState()) {
+			exitList.add(source);
+			entryList.add(target);
+		} else if (source.getLevel() > target.getLevel()) {
+			exitList.add(source);
+			collect(source.getSuperState(), target, exitList, entryList);
+		} else if (source.getLevel() < target.getLevel()) {
+			collect(source, target.getSuperState(), exitList, entryList);
+			entryList.add(target);
+		} else {
+			exitList.add(source);
+			collect(source.getSuperState(), target.getSuperState(), exitList, entryList);
+			entryList.add(target);
+		}
+	}
+
+	/**
+	 * Fires the transition.
+	 *
+	 * @param context the event context.
+	 * @return The result of the transition.
+	 */
+	@SuppressWarnings("unchecked")
+	TransitionResult<SM, S, E> fire(final TransitionContext<SM, S, E> context) {
+		final Object[] eventArguments = context.getEventArguments();
+		if (!this.transition.shouldFire(eventArguments, context)) {
+			return TransitionResult.getNotFired();
+		}
+
+		context.getNotifier().onTransitionBegin(context);
+
+		if (this.transition.isInternalTransition()) {
+			this.transition.performActions(eventArguments, context);
+			return context.fired(context.getState());
+		}
+
+		for (final InternalState<SM, S, E> state : this.exits) {
+			state.exit(context);
+		}
+		this.transition.performActions(eventArguments, context);
+		for (final InternalState<SM, S, E> state : this.entries) {
+			state.entry(context);
+		}
+		return context.fired(this.transition.getTarget().enterByHistory(context));
+	}
+
+	@Override
+	public String toString() {
+		return this.transition.toString();
+	}
+}
@@ -35,9 +35,15 @@ public class TransitionResult<TStateMachine extends StateMachine<S, E>, S extend
 	/**
 	 * This value represents that no transition was fired.
 	 */
-	private final boolean fired;
-	private final InternalState<TStateMachine, S, E> newState;
-	private final List<? extends Throwable> exceptions;
+	@SuppressWarnings("rawtypes")
+	private static final TransitionResult NOT_FIRED = new TransitionResult(false, null, null);
+
+	/**
+	 * <code>true</code> if a transition was fired.
+	 */
+	private boolean fired;
+	private InternalState<TStateMachine, S, E> newState;
+	private List<? extends Throwable> exceptions;
 
 	/**
 	 * Initializes a new instance of the TransitionResultImpl class.
@@ -76,11 +82,26 @@ public class TransitionResult<TStateMachine extends StateMachine<S, E>, S extend
 	}
 
 	/**
-	 * Creates a not fired result.
+	 * Marks this result as fired. Only used on results owned by a
+	 * {@link TransitionContext}.
+	 *
+	 * @param newState   the new state
+	 * @param exceptions the exceptions
+	 * @return this result
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	public static TransitionResult getNotFired() {
-		return new TransitionResult(false, null, null);
+	TransitionResult<TStateMachine, S, E> fired(final InternalState<TStateMachine, S, E> newState,
+			final List<? extends Throwable> exceptions) {
+		this.fired = true;
+		this.newState = newState;
+		this.exceptions = exceptions;
+		return this;
+	}
 
+	/**
+	 * Returns the not fired result.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static TransitionResult getNotFired() {
+		return NOT_FIRED;
 	}
 }
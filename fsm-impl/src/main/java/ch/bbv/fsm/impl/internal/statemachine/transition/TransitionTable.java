@@ -0,0 +1,147 @@
+package ch.bbv.fsm.impl.internal.statemachine.transition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.internal.statemachine.state.InternalState;
+import ch.bbv.fsm.impl.internal.statemachine.state.StateDictionary;
+
+/**
+ * Read-only transition table of a compiled state machine definition.
+ * <p>
+ * The transitions are resolved into a <code>[stateOrdinal][eventOrdinal]</code>
+ * table. The transitions of the super states are flattened in after the
+ * transitions of the state itself, so that dispatching an event does not need
+ * to walk up the state hierarchy any longer. Each transition is stored with the
+ * precomputed states to exit and to enter from the active state of its row, see
+ * {@link TransitionPath}.
+ *
+ * @author Ueli Kurmann
+ *
+ * @param <SM> the type of state machine
+ * @param <S>  the type of the states
+ * @param <E>  the type of the events
+ */
+public final class TransitionTable<SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> {
+
+	/**
+	 * The candidate transitions per state and event ordinal. <code>null</code> if
+	 * there is no transition.
+	 */
+	private final TransitionPath<SM, S, E>[][][] transitions;
+
+	/**
+	 * The states by their ordinal. <code>null</code> for states which are not
+	 * defined.
+	 */
+	private final InternalState<SM, S, E>[] states;
+
+	private TransitionTable(final TransitionPath<SM, S, E>[][][] transitions, final InternalState<SM, S, E>[] states) {
+		this.transitions = transitions;
+		this.states = states;
+	}
+
+	/**
+	 * Compiles the transition table of the given states.
+	 *
+	 * @param states       the states of the definition
+	 * @param initialState the initial state (used to determine the state
+	 *                     enumeration)
+	 * @return the transition table
+	 */
+	@SuppressWarnings("unchecked")
+	public static <SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> TransitionTable<SM, S, E> compile(
+			final StateDictionary<SM, S, E> states, final S initialState) {
+		final int numberOfStates = initialState.getDeclaringClass().getEnumConstants().length;
+		int numberOfEvents = 0;
+		for (final InternalState<SM, S, E> state : states.getStates()) {
+			for (final E eventId : state.getTransitions().getEvents()) {
+				numberOfEvents = Math.max(numberOfEvents, eventId.ordinal() + 1);
+			}
+		}
+
+		final InternalState<SM, S, E>[] statesByOrdinal = new InternalState[numberOfStates];
+		final TransitionPath<SM, S, E>[][][] table = new TransitionPath[numberOfStates][][];
+		for (final InternalState<SM, S, E> state : states.getStates()) {
+			statesByOrdinal[state.getId().ordinal()] = state;
+			table[state.getId().ordinal()] = compile(state, numberOfEvents);
+		}
+		return new TransitionTable<>(table, statesByOrdinal);
+	}
+
+	/**
+	 * Compiles the transitions of a single state including the transitions of its
+	 * super states.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <SM extends StateMachine<S, E>, S extends Enum<?>, E extends Enum<?>> TransitionPath<SM, S, E>[][] compile(
+			final InternalState<SM, S, E> state, final int numberOfEvents) {
+		final List<List<TransitionPath<SM, S, E>>> candidates = new ArrayList<>(numberOfEvents);
+		for (int i = 0; i < numberOfEvents; i++) {
+			candidates.add(new ArrayList<>());
+		}
+		for (InternalState<SM, S, E> s = state; s != null; s = s.getSuperState()) {
+			for (final E eventId : s.getTransitions().getEvents()) {
+				for (final Transition<SM, S, E> transition : s.getTransitions().getTransitions(eventId)) {
+					candidates.get(eventId.ordinal()).add(new TransitionPath<>(transition, state));
+				}
+			}
+		}
+
+		final TransitionPath<SM, S, E>[][] result = new TransitionPath[numberOfEvents][];
+		for (int i = 0; i < numberOfEvents; i++) {
+			if (!candidates.get(i).isEmpty()) {
+				result[i] = candidates.get(i).toArray(new TransitionPath[candidates.get(i).size()]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fires the event of the context on the source state of the context.
+	 *
+	 * @param context the event context.
+	 * @return the result of the transition.
+	 */
+	@SuppressWarnings("unchecked")
+	public TransitionResult<SM, S, E> fire(final TransitionContext<SM, S, E> context) {
+		final TransitionPath<SM, S, E>[] candidates = getTransitions(context.getState().getId(), context.getEventId());
+		if (candidates != null) {
+			for (final TransitionPath<SM, S, E> candidate : candidates) {
+				final TransitionResult<SM, S, E> result = candidate.fire(context);
+				if (result.isFired()) {
+					return result;
+				}
+			}
+		}
+		return TransitionResult.getNotFired();
+	}
+
+	/**
+	 * Returns the candidate transitions for the given state and event. The
+	 * transitions of the state come first, followed by the ones of its super
+	 * states.
+	 *
+	 * @param stateId the state id
+	 * @param eventId the event id
+	 * @return the transitions or <code>null</code> if there is none.
+	 */
+	TransitionPath<SM, S, E>[] getTransitions(final S stateId, final E eventId) {
+		final TransitionPath<SM, S, E>[][] transitionsOfState = this.transitions[stateId.ordinal()];
+		if (transitionsOfState == null || eventId.ordinal() >= transitionsOfState.length) {
+			return null;
+		}
+		return transitionsOfState[eventId.ordinal()];
+	}
+
+	/**
+	 * Returns the state with the given id.
+	 *
+	 * @param stateId the state id
+	 * @return the state or <code>null</code> if the state is not defined.
+	 */
+	public InternalState<SM, S, E> getState(final S stateId) {
+		return this.states[stateId.ordinal()];
+	}
+}
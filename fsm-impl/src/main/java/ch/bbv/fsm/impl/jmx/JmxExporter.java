@@ -0,0 +1,266 @@
+package ch.bbv.fsm.impl.jmx;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.AbstractStateMachineDefinition;
+import ch.bbv.fsm.impl.Instrumentation;
+import ch.bbv.fsm.impl.metrics.Histogram;
+
+/**
+ * Registers the management beans of a state machine definition and of its
+ * state machines, see {@link AbstractStateMachineDefinition#enableJmx(String)}.
+ * The bean of a state machine is registered when the state machine is created
+ * or activated and unregistered when it is terminated or passivated. The beans
+ * only hold their state machines weakly, the bean of a state machine which is
+ * dropped without terminating it is unregistered once it is garbage collected.
+ * <p>
+ * The beans collect their values as an {@link Instrumentation} of the state
+ * machine, collecting does not lock.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public final class JmxExporter<S extends Enum<?>, E extends Enum<?>> implements StateMachineDefinitionMXBean {
+
+	/**
+	 * The domain of the names of the management beans.
+	 */
+	public static final String DOMAIN = "ch.bbv.fsm";
+
+	/**
+	 * The percentile of the processing time exposed by the beans.
+	 */
+	static final double PROCESSING_TIME_PERCENTILE = 99;
+
+	private static final Logger LOG = LoggerFactory.getLogger(JmxExporter.class);
+
+	private final String name;
+
+	private final MBeanServer server;
+
+	private final ObjectName objectName;
+
+	private final Set<StateMachineMonitor<S, E>> stateMachines = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The references of the garbage collected state machines.
+	 */
+	private final ReferenceQueue<StateMachine<S, E>> collected = new ReferenceQueue<>();
+
+	private volatile boolean closed;
+
+	/**
+	 * The values of the terminated state machines.
+	 */
+	private final LongAdder terminatedProcessedEvents = new LongAdder();
+
+	private final LongAdder terminatedDeclinedEvents = new LongAdder();
+
+	private final LongAdder terminatedExceptions = new LongAdder();
+
+	private final Histogram processingTime = new Histogram();
+
+	/**
+	 * Creates the exporter and registers the bean of the definition.
+	 *
+	 * @param name   the name of the definition.
+	 * @param server the server to register the beans with.
+	 * @throws IllegalArgumentException if a definition with the same name is
+	 *                                  already registered.
+	 */
+	public JmxExporter(final String name, final MBeanServer server) {
+		this.name = name;
+		this.server = server;
+		this.objectName = objectName("type=StateMachineDefinition,name=" + quote(name));
+		try {
+			server.registerMBean(this, this.objectName);
+		} catch (final JMException e) {
+			throw new IllegalArgumentException("The state machine definition " + name + " can not be registered.", e);
+		}
+	}
+
+	/**
+	 * Registers the bean of a state machine. If a state machine with the same
+	 * name is registered already, the state machine is only included in the
+	 * values of the definition.
+	 *
+	 * @param stateMachine     the state machine.
+	 * @param stateMachineName the name of the state machine.
+	 * @return the instrumentation collecting the values of the bean, must be
+	 *         added to the state machine.
+	 */
+	public Instrumentation<S, E> export(final StateMachine<S, E> stateMachine, final String stateMachineName) {
+		removeCollected();
+		final StateMachineMonitor<S, E> monitor = new StateMachineMonitor<>(this, stateMachine, stateMachineName,
+				this.collected);
+		add(monitor);
+		return monitor;
+	}
+
+	/**
+	 * Registers the bean of a new or activated state machine.
+	 */
+	void add(final StateMachineMonitor<S, E> monitor) {
+		if (this.closed || !this.stateMachines.add(monitor)) {
+			return;
+		}
+		final ObjectName monitorName = objectName(
+				"type=StateMachine,definition=" + quote(this.name) + ",name=" + quote(monitor.getName()));
+		try {
+			this.server.registerMBean(monitor, monitorName);
+			monitor.setObjectName(monitorName);
+		} catch (final JMException e) {
+			LOG.warn("The state machine {} can not be registered: {}", monitor.getName(), e.toString());
+		}
+	}
+
+	/**
+	 * Unregisters the beans of the definition and of its state machines.
+	 */
+	public void close() {
+		this.closed = true;
+		for (final StateMachineMonitor<S, E> monitor : this.stateMachines) {
+			remove(monitor);
+		}
+		unregister(this.objectName);
+	}
+
+	/**
+	 * Unregisters the bean of a terminated, passivated or garbage collected state
+	 * machine. Its counters are added to the values of the definition and reset.
+	 */
+	void remove(final StateMachineMonitor<S, E> monitor) {
+		if (this.stateMachines.remove(monitor)) {
+			this.terminatedProcessedEvents.add(monitor.getProcessedEvents());
+			this.terminatedDeclinedEvents.add(monitor.getDeclinedEvents());
+			this.terminatedExceptions.add(monitor.getExceptions());
+			monitor.reset();
+			final ObjectName monitorName = monitor.getObjectName();
+			if (monitorName != null) {
+				monitor.setObjectName(null);
+				unregister(monitorName);
+			}
+		}
+	}
+
+	/**
+	 * Unregisters the beans of the garbage collected state machines.
+	 */
+	@SuppressWarnings("unchecked")
+	private void removeCollected() {
+		StateMachineMonitor.Reference<S, E> reference;
+		while ((reference = (StateMachineMonitor.Reference<S, E>) this.collected.poll()) != null) {
+			remove(reference.getMonitor());
+		}
+	}
+
+	void recordProcessingTime(final long nanos) {
+		this.processingTime.record(nanos);
+	}
+
+	private void unregister(final ObjectName name) {
+		try {
+			this.server.unregisterMBean(name);
+		} catch (final JMException e) {
+			LOG.warn("The management bean {} can not be unregistered: {}", name, e.toString());
+		}
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public int getStateMachines() {
+		removeCollected();
+		return this.stateMachines.size();
+	}
+
+	@Override
+	public long getQueuedEvents() {
+		long queued = 0;
+		for (final StateMachineMonitor<S, E> monitor : this.stateMachines) {
+			queued += monitor.getQueuedEvents();
+		}
+		return queued;
+	}
+
+	@Override
+	public long getProcessedEvents() {
+		long processed = this.terminatedProcessedEvents.sum();
+		for (final StateMachineMonitor<S, E> monitor : this.stateMachines) {
+			processed += monitor.getProcessedEvents();
+		}
+		return processed;
+	}
+
+	@Override
+	public long getDeclinedEvents() {
+		long declined = this.terminatedDeclinedEvents.sum();
+		for (final StateMachineMonitor<S, E> monitor : this.stateMachines) {
+			declined += monitor.getDeclinedEvents();
+		}
+		return declined;
+	}
+
+	@Override
+	public long getExceptions() {
+		long exceptions = this.terminatedExceptions.sum();
+		for (final StateMachineMonitor<S, E> monitor : this.stateMachines) {
+			exceptions += monitor.getExceptions();
+		}
+		return exceptions;
+	}
+
+	@Override
+	public double getProcessingTimeMean() {
+		return this.processingTime.snapshot().getMean();
+	}
+
+	@Override
+	public long getProcessingTime99thPercentile() {
+		return this.processingTime.snapshot().getValueAtPercentile(PROCESSING_TIME_PERCENTILE);
+	}
+
+	@Override
+	public long getProcessingTimeMax() {
+		return this.processingTime.snapshot().getMax();
+	}
+
+	/**
+	 * Quotes a value of an object name if it is empty or contains a reserved
+	 * character.
+	 */
+	private static String quote(final String value) {
+		if (value.isEmpty()) {
+			return ObjectName.quote(value);
+		}
+		for (final char c : value.toCharArray()) {
+			if (",=:\"*?\n\\".indexOf(c) >= 0) {
+				return ObjectName.quote(value);
+			}
+		}
+		return value;
+	}
+
+	private static ObjectName objectName(final String properties) {
+		try {
+			return new ObjectName(DOMAIN + ":" + properties);
+		} catch (final MalformedObjectNameException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+}
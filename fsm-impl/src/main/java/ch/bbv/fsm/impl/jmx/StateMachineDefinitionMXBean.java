@@ -0,0 +1,56 @@
+package ch.bbv.fsm.impl.jmx;
+
+/**
+ * Management interface of a state machine definition, registered as
+ * <code>ch.bbv.fsm:type=StateMachineDefinition,name=&lt;name&gt;</code>. The
+ * values are aggregated over all state machines created from the definition
+ * while the management beans are enabled. All durations are in nanoseconds.
+ */
+public interface StateMachineDefinitionMXBean {
+
+	/**
+	 * Returns the name of the definition.
+	 */
+	String getName();
+
+	/**
+	 * Returns the number of state machines which are not terminated.
+	 */
+	int getStateMachines();
+
+	/**
+	 * Returns the number of queued events of the state machines which are not
+	 * terminated.
+	 */
+	long getQueuedEvents();
+
+	/**
+	 * Returns the number of processed events, completed or declined.
+	 */
+	long getProcessedEvents();
+
+	/**
+	 * Returns the number of declined events.
+	 */
+	long getDeclinedEvents();
+
+	/**
+	 * Returns the number of exceptions thrown by actions and guards.
+	 */
+	long getExceptions();
+
+	/**
+	 * Returns the mean processing time of the events.
+	 */
+	double getProcessingTimeMean();
+
+	/**
+	 * Returns the 99th percentile of the processing time of the events.
+	 */
+	long getProcessingTime99thPercentile();
+
+	/**
+	 * Returns the longest processing time of an event.
+	 */
+	long getProcessingTimeMax();
+}
@@ -0,0 +1,78 @@
+package ch.bbv.fsm.impl.jmx;
+
+/**
+ * Management interface of a state machine, registered as
+ * <code>ch.bbv.fsm:type=StateMachine,definition=&lt;definition&gt;,name=&lt;name&gt;</code>.
+ * All durations are in nanoseconds.
+ */
+public interface StateMachineMXBean {
+
+	/**
+	 * Returns the name of the state machine.
+	 */
+	String getName();
+
+	/**
+	 * Returns the name of the definition of the state machine.
+	 */
+	String getDefinition();
+
+	/**
+	 * Returns the current state, <code>null</code> if the state machine is not
+	 * started.
+	 */
+	String getCurrentState();
+
+	/**
+	 * Returns the lifecycle of the state machine.
+	 */
+	String getStatus();
+
+	/**
+	 * Returns the number of queued events.
+	 */
+	int getQueuedEvents();
+
+	/**
+	 * Returns the number of processed events, completed or declined.
+	 */
+	long getProcessedEvents();
+
+	/**
+	 * Returns the number of declined events.
+	 */
+	long getDeclinedEvents();
+
+	/**
+	 * Returns the number of exceptions thrown by actions and guards.
+	 */
+	long getExceptions();
+
+	/**
+	 * Returns the last exception thrown by an action or a guard,
+	 * <code>null</code> if none was thrown.
+	 */
+	String getLastException();
+
+	/**
+	 * Returns for how long the event being processed is processed,
+	 * <code>0</code> if no event is being processed. A growing value indicates a
+	 * stuck state machine.
+	 */
+	long getCurrentProcessingTime();
+
+	/**
+	 * Returns the mean processing time of the events.
+	 */
+	double getProcessingTimeMean();
+
+	/**
+	 * Returns the 99th percentile of the processing time of the events.
+	 */
+	long getProcessingTime99thPercentile();
+
+	/**
+	 * Returns the longest processing time of an event.
+	 */
+	long getProcessingTimeMax();
+}
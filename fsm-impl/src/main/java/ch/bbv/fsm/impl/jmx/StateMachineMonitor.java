@@ -0,0 +1,215 @@
+package ch.bbv.fsm.impl.jmx;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import javax.management.ObjectName;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.Instrumentation;
+import ch.bbv.fsm.impl.metrics.Histogram;
+
+/**
+ * The management bean of a single state machine. The counters are only written
+ * by the thread processing the events of the state machine, so they are plain
+ * volatile fields which are read by the management threads.
+ * <p>
+ * The bean only holds the state machine weakly, so that registering it does not
+ * keep a dropped state machine alive.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+final class StateMachineMonitor<S extends Enum<?>, E extends Enum<?>> implements StateMachineMXBean, Instrumentation<S, E> {
+
+	private final JmxExporter<S, E> exporter;
+
+	private final Reference<S, E> stateMachine;
+
+	private final String name;
+
+	private final Histogram processingTime = new Histogram();
+
+	/**
+	 * The name the bean is registered with, <code>null</code> if it is not
+	 * registered.
+	 */
+	private volatile ObjectName objectName;
+
+	private volatile long processedEvents;
+
+	private volatile long declinedEvents;
+
+	private volatile long exceptions;
+
+	private volatile Exception lastException;
+
+	private volatile long processingSince;
+
+	private volatile boolean processing;
+
+	StateMachineMonitor(final JmxExporter<S, E> exporter, final StateMachine<S, E> stateMachine, final String name,
+			final ReferenceQueue<StateMachine<S, E>> collected) {
+		this.exporter = exporter;
+		this.stateMachine = new Reference<>(stateMachine, collected, this);
+		this.name = name;
+	}
+
+	/**
+	 * Resets the counters after they were added to the values of the definition.
+	 */
+	void reset() {
+		this.processedEvents = 0;
+		this.declinedEvents = 0;
+		this.exceptions = 0;
+	}
+
+	ObjectName getObjectName() {
+		return this.objectName;
+	}
+
+	void setObjectName(final ObjectName objectName) {
+		this.objectName = objectName;
+	}
+
+	@Override
+	public void onEventDequeued(final String stateMachineName, final E eventId, final int queueDepth) {
+		this.processingSince = System.nanoTime();
+		this.processing = true;
+	}
+
+	@Override
+	public void onTransitionCompleted(final String stateMachineName, final S sourceStateId, final E eventId,
+			final S targetStateId, final long nanos) {
+		processed(nanos);
+	}
+
+	@Override
+	public void onTransitionDeclined(final String stateMachineName, final S stateId, final E eventId, final long nanos) {
+		this.declinedEvents = this.declinedEvents + 1;
+		processed(nanos);
+	}
+
+	private void processed(final long nanos) {
+		this.processing = false;
+		this.processedEvents = this.processedEvents + 1;
+		this.processingTime.record(nanos);
+		this.exporter.recordProcessingTime(nanos);
+	}
+
+	@Override
+	public void onExceptionThrown(final String stateMachineName, final Exception exception) {
+		this.exceptions = this.exceptions + 1;
+		this.lastException = exception;
+	}
+
+	@Override
+	public void onPassivated(final String stateMachineName) {
+		this.exporter.remove(this);
+	}
+
+	@Override
+	public void onActivated(final String stateMachineName, final S stateId) {
+		this.exporter.add(this);
+	}
+
+	@Override
+	public void onTerminated(final String stateMachineName) {
+		this.exporter.remove(this);
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public String getDefinition() {
+		return this.exporter.getName();
+	}
+
+	@Override
+	public String getCurrentState() {
+		final StateMachine<S, E> machine = this.stateMachine.get();
+		final S state = machine == null ? null : machine.getCurrentState();
+		return state == null ? null : state.name();
+	}
+
+	@Override
+	public String getStatus() {
+		final StateMachine<S, E> machine = this.stateMachine.get();
+		return machine == null ? StateMachine.LiveCycle.Terminated.name() : machine.getStatus().name();
+	}
+
+	@Override
+	public int getQueuedEvents() {
+		final StateMachine<S, E> machine = this.stateMachine.get();
+		return machine == null ? 0 : machine.numberOfQueuedEvents();
+	}
+
+	@Override
+	public long getProcessedEvents() {
+		return this.processedEvents;
+	}
+
+	@Override
+	public long getDeclinedEvents() {
+		return this.declinedEvents;
+	}
+
+	@Override
+	public long getExceptions() {
+		return this.exceptions;
+	}
+
+	@Override
+	public String getLastException() {
+		final Exception exception = this.lastException;
+		return exception == null ? null : exception.toString();
+	}
+
+	@Override
+	public long getCurrentProcessingTime() {
+		if (!this.processing) {
+			return 0;
+		}
+		return Math.max(0, System.nanoTime() - this.processingSince);
+	}
+
+	@Override
+	public double getProcessingTimeMean() {
+		return this.processingTime.snapshot().getMean();
+	}
+
+	@Override
+	public long getProcessingTime99thPercentile() {
+		return this.processingTime.snapshot().getValueAtPercentile(JmxExporter.PROCESSING_TIME_PERCENTILE);
+	}
+
+	@Override
+	public long getProcessingTimeMax() {
+		return this.processingTime.snapshot().getMax();
+	}
+
+	/**
+	 * The weak reference to the state machine, enqueued with its monitor once the
+	 * state machine is garbage collected.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	static final class Reference<S extends Enum<?>, E extends Enum<?>> extends WeakReference<StateMachine<S, E>> {
+
+		private final StateMachineMonitor<S, E> monitor;
+
+		Reference(final StateMachine<S, E> stateMachine, final ReferenceQueue<StateMachine<S, E>> queue,
+				final StateMachineMonitor<S, E> monitor) {
+			super(stateMachine, queue);
+			this.monitor = monitor;
+		}
+
+		StateMachineMonitor<S, E> getMonitor() {
+			return this.monitor;
+		}
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Management beans of the state machines of a definition.
+ */
+package ch.bbv.fsm.impl.jmx;
@@ -0,0 +1,118 @@
+package ch.bbv.fsm.impl.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of non-negative values with log-linear buckets: each
+ * power of two is divided into {@value #SUB_BUCKETS} buckets, so the bucket of
+ * a value is at most 1/{@value #SUB_BUCKETS} of the value wide. Values above
+ * {@link #MAX_VALUE} are recorded as {@link #MAX_VALUE}.
+ * <p>
+ * Recording a value does not allocate and does not lock. The bucket counts are
+ * striped by thread so that threads recording concurrently rarely update the
+ * same counter, a stripe is only allocated when a thread of its stripe records
+ * the first value.
+ */
+public final class Histogram {
+
+	/**
+	 * The number of bits of the largest value recorded exactly.
+	 */
+	private static final int VALUE_BITS = 40;
+
+	/**
+	 * The largest value which is recorded exactly, about 18 minutes in
+	 * nanoseconds.
+	 */
+	public static final long MAX_VALUE = (1L << VALUE_BITS) - 1;
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+	private static final int STRIPES = stripes();
+
+	private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+	private final AtomicLong max = new AtomicLong(-1);
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value the value, negative values are recorded as <code>0</code>.
+	 */
+	public void record(final long value) {
+		final long v = Math.min(Math.max(value, 0), MAX_VALUE);
+		final int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		AtomicLongArray counts = this.stripes.get(stripe);
+		if (counts == null) {
+			this.stripes.compareAndSet(stripe, null, new AtomicLongArray(BUCKETS));
+			counts = this.stripes.get(stripe);
+		}
+		counts.incrementAndGet(index(v));
+		this.sum.add(v);
+		long current;
+		do {
+			current = this.min.get();
+		} while (v < current && !this.min.compareAndSet(current, v));
+		do {
+			current = this.max.get();
+		} while (v > current && !this.max.compareAndSet(current, v));
+	}
+
+	/**
+	 * Returns a snapshot of the recorded values. Values recorded concurrently may
+	 * be partially included.
+	 *
+	 * @return the snapshot.
+	 */
+	public HistogramSnapshot snapshot() {
+		final long[] counts = new long[BUCKETS];
+		for (int s = 0; s < STRIPES; s++) {
+			final AtomicLongArray stripe = this.stripes.get(s);
+			if (stripe != null) {
+				for (int i = 0; i < BUCKETS; i++) {
+					counts[i] += stripe.get(i);
+				}
+			}
+		}
+		return new HistogramSnapshot(counts, this.sum.sum(), this.min.get(), this.max.get());
+	}
+
+	/**
+	 * Returns the bucket of a value.
+	 */
+	static int index(final long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * Returns the largest value of a bucket.
+	 */
+	static long highestValue(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		final long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	private static int stripes() {
+		final int processors = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+		return Integer.highestOneBit(processors * 2 - 1);
+	}
+}
@@ -0,0 +1,102 @@
+package ch.bbv.fsm.impl.metrics;
+
+/**
+ * Immutable snapshot of a {@link Histogram}.
+ */
+public final class HistogramSnapshot {
+
+	private static final double HUNDRED_PERCENT = 100;
+
+	private static final double MEDIAN = 50;
+
+	private static final double P99 = 99;
+
+	private final long[] counts;
+
+	private final long count;
+
+	private final long sum;
+
+	private final long min;
+
+	private final long max;
+
+	HistogramSnapshot(final long[] counts, final long sum, final long min, final long max) {
+		this.counts = counts;
+		long total = 0;
+		for (final long c : counts) {
+			total += c;
+		}
+		this.count = total;
+		this.sum = sum;
+		this.min = total == 0 ? 0 : min;
+		this.max = total == 0 ? 0 : max;
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the sum of the recorded values.
+	 */
+	public long getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * Returns the smallest recorded value, <code>0</code> if there are none.
+	 */
+	public long getMin() {
+		return this.min;
+	}
+
+	/**
+	 * Returns the largest recorded value, <code>0</code> if there are none.
+	 */
+	public long getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Returns the mean of the recorded values, <code>0</code> if there are none.
+	 */
+	public double getMean() {
+		return this.count == 0 ? 0 : (double) this.sum / this.count;
+	}
+
+	/**
+	 * Returns the value below which the given percentage of the recorded values
+	 * are. The value is the upper bound of its bucket, at most the largest
+	 * recorded value.
+	 *
+	 * @param percentile the percentile between 0 and 100.
+	 * @return the value, <code>0</code> if there are no values.
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (percentile < 0 || percentile > HUNDRED_PERCENT) {
+			throw new IllegalArgumentException("The percentile must be between 0 and 100 but is " + percentile + ".");
+		}
+		if (this.count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(percentile / HUNDRED_PERCENT * this.count));
+		long seen = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			seen += this.counts[i];
+			if (seen >= rank) {
+				return Math.max(this.min, Math.min(Histogram.highestValue(i), this.max));
+			}
+		}
+		return this.max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d, min=%d, mean=%.1f, p50=%d, p99=%d, max=%d", this.count, this.min, getMean(),
+				getValueAtPercentile(MEDIAN), getValueAtPercentile(P99), this.max);
+	}
+}
@@ -0,0 +1,242 @@
+package ch.bbv.fsm.impl.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the {@link StateMachineMetrics} of a state machine
+ * definition. All durations are in nanoseconds.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public final class MetricsSnapshot<S extends Enum<S>, E extends Enum<E>> {
+
+	private final List<TransitionMetrics<S, E>> transitions;
+
+	private final List<DeclinedMetrics<S, E>> declined;
+
+	private final List<ExecutionMetrics<S, E>> guards;
+
+	private final List<ExecutionMetrics<S, E>> actions;
+
+	private final Map<S, HistogramSnapshot> dwellTimes;
+
+	private final HistogramSnapshot queueDepth;
+
+	MetricsSnapshot(final List<TransitionMetrics<S, E>> transitions, final List<DeclinedMetrics<S, E>> declined,
+			final List<ExecutionMetrics<S, E>> guards, final List<ExecutionMetrics<S, E>> actions,
+			final Map<S, HistogramSnapshot> dwellTimes, final HistogramSnapshot queueDepth) {
+		this.transitions = Collections.unmodifiableList(transitions);
+		this.declined = Collections.unmodifiableList(declined);
+		this.guards = Collections.unmodifiableList(guards);
+		this.actions = Collections.unmodifiableList(actions);
+		this.dwellTimes = Collections.unmodifiableMap(dwellTimes);
+		this.queueDepth = queueDepth;
+	}
+
+	/**
+	 * Returns the completed transitions per source state, event and target state.
+	 */
+	public List<TransitionMetrics<S, E>> getTransitions() {
+		return this.transitions;
+	}
+
+	/**
+	 * Returns the number of completed transitions from the source state on the
+	 * event to the target state.
+	 *
+	 * @param source the source state.
+	 * @param event  the event.
+	 * @param target the target state.
+	 * @return the number of transitions.
+	 */
+	public long getTransitionCount(final S source, final E event, final S target) {
+		for (final TransitionMetrics<S, E> transition : this.transitions) {
+			if (transition.getSource() == source && transition.getEvent() == event && transition.getTarget() == target) {
+				return transition.getDuration().getCount();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the declined events per state and event.
+	 */
+	public List<DeclinedMetrics<S, E>> getDeclined() {
+		return this.declined;
+	}
+
+	/**
+	 * Returns the number of declined events in the state.
+	 *
+	 * @param state the state.
+	 * @param event the event.
+	 * @return the number of declined events.
+	 */
+	public long getDeclinedCount(final S state, final E event) {
+		for (final DeclinedMetrics<S, E> d : this.declined) {
+			if (d.getState() == state && d.getEvent() == event) {
+				return d.getCount();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the execution times of the guards per source state and event.
+	 */
+	public List<ExecutionMetrics<S, E>> getGuards() {
+		return this.guards;
+	}
+
+	/**
+	 * Returns the execution times of the transition actions per source state and
+	 * event.
+	 */
+	public List<ExecutionMetrics<S, E>> getActions() {
+		return this.actions;
+	}
+
+	/**
+	 * Returns the time spent in each state until it was left.
+	 */
+	public Map<S, HistogramSnapshot> getDwellTimes() {
+		return this.dwellTimes;
+	}
+
+	/**
+	 * Returns the number of events still queued when an event was taken for
+	 * processing.
+	 */
+	public HistogramSnapshot getQueueDepth() {
+		return this.queueDepth;
+	}
+
+	/**
+	 * The completed transitions from a source state on an event to a target state.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	public static final class TransitionMetrics<S extends Enum<S>, E extends Enum<E>> {
+
+		private final S source;
+
+		private final E event;
+
+		private final S target;
+
+		private final HistogramSnapshot duration;
+
+		TransitionMetrics(final S source, final E event, final S target, final HistogramSnapshot duration) {
+			this.source = source;
+			this.event = event;
+			this.target = target;
+			this.duration = duration;
+		}
+
+		public S getSource() {
+			return this.source;
+		}
+
+		public E getEvent() {
+			return this.event;
+		}
+
+		public S getTarget() {
+			return this.target;
+		}
+
+		/**
+		 * Returns the durations of the transitions, its count is the number of
+		 * transitions.
+		 */
+		public HistogramSnapshot getDuration() {
+			return this.duration;
+		}
+
+		@Override
+		public String toString() {
+			return this.source + " -" + this.event + "-> " + this.target + ": " + this.duration;
+		}
+	}
+
+	/**
+	 * The events declined in a state.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	public static final class DeclinedMetrics<S extends Enum<S>, E extends Enum<E>> {
+
+		private final S state;
+
+		private final E event;
+
+		private final long count;
+
+		DeclinedMetrics(final S state, final E event, final long count) {
+			this.state = state;
+			this.event = event;
+			this.count = count;
+		}
+
+		public S getState() {
+			return this.state;
+		}
+
+		public E getEvent() {
+			return this.event;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		@Override
+		public String toString() {
+			return this.state + " declined " + this.event + ": " + this.count;
+		}
+	}
+
+	/**
+	 * The execution times of the guards or actions of the transitions from a
+	 * state on an event.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	public static final class ExecutionMetrics<S extends Enum<S>, E extends Enum<E>> {
+
+		private final S state;
+
+		private final E event;
+
+		private final HistogramSnapshot duration;
+
+		ExecutionMetrics(final S state, final E event, final HistogramSnapshot duration) {
+			this.state = state;
+			this.event = event;
+			this.duration = duration;
+		}
+
+		public S getState() {
+			return this.state;
+		}
+
+		public E getEvent() {
+			return this.event;
+		}
+
+		public HistogramSnapshot getDuration() {
+			return this.duration;
+		}
+
+		@Override
+		public String toString() {
+			return this.state + " on " + this.event + ": " + this.duration;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package ch.bbv.fsm.impl.metrics;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import ch.bbv.fsm.impl.AbstractStateMachineDefinition;
+import ch.bbv.fsm.impl.Instrumentation;
+import ch.bbv.fsm.impl.metrics.MetricsSnapshot.DeclinedMetrics;
+import ch.bbv.fsm.impl.metrics.MetricsSnapshot.ExecutionMetrics;
+import ch.bbv.fsm.impl.metrics.MetricsSnapshot.TransitionMetrics;
+
+/**
+ * Collects metrics of the state machines of a definition:
+ * <ul>
+ * <li>the number and duration of the transitions per source state, event and
+ * target state,</li>
+ * <li>the number of declined events per state and event,</li>
+ * <li>the execution time of the guards and actions per state and event,</li>
+ * <li>the time spent in each state and</li>
+ * <li>the depth of the event queues when an event is taken for processing.</li>
+ * </ul>
+ * The metrics of all state machines created after the metrics are added to the
+ * definition are aggregated:
+ *
+ * <pre>
+ * StateMachineMetrics&lt;States, Events&gt; metrics = new StateMachineMetrics&lt;&gt;(States.class, Events.class);
+ * definition.addInstrumentation(metrics);
+ * ...
+ * MetricsSnapshot&lt;States, Events&gt; snapshot = metrics.snapshot();
+ * </pre>
+ *
+ * The values are recorded in histograms and counters indexed by the ordinals of
+ * the states and events, recording does not lock and does not allocate once
+ * every combination occurred.
+ *
+ * @see AbstractStateMachineDefinition#addInstrumentation(Instrumentation)
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public class StateMachineMetrics<S extends Enum<S>, E extends Enum<E>> implements Instrumentation<S, E> {
+
+	private final Class<S> stateType;
+
+	private final S[] states;
+
+	private final E[] events;
+
+	/**
+	 * The durations of the transitions indexed by source, event and target.
+	 */
+	private final AtomicReferenceArray<Histogram> transitions;
+
+	/**
+	 * The declined events indexed by state and event.
+	 */
+	private final AtomicReferenceArray<LongAdder> declined;
+
+	/**
+	 * The durations of the guards indexed by state and event.
+	 */
+	private final AtomicReferenceArray<Histogram> guards;
+
+	/**
+	 * The durations of the actions indexed by state and event.
+	 */
+	private final AtomicReferenceArray<Histogram> actions;
+
+	/**
+	 * The dwell times indexed by state.
+	 */
+	private final AtomicReferenceArray<Histogram> dwellTimes;
+
+	private final Histogram queueDepth = new Histogram();
+
+	/**
+	 * Creates empty metrics.
+	 *
+	 * @param stateType the type of the states.
+	 * @param eventType the type of the events.
+	 */
+	public StateMachineMetrics(final Class<S> stateType, final Class<E> eventType) {
+		this.stateType = stateType;
+		this.states = stateType.getEnumConstants();
+		this.events = eventType.getEnumConstants();
+		this.transitions = new AtomicReferenceArray<>(this.states.length * this.events.length * this.states.length);
+		this.declined = new AtomicReferenceArray<>(this.states.length * this.events.length);
+		this.guards = new AtomicReferenceArray<>(this.states.length * this.events.length);
+		this.actions = new AtomicReferenceArray<>(this.states.length * this.events.length);
+		this.dwellTimes = new AtomicReferenceArray<>(this.states.length);
+	}
+
+	@Override
+	public void onEventDequeued(final String stateMachine, final E eventId, final int queueDepth) {
+		this.queueDepth.record(queueDepth);
+	}
+
+	@Override
+	public void onGuardEvaluated(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		get(this.guards, index(stateId, eventId), Histogram::new).record(nanos);
+	}
+
+	@Override
+	public void onActionsPerformed(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		get(this.actions, index(stateId, eventId), Histogram::new).record(nanos);
+	}
+
+	@Override
+	public void onTransitionCompleted(final String stateMachine, final S sourceStateId, final E eventId,
+			final S targetStateId, final long nanos) {
+		final int index = index(sourceStateId, eventId) * this.states.length + targetStateId.ordinal();
+		get(this.transitions, index, Histogram::new).record(nanos);
+	}
+
+	@Override
+	public void onTransitionDeclined(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		get(this.declined, index(stateId, eventId), LongAdder::new).increment();
+	}
+
+	@Override
+	public void onStateLeft(final String stateMachine, final S stateId, final long dwellNanos) {
+		get(this.dwellTimes, stateId.ordinal(), Histogram::new).record(dwellNanos);
+	}
+
+	/**
+	 * Returns a snapshot of the metrics. Values recorded concurrently may be
+	 * partially included.
+	 *
+	 * @return the snapshot.
+	 */
+	public MetricsSnapshot<S, E> snapshot() {
+		final List<TransitionMetrics<S, E>> transitionMetrics = new ArrayList<>();
+		final List<DeclinedMetrics<S, E>> declinedMetrics = new ArrayList<>();
+		final List<ExecutionMetrics<S, E>> guardMetrics = new ArrayList<>();
+		final List<ExecutionMetrics<S, E>> actionMetrics = new ArrayList<>();
+		final Map<S, HistogramSnapshot> dwellTimeMetrics = new EnumMap<>(this.stateType);
+
+		for (final S state : this.states) {
+			for (final E event : this.events) {
+				final int index = index(state, event);
+				for (final S target : this.states) {
+					final Histogram transition = this.transitions.get(index * this.states.length + target.ordinal());
+					if (transition != null) {
+						transitionMetrics.add(new TransitionMetrics<>(state, event, target, transition.snapshot()));
+					}
+				}
+				final LongAdder declinedCount = this.declined.get(index);
+				if (declinedCount != null) {
+					declinedMetrics.add(new DeclinedMetrics<>(state, event, declinedCount.sum()));
+				}
+				final Histogram guard = this.guards.get(index);
+				if (guard != null) {
+					guardMetrics.add(new ExecutionMetrics<>(state, event, guard.snapshot()));
+				}
+				final Histogram action = this.actions.get(index);
+				if (action != null) {
+					actionMetrics.add(new ExecutionMetrics<>(state, event, action.snapshot()));
+				}
+			}
+			final Histogram dwellTime = this.dwellTimes.get(state.ordinal());
+			if (dwellTime != null) {
+				dwellTimeMetrics.put(state, dwellTime.snapshot());
+			}
+		}
+		return new MetricsSnapshot<>(transitionMetrics, declinedMetrics, guardMetrics, actionMetrics, dwellTimeMetrics,
+				this.queueDepth.snapshot());
+	}
+
+	private int index(final S state, final E event) {
+		return state.ordinal() * this.events.length + event.ordinal();
+	}
+
+	/**
+	 * Returns the element at the index, creates it if it does not exist yet.
+	 */
+	private static <T> T get(final AtomicReferenceArray<T> array, final int index, final Supplier<T> factory) {
+		final T existing = array.get(index);
+		if (existing != null) {
+			return existing;
+		}
+		array.compareAndSet(index, null, factory.get());
+		return array.get(index);
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Metrics of the state machines of a definition.
+ */
+package ch.bbv.fsm.impl.metrics;
@@ -0,0 +1,18 @@
+package ch.bbv.fsm;
+
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Runs the state machine test fixtures on a compiled definition.
+ */
+public class CompiledPassiveStateMachineDriverTest extends BaseStateMachineTest {
+
+	@Override
+	protected SimpleStateMachine<States, Events> createTestee(final SimpleStateMachineDefinition<States, Events> definition, final States states) {
+		definition.compile();
+		return definition.createPassiveStateMachine("testee", states);
+	}
+}
@@ -0,0 +1,39 @@
+package ch.bbv.fsm;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Runs the state machine test fixtures on active state machines sharing an
+ * executor.
+ */
+public class SharedExecutorActiveStateMachineDriverTest extends BaseStateMachineTest {
+
+	private static final int WORKERS = 2;
+
+	private static ExecutorService executor;
+
+	@BeforeAll
+	public static void startExecutor() {
+		executor = Executors.newFixedThreadPool(WORKERS);
+	}
+
+	@AfterAll
+	public static void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Override
+	protected SimpleStateMachine<States, Events> createTestee(final SimpleStateMachineDefinition<States, Events> definition,
+			final States states) {
+		return definition.createActiveStateMachine("Testee", states, executor);
+	}
+}
@@ -26,6 +26,7 @@ import org.junit.jupiter.api.Test;
 import ch.bbv.fsm.events.TransitionEvent;
 import ch.bbv.fsm.events.annotation.OnTransitionBegin;
 import ch.bbv.fsm.events.annotation.OnTransitionCompleted;
+import ch.bbv.fsm.events.annotation.OnTransitionDeclined;
 import ch.bbv.fsm.impl.SimpleStateMachineWithContext;
 import ch.bbv.fsm.impl.StatemachineBuilder;
 import ch.bbv.fsm.impl.internal.events.Annotations;
@@ -111,6 +112,36 @@ public class SimpleStateMachineTest {
 		Assertions.assertThat(sm.get().toString()).isEqualTo("<@OnTransitionBegin>-><@OnTransitionBegin>");
 	}
 
+	@Test
+	public void annotatedMethodsAreCalledForEveryEvent() {
+		final SimpleStateMachineWithContext<States, Events, Y> sm = StatemachineBuilder.<States, Events, Y>createWithContext(States.A, def -> {
+			def.in(States.A).on(Events.TO_B).goTo(States.B);
+			def.in(States.B).on(Events.TO_C).goTo(States.C);
+		}).context(new Y()).buildPassive("StateMachine-1");
+		sm.start();
+		sm.fire(Events.TO_B);
+		sm.fire(Events.TO_D);
+		sm.fire(Events.TO_C);
+		sm.fire(Events.TO_D);
+
+		Assertions.assertThat(sm.get().completed).isEqualTo(2);
+		Assertions.assertThat(sm.get().declined).isEqualTo(2);
+		Assertions.assertThat(sm.getCurrentState()).isEqualTo(States.C);
+	}
+
+	@Test
+	public void staticAnnotatedMethodsAreCalled() {
+		final SimpleStateMachineWithContext<States, Events, Z> sm = StatemachineBuilder.<States, Events, Z>createWithContext(States.A, def -> {
+			def.in(States.A).on(Events.TO_B).goTo(States.B);
+		}).context(new Z()).buildPassive("StateMachine-1");
+		Z.completed = 0;
+		sm.start();
+		sm.fire(Events.TO_B);
+
+		Assertions.assertThat(Z.completed).isEqualTo(1);
+		Assertions.assertThat(sm.getCurrentState()).isEqualTo(States.B);
+	}
+
 	@Test
 	public void locateMethodWithAnnotation() {
 		final Optional<Method> method = Annotations.find(OnTransitionBegin.class, X.class);
@@ -138,4 +169,32 @@ public class SimpleStateMachineTest {
 
 	}
 
+	public static class Y {
+
+		private int completed;
+
+		private int declined;
+
+		@OnTransitionCompleted
+		public void completed(final TransitionEvent<SimpleStateMachineWithContext<States, Events, Y>, States, Events> event) {
+			completed++;
+		}
+
+		@OnTransitionDeclined
+		public void declined(final TransitionEvent<SimpleStateMachineWithContext<States, Events, Y>, States, Events> event) {
+			declined++;
+			throw new IllegalStateException("declined " + event.getEventId());
+		}
+	}
+
+	public static class Z {
+
+		private static int completed;
+
+		@OnTransitionCompleted
+		public static void completed(final TransitionEvent<SimpleStateMachineWithContext<States, Events, Z>, States, Events> event) {
+			completed++;
+		}
+	}
+
 }
@@ -0,0 +1,97 @@
+package ch.bbv.fsm.impl;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import ch.bbv.fsm.StateMachine.LiveCycle;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Tests that the worker thread of an active state machine is woken up when
+ * events are queued and when it is terminated.
+ */
+public class ActiveStateMachineWakeupTest {
+
+	/**
+	 * Every event fired on an idle state machine wakes up the worker thread.
+	 */
+	@Test
+	@Timeout(value = 30, unit = TimeUnit.SECONDS)
+	public void fireWakesUpTheIdleWorker() throws InterruptedException {
+		final int events = 2000;
+		final AtomicInteger processed = new AtomicInteger();
+
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.A).execute(fsm -> processed.incrementAndGet());
+		final SimpleStateMachine<States, Events> testee = definition.createActiveStateMachine("testee");
+		testee.start();
+
+		for (int i = 1; i <= events; i++) {
+			if (i % 2 == 0) {
+				testee.firePriority(Events.A);
+			} else {
+				testee.fire(Events.A);
+			}
+			while (processed.get() < i) {
+				Thread.yield();
+			}
+		}
+		testee.terminate();
+
+		Assertions.assertThat(processed.get()).isEqualTo(events);
+	}
+
+	/**
+	 * Activating a passivated state machine wakes up the worker thread whose loop
+	 * is still running instead of starting another loop.
+	 */
+	@Test
+	@Timeout(value = 30, unit = TimeUnit.SECONDS)
+	public void activateWakesUpTheRunningWorker() throws InterruptedException {
+		final AtomicInteger processed = new AtomicInteger();
+		final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(fsm -> workers.add(Thread.currentThread()));
+		definition.in(States.B).on(Events.A).goTo(States.A).execute(fsm -> processed.incrementAndGet());
+		final SimpleStateMachine<States, Events> testee = definition.createActiveStateMachine("testee");
+		testee.start();
+
+		for (int i = 1; i <= 100; i++) {
+			final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+			testee.passivate(memento);
+			testee.activate(memento);
+			testee.fire(Events.B);
+			testee.fire(Events.A);
+			while (processed.get() < i) {
+				Thread.yield();
+			}
+		}
+		testee.terminate();
+
+		Assertions.assertThat(workers).hasSize(1);
+	}
+
+	/**
+	 * Terminating an idle state machine does not wait for a poll timeout.
+	 */
+	@Test
+	@Timeout(value = 5, unit = TimeUnit.SECONDS)
+	public void terminateWakesUpTheIdleWorker() throws InterruptedException {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		final SimpleStateMachine<States, Events> testee = definition.createActiveStateMachine("testee");
+		testee.start();
+		Thread.sleep(50);
+
+		testee.terminate();
+
+		Assertions.assertThat(testee.getStatus()).isEqualTo(LiveCycle.Terminated);
+	}
+}
@@ -0,0 +1,134 @@
+package ch.bbv.fsm.impl;
+
+import java.lang.management.ManagementFactory;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.events.StateMachineEventHandlerAdapter;
+import ch.bbv.fsm.events.TransitionEvent;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Checks that firing events on a passive state machine does not allocate in the
+ * steady state, whatever level the loggers are set to.
+ */
+public class AllocationFreeDispatchTest {
+
+	private static final int WARM_UP_CYCLES = 100_000;
+
+	private static final int CYCLES = 50_000;
+
+	/**
+	 * The bytes the thread MXBean may allocate itself when reading the counter.
+	 * One object allocated every few hundred fires exceeds it.
+	 */
+	private static final long MEASUREMENT_NOISE = 1024;
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private com.sun.management.ThreadMXBean threadMXBean;
+
+	private int counter;
+
+	@BeforeEach
+	public void setup() {
+		Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		this.threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(this.threadMXBean.isThreadAllocatedMemorySupported());
+		this.threadMXBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Firing events on a flat state machine does not allocate.
+	 */
+	@Test
+	public void flatStateMachine() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(fsm -> this.counter++);
+		definition.in(States.B).on(Events.A).goTo(States.A);
+		definition.in(States.B).on(Events.C).execute(fsm -> this.counter++);
+
+		assertNoAllocation(definition, Events.B, Events.C, Events.A);
+	}
+
+	/**
+	 * Evaluating guards does not allocate.
+	 */
+	@Test
+	public void guardedTransitions() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.C).onlyIf((fsm, args) -> this.counter < 0);
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(fsm -> this.counter++)
+				.onlyIf((fsm, args) -> args.length == 0);
+		definition.in(States.B).on(Events.A).goTo(States.A);
+
+		assertNoAllocation(definition, Events.B, Events.A);
+	}
+
+	/**
+	 * Event handlers do not cause allocations for callbacks they do not subscribe
+	 * to.
+	 */
+	@Test
+	public void unsubscribedCallbacks() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(fsm -> this.counter++);
+		definition.in(States.B).on(Events.A).goTo(States.A);
+		definition.addEventHandler(new StateMachineEventHandlerAdapter<SimpleStateMachine<States, Events>, States, Events>() {
+			@Override
+			public void onTransitionDeclined(final TransitionEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+				throw new IllegalStateException("no transition declined");
+			}
+		});
+
+		assertNoAllocation(definition, Events.B, Events.A);
+	}
+
+	/**
+	 * Firing events on a hierarchical state machine does not allocate.
+	 */
+	@Test
+	public void hierarchicalStateMachine() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.defineHierarchyOn(States.C, States.C1, HistoryType.SHALLOW, States.C1, States.C2);
+		definition.defineHierarchyOn(States.C1, States.C1a, HistoryType.DEEP, States.C1a, States.C1b);
+		definition.in(States.A).on(Events.C).goTo(States.C);
+		definition.in(States.C1a).on(Events.C1b).goTo(States.C1b);
+		definition.in(States.C).on(Events.A).goTo(States.A).execute(fsm -> this.counter++);
+
+		assertNoAllocation(definition, Events.C, Events.C1b, Events.A);
+	}
+
+	private void assertNoAllocation(final SimpleStateMachineDefinition<States, Events> definition, final Events... events) {
+		definition.compile();
+		final SimpleStateMachine<States, Events> fsm = definition.createPassiveStateMachine("allocationFree");
+		fsm.start();
+
+		fireCycles(fsm, events, WARM_UP_CYCLES);
+
+		final long threadId = Thread.currentThread().getId();
+		final long before = this.threadMXBean.getThreadAllocatedBytes(threadId);
+		fireCycles(fsm, events, CYCLES);
+		final long allocated = this.threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+		Assertions.assertThat(allocated).as("bytes allocated by %d fires", CYCLES * events.length)
+				.isLessThanOrEqualTo(MEASUREMENT_NOISE);
+		Assertions.assertThat(this.counter).isPositive();
+	}
+
+	/**
+	 * Fires the events in cycles. Each cycle must lead back to the initial state.
+	 */
+	private static void fireCycles(final SimpleStateMachine<States, Events> fsm, final Events[] events, final int cycles) {
+		for (int i = 0; i < cycles; i++) {
+			for (final Events event : events) {
+				fsm.fire(event, NO_ARGUMENTS);
+			}
+		}
+	}
+}
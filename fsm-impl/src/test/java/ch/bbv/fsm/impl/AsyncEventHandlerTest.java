@@ -0,0 +1,168 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import ch.bbv.fsm.BackpressurePolicy;
+import ch.bbv.fsm.events.BatchEventHandler;
+import ch.bbv.fsm.events.TransitionCompletedEvent;
+import ch.bbv.fsm.events.TransitionEvent;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests the {@link AsyncEventHandler}.
+ */
+public class AsyncEventHandlerTest {
+
+	/**
+	 * Records the delivered events.
+	 */
+	private static class RecordingHandler implements BatchEventHandler<SimpleStateMachine<States, Events>, States, Events> {
+
+		private final List<String> records = Collections.synchronizedList(new ArrayList<>());
+
+		private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+		private final CountDownLatch release;
+
+		RecordingHandler(final CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void onTransitionsCompleted(final List<TransitionCompletedEvent<SimpleStateMachine<States, Events>, States, Events>> events) {
+			await();
+			this.threads.add(Thread.currentThread());
+			for (final TransitionCompletedEvent<SimpleStateMachine<States, Events>, States, Events> event : events) {
+				this.records.add(event.getSource().toString() + ":" + event.getEventArguments()[0]);
+			}
+		}
+
+		@Override
+		public void onTransitionsDeclined(final List<TransitionEvent<SimpleStateMachine<States, Events>, States, Events>> events) {
+			for (final TransitionEvent<SimpleStateMachine<States, Events>, States, Events> event : events) {
+				this.records.add("declined " + event.getEventId());
+			}
+		}
+
+		private void await() {
+			try {
+				this.release.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B);
+		definition.in(States.B).on(Events.A).goTo(States.A);
+		return definition;
+	}
+
+	/**
+	 * The events of each state machine are delivered in order on another thread.
+	 */
+	@Test
+	@Timeout(10)
+	public void deliversEventsInOrderPerStateMachine() throws InterruptedException {
+		final RecordingHandler handler = new RecordingHandler(new CountDownLatch(0));
+		final AsyncEventHandler<SimpleStateMachine<States, Events>, States, Events> testee = new AsyncEventHandler<>(handler,
+				16, BackpressurePolicy.BLOCK);
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.addEventHandler(testee);
+
+		final int machines = 4;
+		final int cycles = 500;
+		final List<SimpleStateMachine<States, Events>> fsms = new ArrayList<>();
+		for (int m = 0; m < machines; m++) {
+			final SimpleStateMachine<States, Events> fsm = definition.createActiveStateMachine("fsm" + m);
+			fsms.add(fsm);
+			fsm.start();
+		}
+		for (int i = 0; i < cycles; i++) {
+			for (final SimpleStateMachine<States, Events> fsm : fsms) {
+				fsm.fire(Events.B, i);
+				fsm.fire(Events.A, i);
+			}
+		}
+		for (final SimpleStateMachine<States, Events> fsm : fsms) {
+			while (!fsm.isIdle()) {
+				Thread.sleep(1);
+			}
+			fsm.terminate();
+		}
+		testee.close();
+
+		Assertions.assertThat(handler.records).hasSize(machines * cycles * 2);
+		Assertions.assertThat(handler.threads).doesNotContain(Thread.currentThread());
+		for (final SimpleStateMachine<States, Events> fsm : fsms) {
+			final List<String> expected = new ArrayList<>();
+			for (int i = 0; i < cycles; i++) {
+				expected.add(fsm + ":" + i);
+				expected.add(fsm + ":" + i);
+			}
+			Assertions.assertThat(handler.records).filteredOn(r -> r.startsWith(fsm + ":")).containsExactlyElementsOf(expected);
+		}
+	}
+
+	/**
+	 * Completed and declined transitions are delivered in the order they occurred.
+	 */
+	@Test
+	@Timeout(10)
+	public void keepsOrderOfCompletedAndDeclinedTransitions() {
+		final RecordingHandler handler = new RecordingHandler(new CountDownLatch(0));
+		final AsyncEventHandler<SimpleStateMachine<States, Events>, States, Events> testee = new AsyncEventHandler<>(handler,
+				16, BackpressurePolicy.BLOCK);
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.addEventHandler(testee);
+		final SimpleStateMachine<States, Events> fsm = definition.createPassiveStateMachine("fsm");
+		fsm.start();
+
+		fsm.fire(Events.B, 1);
+		fsm.fire(Events.C);
+		fsm.fire(Events.A, 2);
+		testee.close();
+
+		Assertions.assertThat(handler.records).containsExactly(fsm + ":1", "declined C", fsm + ":2");
+	}
+
+	/**
+	 * A slow handler does not delay the state machine, the events exceeding the
+	 * capacity are dropped.
+	 */
+	@Test
+	@Timeout(10)
+	public void dropsEventsIfTheHandlerDoesNotKeepUp() {
+		final CountDownLatch release = new CountDownLatch(1);
+		final RecordingHandler handler = new RecordingHandler(release);
+		final AsyncEventHandler<SimpleStateMachine<States, Events>, States, Events> testee = new AsyncEventHandler<>(handler,
+				4, BackpressurePolicy.DROP_NEWEST);
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.addEventHandler(testee);
+		final SimpleStateMachine<States, Events> fsm = definition.createPassiveStateMachine("fsm");
+		fsm.start();
+
+		for (int i = 0; i < 100; i++) {
+			fsm.fire(Events.B, i);
+			fsm.fire(Events.A, i);
+		}
+		Assertions.assertThat(testee.numberOfQueuedEvents()).isLessThanOrEqualTo(4);
+
+		release.countDown();
+		testee.close();
+		// the blocked batch holds at most one run of events, the buffer at most 4
+		Assertions.assertThat(handler.records.size()).isBetween(1, 4 + 256);
+		Assertions.assertThat(handler.records.get(0)).isEqualTo(fsm + ":0");
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.A);
+	}
+}
@@ -0,0 +1,174 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.BackpressurePolicy;
+import ch.bbv.fsm.BatchResult;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests firing batches of events with
+ * {@link ch.bbv.fsm.StateMachine#fireBatch(Enum[], Object[][])}.
+ */
+public class BatchFireTest {
+
+	private final List<String> log = new ArrayList<>();
+
+	private SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B)
+				.execute((SimpleStateMachine<States, Events> fsm, Object argument) -> this.log.add("B " + argument));
+		definition.in(States.B).on(Events.A).goTo(States.A).execute(fsm -> this.log.add("A"));
+		definition.in(States.A).on(Events.D).execute(fsm -> {
+			throw new IllegalStateException("failing action");
+		});
+		definition.in(States.B).on(Events.C).goTo(States.C).execute(fsm -> fsm.fire(Events.A));
+		definition.in(States.C).on(Events.A).goTo(States.A).execute(fsm -> this.log.add("C->A"));
+		return definition;
+	}
+
+	/**
+	 * A running passive state machine processes the batch before returning and
+	 * counts the accepted, declined and failed events.
+	 */
+	@Test
+	public void passiveStateMachineProcessesTheBatch() {
+		final SimpleStateMachine<States, Events> fsm = createDefinition().createPassiveStateMachine("passive");
+		fsm.start();
+
+		final BatchResult result = fsm.fireBatch(new Events[] { Events.B, Events.B, Events.A, Events.D },
+				new Object[][] { { 1 }, { 2 }, {}, {} });
+
+		Assertions.assertThat(result.getAccepted()).isEqualTo(2);
+		Assertions.assertThat(result.getDeclined()).isEqualTo(1);
+		Assertions.assertThat(result.getFailed()).isEqualTo(1);
+		Assertions.assertThat(result.getQueued()).isZero();
+		Assertions.assertThat(this.log).containsExactly("B 1", "A");
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.A);
+	}
+
+	/**
+	 * Events fired by an action are processed before the next event of the
+	 * batch.
+	 */
+	@Test
+	public void eventsFiredByActionsAreProcessedBeforeTheNextEvent() {
+		final SimpleStateMachine<States, Events> fsm = createDefinition().createPassiveStateMachine("passive");
+		fsm.start();
+
+		final BatchResult result = fsm.fireBatch(new Events[] { Events.B, Events.C, Events.B },
+				new Object[][] { { 1 }, {}, { 2 } });
+
+		Assertions.assertThat(result.getAccepted()).isEqualTo(3);
+		Assertions.assertThat(this.log).containsExactly("B 1", "C->A", "B 2");
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.B);
+	}
+
+	/**
+	 * A passive state machine which is not started queues the batch.
+	 */
+	@Test
+	public void notStartedStateMachineQueuesTheBatch() {
+		final SimpleStateMachine<States, Events> fsm = createDefinition().createPassiveStateMachine("passive");
+
+		final BatchResult result = fsm.fireBatch(new Events[] { Events.B, Events.A }, new Object[][] { { 1 }, {} });
+
+		Assertions.assertThat(result.getQueued()).isEqualTo(2);
+		Assertions.assertThat(fsm.numberOfQueuedEvents()).isEqualTo(2);
+		fsm.start();
+		Assertions.assertThat(this.log).containsExactly("B 1", "A");
+	}
+
+	/**
+	 * A passive state machine which is processing an event queues the batch at
+	 * once and counts only the events its bounded queue keeps.
+	 */
+	@Test
+	public void passiveStateMachineQueuesTheBatchWhileProcessing() {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.limitEventQueue(2, BackpressurePolicy.DROP_NEWEST);
+		final List<BatchResult> results = new ArrayList<>();
+		definition.in(States.A).on(Events.B1).execute(fsm -> results
+				.add(fsm.fireBatch(new Events[] { Events.B, Events.A, Events.B }, new Object[][] { { 1 }, {}, { 2 } })));
+		final SimpleStateMachine<States, Events> fsm = definition.createPassiveStateMachine("passive");
+		fsm.start();
+
+		fsm.fire(Events.B1);
+
+		Assertions.assertThat(results).hasSize(1);
+		Assertions.assertThat(results.get(0).getQueued()).isEqualTo(2);
+		Assertions.assertThat(this.log).containsExactly("B 1", "A");
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.A);
+	}
+
+	/**
+	 * The events dropped by a bounded queue are not counted as queued.
+	 */
+	@Test
+	public void droppedEventsAreNotQueued() {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.limitEventQueue(2, BackpressurePolicy.DROP_OLDEST);
+		final SimpleStateMachine<States, Events> fsm = definition.createActiveStateMachine("active");
+
+		Assertions.assertThat(fsm.fireBatch(new Events[] { Events.B, Events.A, Events.B }, null).getQueued())
+				.isEqualTo(2);
+		Assertions.assertThat(fsm.numberOfQueuedEvents()).isEqualTo(2);
+	}
+
+	/**
+	 * An active state machine queues the batch in a bounded queue at once.
+	 */
+	@Test
+	public void activeStateMachineQueuesTheBatch() throws InterruptedException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.limitEventQueue(8, BackpressurePolicy.REJECT);
+		final SimpleStateMachine<States, Events> fsm = definition.createActiveStateMachine("active");
+		fsm.start();
+
+		final BatchResult result = fsm.fireBatch(new Events[] { Events.B, Events.A, Events.B }, null);
+
+		Assertions.assertThat(result.getQueued()).isEqualTo(3);
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!fsm.isIdle() && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		fsm.terminate();
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.B);
+	}
+
+	/**
+	 * A batch which does not fit into a bounded queue is rejected as a whole by
+	 * the {@link BackpressurePolicy#REJECT} policy.
+	 */
+	@Test
+	public void batchExceedingTheQueueIsRejected() {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.limitEventQueue(2, BackpressurePolicy.REJECT);
+		final SimpleStateMachine<States, Events> fsm = definition.createActiveStateMachine("active");
+
+		Assertions.assertThatThrownBy(() -> fsm.fireBatch(new Events[] { Events.B, Events.A, Events.B }, null))
+				.isInstanceOf(IllegalStateException.class);
+		Assertions.assertThat(fsm.numberOfQueuedEvents()).isZero();
+
+		Assertions.assertThat(fsm.fireBatch(new Events[] { Events.B, Events.A }, null).getQueued()).isEqualTo(2);
+		Assertions.assertThat(fsm.numberOfQueuedEvents()).isEqualTo(2);
+	}
+
+	/**
+	 * The number of arguments must match the number of events.
+	 */
+	@Test
+	public void argumentsMustMatchTheEvents() {
+		final SimpleStateMachine<States, Events> fsm = createDefinition().createPassiveStateMachine("passive");
+		fsm.start();
+
+		Assertions.assertThatThrownBy(() -> fsm.fireBatch(new Events[] { Events.B }, new Object[][] { {}, {} }))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,150 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests the compiled transition table of a state machine definition.
+ */
+public class CompiledStateMachineDefinitionTest {
+
+	private SimpleStateMachineDefinition<States, Events> definition;
+
+	private List<String> actions;
+
+	@BeforeEach
+	public void setup() {
+		this.actions = new ArrayList<>();
+		this.definition = new SimpleStateMachineDefinition<>(States.A);
+		this.definition.defineHierarchyOn(States.B, States.B1, HistoryType.NONE, States.B1, States.B2);
+		this.definition.in(States.A).on(Events.B).goTo(States.B);
+	}
+
+	/**
+	 * An event which is not handled by a state is handled by its super state.
+	 */
+	@Test
+	public void inheritedTransitionOfSuperState() {
+		this.definition.in(States.B).on(Events.C).goTo(States.C).execute(fsm -> this.actions.add("B->C"));
+		this.definition.compile();
+
+		final SimpleStateMachine<States, Events> fsm = this.definition.createPassiveStateMachine("inherited");
+		fsm.start();
+		fsm.fire(Events.B);
+		fsm.fire(Events.C);
+
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.C);
+		Assertions.assertThat(this.actions).containsExactly("B->C");
+	}
+
+	/**
+	 * The transitions of the sub state take precedence over the ones of the super
+	 * state. If all guards of the sub state fail, the super state is asked.
+	 */
+	@Test
+	public void transitionsOfSubStateComeFirst() {
+		this.definition.in(States.B1).on(Events.C).goTo(States.B2).onlyIf((fsm, args) -> args.length > 0);
+		this.definition.in(States.B).on(Events.C).goTo(States.C);
+		this.definition.compile();
+
+		final SimpleStateMachine<States, Events> fsm = this.definition.createPassiveStateMachine("precedence");
+		fsm.start();
+		fsm.fire(Events.B);
+		fsm.fire(Events.C, "guard");
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.B2);
+
+		fsm.fire(Events.C);
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.C);
+	}
+
+	/**
+	 * Events without transitions are declined.
+	 */
+	@Test
+	public void eventWithoutTransition() {
+		this.definition.compile();
+
+		final SimpleStateMachine<States, Events> fsm = this.definition.createPassiveStateMachine("declined");
+		fsm.start();
+		fsm.fire(Events.D);
+
+		Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.A);
+	}
+
+	/**
+	 * The precomputed exit and entry paths execute the same actions in the same
+	 * order as the recursive traversal of an uncompiled definition.
+	 */
+	@Test
+	public void exitAndEntryPathsMatchUncompiledDefinition() {
+		final List<String> uncompiledActions = new ArrayList<>();
+		final List<String> compiledActions = new ArrayList<>();
+		final SimpleStateMachineDefinition<States, Events> uncompiled = createHierarchy(uncompiledActions);
+		final SimpleStateMachineDefinition<States, Events> compiled = createHierarchy(compiledActions);
+		compiled.compile();
+
+		final SimpleStateMachine<States, Events> uncompiledFsm = uncompiled.createPassiveStateMachine("uncompiled");
+		final SimpleStateMachine<States, Events> compiledFsm = compiled.createPassiveStateMachine("compiled");
+		uncompiledFsm.start();
+		compiledFsm.start();
+
+		final Events[] events = { Events.B, Events.B2, Events.C, Events.D, Events.D, Events.A, Events.C1b, Events.C, Events.B1,
+				Events.C, Events.D, Events.B, Events.A, Events.D, Events.B, Events.C1b, Events.C, Events.A };
+		for (final Events event : events) {
+			uncompiledFsm.fire(event);
+			compiledFsm.fire(event);
+			Assertions.assertThat(compiledFsm.getCurrentState()).as("state after %s", event).isEqualTo(uncompiledFsm.getCurrentState());
+		}
+		Assertions.assertThat(compiledActions).isEqualTo(uncompiledActions).hasSizeGreaterThan(events.length);
+	}
+
+	private static SimpleStateMachineDefinition<States, Events> createHierarchy(final List<String> log) {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.defineHierarchyOn(States.B, States.B1, HistoryType.NONE, States.B1, States.B2);
+		definition.defineHierarchyOn(States.C, States.C2, HistoryType.SHALLOW, States.C1, States.C2);
+		definition.defineHierarchyOn(States.C1, States.C1a, HistoryType.SHALLOW, States.C1a, States.C1b);
+		definition.defineHierarchyOn(States.D, States.D1, HistoryType.DEEP, States.D1, States.D2);
+		definition.defineHierarchyOn(States.D1, States.D1a, HistoryType.DEEP, States.D1a, States.D1b);
+		for (final States state : States.values()) {
+			definition.in(state).executeOnEntry(fsm -> log.add("enter " + state)).executeOnExit(fsm -> log.add("exit " + state));
+		}
+
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(fsm -> log.add("A-B->B"));
+		definition.in(States.A).on(Events.C1b).goTo(States.C1b).execute(fsm -> log.add("A-C1b->C1b"));
+		definition.in(States.A).on(Events.D).goTo(States.D);
+		definition.in(States.B1).on(Events.B2).goTo(States.B2);
+		definition.in(States.B).on(Events.C).goTo(States.C1b).execute(fsm -> log.add("B-C->C1b"));
+		definition.in(States.B).on(Events.A).goTo(States.A);
+		definition.in(States.C1b).on(Events.D).goTo(States.D1b);
+		definition.in(States.C1b).on(Events.C).goTo(States.C).execute(fsm -> log.add("C1b-C->C"));
+		definition.in(States.C).on(Events.B1).goTo(States.B1);
+		definition.in(States.C).on(Events.D).goTo(States.D1a);
+		definition.in(States.C).on(Events.A).goTo(States.A);
+		definition.in(States.D1b).on(Events.D).goTo(States.D).execute(fsm -> log.add("D1b-D->D"));
+		definition.in(States.D1).on(Events.B).goTo(States.D1).execute(fsm -> log.add("D1-B->D1"));
+		definition.in(States.D).on(Events.A).goTo(States.A).execute(fsm -> log.add("D-A->A"));
+		definition.in(States.D).on(Events.C1b).goTo(States.C1b);
+		return definition;
+	}
+
+	/**
+	 * A compiled definition can not be modified.
+	 */
+	@Test
+	public void compiledDefinitionIsReadOnly() {
+		this.definition.compile();
+
+		Assertions.assertThat(this.definition.isCompiled()).isTrue();
+		Assertions.assertThatIllegalStateException().isThrownBy(() -> this.definition.in(States.C));
+		Assertions.assertThatIllegalStateException()
+				.isThrownBy(() -> this.definition.defineHierarchyOn(States.C, States.C1, HistoryType.NONE, States.C1));
+	}
+}
@@ -0,0 +1,155 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.events.EventHandlerCallback;
+import ch.bbv.fsm.events.ExceptionEvent;
+import ch.bbv.fsm.events.StateMachineEventHandler;
+import ch.bbv.fsm.events.StateMachineEventHandlerAdapter;
+import ch.bbv.fsm.events.TransitionCompletedEvent;
+import ch.bbv.fsm.events.TransitionEvent;
+import ch.bbv.fsm.events.TransitionExceptionEvent;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests that event handlers are only called for the callbacks they subscribe
+ * to.
+ */
+public class EventHandlerCallbacksTest {
+
+	/**
+	 * Records the completed transitions.
+	 */
+	private static class CompletedHandler extends StateMachineEventHandlerAdapter<SimpleStateMachine<States, Events>, States, Events> {
+
+		private final List<TransitionCompletedEvent<?, ?, ?>> completed = new ArrayList<>();
+
+		@Override
+		public void onTransitionCompleted(final TransitionCompletedEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			this.completed.add(arg);
+		}
+	}
+
+	/**
+	 * Subscribes to the completed transitions only, all other callbacks fail.
+	 */
+	private static class CompletedOnlyHandler implements StateMachineEventHandler<SimpleStateMachine<States, Events>, States, Events> {
+
+		private int completed;
+
+		@Override
+		public Set<EventHandlerCallback> callbacks() {
+			return EnumSet.of(EventHandlerCallback.TRANSITION_COMPLETED);
+		}
+
+		@Override
+		public void onExceptionThrown(final ExceptionEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			Assertions.fail("not subscribed");
+		}
+
+		@Override
+		public void onTransitionBegin(final TransitionEvent<SimpleStateMachine<States, Events>, States, Events> args) {
+			Assertions.fail("not subscribed");
+		}
+
+		@Override
+		public void onTransitionCompleted(final TransitionCompletedEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			this.completed++;
+		}
+
+		@Override
+		public void onTransitionDeclined(final TransitionEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			Assertions.fail("not subscribed");
+		}
+
+		@Override
+		public void onTransitionThrowsException(final TransitionExceptionEvent<SimpleStateMachine<States, Events>, States, Events> arg) {
+			Assertions.fail("not subscribed");
+		}
+	}
+
+	/**
+	 * An adapter subscribes to the callbacks it overrides.
+	 */
+	@Test
+	public void adapterSubscribesToOverriddenCallbacks() {
+		Assertions.assertThat(new CompletedHandler().callbacks()).containsExactly(EventHandlerCallback.TRANSITION_COMPLETED);
+		Assertions.assertThat(new TracingEventHandler<>().callbacks()).containsExactlyInAnyOrder(
+				EventHandlerCallback.TRANSITION_BEGIN, EventHandlerCallback.TRANSITION_COMPLETED,
+				EventHandlerCallback.TRANSITION_DECLINED);
+	}
+
+	/**
+	 * A handler is not called for the callbacks it does not subscribe to.
+	 */
+	@Test
+	public void handlerIsOnlyCalledForSubscribedCallbacks() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B);
+		final CompletedOnlyHandler handler = new CompletedOnlyHandler();
+		definition.addEventHandler(handler);
+
+		final SimpleStateMachine<States, Events> testee = definition.createPassiveStateMachine("callbacks");
+		testee.start();
+		testee.fire(Events.B);
+		testee.fire(Events.C);
+
+		Assertions.assertThat(handler.completed).isEqualTo(1);
+	}
+
+	/**
+	 * All handlers of a callback receive the same event.
+	 */
+	@Test
+	public void handlersShareTheEvent() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B);
+		final CompletedHandler first = new CompletedHandler();
+		final CompletedHandler second = new CompletedHandler();
+		definition.addEventHandler(first);
+		definition.addEventHandler(second);
+
+		final SimpleStateMachine<States, Events> testee = definition.createPassiveStateMachine("callbacks");
+		testee.start();
+		testee.fire(Events.B);
+
+		Assertions.assertThat(first.completed).hasSize(1);
+		Assertions.assertThat(second.completed).hasSize(1);
+		Assertions.assertThat(first.completed.get(0)).isSameAs(second.completed.get(0));
+		Assertions.assertThat(first.completed.get(0).getNewStateId()).isEqualTo(States.B);
+	}
+
+	/**
+	 * The states exited and entered are only recorded if a handler records
+	 * transitions, whatever its class.
+	 */
+	@Test
+	public void transitionsAreRecordedForHandlersRecordingThem() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B);
+		final CompletedHandler unrecorded = new CompletedHandler();
+		definition.addEventHandler(unrecorded);
+		definition.createPassiveStateMachine("unrecorded").start();
+		final CompletedHandler recorded = new CompletedHandler() {
+			@Override
+			public boolean recordsTransitions() {
+				return true;
+			}
+		};
+		definition.addEventHandler(recorded);
+
+		final SimpleStateMachine<States, Events> testee = definition.createPassiveStateMachine("recorded");
+		testee.start();
+		testee.fire(Events.B);
+
+		Assertions.assertThat(recorded.completed).hasSize(1);
+		Assertions.assertThat(recorded.completed.get(0).getRecords()).isEqualTo(" -> Exit A -> Enter B");
+	}
+}
@@ -0,0 +1,105 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.BackpressurePolicy;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests state machines with a limited event queue.
+ */
+public class EventQueueLimitTest {
+
+	/**
+	 * Events fired in an action are queued until the capacity is reached, further
+	 * events are rejected.
+	 */
+	@Test
+	public void rejectEventsFiredInAnAction() {
+		final List<Boolean> accepted = new ArrayList<>();
+		final List<Events> processed = new ArrayList<>();
+
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.limitEventQueue(2, BackpressurePolicy.REJECT);
+		definition.in(States.A).on(Events.A).goTo(States.B).execute(fsm -> {
+			accepted.add(fsm.tryFire(Events.B));
+			accepted.add(fsm.tryFire(Events.C));
+			accepted.add(fsm.tryFire(Events.D));
+			Assertions.assertThatIllegalStateException().isThrownBy(() -> fsm.fire(Events.D));
+		});
+		definition.in(States.B).on(Events.B).execute(fsm -> processed.add(Events.B));
+		definition.in(States.B).on(Events.C).execute(fsm -> processed.add(Events.C));
+		definition.in(States.B).on(Events.D).execute(fsm -> processed.add(Events.D));
+
+		final SimpleStateMachine<States, Events> testee = definition.createPassiveStateMachine("testee");
+		testee.start();
+
+		Assertions.assertThat(testee.tryFire(Events.A)).isTrue();
+		Assertions.assertThat(accepted).containsExactly(true, true, false);
+		Assertions.assertThat(processed).containsExactly(Events.B, Events.C);
+	}
+
+	/**
+	 * Events equal to a queued event are coalesced.
+	 */
+	@Test
+	public void coalesceEventsFiredBeforeStart() {
+		final List<Object> processed = new ArrayList<>();
+
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.limitEventQueue(10, BackpressurePolicy.COALESCE);
+		definition.in(States.A).on(Events.A).goTo(States.A).execute((final SimpleStateMachine<States, Events> fsm, final Integer value) -> {
+			processed.add(value);
+		});
+
+		final SimpleStateMachine<States, Events> testee = definition.createPassiveStateMachine("testee");
+		testee.fire(Events.A, 1);
+		testee.fire(Events.A, 1);
+		testee.fire(Events.A, 2);
+		testee.fire(Events.A, 1);
+		Assertions.assertThat(testee.numberOfQueuedEvents()).isEqualTo(2);
+
+		testee.start();
+
+		Assertions.assertThat(processed).containsExactly(1, 2);
+	}
+
+	/**
+	 * The oldest queued event is dropped on an active state machine which is not
+	 * started yet.
+	 */
+	@Test
+	public void dropOldestOnActiveStateMachine() throws InterruptedException {
+		final List<Events> processed = new ArrayList<>();
+
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.limitEventQueue(2, BackpressurePolicy.DROP_OLDEST);
+		definition.in(States.A).on(Events.B).execute(fsm -> processed.add(Events.B));
+		definition.in(States.A).on(Events.C).execute(fsm -> processed.add(Events.C));
+		definition.in(States.A).on(Events.D).execute(fsm -> processed.add(Events.D));
+
+		final SimpleStateMachine<States, Events> testee = definition.createActiveStateMachine("testee");
+		testee.fire(Events.B);
+		testee.fire(Events.C);
+		Assertions.assertThat(testee.tryFire(Events.D)).isTrue();
+
+		testee.start();
+		while (!testee.isIdle()) {
+			Thread.sleep(1);
+		}
+		testee.terminate();
+
+		Assertions.assertThat(processed).containsExactly(Events.C, Events.D);
+	}
+
+	@Test
+	public void capacityMustBePositive() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		Assertions.assertThatIllegalArgumentException().isThrownBy(() -> definition.limitEventQueue(0, BackpressurePolicy.BLOCK));
+	}
+}
@@ -0,0 +1,170 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.StateMachine.LiveCycle;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests the {@link PartitionedStateMachineEngine}.
+ */
+public class PartitionedStateMachineEngineTest {
+
+	/**
+	 * The threads which processed events per state machine.
+	 */
+	private final ConcurrentHashMap<SimpleStateMachine<States, Events>, Set<Thread>> threads = new ConcurrentHashMap<>();
+
+	private PartitionedStateMachineEngine<Integer, SimpleStateMachine<States, Events>, States, Events> engine;
+
+	private SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(this::record);
+		definition.in(States.B).on(Events.A).goTo(States.A).execute(this::record);
+		definition.in(States.B).on(Events.C).goTo(States.C).execute(fsm -> fsm.fire(Events.D));
+		definition.in(States.C).on(Events.D).goTo(States.D);
+		return definition;
+	}
+
+	private void record(final SimpleStateMachine<States, Events> fsm) {
+		this.threads.computeIfAbsent(fsm, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+	}
+
+	@AfterEach
+	public void tearDown() throws InterruptedException {
+		if (this.engine != null) {
+			this.engine.close();
+		}
+	}
+
+	private States currentState(final int key) throws Exception {
+		return this.engine.submit(key, SimpleStateMachine::getCurrentState).get(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Events of one key are processed in order on the worker of its partition.
+	 */
+	@Test
+	public void eventsAreProcessedInOrderByTheOwningWorker() throws Exception {
+		this.engine = createDefinition().createPartitionedEngine(4);
+		final int keys = 100;
+		for (int round = 0; round < 10; round++) {
+			for (int key = 0; key < keys; key++) {
+				this.engine.fire(key, Events.B);
+				this.engine.fire(key, Events.A);
+			}
+		}
+		for (int key = 0; key < keys; key++) {
+			this.engine.fire(key, Events.B);
+		}
+
+		for (int key = 0; key < keys; key++) {
+			Assertions.assertThat(currentState(key)).isEqualTo(States.B);
+		}
+		final List<Thread> workers = new ArrayList<>();
+		this.threads.values().forEach(set -> {
+			Assertions.assertThat(set).hasSize(1);
+			workers.addAll(set);
+		});
+		Assertions.assertThat(workers).doesNotContain(Thread.currentThread());
+		Assertions.assertThat(workers.stream().distinct().count()).isLessThanOrEqualTo(4);
+	}
+
+	/**
+	 * Events fired by an action are processed after the current event.
+	 */
+	@Test
+	public void eventsFiredByActions() throws Exception {
+		this.engine = createDefinition().createPartitionedEngine(2);
+		this.engine.fire(1, Events.B);
+		this.engine.fire(1, Events.C);
+
+		Assertions.assertThat(currentState(1)).isEqualTo(States.D);
+		Assertions.assertThat(currentState(2)).isEqualTo(States.A);
+	}
+
+	/**
+	 * A broadcast is processed by every state machine after the events fired on
+	 * it before.
+	 */
+	@Test
+	public void broadcast() throws Exception {
+		this.engine = createDefinition().createPartitionedEngine(4);
+		final int keys = 1000;
+		for (int key = 0; key < keys; key++) {
+			this.engine.fire(key, key % 2 == 0 ? Events.B : Events.A);
+		}
+
+		final Broadcast<Integer> broadcast = this.engine.broadcast(Events.C);
+		broadcast.toCompletableFuture().get(30, TimeUnit.SECONDS);
+
+		Assertions.assertThat(broadcast.getTotal()).isEqualTo(keys);
+		Assertions.assertThat(broadcast.getAccepted()).isEqualTo(keys / 2);
+		Assertions.assertThat(broadcast.getDeclined()).isEqualTo(keys / 2);
+		Assertions.assertThat(currentState(0)).isEqualTo(States.D);
+		Assertions.assertThat(currentState(1)).isEqualTo(States.A);
+	}
+
+	/**
+	 * A broadcast is aborted if a worker fails to fire the event.
+	 */
+	@Test
+	public void broadcastIsAbortedByAnError() throws Exception {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.in(States.A).on(Events.D).execute(fsm -> {
+			throw new AssertionError("failing action");
+		});
+		this.engine = definition.createPartitionedEngine(2);
+		for (int key = 0; key < 10; key++) {
+			this.engine.fire(key, Events.A);
+		}
+
+		final Broadcast<Integer> broadcast = this.engine.broadcast(Events.D);
+
+		Assertions.assertThatThrownBy(() -> broadcast.toCompletableFuture().get(10, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class).hasCauseInstanceOf(AssertionError.class);
+	}
+
+	/**
+	 * A removed state machine is terminated and re-created on the next event.
+	 */
+	@Test
+	public void remove() throws Exception {
+		this.engine = createDefinition().createPartitionedEngine(2);
+		this.engine.fire(1, Events.B);
+		final SimpleStateMachine<States, Events> removed = this.engine.submit(1, fsm -> fsm).get(10, TimeUnit.SECONDS);
+
+		Assertions.assertThat(this.engine.remove(1).get(10, TimeUnit.SECONDS)).isTrue();
+		Assertions.assertThat(removed.getStatus()).isEqualTo(LiveCycle.Terminated);
+		Assertions.assertThat(currentState(1)).isEqualTo(States.A);
+	}
+
+	/**
+	 * The queued events are processed before the engine is closed, afterwards
+	 * events are rejected.
+	 */
+	@Test
+	public void close() throws Exception {
+		final PartitionedStateMachineEngine<Integer, SimpleStateMachine<States, Events>, States, Events> closed = createDefinition()
+				.createPartitionedEngine(2);
+		closed.fire(1, Events.B);
+		final SimpleStateMachine<States, Events> stateMachine = closed.submit(1, fsm -> fsm).get(10, TimeUnit.SECONDS);
+		closed.fire(1, Events.A);
+
+		closed.close();
+
+		Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(States.A);
+		Assertions.assertThat(closed.numberOfQueuedTasks()).isZero();
+		Assertions.assertThatThrownBy(() -> closed.fire(1, Events.B)).isInstanceOf(IllegalStateException.class);
+	}
+}
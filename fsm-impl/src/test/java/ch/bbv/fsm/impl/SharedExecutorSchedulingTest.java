@@ -0,0 +1,92 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests active state machines sharing the workers of an executor.
+ */
+public class SharedExecutorSchedulingTest {
+
+	private static final int WORKERS = 2;
+
+	private static ExecutorService executor;
+
+	@BeforeAll
+	public static void startExecutor() {
+		executor = Executors.newFixedThreadPool(WORKERS);
+	}
+
+	@AfterAll
+	public static void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Many state machines share the workers of the executor. The events of each
+	 * state machine are processed in order and never concurrently.
+	 */
+	@Test
+	public void manyStateMachinesShareTheWorkers() throws InterruptedException {
+		final int numberOfStateMachines = 200;
+		final int eventsPerStateMachine = 50;
+
+		final Set<SimpleStateMachine<States, Events>> busy = ConcurrentHashMap.newKeySet();
+		final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+		final Map<SimpleStateMachine<States, Events>, List<Integer>> received = new IdentityHashMap<>();
+
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.A).goTo(States.A).execute((final SimpleStateMachine<States, Events> fsm, final Integer expected) -> {
+			final List<Integer> receivedByStateMachine = received.get(fsm);
+			if (!busy.add(fsm)) {
+				violations.add("events processed concurrently");
+			}
+			if (receivedByStateMachine.size() != expected) {
+				violations.add("event " + expected + " processed as " + receivedByStateMachine.size());
+			}
+			receivedByStateMachine.add(expected);
+			busy.remove(fsm);
+		});
+		definition.compile();
+
+		final List<SimpleStateMachine<States, Events>> stateMachines = new ArrayList<>();
+		for (int i = 0; i < numberOfStateMachines; i++) {
+			final SimpleStateMachine<States, Events> stateMachine = definition.createActiveStateMachine("Testee" + i, executor);
+			received.put(stateMachine, Collections.synchronizedList(new ArrayList<>()));
+			stateMachines.add(stateMachine);
+		}
+
+		for (final SimpleStateMachine<States, Events> stateMachine : stateMachines) {
+			stateMachine.start();
+		}
+		for (int e = 0; e < eventsPerStateMachine; e++) {
+			for (final SimpleStateMachine<States, Events> stateMachine : stateMachines) {
+				stateMachine.fire(Events.A, e);
+			}
+		}
+
+		for (final SimpleStateMachine<States, Events> stateMachine : stateMachines) {
+			while (!stateMachine.isIdle()) {
+				Thread.sleep(1);
+			}
+			Assertions.assertThat(received.get(stateMachine)).hasSize(eventsPerStateMachine);
+			stateMachine.terminate();
+		}
+		Assertions.assertThat(violations).isEmpty();
+	}
+}
@@ -0,0 +1,96 @@
+package ch.bbv.fsm.impl;
+
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Tests the {@link StateIndex}.
+ */
+public class StateIndexTest {
+
+	private final StateIndex<States, Events> index = new StateIndex<>(States.class);
+
+	private SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B);
+		definition.in(States.B).on(Events.A).goTo(States.A);
+		definition.in(States.B).on(Events.C).goTo(States.C);
+		definition.addInstrumentation(this.index);
+		return definition;
+	}
+
+	/**
+	 * The state machines of a registry are found by their current state until
+	 * they are removed.
+	 */
+	@Test
+	public void registry() {
+		final StateMachineRegistry<String, SimpleStateMachine<States, Events>, States, Events> registry = new StateMachineRegistry<>(
+				createDefinition());
+		registry.fire("a", Events.B);
+		registry.fire("b", Events.B);
+		registry.fire("b", Events.C);
+		registry.fire("c", Events.C);
+
+		Assertions.assertThat(this.index.find(States.A)).containsExactly("c");
+		Assertions.assertThat(this.index.find(States.B)).containsExactly("a");
+		Assertions.assertThat(this.index.count(States.C)).isEqualTo(1);
+		Assertions.assertThat(this.index.countByState()).containsExactly(entry(States.A, 1), entry(States.B, 1),
+				entry(States.C, 1));
+
+		registry.remove("b");
+
+		Assertions.assertThat(this.index.find(States.C)).isEmpty();
+		Assertions.assertThat(this.index.getCurrentState("b")).isNull();
+		Assertions.assertThat(this.index.size()).isEqualTo(2);
+	}
+
+	/**
+	 * The state machines of a partitioned engine are indexed by the workers.
+	 */
+	@Test
+	public void partitionedEngine() throws Exception {
+		try (PartitionedStateMachineEngine<Integer, SimpleStateMachine<States, Events>, States, Events> engine = createDefinition()
+				.createPartitionedEngine(4)) {
+			for (int key = 0; key < 100; key++) {
+				engine.fire(key, key % 3 == 0 ? Events.B : Events.A);
+			}
+			for (int key = 0; key < 100; key++) {
+				engine.submit(key, SimpleStateMachine::getCurrentState).get(10, TimeUnit.SECONDS);
+			}
+
+			Assertions.assertThat(this.index.count(States.B)).isEqualTo(34);
+			Assertions.assertThat(this.index.count(States.A)).isEqualTo(66);
+			Assertions.assertThat(this.index.find(States.B)).contains("0", "3", "99");
+		}
+	}
+
+	/**
+	 * A passivated state machine keeps its state, an activated state machine is
+	 * moved to the state of its memento.
+	 */
+	@Test
+	public void passivateAndActivate() {
+		final SimpleStateMachine<States, Events> fsm = createDefinition().createPassiveStateMachine("fsm");
+		fsm.start();
+		fsm.fire(Events.B);
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+		fsm.passivate(memento);
+
+		Assertions.assertThat(this.index.getCurrentState("fsm")).isEqualTo(States.B);
+
+		memento.setCurrentState(States.C);
+		fsm.activate(memento);
+
+		Assertions.assertThat(this.index.find(States.C)).containsExactly("fsm");
+		Assertions.assertThat(this.index.count(States.B)).isZero();
+	}
+}
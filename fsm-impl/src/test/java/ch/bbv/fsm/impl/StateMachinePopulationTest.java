@@ -0,0 +1,187 @@
+package ch.bbv.fsm.impl;
+
+import static org.assertj.core.api.Assertions.entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Tests the {@link StateMachinePopulation}.
+ */
+public class StateMachinePopulationTest {
+
+	private final List<Integer> executed = new ArrayList<>();
+
+	private StateMachinePopulation<States, Events> population;
+
+	private SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.defineHierarchyOn(States.D, States.D1, HistoryType.DEEP, States.D1, States.D2);
+		definition.defineHierarchyOn(States.D1, States.D1a, HistoryType.DEEP, States.D1a, States.D1b);
+		definition.in(States.A).on(Events.B).goTo(States.B)
+				.execute(fsm -> this.executed.add(this.population.getCurrentMachineIndex()));
+		definition.in(States.B).on(Events.C).goTo(States.C).execute(fsm -> fsm.fire(Events.A));
+		definition.in(States.C).on(Events.A).goTo(States.A);
+		definition.in(States.A).on(Events.D).goTo(States.D);
+		definition.in(States.D1a).on(Events.B).goTo(States.D1b);
+		definition.in(States.D).on(Events.A).goTo(States.A);
+		return definition;
+	}
+
+	/**
+	 * The state machines of a population are independent of each other.
+	 */
+	@Test
+	public void fire() {
+		this.population = createDefinition().createPopulation("population", 4);
+
+		this.population.fire(1, Events.B);
+		this.population.fire(3, Events.B);
+
+		Assertions.assertThat(this.population.size()).isEqualTo(4);
+		Assertions.assertThat(this.population.getCurrentState(0)).isEqualTo(States.A);
+		Assertions.assertThat(this.population.getCurrentState(1)).isEqualTo(States.B);
+		Assertions.assertThat(this.population.getCurrentState(2)).isEqualTo(States.A);
+		Assertions.assertThat(this.population.getCurrentState(3)).isEqualTo(States.B);
+		Assertions.assertThat(this.executed).containsExactly(1, 3);
+		Assertions.assertThat(this.population.getCurrentMachineIndex()).isEqualTo(-1);
+	}
+
+	/**
+	 * An event fired on all state machines is processed by each of them
+	 * depending on its current state.
+	 */
+	@Test
+	public void fireAll() {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		definition.compile();
+		this.population = definition.createPopulation("population", 3);
+		this.population.fire(0, Events.B);
+
+		this.population.fireAll(Events.B);
+
+		Assertions.assertThat(this.population.getCurrentState(0)).isEqualTo(States.B);
+		Assertions.assertThat(this.population.getCurrentState(1)).isEqualTo(States.B);
+		Assertions.assertThat(this.population.getCurrentState(2)).isEqualTo(States.B);
+		Assertions.assertThat(this.executed).containsExactly(0, 1, 2);
+	}
+
+	/**
+	 * Events fired by an action are processed by the same state machine after
+	 * the transition.
+	 */
+	@Test
+	public void eventsFiredByActions() {
+		this.population = createDefinition().createPopulation("population", 2);
+		this.population.fire(1, Events.B);
+
+		this.population.fire(1, Events.C);
+
+		Assertions.assertThat(this.population.getCurrentState(0)).isEqualTo(States.A);
+		Assertions.assertThat(this.population.getCurrentState(1)).isEqualTo(States.A);
+	}
+
+	/**
+	 * The history of the super states is kept per state machine.
+	 */
+	@Test
+	public void history() {
+		this.population = createDefinition().createPopulation("population", 2);
+		this.population.fireAll(Events.D);
+		this.population.fire(0, Events.B);
+		this.population.fireAll(Events.A);
+
+		this.population.fireAll(Events.D);
+
+		Assertions.assertThat(this.population.getCurrentState(0)).isEqualTo(States.D1b);
+		Assertions.assertThat(this.population.getCurrentState(1)).isEqualTo(States.D1a);
+	}
+
+	/**
+	 * A state machine of a population can be passivated and activated.
+	 */
+	@Test
+	public void passivateAndActivate() {
+		this.population = createDefinition().createPopulation("population", 2);
+		this.population.fire(0, Events.D);
+		this.population.fire(0, Events.B);
+		this.population.fire(0, Events.A);
+
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+		this.population.passivate(0, memento);
+		this.population.activate(1, memento);
+		this.population.fire(1, Events.D);
+
+		Assertions.assertThat(memento.getCurrentState()).isEqualTo(States.A);
+		Assertions.assertThat(memento.getSavedHistoryStates()).containsEntry(States.D1, States.D1b);
+		Assertions.assertThat(this.population.getCurrentState(1)).isEqualTo(States.D1b);
+	}
+
+	/**
+	 * The state machines are counted per state and can be found by state, with
+	 * and without the state index.
+	 */
+	@Test
+	public void queryByState() {
+		final StateMachinePopulation<States, Events> indexed = createDefinition().createPopulation("indexed", 6);
+		indexed.enableStateIndex();
+		this.population = createDefinition().createPopulation("scanned", 6);
+		for (final StateMachinePopulation<States, Events> p : Arrays.asList(indexed, this.population)) {
+			p.fire(1, Events.B);
+			p.fire(4, Events.B);
+			p.fire(5, Events.D);
+			p.fire(2, Events.B);
+			p.fire(4, Events.C);
+
+			Assertions.assertThat(p.count(States.A)).isEqualTo(3);
+			Assertions.assertThat(p.count(States.B)).isEqualTo(2);
+			Assertions.assertThat(p.count(States.D1a)).isEqualTo(1);
+			Assertions.assertThat(p.count(States.D)).isZero();
+			Assertions.assertThat(p.find(States.B)).containsExactlyInAnyOrder(1, 2);
+			Assertions.assertThat(p.find(States.A)).containsExactlyInAnyOrder(0, 3, 4);
+			Assertions.assertThat(p.find(States.C)).isEmpty();
+			Assertions.assertThat(p.find(States.E)).as("state not used by the definition").isEmpty();
+			Assertions.assertThat(p.countByState()).containsExactly(entry(States.A, 3), entry(States.B, 2),
+					entry(States.D1a, 1));
+		}
+	}
+
+	/**
+	 * Activating a state machine updates the state index.
+	 */
+	@Test
+	public void activateUpdatesTheStateIndex() {
+		this.population = createDefinition().createPopulation("population", 3);
+		this.population.enableStateIndex();
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+		memento.setCurrentState(States.B);
+
+		this.population.activate(0, memento);
+		this.population.activate(2, memento);
+		this.population.fire(0, Events.C);
+
+		Assertions.assertThat(this.population.find(States.B)).containsExactly(2);
+		Assertions.assertThat(this.population.find(States.A)).containsExactlyInAnyOrder(0, 1);
+	}
+
+	/**
+	 * The index of a state machine must be within the population.
+	 */
+	@Test
+	public void invalidIndex() {
+		this.population = createDefinition().createPopulation("population", 2);
+
+		Assertions.assertThatThrownBy(() -> this.population.fire(2, Events.B))
+				.isInstanceOf(IndexOutOfBoundsException.class);
+		Assertions.assertThat(this.population.getCurrentMachineIndex()).isEqualTo(-1);
+	}
+}
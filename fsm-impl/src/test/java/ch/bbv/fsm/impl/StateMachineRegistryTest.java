@@ -0,0 +1,137 @@
+package ch.bbv.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.StateMachine.LiveCycle;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests the {@link StateMachineRegistry}.
+ */
+public class StateMachineRegistryTest {
+
+	private final AtomicInteger transitions = new AtomicInteger();
+
+	private SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(fsm -> this.transitions.incrementAndGet());
+		definition.in(States.B).on(Events.A).goTo(States.A).execute(fsm -> this.transitions.incrementAndGet());
+		definition.in(States.A).on(Events.C).execute(fsm -> this.transitions.incrementAndGet());
+		return definition;
+	}
+
+	/**
+	 * A state machine is created and started on the first access of its key.
+	 */
+	@Test
+	public void createsStateMachinesOnDemand() {
+		final StateMachineRegistry<Integer, SimpleStateMachine<States, Events>, States, Events> registry = new StateMachineRegistry<>(
+				createDefinition());
+
+		Assertions.assertThat(registry.find(1)).isNull();
+		registry.fire(1, Events.B);
+		registry.fire(2, Events.A);
+
+		Assertions.assertThat(registry.size()).isEqualTo(2);
+		Assertions.assertThat(registry.find(1).getCurrentState()).isEqualTo(States.B);
+		Assertions.assertThat(registry.get(2).getCurrentState()).isEqualTo(States.A);
+		Assertions.assertThat(registry.get(2).getStatus()).isEqualTo(LiveCycle.Running);
+		Assertions.assertThat(registry.get(1)).isSameAs(registry.find(1));
+	}
+
+	/**
+	 * A removed state machine is terminated and re-created on the next access.
+	 */
+	@Test
+	public void remove() {
+		final StateMachineRegistry<String, SimpleStateMachine<States, Events>, States, Events> registry = new StateMachineRegistry<>(
+				createDefinition());
+		registry.fire("a", Events.B);
+
+		final SimpleStateMachine<States, Events> removed = registry.remove("a");
+
+		Assertions.assertThat(removed.getStatus()).isEqualTo(LiveCycle.Terminated);
+		Assertions.assertThat(registry.remove("a")).isNull();
+		Assertions.assertThat(registry.get("a").getCurrentState()).isEqualTo(States.A);
+	}
+
+	/**
+	 * A broadcast fires the event once on every state machine and counts the
+	 * outcome per state machine.
+	 */
+	@Test
+	public void broadcast() throws Exception {
+		final StateMachineRegistry<Integer, SimpleStateMachine<States, Events>, States, Events> registry = new StateMachineRegistry<>(
+				createDefinition());
+		final int keys = 5000;
+		for (int key = 0; key < keys; key++) {
+			registry.get(key);
+		}
+		for (int key = 0; key < keys; key += 2) {
+			registry.fire(key, Events.B);
+		}
+
+		final Broadcast<Integer> broadcast = registry.broadcast(Events.B);
+		broadcast.toCompletableFuture().get(30, TimeUnit.SECONDS);
+
+		Assertions.assertThat(broadcast.isDone()).isTrue();
+		Assertions.assertThat(broadcast.getTotal()).isEqualTo(keys);
+		Assertions.assertThat(broadcast.getCompleted()).isEqualTo(keys);
+		Assertions.assertThat(broadcast.getAccepted()).isEqualTo(keys / 2);
+		Assertions.assertThat(broadcast.getDeclined()).isEqualTo(keys / 2);
+		Assertions.assertThat(broadcast.getFailures()).isEmpty();
+		registry.forEach((key, stateMachine) -> Assertions.assertThat(stateMachine.getCurrentState()).isEqualTo(States.B));
+	}
+
+	/**
+	 * Concurrent accesses of the same keys create one state machine per key and
+	 * process all events.
+	 */
+	@Test
+	public void concurrentAccess() throws Exception {
+		final AtomicInteger created = new AtomicInteger();
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		final StateMachineRegistry<Integer, SimpleStateMachine<States, Events>, States, Events> registry = new StateMachineRegistry<>(
+				key -> {
+					created.incrementAndGet();
+					return definition.createPassiveStateMachine("fsm-" + key);
+				}, 4);
+		final int threads = 8;
+		final int keys = 1000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int key = 0; key < keys; key++) {
+						registry.fire(key, Events.C);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (final Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Assertions.assertThat(created.get()).isEqualTo(keys);
+		Assertions.assertThat(registry.size()).isEqualTo(keys);
+		Assertions.assertThat(this.transitions.get()).isEqualTo(threads * keys);
+	}
+}
@@ -0,0 +1,65 @@
+package ch.bbv.fsm.impl;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * Tests the {@link TracingEventHandler}.
+ */
+public class TracingEventHandlerTest {
+
+	private final Logger logger = (Logger) LoggerFactory.getLogger(TracingEventHandler.class);
+
+	private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+	private Level level;
+
+	@BeforeEach
+	public void setup() {
+		this.level = this.logger.getLevel();
+		this.logger.setLevel(Level.DEBUG);
+		this.appender.start();
+		this.logger.addAppender(this.appender);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.logger.detachAppender(this.appender);
+		this.logger.setLevel(this.level);
+	}
+
+	/**
+	 * The handler logs the fired events, the transitions and the recorded states.
+	 */
+	@Test
+	public void tracesTransitions() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B);
+		definition.addEventHandler(new TracingEventHandler<>());
+
+		final SimpleStateMachine<States, Events> testee = definition.createPassiveStateMachine("traced");
+		testee.start();
+		testee.fire(Events.B, "argument");
+		testee.fire(Events.C);
+
+		final List<String> messages = this.appender.list.stream().map(ILoggingEvent::getFormattedMessage)
+				.collect(Collectors.toList());
+		Assertions.assertThat(messages).anyMatch(m -> m.startsWith("Fire event B") && m.contains("[argument]"));
+		Assertions.assertThat(messages).anyMatch(m -> m.contains("switched from state A to state B on event B"));
+		Assertions.assertThat(messages).anyMatch(m -> m.contains("performed") && m.contains("Exit A -> Enter B"));
+		Assertions.assertThat(messages).anyMatch(m -> m.startsWith("No transition possible. Current state: B, fired event: C"));
+	}
+}
@@ -0,0 +1,63 @@
+package ch.bbv.fsm.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests active state machines running on worker threads of a given factory.
+ */
+public class VirtualThreadsTest {
+
+	@Test
+	public void workerThreadIsCreatedByTheFactory() throws Exception {
+		final Thread worker = processEventWith(definition -> definition.setWorkerThreadFactory(r -> new Thread(r, "custom-worker")));
+
+		Assertions.assertThat(worker.getName()).isEqualTo("custom-worker");
+	}
+
+	@Test
+	public void eventLoopRunsOnAVirtualThread() throws Exception {
+		Assumptions.assumeTrue(VirtualThreads.isAvailable());
+
+		final Thread worker = processEventWith(definition -> definition.setWorkerThreadFactory(VirtualThreads.threadFactory()));
+
+		Assertions.assertThat(Thread.class.getMethod("isVirtual").invoke(worker)).isEqualTo(true);
+		Assertions.assertThat(worker.getName()).startsWith("fsm-worker-");
+	}
+
+	@Test
+	public void threadFactoryIsNotAvailableBeforeJava21() {
+		Assumptions.assumeFalse(VirtualThreads.isAvailable());
+
+		Assertions.assertThatExceptionOfType(UnsupportedOperationException.class).isThrownBy(VirtualThreads::threadFactory);
+	}
+
+	/**
+	 * Processes an event on an active state machine and returns the thread the
+	 * action was executed on.
+	 */
+	private Thread processEventWith(final Consumer<SimpleStateMachineDefinition<States, Events>> configuration)
+			throws Exception {
+		final CompletableFuture<Thread> worker = new CompletableFuture<>();
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.A).execute(fsm -> worker.complete(Thread.currentThread()));
+		configuration.accept(definition);
+
+		final SimpleStateMachine<States, Events> testee = definition.createActiveStateMachine("testee");
+		testee.start();
+		testee.fire(Events.A);
+		try {
+			return worker.get(5, TimeUnit.SECONDS);
+		} finally {
+			testee.terminate();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.BackpressurePolicy;
+
+/**
+ * Tests the {@link BoundedEventQueue} and its policies.
+ */
+public class BoundedEventQueueTest {
+
+	@Test
+	public void rejectThrowsOnPutAndReturnsFalseOnOffer() {
+		final BoundedEventQueue<String> testee = new BoundedEventQueue<>(2, BackpressurePolicy.REJECT);
+		testee.put("a", false, true);
+		testee.put("b", false, true);
+
+		Assertions.assertThatIllegalStateException().isThrownBy(() -> testee.put("c", false, true));
+		Assertions.assertThat(testee.offer("c", false)).isFalse();
+		Assertions.assertThat(testee.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void dropNewest() {
+		final BoundedEventQueue<String> testee = new BoundedEventQueue<>(2, BackpressurePolicy.DROP_NEWEST);
+		testee.put("a", false, true);
+		testee.put("b", false, true);
+		testee.put("c", false, true);
+
+		Assertions.assertThat(testee.offer("d", false)).isFalse();
+		Assertions.assertThat(testee.poll()).isEqualTo("a");
+		Assertions.assertThat(testee.poll()).isEqualTo("b");
+		Assertions.assertThat(testee.poll()).isNull();
+	}
+
+	@Test
+	public void dropOldest() {
+		final BoundedEventQueue<String> testee = new BoundedEventQueue<>(2, BackpressurePolicy.DROP_OLDEST);
+		testee.put("a", false, true);
+		testee.put("b", false, true);
+		testee.put("c", false, true);
+
+		Assertions.assertThat(testee.offer("d", false)).isTrue();
+		Assertions.assertThat(testee.poll()).isEqualTo("c");
+		Assertions.assertThat(testee.poll()).isEqualTo("d");
+		Assertions.assertThat(testee.poll()).isNull();
+	}
+
+	@Test
+	public void putAllCountsTheQueuedItems() {
+		final BoundedEventQueue<String> dropOldest = new BoundedEventQueue<>(3, BackpressurePolicy.DROP_OLDEST);
+		dropOldest.put("a", false, true);
+		Assertions.assertThat(dropOldest.putAll(Arrays.asList("b", "c"), true)).isEqualTo(2);
+		Assertions.assertThat(dropOldest.putAll(Arrays.asList("d", "e", "f", "g"), true)).isEqualTo(3);
+		Assertions.assertThat(dropOldest.poll()).isEqualTo("e");
+
+		final BoundedEventQueue<String> dropNewest = new BoundedEventQueue<>(2, BackpressurePolicy.DROP_NEWEST);
+		Assertions.assertThat(dropNewest.putAll(Arrays.asList("a", "b", "c"), true)).isEqualTo(2);
+
+		final BoundedEventQueue<String> coalesce = new BoundedEventQueue<>(2, BackpressurePolicy.COALESCE);
+		Assertions.assertThat(coalesce.putAll(Arrays.asList("a", "a", "b"), true)).isEqualTo(2);
+	}
+
+	@Test
+	public void coalesceEqualItems() {
+		final BoundedEventQueue<EventHolder<String>> testee = new BoundedEventQueue<>(2, BackpressurePolicy.COALESCE);
+		testee.put(EventHolder.create("a", new Object[] { 1 }), false, true);
+
+		Assertions.assertThat(testee.offer(EventHolder.create("a", new Object[] { 1 }), false)).isTrue();
+		Assertions.assertThat(testee.offer(EventHolder.create("a", new Object[] { 2 }), false)).isTrue();
+		Assertions.assertThat(testee.offer(EventHolder.create("b", new Object[0]), false)).isFalse();
+		Assertions.assertThat(testee.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void priorityItemsAreTakenFirst() {
+		final BoundedEventQueue<String> testee = new BoundedEventQueue<>(3, BackpressurePolicy.REJECT);
+		testee.put("a", false, true);
+		testee.put("p", true, true);
+
+		Assertions.assertThat(testee.poll()).isEqualTo("p");
+		Assertions.assertThat(testee.poll()).isEqualTo("a");
+	}
+
+	@Test
+	public void blockWaitsForSpace() throws InterruptedException {
+		final BoundedEventQueue<String> testee = new BoundedEventQueue<>(1, BackpressurePolicy.BLOCK);
+		testee.put("a", false, true);
+		Assertions.assertThat(testee.offer("b", false)).isFalse();
+		Assertions.assertThatIllegalStateException().isThrownBy(() -> testee.put("b", false, false));
+
+		final CountDownLatch added = new CountDownLatch(1);
+		final Thread producer = new Thread(() -> {
+			testee.put("b", false, true);
+			added.countDown();
+		});
+		producer.start();
+
+		Assertions.assertThat(added.await(100, TimeUnit.MILLISECONDS)).isFalse();
+		Assertions.assertThat(testee.poll()).isEqualTo("a");
+		Assertions.assertThat(added.await(5, TimeUnit.SECONDS)).isTrue();
+		Assertions.assertThat(testee.poll()).isEqualTo("b");
+	}
+
+	@Test
+	public void closeReleasesWaitingProducers() throws InterruptedException {
+		final BoundedEventQueue<String> testee = new BoundedEventQueue<>(1, BackpressurePolicy.BLOCK);
+		testee.put("a", false, true);
+
+		final Thread producer = new Thread(() -> testee.put("b", false, true));
+		producer.start();
+		testee.close();
+		producer.join(5000);
+
+		Assertions.assertThat(producer.isAlive()).isFalse();
+		Assertions.assertThat(testee.size()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,102 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link Mailbox}.
+ */
+public class MailboxTest {
+
+	/**
+	 * Normal items are taken in the order they are added, also across segments.
+	 */
+	@Test
+	public void normalItemsAreTakenInOrder() {
+		final Mailbox<Integer> testee = new Mailbox<>();
+		final int items = 1000;
+
+		for (int i = 0; i < items; i++) {
+			testee.offer(i);
+		}
+		Assertions.assertThat(testee.size()).isEqualTo(items);
+
+		for (int i = 0; i < items; i++) {
+			Assertions.assertThat(testee.poll()).isEqualTo(i);
+		}
+		Assertions.assertThat(testee.poll()).isNull();
+		Assertions.assertThat(testee.isEmpty()).isTrue();
+		Assertions.assertThat(testee.size()).isZero();
+	}
+
+	/**
+	 * Priority items are taken before the normal items, the most recent one first.
+	 */
+	@Test
+	public void priorityItemsAreTakenFirst() {
+		final Mailbox<String> testee = new Mailbox<>();
+
+		testee.offer("a");
+		testee.offerPriority("p1");
+		testee.offer("b");
+		testee.offerPriority("p2");
+
+		Assertions.assertThat(testee.size()).isEqualTo(4);
+		Assertions.assertThat(testee.poll()).isEqualTo("p2");
+		Assertions.assertThat(testee.poll()).isEqualTo("p1");
+		Assertions.assertThat(testee.poll()).isEqualTo("a");
+		Assertions.assertThat(testee.poll()).isEqualTo("b");
+		Assertions.assertThat(testee.poll()).isNull();
+	}
+
+	/**
+	 * Concurrent producers lose no items and the items of each producer are taken
+	 * in the order it added them.
+	 */
+	@Test
+	public void concurrentProducers() throws InterruptedException {
+		final int producers = 4;
+		final int itemsPerProducer = 100_000;
+		final Mailbox<long[]> testee = new Mailbox<>();
+		final CountDownLatch start = new CountDownLatch(1);
+
+		final List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			final Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (final InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < itemsPerProducer; i++) {
+					testee.offer(new long[] { producer, i });
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+
+		final long[] next = new long[producers];
+		int taken = 0;
+		while (taken < producers * itemsPerProducer) {
+			final long[] item = testee.poll();
+			if (item == null) {
+				Thread.yield();
+				continue;
+			}
+			Assertions.assertThat(item[1]).isEqualTo(next[(int) item[0]]);
+			next[(int) item[0]]++;
+			taken++;
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		Assertions.assertThat(testee.isEmpty()).isTrue();
+	}
+}
@@ -0,0 +1,75 @@
+package ch.bbv.fsm.impl.internal.driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Tests the {@link PartitionWorker}.
+ */
+public class PartitionWorkerTest {
+
+	/**
+	 * An error thrown by a task is passed to the uncaught exception handler and
+	 * the worker executes the next task.
+	 */
+	@Test
+	@Timeout(value = 10, unit = TimeUnit.SECONDS)
+	public void workerSurvivesAnError() throws InterruptedException {
+		final List<Throwable> uncaught = new ArrayList<>();
+		final PartitionWorker testee = new PartitionWorker(runnable -> {
+			final Thread thread = new Thread(runnable);
+			thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+			return thread;
+		});
+		final AtomicInteger executed = new AtomicInteger();
+
+		testee.execute(() -> {
+			throw new AssertionError("failing task");
+		});
+		testee.executeAndWait(executed::incrementAndGet);
+		testee.stop();
+
+		Assertions.assertThat(executed).hasValue(1);
+		Assertions.assertThat(uncaught).hasSize(1).allMatch(e -> e instanceof AssertionError);
+	}
+
+	/**
+	 * Every task queued while the worker is stopped is either rejected or
+	 * executed.
+	 */
+	@Test
+	@Timeout(value = 30, unit = TimeUnit.SECONDS)
+	public void tasksQueuedWhileStoppingAreExecuted() throws InterruptedException {
+		for (int round = 0; round < 200; round++) {
+			final PartitionWorker testee = new PartitionWorker(Thread::new);
+			final AtomicInteger accepted = new AtomicInteger();
+			final AtomicInteger executed = new AtomicInteger();
+			final CountDownLatch start = new CountDownLatch(1);
+			final Thread producer = new Thread(() -> {
+				try {
+					start.await();
+					while (true) {
+						testee.execute(executed::incrementAndGet);
+						accepted.incrementAndGet();
+					}
+				} catch (final IllegalStateException | InterruptedException e) {
+					// stopped
+				}
+			});
+			producer.start();
+
+			start.countDown();
+			testee.stop();
+			producer.join();
+
+			Assertions.assertThat(executed.get()).isEqualTo(accepted.get());
+		}
+	}
+}
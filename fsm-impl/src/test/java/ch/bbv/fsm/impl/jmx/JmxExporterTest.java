@@ -0,0 +1,205 @@
+package ch.bbv.fsm.impl.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Tests the {@link JmxExporter}.
+ */
+public class JmxExporterTest {
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+
+	private SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> result = new SimpleStateMachineDefinition<>(States.A);
+		result.in(States.A).on(Events.B).goTo(States.B);
+		result.in(States.B).on(Events.A).goTo(States.A);
+		result.in(States.B).on(Events.C).execute(fsm -> {
+			throw new IllegalStateException("failing action");
+		});
+		result.in(States.A).on(Events.D).execute(fsm -> {
+			try {
+				this.release.await(10, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		return result;
+	}
+
+	@AfterEach
+	public void tearDown() {
+		this.release.countDown();
+		this.definition.disableJmx();
+	}
+
+	private Object attribute(final String properties, final String attribute) throws JMException {
+		return this.server.getAttribute(new ObjectName(JmxExporter.DOMAIN + ":" + properties), attribute);
+	}
+
+	/**
+	 * The bean of a state machine exposes its state and counters and is
+	 * unregistered when the state machine is terminated.
+	 */
+	@Test
+	public void stateMachineBean() throws JMException {
+		this.definition.enableJmx("jmx-test");
+		final SimpleStateMachine<States, Events> fsm = this.definition.createPassiveStateMachine("passive");
+		final String bean = "type=StateMachine,definition=jmx-test,name=passive";
+		Assertions.assertThat(attribute(bean, "Status")).isEqualTo("Created");
+
+		fsm.start();
+		fsm.fire(Events.B);
+		fsm.fire(Events.C);
+		fsm.fire(Events.D);
+
+		Assertions.assertThat(attribute(bean, "CurrentState")).isEqualTo("B");
+		Assertions.assertThat(attribute(bean, "Status")).isEqualTo("Running");
+		Assertions.assertThat(attribute(bean, "ProcessedEvents")).isEqualTo(3L);
+		Assertions.assertThat(attribute(bean, "DeclinedEvents")).isEqualTo(1L);
+		Assertions.assertThat(attribute(bean, "Exceptions")).isEqualTo(1L);
+		Assertions.assertThat((String) attribute(bean, "LastException")).contains("failing action");
+		Assertions.assertThat(attribute(bean, "QueuedEvents")).isEqualTo(0);
+		Assertions.assertThat(attribute(bean, "CurrentProcessingTime")).isEqualTo(0L);
+		Assertions.assertThat((Long) attribute(bean, "ProcessingTimeMax")).isPositive();
+
+		fsm.terminate();
+
+		Assertions.assertThat(this.server.isRegistered(new ObjectName(JmxExporter.DOMAIN + ":" + bean))).isFalse();
+		Assertions.assertThat(attribute("type=StateMachineDefinition,name=jmx-test", "ProcessedEvents")).isEqualTo(3L);
+		Assertions.assertThat(attribute("type=StateMachineDefinition,name=jmx-test", "StateMachines")).isEqualTo(0);
+	}
+
+	/**
+	 * The bean of a passivated state machine is unregistered until it is
+	 * activated again, its counters are kept by the definition.
+	 */
+	@Test
+	public void passivatedStateMachine() throws JMException {
+		this.definition.enableJmx("jmx-passivated");
+		final SimpleStateMachine<States, Events> fsm = this.definition.createPassiveStateMachine("passivated");
+		final ObjectName bean = new ObjectName(JmxExporter.DOMAIN + ":type=StateMachine,definition=jmx-passivated,name=passivated");
+		final String definitionBean = "type=StateMachineDefinition,name=jmx-passivated";
+		fsm.start();
+		fsm.fire(Events.B);
+
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+		fsm.passivate(memento);
+
+		Assertions.assertThat(this.server.isRegistered(bean)).isFalse();
+		Assertions.assertThat(attribute(definitionBean, "StateMachines")).isEqualTo(0);
+
+		fsm.activate(memento);
+		fsm.fire(Events.A);
+
+		Assertions.assertThat(this.server.isRegistered(bean)).isTrue();
+		Assertions.assertThat(this.server.getAttribute(bean, "ProcessedEvents")).isEqualTo(1L);
+		Assertions.assertThat(attribute(definitionBean, "ProcessedEvents")).isEqualTo(2L);
+	}
+
+	/**
+	 * The bean of a state machine which is dropped without terminating it is
+	 * unregistered once the state machine is garbage collected.
+	 */
+	@Test
+	public void droppedStateMachine() throws JMException, InterruptedException {
+		this.definition.enableJmx("jmx-dropped");
+		this.definition.createPassiveStateMachine("dropped").start();
+		final String definitionBean = "type=StateMachineDefinition,name=jmx-dropped";
+
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while ((Integer) attribute(definitionBean, "StateMachines") > 0 && System.nanoTime() < deadline) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		Assertions.assertThat(attribute(definitionBean, "StateMachines")).isEqualTo(0);
+		Assertions.assertThat(this.server.isRegistered(
+				new ObjectName(JmxExporter.DOMAIN + ":type=StateMachine,definition=jmx-dropped,name=dropped"))).isFalse();
+	}
+
+	/**
+	 * A stuck state machine shows a growing processing time and queue.
+	 */
+	@Test
+	public void stuckStateMachine() throws JMException, InterruptedException {
+		this.definition.enableJmx("jmx-stuck");
+		final SimpleStateMachine<States, Events> fsm = this.definition.createActiveStateMachine("active");
+		fsm.start();
+		fsm.fire(Events.D);
+		fsm.fire(Events.B);
+		fsm.fire(Events.A);
+		final String bean = "type=StateMachine,definition=jmx-stuck,name=active";
+
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while ((Long) attribute(bean, "CurrentProcessingTime") == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		Assertions.assertThat(attribute(bean, "QueuedEvents")).isEqualTo(2);
+		Assertions.assertThat(attribute("type=StateMachineDefinition,name=jmx-stuck", "QueuedEvents")).isEqualTo(2L);
+
+		this.release.countDown();
+		while (!fsm.isIdle() && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		Assertions.assertThat(fsm.isIdle()).isTrue();
+		fsm.terminate();
+		Assertions.assertThat(attribute("type=StateMachineDefinition,name=jmx-stuck", "ProcessedEvents")).isEqualTo(3L);
+	}
+
+	/**
+	 * The values of all state machines of a definition are aggregated.
+	 */
+	@Test
+	public void definitionBean() throws JMException {
+		this.definition.enableJmx("jmx-definition");
+		final SimpleStateMachine<States, Events> first = this.definition.createPassiveStateMachine("first");
+		final SimpleStateMachine<States, Events> second = this.definition.createPassiveStateMachine("second");
+		first.start();
+		second.start();
+		first.fire(Events.B);
+		second.fire(Events.B);
+		second.fire(Events.A);
+		second.fire(Events.A);
+
+		final String bean = "type=StateMachineDefinition,name=jmx-definition";
+		Assertions.assertThat(attribute(bean, "StateMachines")).isEqualTo(2);
+		Assertions.assertThat(attribute(bean, "ProcessedEvents")).isEqualTo(4L);
+		Assertions.assertThat(attribute(bean, "DeclinedEvents")).isEqualTo(1L);
+
+		this.definition.disableJmx();
+
+		Assertions.assertThat(this.server.queryNames(new ObjectName(JmxExporter.DOMAIN + ":definition=jmx-definition,*"), null))
+				.isEmpty();
+		Assertions.assertThat(this.server.isRegistered(new ObjectName(JmxExporter.DOMAIN + ":" + bean))).isFalse();
+	}
+
+	/**
+	 * The beans are only enabled once.
+	 */
+	@Test
+	public void enableTwice() {
+		this.definition.enableJmx("jmx-twice");
+		Assertions.assertThatThrownBy(() -> this.definition.enableJmx("jmx-twice"))
+				.isInstanceOf(IllegalStateException.class);
+	}
+}
@@ -0,0 +1,68 @@
+package ch.bbv.fsm.impl.metrics;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link Histogram}.
+ */
+public class HistogramTest {
+
+	/**
+	 * Every value lies within its bucket and the buckets are at most 1/16 of the
+	 * value wide.
+	 */
+	@Test
+	public void bucketsCoverValues() {
+		for (long value = 0; value < 100_000; value += 7) {
+			assertBucket(value);
+		}
+		for (long value = 1; value > 0 && value <= Histogram.MAX_VALUE; value = value * 3 + 1) {
+			assertBucket(value);
+		}
+		assertBucket(Histogram.MAX_VALUE);
+	}
+
+	private static void assertBucket(final long value) {
+		final int index = Histogram.index(value);
+		Assertions.assertThat(Histogram.highestValue(index)).isGreaterThanOrEqualTo(value);
+		if (index > 0) {
+			Assertions.assertThat(Histogram.highestValue(index - 1)).isLessThan(value);
+		}
+		Assertions.assertThat(Histogram.highestValue(index) - value).isLessThanOrEqualTo(value / 16);
+	}
+
+	/**
+	 * The snapshot reports the count, the extremes, the mean and the percentiles.
+	 */
+	@Test
+	public void snapshot() {
+		final Histogram testee = new Histogram();
+		for (int i = 1; i <= 1000; i++) {
+			testee.record(i);
+		}
+
+		final HistogramSnapshot snapshot = testee.snapshot();
+
+		Assertions.assertThat(snapshot.getCount()).isEqualTo(1000);
+		Assertions.assertThat(snapshot.getMin()).isEqualTo(1);
+		Assertions.assertThat(snapshot.getMax()).isEqualTo(1000);
+		Assertions.assertThat(snapshot.getMean()).isEqualTo(500.5);
+		Assertions.assertThat(snapshot.getValueAtPercentile(50)).isBetween(500L, 500L + 500 / 16);
+		Assertions.assertThat(snapshot.getValueAtPercentile(99)).isBetween(990L, 990L + 990 / 16);
+		Assertions.assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(1000);
+	}
+
+	/**
+	 * An empty histogram reports zeros.
+	 */
+	@Test
+	public void emptySnapshot() {
+		final HistogramSnapshot snapshot = new Histogram().snapshot();
+
+		Assertions.assertThat(snapshot.getCount()).isZero();
+		Assertions.assertThat(snapshot.getMin()).isZero();
+		Assertions.assertThat(snapshot.getMax()).isZero();
+		Assertions.assertThat(snapshot.getValueAtPercentile(99)).isZero();
+	}
+}
@@ -0,0 +1,90 @@
+package ch.bbv.fsm.impl.metrics;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.impl.StatesAndEvents.Events;
+import ch.bbv.fsm.impl.StatesAndEvents.States;
+
+/**
+ * Tests the {@link StateMachineMetrics}.
+ */
+public class StateMachineMetricsTest {
+
+	private static SimpleStateMachineDefinition<States, Events> createDefinition(
+			final StateMachineMetrics<States, Events> metrics) {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.B).goTo(States.B).execute(fsm -> {
+			// no action
+		}).onlyIf((fsm, args) -> args.length == 0);
+		definition.in(States.B).on(Events.A).goTo(States.A);
+		definition.in(States.B).on(Events.C).execute(fsm -> fsm.fire(Events.A));
+		definition.addInstrumentation(metrics);
+		return definition;
+	}
+
+	/**
+	 * The transitions, declined events, guards, actions and dwell times are
+	 * recorded.
+	 */
+	@Test
+	public void recordsTransitions() {
+		final StateMachineMetrics<States, Events> testee = new StateMachineMetrics<>(States.class, Events.class);
+		final SimpleStateMachine<States, Events> fsm = createDefinition(testee).createPassiveStateMachine("metrics");
+		fsm.start();
+
+		fsm.fire(Events.B);
+		fsm.fire(Events.A);
+		fsm.fire(Events.B, "declined by the guard");
+		fsm.fire(Events.B);
+		fsm.fire(Events.C);
+		fsm.fire(Events.D);
+
+		final MetricsSnapshot<States, Events> snapshot = testee.snapshot();
+		Assertions.assertThat(snapshot.getTransitionCount(States.A, Events.B, States.B)).isEqualTo(2);
+		Assertions.assertThat(snapshot.getTransitionCount(States.B, Events.A, States.A)).isEqualTo(2);
+		Assertions.assertThat(snapshot.getTransitionCount(States.B, Events.C, States.B)).isEqualTo(1);
+		Assertions.assertThat(snapshot.getTransitions()).hasSize(3);
+		Assertions.assertThat(snapshot.getDeclinedCount(States.A, Events.B)).isEqualTo(1);
+		Assertions.assertThat(snapshot.getDeclinedCount(States.A, Events.D)).isEqualTo(1);
+		Assertions.assertThat(snapshot.getGuards()).hasSize(1);
+		Assertions.assertThat(snapshot.getGuards().get(0).getDuration().getCount()).isEqualTo(3);
+		Assertions.assertThat(snapshot.getActions()).extracting(MetricsSnapshot.ExecutionMetrics::getEvent)
+				.containsExactlyInAnyOrder(Events.B, Events.C);
+		Assertions.assertThat(snapshot.getDwellTimes().get(States.A).getCount()).isEqualTo(2);
+		Assertions.assertThat(snapshot.getDwellTimes().get(States.B).getCount()).isEqualTo(2);
+		// the event fired by the action is queued
+		Assertions.assertThat(snapshot.getQueueDepth().getCount()).isEqualTo(7);
+	}
+
+	/**
+	 * The metrics of all state machines of a definition are aggregated.
+	 */
+	@Test
+	public void aggregatesStateMachines() throws InterruptedException {
+		final StateMachineMetrics<States, Events> testee = new StateMachineMetrics<>(States.class, Events.class);
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition(testee);
+		final SimpleStateMachine<States, Events> passive = definition.createPassiveStateMachine("passive");
+		final SimpleStateMachine<States, Events> active = definition.createActiveStateMachine("active");
+		passive.start();
+		active.start();
+
+		for (int i = 0; i < 100; i++) {
+			passive.fire(Events.B);
+			passive.fire(Events.A);
+			active.fire(Events.B);
+			active.fire(Events.A);
+		}
+		while (!active.isIdle()) {
+			Thread.sleep(1);
+		}
+		active.terminate();
+
+		final MetricsSnapshot<States, Events> snapshot = testee.snapshot();
+		Assertions.assertThat(snapshot.getTransitionCount(States.A, Events.B, States.B)).isEqualTo(200);
+		Assertions.assertThat(snapshot.getTransitionCount(States.B, Events.A, States.A)).isEqualTo(200);
+		Assertions.assertThat(snapshot.getQueueDepth().getCount()).isEqualTo(400);
+	}
+}
@@ -0,0 +1,40 @@
+package ch.bbv.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The execution of the actions of a transition.
+ */
+@Name("ch.bbv.fsm.Action")
+@Label("FSM Action")
+@Category("bbvfsm")
+@Description("The actions of a transition of a state machine were performed")
+@Enabled(false)
+@StackTrace(false)
+public final class FsmActionEvent extends jdk.jfr.Event {
+
+	@Label("State Machine")
+	String stateMachine;
+
+	@Label("State")
+	String state;
+
+	@Label("State Ordinal")
+	int stateOrdinal;
+
+	@Label("Event")
+	String event;
+
+	@Label("Event Ordinal")
+	int eventOrdinal;
+
+	@Label("Action Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long actionTime;
+}
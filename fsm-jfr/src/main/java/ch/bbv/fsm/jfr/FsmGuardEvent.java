@@ -0,0 +1,40 @@
+package ch.bbv.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The evaluation of the guard of a transition.
+ */
+@Name("ch.bbv.fsm.Guard")
+@Label("FSM Guard")
+@Category("bbvfsm")
+@Description("The guard of a transition of a state machine was evaluated")
+@Enabled(false)
+@StackTrace(false)
+public final class FsmGuardEvent extends jdk.jfr.Event {
+
+	@Label("State Machine")
+	String stateMachine;
+
+	@Label("State")
+	String state;
+
+	@Label("State Ordinal")
+	int stateOrdinal;
+
+	@Label("Event")
+	String event;
+
+	@Label("Event Ordinal")
+	int eventOrdinal;
+
+	@Label("Guard Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long guardTime;
+}
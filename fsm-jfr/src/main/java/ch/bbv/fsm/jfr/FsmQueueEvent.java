@@ -0,0 +1,33 @@
+package ch.bbv.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An event taken from the event queue of a state machine for processing.
+ */
+@Name("ch.bbv.fsm.Queue")
+@Label("FSM Queue")
+@Category("bbvfsm")
+@Description("A state machine took an event for processing")
+@Enabled(false)
+@StackTrace(false)
+public final class FsmQueueEvent extends jdk.jfr.Event {
+
+	@Label("State Machine")
+	String stateMachine;
+
+	@Label("Event")
+	String event;
+
+	@Label("Event Ordinal")
+	int eventOrdinal;
+
+	@Label("Queue Depth")
+	@Description("The number of events still queued")
+	int queueDepth;
+}
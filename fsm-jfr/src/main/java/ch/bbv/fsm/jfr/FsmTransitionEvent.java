@@ -0,0 +1,52 @@
+package ch.bbv.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A completed or declined transition.
+ */
+@Name("ch.bbv.fsm.Transition")
+@Label("FSM Transition")
+@Category("bbvfsm")
+@Description("A transition of a state machine completed or an event was declined")
+@Enabled(false)
+@StackTrace(false)
+public final class FsmTransitionEvent extends jdk.jfr.Event {
+
+	@Label("State Machine")
+	String stateMachine;
+
+	@Label("Source State")
+	String sourceState;
+
+	@Label("Source State Ordinal")
+	int sourceStateOrdinal;
+
+	@Label("Event")
+	String event;
+
+	@Label("Event Ordinal")
+	int eventOrdinal;
+
+	@Label("Target State")
+	@Description("The state after the transition, null if the event was declined")
+	String targetState;
+
+	@Label("Target State Ordinal")
+	@Description("The ordinal of the state after the transition, -1 if the event was declined")
+	int targetStateOrdinal;
+
+	@Label("Declined")
+	boolean declined;
+
+	@Label("Transition Time")
+	@Description("The time the transition took, including guards, actions and the exit and entry actions")
+	@Timespan(Timespan.NANOSECONDS)
+	long transitionTime;
+}
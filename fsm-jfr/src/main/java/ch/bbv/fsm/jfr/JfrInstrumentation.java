@@ -0,0 +1,123 @@
+package ch.bbv.fsm.jfr;
+
+import ch.bbv.fsm.impl.AbstractStateMachineDefinition;
+import ch.bbv.fsm.impl.Instrumentation;
+import jdk.jfr.EventType;
+
+/**
+ * Emits Java Flight Recorder events for the state machines of a definition:
+ *
+ * <pre>
+ * definition.addInstrumentation(new JfrInstrumentation&lt;&gt;());
+ * </pre>
+ *
+ * The events are {@link FsmTransitionEvent}, {@link FsmGuardEvent},
+ * {@link FsmActionEvent} and {@link FsmQueueEvent} in the category
+ * <code>bbvfsm</code>. They are disabled by default and enabled in the
+ * recording settings, e.g. <code>ch.bbv.fsm.Transition#enabled=true</code>.
+ * <p>
+ * The durations are measured by the state machine and recorded as fields of
+ * the events, so the events have no duration of their own and their threshold
+ * setting has no effect. An event is only populated and committed if it is
+ * enabled, a disabled event is not allocated once the callback is compiled.
+ * While none of the events is enabled, the instrumentation is not
+ * {@link #isActive() active}, so the state machines neither measure durations
+ * nor call it.
+ *
+ * @see AbstractStateMachineDefinition#addInstrumentation(Instrumentation)
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public class JfrInstrumentation<S extends Enum<?>, E extends Enum<?>> implements Instrumentation<S, E> {
+
+	private static final EventType[] EVENT_TYPES = { EventType.getEventType(FsmTransitionEvent.class),
+			EventType.getEventType(FsmGuardEvent.class), EventType.getEventType(FsmActionEvent.class),
+			EventType.getEventType(FsmQueueEvent.class) };
+
+	/**
+	 * Returns <code>true</code> while at least one of the events is enabled in a
+	 * running recording.
+	 */
+	@Override
+	public boolean isActive() {
+		for (final EventType eventType : EVENT_TYPES) {
+			if (eventType.isEnabled()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void onEventDequeued(final String stateMachine, final E eventId, final int queueDepth) {
+		final FsmQueueEvent event = new FsmQueueEvent();
+		if (event.isEnabled()) {
+			event.stateMachine = stateMachine;
+			event.event = eventId.name();
+			event.eventOrdinal = eventId.ordinal();
+			event.queueDepth = queueDepth;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void onGuardEvaluated(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		final FsmGuardEvent event = new FsmGuardEvent();
+		if (event.isEnabled()) {
+			event.stateMachine = stateMachine;
+			event.state = stateId.name();
+			event.stateOrdinal = stateId.ordinal();
+			event.event = eventId.name();
+			event.eventOrdinal = eventId.ordinal();
+			event.guardTime = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void onActionsPerformed(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		final FsmActionEvent event = new FsmActionEvent();
+		if (event.isEnabled()) {
+			event.stateMachine = stateMachine;
+			event.state = stateId.name();
+			event.stateOrdinal = stateId.ordinal();
+			event.event = eventId.name();
+			event.eventOrdinal = eventId.ordinal();
+			event.actionTime = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void onTransitionCompleted(final String stateMachine, final S sourceStateId, final E eventId,
+			final S targetStateId, final long nanos) {
+		final FsmTransitionEvent event = new FsmTransitionEvent();
+		if (event.isEnabled()) {
+			event.stateMachine = stateMachine;
+			event.sourceState = sourceStateId.name();
+			event.sourceStateOrdinal = sourceStateId.ordinal();
+			event.event = eventId.name();
+			event.eventOrdinal = eventId.ordinal();
+			event.targetState = targetStateId.name();
+			event.targetStateOrdinal = targetStateId.ordinal();
+			event.transitionTime = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void onTransitionDeclined(final String stateMachine, final S stateId, final E eventId, final long nanos) {
+		final FsmTransitionEvent event = new FsmTransitionEvent();
+		if (event.isEnabled()) {
+			event.stateMachine = stateMachine;
+			event.sourceState = stateId.name();
+			event.sourceStateOrdinal = stateId.ordinal();
+			event.event = eventId.name();
+			event.eventOrdinal = eventId.ordinal();
+			event.targetStateOrdinal = -1;
+			event.declined = true;
+			event.transitionTime = nanos;
+			event.commit();
+		}
+	}
+}
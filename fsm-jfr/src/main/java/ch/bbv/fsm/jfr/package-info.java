@@ -0,0 +1,4 @@
+/**
+ * Java Flight Recorder events of the state machines.
+ */
+package ch.bbv.fsm.jfr;
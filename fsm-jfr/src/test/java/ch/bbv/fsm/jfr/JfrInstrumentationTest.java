@@ -0,0 +1,149 @@
+package ch.bbv.fsm.jfr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.impl.Instrumentation;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests the {@link JfrInstrumentation}.
+ */
+public class JfrInstrumentationTest {
+
+	private enum States {
+		A, B
+	}
+
+	private enum Events {
+		ToA, ToB
+	}
+
+	private static SimpleStateMachine<States, Events> createStateMachine() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.ToB).goTo(States.B).execute(fsm -> {
+			// no action
+		}).onlyIf((fsm, args) -> true);
+		definition.in(States.B).on(Events.ToA).goTo(States.A);
+		definition.addInstrumentation(new JfrInstrumentation<>());
+		return definition.createPassiveStateMachine("jfr");
+	}
+
+	private static List<RecordedEvent> record(final Recording recording) throws IOException {
+		final SimpleStateMachine<States, Events> fsm = createStateMachine();
+		fsm.start();
+		recording.start();
+		fsm.fire(Events.ToB);
+		fsm.fire(Events.ToB);
+		fsm.fire(Events.ToA);
+		recording.stop();
+		final Path file = Files.createTempFile("fsm", ".jfr");
+		try {
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * The enabled events are recorded with the state machine, states, events and
+	 * durations.
+	 */
+	@Test
+	public void recordsEnabledEvents() throws IOException {
+		try (Recording recording = new Recording()) {
+			recording.enable(FsmTransitionEvent.class);
+			recording.enable(FsmGuardEvent.class);
+			recording.enable(FsmActionEvent.class);
+			recording.enable(FsmQueueEvent.class);
+
+			final List<RecordedEvent> events = record(recording);
+
+			Assertions.assertThat(events).filteredOn(e -> e.getEventType().getName().equals("ch.bbv.fsm.Queue")).hasSize(3);
+			Assertions.assertThat(events).filteredOn(e -> e.getEventType().getName().equals("ch.bbv.fsm.Guard")).hasSize(1);
+			Assertions.assertThat(events).filteredOn(e -> e.getEventType().getName().equals("ch.bbv.fsm.Action")).hasSize(1);
+			final List<RecordedEvent> transitions = events.stream()
+					.filter(e -> e.getEventType().getName().equals("ch.bbv.fsm.Transition"))
+					.collect(Collectors.toList());
+			Assertions.assertThat(transitions).hasSize(3);
+			final RecordedEvent first = transitions.get(0);
+			Assertions.assertThat(first.getString("stateMachine")).isEqualTo("jfr");
+			Assertions.assertThat(first.getString("sourceState")).isEqualTo("A");
+			Assertions.assertThat(first.getInt("eventOrdinal")).isEqualTo(Events.ToB.ordinal());
+			Assertions.assertThat(first.getInt("targetStateOrdinal")).isEqualTo(States.B.ordinal());
+			Assertions.assertThat(first.getBoolean("declined")).isFalse();
+			Assertions.assertThat(first.getDuration("transitionTime").toNanos()).isPositive();
+			final RecordedEvent declined = transitions.get(1);
+			Assertions.assertThat(declined.getBoolean("declined")).isTrue();
+			Assertions.assertThat(declined.getInt("targetStateOrdinal")).isEqualTo(-1);
+		}
+	}
+
+	/**
+	 * While no event is enabled the instrumentation is inactive and the state
+	 * machine neither measures durations nor calls its instrumentations.
+	 */
+	@Test
+	public void inactiveWhileNoEventIsEnabled() {
+		final AtomicInteger measured = new AtomicInteger();
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.A);
+		definition.in(States.A).on(Events.ToB).goTo(States.B);
+		definition.in(States.B).on(Events.ToA).goTo(States.A);
+		final JfrInstrumentation<States, Events> testee = new JfrInstrumentation<>();
+		definition.addInstrumentation(testee);
+		definition.addInstrumentation(new Instrumentation<States, Events>() {
+
+			@Override
+			public boolean isActive() {
+				return false;
+			}
+
+			@Override
+			public void onTransitionCompleted(final String stateMachine, final States sourceStateId,
+					final Events eventId, final States targetStateId, final long nanos) {
+				measured.incrementAndGet();
+			}
+		});
+		final SimpleStateMachine<States, Events> fsm = definition.createPassiveStateMachine("inactive");
+		fsm.start();
+
+		Assertions.assertThat(testee.isActive()).isFalse();
+		fsm.fire(Events.ToB);
+		Assertions.assertThat(measured).hasValue(0);
+
+		try (Recording recording = new Recording()) {
+			recording.enable(FsmGuardEvent.class);
+			recording.start();
+
+			Assertions.assertThat(testee.isActive()).isTrue();
+			fsm.fire(Events.ToA);
+			Assertions.assertThat(measured).hasValue(1);
+		}
+	}
+
+	/**
+	 * Disabled events are not recorded.
+	 */
+	@Test
+	public void ignoresDisabledEvents() throws IOException {
+		try (Recording recording = new Recording()) {
+			recording.enable(FsmTransitionEvent.class);
+
+			final List<RecordedEvent> events = record(recording);
+
+			Assertions.assertThat(events).extracting(e -> e.getEventType().getName()).containsOnly("ch.bbv.fsm.Transition");
+		}
+	}
+}
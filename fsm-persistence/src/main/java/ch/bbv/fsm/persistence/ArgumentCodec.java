@@ -0,0 +1,27 @@
+package ch.bbv.fsm.persistence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes and reads the arguments of the events appended to a {@link Journal}.
+ */
+public interface ArgumentCodec {
+
+	/**
+	 * Writes the arguments at the position of the buffer.
+	 *
+	 * @param arguments the arguments, may be empty.
+	 * @param buffer    the buffer.
+	 * @throws java.nio.BufferOverflowException if the buffer is too small.
+	 * @throws IllegalArgumentException         if an argument can not be written.
+	 */
+	void write(Object[] arguments, ByteBuffer buffer);
+
+	/**
+	 * Reads the arguments at the position of the buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @return the arguments.
+	 */
+	Object[] read(ByteBuffer buffer);
+}
@@ -0,0 +1,99 @@
+package ch.bbv.fsm.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes arguments which are <code>null</code>, {@link Boolean},
+ * {@link Integer}, {@link Long}, {@link Double}, {@link String} or
+ * <code>byte[]</code>, each as a type tag followed by the value.
+ */
+public class DefaultArgumentCodec implements ArgumentCodec {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private static final byte NULL = 0;
+
+	private static final byte BOOLEAN = 1;
+
+	private static final byte INTEGER = 2;
+
+	private static final byte LONG = 3;
+
+	private static final byte DOUBLE = 4;
+
+	private static final byte STRING = 5;
+
+	private static final byte BYTES = 6;
+
+	@Override
+	public void write(final Object[] arguments, final ByteBuffer buffer) {
+		VarInts.write(buffer, arguments.length);
+		for (final Object argument : arguments) {
+			if (argument == null) {
+				buffer.put(NULL);
+			} else if (argument instanceof Boolean) {
+				buffer.put(BOOLEAN).put((byte) ((Boolean) argument ? 1 : 0));
+			} else if (argument instanceof Integer) {
+				buffer.put(INTEGER).putInt((Integer) argument);
+			} else if (argument instanceof Long) {
+				buffer.put(LONG).putLong((Long) argument);
+			} else if (argument instanceof Double) {
+				buffer.put(DOUBLE).putDouble((Double) argument);
+			} else if (argument instanceof String) {
+				final byte[] bytes = ((String) argument).getBytes(StandardCharsets.UTF_8);
+				buffer.put(STRING);
+				VarInts.write(buffer, bytes.length);
+				buffer.put(bytes);
+			} else if (argument instanceof byte[]) {
+				final byte[] bytes = (byte[]) argument;
+				buffer.put(BYTES);
+				VarInts.write(buffer, bytes.length);
+				buffer.put(bytes);
+			} else {
+				throw new IllegalArgumentException("Arguments of type " + argument.getClass().getName() + " are not supported.");
+			}
+		}
+	}
+
+	@Override
+	public Object[] read(final ByteBuffer buffer) {
+		final int length = VarInts.read(buffer);
+		if (length == 0) {
+			return NO_ARGUMENTS;
+		}
+		final Object[] arguments = new Object[length];
+		for (int i = 0; i < length; i++) {
+			arguments[i] = readArgument(buffer);
+		}
+		return arguments;
+	}
+
+	private static Object readArgument(final ByteBuffer buffer) {
+		final byte type = buffer.get();
+		switch (type) {
+		case NULL:
+			return null;
+		case BOOLEAN:
+			return buffer.get() != 0;
+		case INTEGER:
+			return buffer.getInt();
+		case LONG:
+			return buffer.getLong();
+		case DOUBLE:
+			return buffer.getDouble();
+		case STRING:
+			return new String(readBytes(buffer), StandardCharsets.UTF_8);
+		case BYTES:
+			return readBytes(buffer);
+		default:
+			throw new IllegalArgumentException("Unknown argument type " + type + ".");
+		}
+	}
+
+	private static byte[] readBytes(final ByteBuffer buffer) {
+		final byte[] bytes = new byte[VarInts.read(buffer)];
+		buffer.get(bytes);
+		return bytes;
+	}
+}
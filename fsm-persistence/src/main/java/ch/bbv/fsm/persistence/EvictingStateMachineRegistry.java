@@ -0,0 +1,296 @@
+package ch.bbv.fsm.persistence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Holds state machines by key and evicts the idle ones to an
+ * {@link OffHeapMementoStore}. A state machine not accessed for longer than the
+ * idle timeout is passivated by {@link #evictIdle()} and its Java objects are
+ * dropped. The next access re-creates it with the factory and activates it with
+ * its memento, so the callers do not notice the eviction:
+ *
+ * <pre>
+ * EvictingStateMachineRegistry&lt;States, Events&gt; registry = new EvictingStateMachineRegistry&lt;&gt;(
+ * 		new OffHeapMementoStore&lt;&gt;(new MementoCodec&lt;&gt;(States.class, Events.class)),
+ * 		definition::createPassiveStateMachine, 10, TimeUnit.MINUTES);
+ * registry.fire("session-42", Events.Login);
+ * ...
+ * scheduler.scheduleAtFixedRate(registry::evictIdle, 1, 1, TimeUnit.MINUTES);
+ * </pre>
+ *
+ * A state machine created by the factory is started. The factory should create
+ * passive state machines or active state machines with a shared executor,
+ * because the worker thread of an active state machine is not stopped by
+ * passivating it.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public class EvictingStateMachineRegistry<S extends Enum<S>, E extends Enum<E>> {
+
+	private final OffHeapMementoStore<S, E> store;
+
+	private final Function<String, ? extends StateMachine<S, E>> factory;
+
+	private final long idleTimeoutNanos;
+
+	private final Map<String, Resident<S, E>> residents = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates an empty registry.
+	 *
+	 * @param store       the store of the evicted state machines.
+	 * @param factory     creates the state machine with the given key, which is
+	 *                    not started yet.
+	 * @param idleTimeout the time after the last access a state machine is
+	 *                    evicted.
+	 * @param unit        the unit of the idle timeout.
+	 */
+	public EvictingStateMachineRegistry(final OffHeapMementoStore<S, E> store,
+			final Function<String, ? extends StateMachine<S, E>> factory, final long idleTimeout, final TimeUnit unit) {
+		this.store = store;
+		this.factory = factory;
+		this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+	}
+
+	/**
+	 * Fires an event on the state machine with the key, creates or reactivates it
+	 * if necessary.
+	 *
+	 * @param key            the key of the state machine.
+	 * @param eventId        the event.
+	 * @param eventArguments the arguments of the event.
+	 */
+	public void fire(final String key, final E eventId, final Object... eventArguments) {
+		access(key, stateMachine -> {
+			stateMachine.fire(eventId, eventArguments);
+			return null;
+		});
+	}
+
+	/**
+	 * Returns a state machine which accesses the state machine with the key
+	 * through this registry, so it can be kept by the callers while the state
+	 * machine is evicted.
+	 *
+	 * @param key the key of the state machine.
+	 * @return the state machine.
+	 */
+	public StateMachine<S, E> get(final String key) {
+		return new Handle<>(this, key);
+	}
+
+	/**
+	 * Terminates the state machine with the key and removes it. An evicted state
+	 * machine is re-created and activated to terminate it.
+	 *
+	 * @param key the key of the state machine.
+	 */
+	public void remove(final String key) {
+		final Resident<S, E> resident = this.residents.remove(key);
+		if (resident != null) {
+			synchronized (resident) {
+				resident.evicted = true;
+				resident.stateMachine.terminate();
+			}
+		}
+		final StateMachineMemento<S, E> memento = new StateMachineMemento<>();
+		if (this.store.take(key, memento)) {
+			final StateMachine<S, E> stateMachine = this.factory.apply(key);
+			stateMachine.activate(memento);
+			stateMachine.terminate();
+		}
+	}
+
+	/**
+	 * Evicts the idle state machines which were not accessed for longer than the
+	 * idle timeout. A state machine whose memento is larger than a slot of the
+	 * store is activated again and stays resident.
+	 *
+	 * @return the number of evicted state machines.
+	 */
+	public int evictIdle() {
+		final long now = System.nanoTime();
+		int evicted = 0;
+		for (final Map.Entry<String, Resident<S, E>> entry : this.residents.entrySet()) {
+			final Resident<S, E> resident = entry.getValue();
+			if (now - resident.lastAccess > this.idleTimeoutNanos) {
+				synchronized (resident) {
+					if (!resident.evicted && now - resident.lastAccess > this.idleTimeoutNanos
+							&& resident.stateMachine.isIdle()) {
+						final StateMachineMemento<S, E> memento = new StateMachineMemento<>();
+						resident.stateMachine.passivate(memento);
+						try {
+							this.store.put(entry.getKey(), memento);
+						} catch (final IllegalArgumentException e) {
+							resident.stateMachine.activate(memento);
+							continue;
+						}
+						resident.evicted = true;
+						this.residents.remove(entry.getKey(), resident);
+						evicted++;
+					}
+				}
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Returns the number of state machines held on the heap.
+	 */
+	public int numberOfResidentStateMachines() {
+		return this.residents.size();
+	}
+
+	/**
+	 * Returns the number of evicted state machines.
+	 */
+	public int numberOfEvictedStateMachines() {
+		return this.store.size();
+	}
+
+	/**
+	 * Applies an operation to the resident state machine with the key while it can
+	 * not be evicted.
+	 */
+	private <T> T access(final String key, final Function<StateMachine<S, E>, T> operation) {
+		while (true) {
+			final Resident<S, E> resident = this.residents.computeIfAbsent(key, this::load);
+			synchronized (resident) {
+				if (!resident.evicted) {
+					resident.lastAccess = System.nanoTime();
+					return operation.apply(resident.stateMachine);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reactivates an evicted state machine or creates a new one.
+	 */
+	private Resident<S, E> load(final String key) {
+		final StateMachine<S, E> stateMachine = this.factory.apply(key);
+		final StateMachineMemento<S, E> memento = new StateMachineMemento<>();
+		if (this.store.take(key, memento)) {
+			stateMachine.activate(memento);
+		} else {
+			stateMachine.start();
+		}
+		return new Resident<>(stateMachine);
+	}
+
+	/**
+	 * A state machine held on the heap.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	private static final class Resident<S extends Enum<S>, E extends Enum<E>> {
+
+		private final StateMachine<S, E> stateMachine;
+
+		private volatile long lastAccess = System.nanoTime();
+
+		/**
+		 * <code>true</code> once the state machine is evicted or removed, guarded by
+		 * this.
+		 */
+		private boolean evicted;
+
+		private Resident(final StateMachine<S, E> stateMachine) {
+			this.stateMachine = stateMachine;
+		}
+	}
+
+	/**
+	 * Accesses a state machine through the registry.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	private static final class Handle<S extends Enum<S>, E extends Enum<E>> implements StateMachine<S, E> {
+
+		private final EvictingStateMachineRegistry<S, E> registry;
+
+		private final String key;
+
+		private Handle(final EvictingStateMachineRegistry<S, E> registry, final String key) {
+			this.registry = registry;
+			this.key = key;
+		}
+
+		@Override
+		public void fire(final E eventId, final Object... eventArguments) {
+			this.registry.fire(this.key, eventId, eventArguments);
+		}
+
+		@Override
+		public boolean tryFire(final E eventId, final Object... eventArguments) {
+			return this.registry.access(this.key, stateMachine -> stateMachine.tryFire(eventId, eventArguments));
+		}
+
+		@Override
+		public void firePriority(final E eventId, final Object... eventArguments) {
+			this.registry.access(this.key, stateMachine -> {
+				stateMachine.firePriority(eventId, eventArguments);
+				return null;
+			});
+		}
+
+		@Override
+		public LiveCycle getStatus() {
+			return this.registry.access(this.key, StateMachine::getStatus);
+		}
+
+		@Override
+		public int numberOfQueuedEvents() {
+			return this.registry.access(this.key, StateMachine::numberOfQueuedEvents);
+		}
+
+		@Override
+		public boolean isIdle() {
+			return this.registry.access(this.key, StateMachine::isIdle);
+		}
+
+		/**
+		 * Does nothing, the registry starts the state machines it creates.
+		 */
+		@Override
+		public void start() {
+			// started by the registry
+		}
+
+		@Override
+		public void terminate() {
+			this.registry.remove(this.key);
+		}
+
+		@Override
+		public S getCurrentState() {
+			return this.registry.access(this.key, StateMachine::getCurrentState);
+		}
+
+		@Override
+		public void activate(final StateMachineMemento<S, E> stateMachineMemento) {
+			this.registry.access(this.key, stateMachine -> {
+				stateMachine.activate(stateMachineMemento);
+				return null;
+			});
+		}
+
+		@Override
+		public void passivate(final StateMachineMemento<S, E> stateMachineMemento) {
+			this.registry.access(this.key, stateMachine -> {
+				stateMachine.passivate(stateMachineMemento);
+				return null;
+			});
+		}
+	}
+}
@@ -0,0 +1,375 @@
+package ch.bbv.fsm.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Append-only journal of the events accepted by state machines, with periodic
+ * snapshots of their state. A state machine is recovered by activating it with
+ * its last snapshot and firing the events journaled afterwards:
+ *
+ * <pre>
+ * Journal&lt;States, Events&gt; journal = new Journal&lt;&gt;(directory, States.class, Events.class, 4);
+ * StateMachine&lt;States, Events&gt; fsm = journal.journal("order-42", definition.createPassiveStateMachine("order-42"));
+ * fsm.start();
+ * fsm.fire(Events.Pay);
+ * ...
+ * Map&lt;String, JournaledStateMachine&lt;States, Events&gt;&gt; recovered = journal
+ * 		.recover(name -&gt; definition.createPassiveStateMachine(name));
+ * </pre>
+ *
+ * The state machines are distributed by name over partitions, each partition
+ * is a sequence of memory-mapped segment files. Appending to different
+ * partitions does not contend. If the journal syncs, an append returns after
+ * its record is forced to the storage device, the appends waiting for the same
+ * force are committed as a group. Otherwise the records survive a crash of the
+ * process but not of the operating system.
+ * <p>
+ * A segment is deleted once every state machine with records in it has taken
+ * a later snapshot, so that a recovery only reads the segments from the oldest
+ * snapshot on. A state machine which never takes a snapshot keeps all segments
+ * from its first event. A terminated state machine appends a tombstone, see
+ * {@link #forget(String)}, it is not recovered and does not keep segments.
+ * After the journal is opened, segments are only deleted once it was recovered.
+ * <p>
+ * Each record has a checksum. A recovery reads the records of a segment up to
+ * the first record which is corrupt, for example because it was torn by a crash
+ * of the operating system while the journal did not sync.
+ * <p>
+ * Only the events fired on the {@link JournaledStateMachine} are journaled, the
+ * events fired by the actions are fired again by the actions when the events
+ * are replayed. The actions are executed again during the recovery.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public class Journal<S extends Enum<S>, E extends Enum<E>> implements Closeable {
+
+	/**
+	 * The default size of the segment files, 64 MB.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 67108864;
+
+	private static final byte EVENT = 1;
+
+	private static final byte SNAPSHOT = 2;
+
+	private static final byte TOMBSTONE = 3;
+
+	/**
+	 * The size of the buffer an event record is first encoded into.
+	 */
+	private static final int INITIAL_RECORD_SIZE = 256;
+
+	private final E[] events;
+
+	private final MementoCodec<S, E> mementoCodec;
+
+	private final ArgumentCodec argumentCodec;
+
+	private final JournalPartition[] partitions;
+
+	private final int segmentSize;
+
+	private final boolean sync;
+
+	/**
+	 * The number of events after which the {@link JournaledStateMachine}s take a
+	 * snapshot, <code>0</code> if they do not.
+	 */
+	private volatile int snapshotInterval;
+
+	/**
+	 * Opens the journal in the directory with the default segment size and
+	 * arguments, without syncing.
+	 *
+	 * @param directory  the directory, is created if it does not exist.
+	 * @param stateType  the type of the states.
+	 * @param eventType  the type of the events.
+	 * @param partitions the number of partitions.
+	 * @throws IOException if the journal can not be opened.
+	 */
+	public Journal(final Path directory, final Class<S> stateType, final Class<E> eventType, final int partitions)
+			throws IOException {
+		this(directory, stateType, eventType, partitions, DEFAULT_SEGMENT_SIZE, new DefaultArgumentCodec(), false);
+	}
+
+	/**
+	 * Opens the journal in the directory. The number of partitions must not change
+	 * while the journal contains records.
+	 *
+	 * @param directory     the directory, is created if it does not exist.
+	 * @param stateType     the type of the states.
+	 * @param eventType     the type of the events.
+	 * @param partitions    the number of partitions.
+	 * @param segmentSize   the size of the segment files.
+	 * @param argumentCodec writes and reads the arguments of the events.
+	 * @param sync          <code>true</code> if an append returns after its record
+	 *                      is forced to the storage device.
+	 * @throws IOException              if the journal can not be opened.
+	 * @throws IllegalArgumentException if the journal was written for other
+	 *                                  states or events.
+	 */
+	public Journal(final Path directory, final Class<S> stateType, final Class<E> eventType, final int partitions,
+			final int segmentSize, final ArgumentCodec argumentCodec, final boolean sync) throws IOException {
+		if (partitions <= 0) {
+			throw new IllegalArgumentException("The number of partitions must be positive but is " + partitions + ".");
+		}
+		if (segmentSize <= JournalPartition.HEADER_SIZE) {
+			throw new IllegalArgumentException("The segment size is too small: " + segmentSize + ".");
+		}
+		this.events = eventType.getEnumConstants();
+		this.mementoCodec = new MementoCodec<>(stateType, eventType);
+		this.argumentCodec = argumentCodec;
+		this.segmentSize = segmentSize;
+		this.sync = sync;
+		Files.createDirectories(directory);
+		this.partitions = new JournalPartition[partitions];
+		for (int i = 0; i < partitions; i++) {
+			this.partitions[i] = new JournalPartition(directory, i, segmentSize, this.mementoCodec.getFingerprint(),
+					sync);
+		}
+	}
+
+	/**
+	 * Sets the number of events after which the {@link JournaledStateMachine}s
+	 * take a snapshot.
+	 *
+	 * @param snapshotInterval the number of events, <code>0</code> if the
+	 *                         snapshots are only taken explicitly.
+	 */
+	public void setSnapshotInterval(final int snapshotInterval) {
+		if (snapshotInterval < 0) {
+			throw new IllegalArgumentException("The snapshot interval must not be negative but is " + snapshotInterval + ".");
+		}
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	int getSnapshotInterval() {
+		return this.snapshotInterval;
+	}
+
+	/**
+	 * Returns a state machine which journals the events fired on it.
+	 *
+	 * @param name         the name the events are journaled with, unique in this
+	 *                     journal.
+	 * @param stateMachine the state machine.
+	 * @return the journaled state machine.
+	 */
+	public JournaledStateMachine<S, E> journal(final String name, final StateMachine<S, E> stateMachine) {
+		return new JournaledStateMachine<>(this, name, stateMachine);
+	}
+
+	/**
+	 * Appends an event accepted by a state machine.
+	 *
+	 * @param name           the name of the state machine.
+	 * @param eventId        the event.
+	 * @param eventArguments the arguments of the event.
+	 * @throws IllegalArgumentException if an argument can not be written.
+	 */
+	public void append(final String name, final E eventId, final Object[] eventArguments) {
+		append(name, encode(name, eventId, eventArguments));
+	}
+
+	/**
+	 * Encodes the record of an event, so that the arguments can be checked before
+	 * the event is fired.
+	 *
+	 * @throws IllegalArgumentException if an argument can not be written or the
+	 *                                  record is larger than a segment.
+	 */
+	byte[] encode(final String name, final E eventId, final Object[] eventArguments) {
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		final int maximum = this.segmentSize - JournalPartition.HEADER_SIZE - JournalPartition.RECORD_OVERHEAD;
+		for (int capacity = Math.min(INITIAL_RECORD_SIZE, maximum);; capacity = Math.min(2 * capacity, maximum)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(capacity);
+			try {
+				writeHeader(buffer, EVENT, nameBytes);
+				VarInts.write(buffer, eventId.ordinal());
+				this.argumentCodec.write(eventArguments, buffer);
+				return Arrays.copyOf(buffer.array(), buffer.position());
+			} catch (final BufferOverflowException e) {
+				if (capacity == maximum) {
+					throw new IllegalArgumentException(
+							"The record is larger than a segment of " + this.segmentSize + " bytes.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends an encoded event record.
+	 *
+	 * @throws java.io.UncheckedIOException if a new segment can not be created.
+	 */
+	void append(final String name, final byte[] record) {
+		final JournalPartition partition = partition(name);
+		final long offset = partition.append(name, false, buffer -> buffer.put(record));
+		if (this.sync) {
+			partition.sync(offset);
+		}
+	}
+
+	/**
+	 * Appends a snapshot of an idle state machine. The state machine is
+	 * passivated into the snapshot and activated again, the worker of an active
+	 * state machine keeps running.
+	 *
+	 * @param name         the name of the state machine.
+	 * @param stateMachine the state machine.
+	 * @throws IllegalStateException if the state machine is not idle.
+	 */
+	public void snapshot(final String name, final StateMachine<S, E> stateMachine) {
+		if (!stateMachine.isIdle()) {
+			throw new IllegalStateException("The state machine " + name + " is not idle.");
+		}
+		final StateMachineMemento<S, E> memento = new StateMachineMemento<>();
+		stateMachine.passivate(memento);
+		stateMachine.activate(memento);
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		final JournalPartition partition = partition(name);
+		final long offset = partition.append(name, true, buffer -> {
+			writeHeader(buffer, SNAPSHOT, nameBytes);
+			this.mementoCodec.encode(memento, buffer);
+		});
+		if (this.sync) {
+			partition.sync(offset);
+		}
+	}
+
+	/**
+	 * Appends the tombstone of a state machine which is no longer needed, for
+	 * example because it was terminated. The state machine is not recovered and
+	 * its records no longer keep segments from being deleted, unless events are
+	 * journaled with its name again.
+	 *
+	 * @param name the name of the state machine.
+	 */
+	public void forget(final String name) {
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		final JournalPartition partition = partition(name);
+		final long offset = partition.forget(name, buffer -> writeHeader(buffer, TOMBSTONE, nameBytes));
+		if (this.sync) {
+			partition.sync(offset);
+		}
+	}
+
+	/**
+	 * Recovers the journaled state machines. Each state machine is created by the
+	 * factory, activated with its last snapshot or started if there is none, and
+	 * the events journaled after the snapshot are fired on it. The state machines
+	 * forgotten since are not recovered. Afterwards the segments older than the
+	 * snapshots are deleted.
+	 *
+	 * @param factory creates a state machine with the given name, which is not
+	 *                started yet.
+	 * @return the journaled state machines by name.
+	 * @throws IOException if the journal can not be read.
+	 */
+	public Map<String, JournaledStateMachine<S, E>> recover(final Function<String, ? extends StateMachine<S, E>> factory)
+			throws IOException {
+		final Map<String, JournaledStateMachine<S, E>> result = new LinkedHashMap<>();
+		for (final JournalPartition partition : this.partitions) {
+			final Map<String, Recovery<S, E>> recoveries = new LinkedHashMap<>();
+			partition.read((record, segment) -> {
+				final byte type = record.get();
+				final byte[] nameBytes = new byte[VarInts.read(record)];
+				record.get(nameBytes);
+				final String name = new String(nameBytes, StandardCharsets.UTF_8);
+				if (type == TOMBSTONE) {
+					recoveries.remove(name);
+					return;
+				}
+				final Recovery<S, E> recovery = recoveries.computeIfAbsent(name, key -> new Recovery<>());
+				if (type == SNAPSHOT) {
+					recovery.snapshot = this.mementoCodec.decode(record);
+					recovery.segment = segment;
+					recovery.events.clear();
+					recovery.arguments.clear();
+				} else if (type == EVENT) {
+					if (recovery.segment < 0) {
+						recovery.segment = segment;
+					}
+					recovery.events.add(this.events[VarInts.read(record)]);
+					recovery.arguments.add(this.argumentCodec.read(record));
+				} else {
+					throw new IllegalArgumentException("Unknown journal record type " + type + ".");
+				}
+			});
+			final Map<String, Long> retained = new HashMap<>();
+			for (final Map.Entry<String, Recovery<S, E>> entry : recoveries.entrySet()) {
+				final Recovery<S, E> recovery = entry.getValue();
+				retained.put(entry.getKey(), recovery.segment);
+				final StateMachine<S, E> stateMachine = factory.apply(entry.getKey());
+				if (recovery.snapshot == null) {
+					stateMachine.start();
+				} else {
+					stateMachine.activate(recovery.snapshot);
+				}
+				for (int i = 0; i < recovery.events.size(); i++) {
+					stateMachine.fire(recovery.events.get(i), recovery.arguments.get(i));
+				}
+				result.put(entry.getKey(), journal(entry.getKey(), stateMachine));
+			}
+			partition.retain(retained);
+		}
+		return result;
+	}
+
+	/**
+	 * Forces all records to the storage device.
+	 */
+	@Override
+	public void close() {
+		for (final JournalPartition partition : this.partitions) {
+			partition.close();
+		}
+	}
+
+	private JournalPartition partition(final String name) {
+		return this.partitions[Math.floorMod(name.hashCode(), this.partitions.length)];
+	}
+
+	private static void writeHeader(final ByteBuffer buffer, final byte type, final byte[] name) {
+		buffer.put(type);
+		VarInts.write(buffer, name.length);
+		buffer.put(name);
+	}
+
+	/**
+	 * The last snapshot and the following events of a state machine.
+	 *
+	 * @param <S> the type of the states.
+	 * @param <E> the type of the events.
+	 */
+	private static final class Recovery<S extends Enum<S>, E extends Enum<E>> {
+
+		private StateMachineMemento<S, E> snapshot;
+
+		/**
+		 * The segment of the snapshot or of the first event.
+		 */
+		private long segment = -1;
+
+		private final List<E> events = new ArrayList<>();
+
+		private final List<Object[]> arguments = new ArrayList<>();
+	}
+}
@@ -0,0 +1,408 @@
+package ch.bbv.fsm.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only segment files of a partition of a {@link Journal}. Each
+ * segment is a memory-mapped file of a fixed size starting with a header,
+ * followed by the records. A record is its length as 4 bytes and the CRC32 of
+ * its content as 4 bytes followed by its content. The length is written after
+ * the content, so a record is either complete or its length is <code>0</code>,
+ * which marks the end of the segment. The records are read up to the first
+ * record whose checksum does not match, a record torn by a crash of the
+ * operating system, and the next record is appended in its place.
+ * <p>
+ * The buffers are positioned through {@link Buffer}, whose methods return the
+ * same types on Java 8 and later.
+ * <p>
+ * {@link #sync(long)} implements group commit: a thread forcing the segment to
+ * the storage device makes all records appended so far durable, the threads
+ * waiting for it meanwhile return without forcing again. A full segment of a
+ * syncing partition is forced by the next sync, not while appending.
+ * <p>
+ * The partition keeps the oldest segment each state machine needs for its
+ * recovery, the segment of its last snapshot or of its first event, until it
+ * is {@link #forget(String, Consumer) forgotten}. When a new
+ * segment is created, the segments older than all of them are deleted. The
+ * retained segments are only known for a new partition or after the records
+ * were read with {@link #read(ObjLongConsumer)} and passed to
+ * {@link #retain(Map)}, until then no segment is deleted.
+ */
+final class JournalPartition implements Closeable {
+
+	static final int HEADER_SIZE = 8;
+
+	/**
+	 * The size of the length and the checksum preceding the content of a record.
+	 */
+	static final int RECORD_OVERHEAD = 2 * Integer.BYTES;
+
+	private static final int MAGIC = 0x46534D4A;
+
+	private static final String SUFFIX = ".journal";
+
+	private final Path directory;
+
+	private final int partition;
+
+	private final int segmentSize;
+
+	private final int fingerprint;
+
+	private final boolean sync;
+
+	/**
+	 * The segment files in the order of their sequence numbers, guarded by this.
+	 */
+	private final List<Path> segments = new ArrayList<>();
+
+	/**
+	 * The sequence number of the oldest segment needed per state machine, guarded
+	 * by this.
+	 */
+	private final Map<String, Long> retained = new HashMap<>();
+
+	/**
+	 * <code>true</code> if {@link #retained} is complete and old segments are
+	 * deleted, guarded by this.
+	 */
+	private boolean retiring;
+
+	/**
+	 * The sequence number of the current segment, guarded by this.
+	 */
+	private long sequence;
+
+	private final Object flushLock = new Object();
+
+	/**
+	 * The segment records are appended to, guarded by this.
+	 */
+	private MappedByteBuffer current;
+
+	/**
+	 * The full segments which are not forced yet, guarded by this. Only kept if
+	 * the partition syncs.
+	 */
+	private final List<MappedByteBuffer> unforced = new ArrayList<>();
+
+	/**
+	 * Computes the checksums of the appended records, guarded by this.
+	 */
+	private final CRC32 checksum = new CRC32();
+
+	/**
+	 * The number of bytes appended since the partition was opened, guarded by
+	 * this.
+	 */
+	private long appended;
+
+	/**
+	 * The number of bytes appended which are forced to the storage device.
+	 */
+	private volatile long flushed;
+
+	JournalPartition(final Path directory, final int partition, final int segmentSize, final int fingerprint,
+			final boolean sync) throws IOException {
+		this.directory = directory;
+		this.partition = partition;
+		this.segmentSize = segmentSize;
+		this.fingerprint = fingerprint;
+		this.sync = sync;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, partition + "-*" + SUFFIX)) {
+			for (final Path file : files) {
+				this.segments.add(file);
+			}
+		}
+		Collections.sort(this.segments);
+		if (this.segments.isEmpty()) {
+			this.sequence = -1;
+			this.current = createSegment();
+			this.retiring = true;
+		} else {
+			final Path last = this.segments.get(this.segments.size() - 1);
+			this.sequence = sequence(last);
+			this.current = map(last, MapMode.READ_WRITE);
+			((Buffer) this.current).position(HEADER_SIZE);
+			forEachRecord(this.current, record -> {
+				// skip to the end
+			});
+		}
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @param name     the name of the state machine.
+	 * @param snapshot <code>true</code> if the record is a snapshot, the older
+	 *                 records of the state machine are no longer needed.
+	 * @param writer   writes the content of the record at the position of the
+	 *                 buffer.
+	 * @return the offset after the record for {@link #sync(long)}.
+	 * @throws IllegalArgumentException if the record is larger than a segment.
+	 * @throws UncheckedIOException     if a new segment can not be created.
+	 */
+	synchronized long append(final String name, final boolean snapshot, final Consumer<ByteBuffer> writer) {
+		append(writer);
+		if (this.retiring) {
+			if (snapshot) {
+				this.retained.put(name, this.sequence);
+			} else {
+				this.retained.putIfAbsent(name, this.sequence);
+			}
+		}
+		return this.appended;
+	}
+
+	/**
+	 * Appends the tombstone of a state machine, its older records are no longer
+	 * needed.
+	 *
+	 * @param name   the name of the state machine.
+	 * @param writer writes the content of the tombstone at the position of the
+	 *               buffer.
+	 * @return the offset after the tombstone for {@link #sync(long)}.
+	 * @throws UncheckedIOException if a new segment can not be created.
+	 */
+	synchronized long forget(final String name, final Consumer<ByteBuffer> writer) {
+		append(writer);
+		this.retained.remove(name);
+		return this.appended;
+	}
+
+	/**
+	 * Writes a record to the current segment or to a new segment if it is full.
+	 */
+	private void append(final Consumer<ByteBuffer> writer) {
+		if (!write(writer)) {
+			try {
+				if (this.sync) {
+					this.unforced.add(this.current);
+				}
+				this.current = createSegment();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			retire();
+			if (!write(writer)) {
+				throw new IllegalArgumentException("The record is larger than a segment of " + this.segmentSize + " bytes.");
+			}
+		}
+	}
+
+	/**
+	 * Sets the oldest segment needed per state machine after the records were
+	 * read and deletes the older segments.
+	 *
+	 * @param oldest the sequence number of the oldest segment per state machine.
+	 */
+	synchronized void retain(final Map<String, Long> oldest) {
+		this.retained.clear();
+		this.retained.putAll(oldest);
+		this.retiring = true;
+		retire();
+	}
+
+	/**
+	 * Deletes the segments older than the oldest segment needed by a state
+	 * machine. A segment which can not be deleted is kept and deleted later.
+	 */
+	private void retire() {
+		if (!this.retiring) {
+			return;
+		}
+		long oldest = this.sequence;
+		for (final long segment : this.retained.values()) {
+			oldest = Math.min(oldest, segment);
+		}
+		final Iterator<Path> iterator = this.segments.iterator();
+		while (iterator.hasNext()) {
+			final Path segment = iterator.next();
+			if (sequence(segment) >= oldest) {
+				return;
+			}
+			try {
+				Files.delete(segment);
+			} catch (final IOException e) {
+				return;
+			}
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Writes a record to the current segment.
+	 *
+	 * @return <code>false</code> if the record does not fit into the segment.
+	 */
+	private boolean write(final Consumer<ByteBuffer> writer) {
+		final MappedByteBuffer buffer = this.current;
+		final int start = buffer.position();
+		if (buffer.remaining() <= RECORD_OVERHEAD) {
+			return false;
+		}
+		((Buffer) buffer).position(start + RECORD_OVERHEAD);
+		try {
+			writer.accept(buffer);
+		} catch (final BufferOverflowException e) {
+			clear(buffer, start, buffer.position());
+			return false;
+		} catch (final RuntimeException e) {
+			clear(buffer, start, buffer.position());
+			throw e;
+		}
+		final int length = buffer.position() - start - RECORD_OVERHEAD;
+		buffer.putInt(start + Integer.BYTES, checksum(this.checksum, buffer, start, length));
+		buffer.putInt(start, length);
+		this.appended += RECORD_OVERHEAD + length;
+		return true;
+	}
+
+	/**
+	 * Forces the records appended up to the offset to the storage device.
+	 *
+	 * @param offset the offset returned by {@link #append(String, boolean, Consumer)}.
+	 */
+	void sync(final long offset) {
+		if (this.flushed >= offset) {
+			return;
+		}
+		synchronized (this.flushLock) {
+			if (this.flushed >= offset) {
+				return;
+			}
+			final List<MappedByteBuffer> buffers;
+			final long target;
+			synchronized (this) {
+				buffers = new ArrayList<>(this.unforced);
+				buffers.add(this.current);
+				this.unforced.clear();
+				target = this.appended;
+			}
+			for (final MappedByteBuffer buffer : buffers) {
+				buffer.force();
+			}
+			this.flushed = target;
+		}
+	}
+
+	/**
+	 * Reads the records of all segments in the order they were appended.
+	 *
+	 * @param consumer consumes the content of each record and the sequence number
+	 *                 of its segment.
+	 * @throws IOException if a segment can not be read.
+	 */
+	synchronized void read(final ObjLongConsumer<ByteBuffer> consumer) throws IOException {
+		for (final Path segment : this.segments) {
+			final long segmentSequence = sequence(segment);
+			final MappedByteBuffer buffer = map(segment, MapMode.READ_ONLY);
+			((Buffer) buffer).position(HEADER_SIZE);
+			forEachRecord(buffer, record -> consumer.accept(record, segmentSequence));
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		for (final MappedByteBuffer buffer : this.unforced) {
+			buffer.force();
+		}
+		this.unforced.clear();
+		this.current.force();
+	}
+
+	private MappedByteBuffer createSegment() throws IOException {
+		final Path file = this.directory.resolve(String.format("%d-%010d%s", this.partition, this.sequence + 1, SUFFIX));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			final MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, this.segmentSize);
+			buffer.putInt(MAGIC).putInt(this.fingerprint);
+			this.segments.add(file);
+			this.sequence++;
+			return buffer;
+		}
+	}
+
+	private MappedByteBuffer map(final Path file, final MapMode mode) throws IOException {
+		final StandardOpenOption[] options = mode == MapMode.READ_ONLY ? new StandardOpenOption[] { StandardOpenOption.READ }
+				: new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+		try (FileChannel channel = FileChannel.open(file, options)) {
+			final MappedByteBuffer buffer = channel.map(mode, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("The file " + file + " is not a journal segment.");
+			}
+			if (buffer.getInt(Integer.BYTES) != this.fingerprint) {
+				throw new IllegalArgumentException("The journal segment " + file + " was written for other states or events.");
+			}
+			return buffer;
+		}
+	}
+
+	/**
+	 * Returns the sequence number of a segment from its file name.
+	 */
+	private static long sequence(final Path segment) {
+		final String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SUFFIX.length()));
+	}
+
+	/**
+	 * Passes the content of the records from the position of the buffer to the
+	 * end of the segment or to the first record whose checksum does not match and
+	 * leaves the position there.
+	 */
+	private static void forEachRecord(final ByteBuffer buffer, final Consumer<ByteBuffer> consumer) {
+		final CRC32 checksum = new CRC32();
+		while (buffer.remaining() > RECORD_OVERHEAD) {
+			final int start = buffer.position();
+			final int length = buffer.getInt(start);
+			if (length <= 0 || length > buffer.remaining() - RECORD_OVERHEAD
+					|| buffer.getInt(start + Integer.BYTES) != checksum(checksum, buffer, start, length)) {
+				return;
+			}
+			final ByteBuffer record = buffer.duplicate();
+			((Buffer) record).position(start + RECORD_OVERHEAD).limit(start + RECORD_OVERHEAD + length);
+			consumer.accept(record.slice());
+			((Buffer) buffer).position(start + RECORD_OVERHEAD + length);
+		}
+	}
+
+	/**
+	 * Returns the CRC32 of the content of the record at the start.
+	 */
+	private static int checksum(final CRC32 checksum, final ByteBuffer buffer, final int start, final int length) {
+		final ByteBuffer content = buffer.duplicate();
+		((Buffer) content).position(start + RECORD_OVERHEAD).limit(start + RECORD_OVERHEAD + length);
+		checksum.reset();
+		checksum.update(content);
+		return (int) checksum.getValue();
+	}
+
+	private static void clear(final ByteBuffer buffer, final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			buffer.put(i, (byte) 0);
+		}
+		((Buffer) buffer).position(from);
+	}
+}
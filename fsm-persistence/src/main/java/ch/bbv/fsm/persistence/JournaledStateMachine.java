@@ -0,0 +1,143 @@
+package ch.bbv.fsm.persistence;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * A state machine which appends the events it accepts to a {@link Journal}, see
+ * {@link Journal#journal(String, StateMachine)}. An event is appended after the
+ * wrapped state machine accepted it, events fired concurrently are appended in
+ * the order they are queued. The record of an event is encoded before the event
+ * is fired, an event whose arguments can not be written is rejected with an
+ * {@link IllegalArgumentException} and not fired. Events fired with
+ * {@link #firePriority(Enum, Object...)} are replayed in the order they were
+ * fired.
+ * <p>
+ * If the journal has a snapshot interval, a snapshot is taken after the
+ * interval of events as soon as the state machine is idle after firing an
+ * event.
+ * <p>
+ * Terminating the state machine appends a tombstone, so that it is not
+ * recovered, see {@link Journal#forget(String)}.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public class JournaledStateMachine<S extends Enum<S>, E extends Enum<E>> implements StateMachine<S, E> {
+
+	private final Journal<S, E> journal;
+
+	private final String name;
+
+	private final StateMachine<S, E> stateMachine;
+
+	/**
+	 * The number of events journaled since the last snapshot, guarded by this.
+	 */
+	private int eventsSinceSnapshot;
+
+	JournaledStateMachine(final Journal<S, E> journal, final String name, final StateMachine<S, E> stateMachine) {
+		this.journal = journal;
+		this.name = name;
+		this.stateMachine = stateMachine;
+	}
+
+	/**
+	 * Returns the name the events are journaled with.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the wrapped state machine, the events fired on it are not
+	 * journaled.
+	 */
+	public StateMachine<S, E> getStateMachine() {
+		return this.stateMachine;
+	}
+
+	@Override
+	public synchronized void fire(final E eventId, final Object... eventArguments) {
+		final byte[] record = this.journal.encode(this.name, eventId, eventArguments);
+		this.stateMachine.fire(eventId, eventArguments);
+		journaled(record);
+	}
+
+	@Override
+	public synchronized boolean tryFire(final E eventId, final Object... eventArguments) {
+		final byte[] record = this.journal.encode(this.name, eventId, eventArguments);
+		if (!this.stateMachine.tryFire(eventId, eventArguments)) {
+			return false;
+		}
+		journaled(record);
+		return true;
+	}
+
+	@Override
+	public synchronized void firePriority(final E eventId, final Object... eventArguments) {
+		final byte[] record = this.journal.encode(this.name, eventId, eventArguments);
+		this.stateMachine.firePriority(eventId, eventArguments);
+		journaled(record);
+	}
+
+	private void journaled(final byte[] record) {
+		this.journal.append(this.name, record);
+		this.eventsSinceSnapshot++;
+		final int interval = this.journal.getSnapshotInterval();
+		if (interval > 0 && this.eventsSinceSnapshot >= interval && this.stateMachine.isIdle()) {
+			snapshot();
+		}
+	}
+
+	/**
+	 * Appends a snapshot of the idle state machine to the journal.
+	 *
+	 * @throws IllegalStateException if the state machine is not idle.
+	 */
+	public synchronized void snapshot() {
+		this.journal.snapshot(this.name, this.stateMachine);
+		this.eventsSinceSnapshot = 0;
+	}
+
+	@Override
+	public LiveCycle getStatus() {
+		return this.stateMachine.getStatus();
+	}
+
+	@Override
+	public int numberOfQueuedEvents() {
+		return this.stateMachine.numberOfQueuedEvents();
+	}
+
+	@Override
+	public boolean isIdle() {
+		return this.stateMachine.isIdle();
+	}
+
+	@Override
+	public void start() {
+		this.stateMachine.start();
+	}
+
+	@Override
+	public synchronized void terminate() {
+		this.stateMachine.terminate();
+		this.journal.forget(this.name);
+	}
+
+	@Override
+	public S getCurrentState() {
+		return this.stateMachine.getCurrentState();
+	}
+
+	@Override
+	public synchronized void activate(final StateMachineMemento<S, E> stateMachineMemento) {
+		this.stateMachine.activate(stateMachineMemento);
+	}
+
+	@Override
+	public synchronized void passivate(final StateMachineMemento<S, E> stateMachineMemento) {
+		this.stateMachine.passivate(stateMachineMemento);
+	}
+}
@@ -0,0 +1,246 @@
+package ch.bbv.fsm.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Compact binary encoding of {@link StateMachineMemento}s. The states are
+ * written as variable length ordinals, a memento of a state machine with less
+ * than 127 states takes two bytes per history state and two bytes for the
+ * current state and the number of history states.
+ * <p>
+ * A memento is written as:
+ * <ul>
+ * <li>the fingerprint of the definition as 4 bytes,</li>
+ * <li>the ordinal of the current state plus one, <code>0</code> if there is no
+ * current state,</li>
+ * <li>the number of history states and</li>
+ * <li>the ordinals of the super state and its last active sub state of each
+ * history state.</li>
+ * </ul>
+ * A batch of mementos is written as the fingerprint, the number of mementos and
+ * the mementos without fingerprint.
+ * <p>
+ * The fingerprint is computed from the names of the states and events in
+ * declaration order, so mementos are only decoded by a codec of the same
+ * states and events. The codec writes to and reads from the position of the
+ * given buffers and is thread-safe.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public class MementoCodec<S extends Enum<S>, E extends Enum<E>> {
+
+	private static final int FINGERPRINT_SIZE = 4;
+
+	private static final int FNV_OFFSET = 0x811C9DC5;
+
+	private static final int FNV_PRIME = 0x01000193;
+
+	private final S[] states;
+
+	private final int fingerprint;
+
+	/**
+	 * Creates the codec of the state machines with the given states and events.
+	 *
+	 * @param stateType the type of the states.
+	 * @param eventType the type of the events.
+	 */
+	public MementoCodec(final Class<S> stateType, final Class<E> eventType) {
+		this.states = stateType.getEnumConstants();
+		this.fingerprint = fingerprint(this.states, eventType.getEnumConstants());
+	}
+
+	/**
+	 * Returns the fingerprint of the states and events.
+	 */
+	public int getFingerprint() {
+		return this.fingerprint;
+	}
+
+	/**
+	 * Returns the number of bytes {@link #encode(StateMachineMemento, ByteBuffer)}
+	 * writes for a memento.
+	 *
+	 * @param memento the memento.
+	 * @return the number of bytes.
+	 */
+	public int encodedSize(final StateMachineMemento<S, E> memento) {
+		return FINGERPRINT_SIZE + mementoSize(memento);
+	}
+
+	/**
+	 * Writes a memento at the position of the buffer.
+	 *
+	 * @param memento the memento.
+	 * @param buffer  the buffer.
+	 * @throws java.nio.BufferOverflowException if the buffer is too small, the
+	 *                                          position of the buffer is
+	 *                                          undefined then.
+	 */
+	public void encode(final StateMachineMemento<S, E> memento, final ByteBuffer buffer) {
+		buffer.putInt(this.fingerprint);
+		writeMemento(memento, buffer);
+	}
+
+	/**
+	 * Reads a memento at the position of the buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @return the memento.
+	 * @throws IllegalArgumentException if the memento was written for other
+	 *                                  states or events or is malformed.
+	 */
+	public StateMachineMemento<S, E> decode(final ByteBuffer buffer) {
+		final StateMachineMemento<S, E> memento = new StateMachineMemento<>();
+		decode(buffer, memento);
+		return memento;
+	}
+
+	/**
+	 * Reads a memento at the position of the buffer into an existing memento,
+	 * its history states are replaced.
+	 *
+	 * @param buffer  the buffer.
+	 * @param memento the memento to read into.
+	 * @throws IllegalArgumentException if the memento was written for other
+	 *                                  states or events or is malformed.
+	 */
+	public void decode(final ByteBuffer buffer, final StateMachineMemento<S, E> memento) {
+		checkFingerprint(buffer.getInt());
+		readMemento(buffer, memento);
+	}
+
+	/**
+	 * Returns the number of bytes
+	 * {@link #encodeBatch(Collection, ByteBuffer)} writes for the mementos.
+	 *
+	 * @param mementos the mementos.
+	 * @return the number of bytes.
+	 */
+	public int encodedBatchSize(final Collection<? extends StateMachineMemento<S, E>> mementos) {
+		int size = FINGERPRINT_SIZE + VarInts.size(mementos.size());
+		for (final StateMachineMemento<S, E> memento : mementos) {
+			size += mementoSize(memento);
+		}
+		return size;
+	}
+
+	/**
+	 * Writes a batch of mementos at the position of the buffer.
+	 *
+	 * @param mementos the mementos.
+	 * @param buffer   the buffer.
+	 * @throws java.nio.BufferOverflowException if the buffer is too small, the
+	 *                                          position of the buffer is
+	 *                                          undefined then.
+	 */
+	public void encodeBatch(final Collection<? extends StateMachineMemento<S, E>> mementos, final ByteBuffer buffer) {
+		buffer.putInt(this.fingerprint);
+		VarInts.write(buffer, mementos.size());
+		for (final StateMachineMemento<S, E> memento : mementos) {
+			writeMemento(memento, buffer);
+		}
+	}
+
+	/**
+	 * Reads a batch of mementos at the position of the buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @return the mementos in the order they were written.
+	 * @throws IllegalArgumentException if the mementos were written for other
+	 *                                  states or events or are malformed.
+	 */
+	public List<StateMachineMemento<S, E>> decodeBatch(final ByteBuffer buffer) {
+		checkFingerprint(buffer.getInt());
+		final int count = VarInts.read(buffer);
+		final List<StateMachineMemento<S, E>> mementos = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final StateMachineMemento<S, E> memento = new StateMachineMemento<>();
+			readMemento(buffer, memento);
+			mementos.add(memento);
+		}
+		return mementos;
+	}
+
+	/**
+	 * Returns the number of bytes of a memento without fingerprint.
+	 */
+	int mementoSize(final StateMachineMemento<S, E> memento) {
+		final S currentState = memento.getCurrentState();
+		final Map<S, S> historyStates = memento.getSavedHistoryStates();
+		int size = VarInts.size(currentState == null ? 0 : currentState.ordinal() + 1) + VarInts.size(historyStates.size());
+		for (final Map.Entry<S, S> history : historyStates.entrySet()) {
+			size += VarInts.size(history.getKey().ordinal()) + VarInts.size(history.getValue().ordinal());
+		}
+		return size;
+	}
+
+	/**
+	 * Writes a memento without fingerprint.
+	 */
+	void writeMemento(final StateMachineMemento<S, E> memento, final ByteBuffer buffer) {
+		final S currentState = memento.getCurrentState();
+		VarInts.write(buffer, currentState == null ? 0 : currentState.ordinal() + 1);
+		final Map<S, S> historyStates = memento.getSavedHistoryStates();
+		VarInts.write(buffer, historyStates.size());
+		for (final Map.Entry<S, S> history : historyStates.entrySet()) {
+			VarInts.write(buffer, history.getKey().ordinal());
+			VarInts.write(buffer, history.getValue().ordinal());
+		}
+	}
+
+	/**
+	 * Reads a memento without fingerprint, its history states are replaced.
+	 */
+	void readMemento(final ByteBuffer buffer, final StateMachineMemento<S, E> memento) {
+		final int currentState = VarInts.read(buffer);
+		memento.setCurrentState(currentState == 0 ? null : state(currentState - 1));
+		memento.getSavedHistoryStates().clear();
+		final int historyStates = VarInts.read(buffer);
+		for (int i = 0; i < historyStates; i++) {
+			final S superState = state(VarInts.read(buffer));
+			memento.putHistoryState(superState, state(VarInts.read(buffer)));
+		}
+	}
+
+	private S state(final int ordinal) {
+		if (ordinal >= this.states.length) {
+			throw new IllegalArgumentException("There is no state with ordinal " + ordinal + ".");
+		}
+		return this.states[ordinal];
+	}
+
+	private void checkFingerprint(final int actual) {
+		if (actual != this.fingerprint) {
+			throw new IllegalArgumentException(String.format(
+					"The memento was written for other states or events, its fingerprint is %08x instead of %08x.", actual,
+					this.fingerprint));
+		}
+	}
+
+	/**
+	 * Computes the 32 bit FNV-1a hash of the names of the states and events.
+	 */
+	private static int fingerprint(final Enum<?>[] states, final Enum<?>[] events) {
+		int hash = FNV_OFFSET;
+		for (final Enum<?>[] constants : new Enum<?>[][] { states, events }) {
+			for (final Enum<?> constant : constants) {
+				final String name = constant.name();
+				for (int i = 0; i < name.length(); i++) {
+					hash = (hash ^ name.charAt(i)) * FNV_PRIME;
+				}
+				// a zero byte separates the names
+				hash *= FNV_PRIME;
+			}
+			hash = (hash ^ 1) * FNV_PRIME;
+		}
+		return hash;
+	}
+}
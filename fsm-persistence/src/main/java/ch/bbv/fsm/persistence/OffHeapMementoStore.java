@@ -0,0 +1,261 @@
+package ch.bbv.fsm.persistence;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Stores mementos by key outside of the Java heap. The mementos are encoded by
+ * a {@link MementoCodec} into slots of a fixed size, which are allocated in
+ * chunks of direct buffers and reused when a memento is taken. Only the index
+ * from the keys to the slots remains on the heap.
+ * <p>
+ * The index and the free slots are split into stripes selected by the hash of
+ * the key, each guarded by its own lock, so that threads storing mementos of
+ * different keys rarely contend. Only adding a chunk locks the whole store.
+ *
+ * @param <S> the type of the states.
+ * @param <E> the type of the events.
+ */
+public class OffHeapMementoStore<S extends Enum<S>, E extends Enum<E>> {
+
+	/**
+	 * The default size of a slot, enough for about 30 history states.
+	 */
+	public static final int DEFAULT_SLOT_SIZE = 64;
+
+	/**
+	 * The largest size of a slot, the size of a memento is stored in one byte.
+	 */
+	private static final int MAX_SLOT_SIZE = 256;
+
+	/**
+	 * The bits of the byte storing the size of a memento.
+	 */
+	private static final int SIZE_MASK = 0xFF;
+
+	private static final int SLOTS_PER_CHUNK = 16384;
+
+	private static final int INITIAL_FREE_SLOTS = 16;
+
+	/**
+	 * The number of stripes per processor.
+	 */
+	private static final int STRIPES_PER_PROCESSOR = 4;
+
+	/**
+	 * The largest number of stripes.
+	 */
+	private static final int MAX_STRIPES = 65536;
+
+	/**
+	 * The shift folding the upper half of the hash into the lower half.
+	 */
+	private static final int HASH_SPREAD_SHIFT = 16;
+
+	private final MementoCodec<S, E> codec;
+
+	private final int slotSize;
+
+	private final Stripe[] stripes;
+
+	/**
+	 * The chunks, replaced by a larger copy when a chunk is added. A slot is
+	 * accessed through a view of its chunk.
+	 */
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+	/**
+	 * The number of slots handed out to the stripes, guarded by this.
+	 */
+	private int allocatedSlots;
+
+	/**
+	 * Creates a store with the default slot size.
+	 *
+	 * @param codec the codec of the mementos.
+	 */
+	public OffHeapMementoStore(final MementoCodec<S, E> codec) {
+		this(codec, DEFAULT_SLOT_SIZE);
+	}
+
+	/**
+	 * Creates a store.
+	 *
+	 * @param codec    the codec of the mementos.
+	 * @param slotSize the size of a slot, the largest memento is one byte
+	 *                 smaller.
+	 */
+	public OffHeapMementoStore(final MementoCodec<S, E> codec, final int slotSize) {
+		if (slotSize < 2 || slotSize > MAX_SLOT_SIZE) {
+			throw new IllegalArgumentException(
+					"The slot size must be between 2 and " + MAX_SLOT_SIZE + " but is " + slotSize + ".");
+		}
+		this.codec = codec;
+		this.slotSize = slotSize;
+		final int concurrency = STRIPES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+		final int size = concurrency > MAX_STRIPES ? MAX_STRIPES : Integer.highestOneBit(concurrency * 2 - 1);
+		this.stripes = new Stripe[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Stores a memento, replaces the memento stored with the same key.
+	 *
+	 * @param key     the key.
+	 * @param memento the memento.
+	 * @throws IllegalArgumentException if the memento is larger than a slot.
+	 */
+	public void put(final String key, final StateMachineMemento<S, E> memento) {
+		final int size = this.codec.mementoSize(memento);
+		if (size >= this.slotSize) {
+			throw new IllegalArgumentException(
+					"The memento of " + key + " takes " + size + " bytes, more than a slot of " + this.slotSize + " bytes.");
+		}
+		final Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			final Integer existing = stripe.index.get(key);
+			final int slot = existing == null ? allocate(stripe) : existing;
+			final ByteBuffer buffer = slot(slot);
+			buffer.put((byte) size);
+			this.codec.writeMemento(memento, buffer);
+			stripe.index.put(key, slot);
+		}
+	}
+
+	/**
+	 * Removes a memento and reads it.
+	 *
+	 * @param key     the key.
+	 * @param memento the memento to read into.
+	 * @return <code>true</code> if a memento was stored with the key.
+	 */
+	public boolean take(final String key, final StateMachineMemento<S, E> memento) {
+		final Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			final Integer slot = stripe.index.remove(key);
+			if (slot == null) {
+				return false;
+			}
+			final ByteBuffer buffer = slot(slot);
+			final int size = buffer.get() & SIZE_MASK;
+			((Buffer) buffer).limit(buffer.position() + size);
+			this.codec.readMemento(buffer, memento);
+			stripe.free(slot);
+			return true;
+		}
+	}
+
+	/**
+	 * Removes a memento.
+	 *
+	 * @param key the key.
+	 * @return <code>true</code> if a memento was stored with the key.
+	 */
+	public boolean remove(final String key) {
+		final Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			final Integer slot = stripe.index.remove(key);
+			if (slot == null) {
+				return false;
+			}
+			stripe.free(slot);
+			return true;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if a memento is stored with the key.
+	 */
+	public boolean contains(final String key) {
+		final Stripe stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.index.containsKey(key);
+		}
+	}
+
+	/**
+	 * Returns the number of stored mementos. The stripes are counted one after
+	 * the other, the mementos stored or removed meanwhile may be missed.
+	 */
+	public int size() {
+		int size = 0;
+		for (final Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				size += stripe.index.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes allocated outside of the heap.
+	 */
+	public long allocatedBytes() {
+		return (long) this.chunks.length * SLOTS_PER_CHUNK * this.slotSize;
+	}
+
+	/**
+	 * Allocates a slot for a stripe, the lock of the stripe must be held.
+	 */
+	private int allocate(final Stripe stripe) {
+		if (stripe.numberOfFreeSlots > 0) {
+			return stripe.freeSlots[--stripe.numberOfFreeSlots];
+		}
+		synchronized (this) {
+			final ByteBuffer[] current = this.chunks;
+			if (this.allocatedSlots == current.length * SLOTS_PER_CHUNK) {
+				final ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+				grown[current.length] = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * this.slotSize);
+				this.chunks = grown;
+			}
+			return this.allocatedSlots++;
+		}
+	}
+
+	/**
+	 * Returns a view of the chunk of the slot positioned at the slot and limited
+	 * to it.
+	 */
+	private ByteBuffer slot(final int slot) {
+		final ByteBuffer chunk = this.chunks[slot / SLOTS_PER_CHUNK].duplicate();
+		final int offset = (slot % SLOTS_PER_CHUNK) * this.slotSize;
+		// positioned through Buffer, which returns the same type on Java 8 and later
+		((Buffer) chunk).position(offset).limit(offset + this.slotSize);
+		return chunk;
+	}
+
+	private Stripe stripe(final String key) {
+		final int h = key.hashCode();
+		return this.stripes[(h ^ (h >>> HASH_SPREAD_SHIFT)) & (this.stripes.length - 1)];
+	}
+
+	/**
+	 * The index and the free slots of the keys with the same stripe, guarded by
+	 * the stripe.
+	 */
+	private static final class Stripe {
+
+		private final Map<String, Integer> index = new HashMap<>();
+
+		/**
+		 * The free slots of this stripe, reused before a new slot is allocated.
+		 */
+		private int[] freeSlots = new int[INITIAL_FREE_SLOTS];
+
+		private int numberOfFreeSlots;
+
+		private void free(final int slot) {
+			if (this.numberOfFreeSlots == this.freeSlots.length) {
+				this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length * 2);
+			}
+			this.freeSlots[this.numberOfFreeSlots++] = slot;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package ch.bbv.fsm.persistence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes non-negative integers with 7 bits per byte, the highest bit
+ * of a byte is set if more bytes follow. Values below 128 take a single byte.
+ */
+final class VarInts {
+
+	/**
+	 * The bit set in a byte if more bytes follow.
+	 */
+	private static final int CONTINUATION = 0x80;
+
+	/**
+	 * The bits of a byte holding the value.
+	 */
+	private static final int PAYLOAD = 0x7F;
+
+	/**
+	 * The number of bits of the value per byte.
+	 */
+	private static final int BITS = 7;
+
+	/**
+	 * The maximum number of bytes of a value.
+	 */
+	private static final int MAX_BYTES = 5;
+
+	private VarInts() {
+	}
+
+	/**
+	 * Returns the number of bytes of a value.
+	 */
+	static int size(final int value) {
+		int size = 1;
+		for (int v = value >>> BITS; v != 0; v >>>= BITS) {
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes a value at the position of the buffer.
+	 *
+	 * @throws java.nio.BufferOverflowException if the buffer is too small.
+	 */
+	static void write(final ByteBuffer buffer, final int value) {
+		int v = value;
+		while ((v & ~PAYLOAD) != 0) {
+			buffer.put((byte) ((v & PAYLOAD) | CONTINUATION));
+			v >>>= BITS;
+		}
+		buffer.put((byte) v);
+	}
+
+	/**
+	 * Reads a value at the position of the buffer.
+	 *
+	 * @throws java.nio.BufferUnderflowException if the buffer ends within the
+	 *                                           value.
+	 * @throws IllegalArgumentException          if the value is longer than five
+	 *                                           bytes.
+	 */
+	static int read(final ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < MAX_BYTES * BITS; shift += BITS) {
+			final byte b = buffer.get();
+			value |= (b & PAYLOAD) << shift;
+			if ((b & CONTINUATION) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException(
+				"Malformed variable length integer at position " + (buffer.position() - MAX_BYTES) + ".");
+	}
+}
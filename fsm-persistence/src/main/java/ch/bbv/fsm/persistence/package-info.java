@@ -0,0 +1,4 @@
+/**
+ * Persistence of the state of state machines.
+ */
+package ch.bbv.fsm.persistence;
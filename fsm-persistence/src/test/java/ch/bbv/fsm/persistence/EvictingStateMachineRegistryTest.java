@@ -0,0 +1,234 @@
+package ch.bbv.fsm.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.impl.StateIndex;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Tests the {@link EvictingStateMachineRegistry} and the
+ * {@link OffHeapMementoStore}.
+ */
+public class EvictingStateMachineRegistryTest {
+
+	private enum States {
+		Off, On, FM, AM
+	}
+
+	private enum Events {
+		TogglePower, ToggleMode
+	}
+
+	private final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+
+	private final AtomicInteger created = new AtomicInteger();
+
+	private final OffHeapMementoStore<States, Events> store = new OffHeapMementoStore<>(
+			new MementoCodec<>(States.class, Events.class));
+
+	private static SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.Off);
+		definition.defineHierarchyOn(States.On, States.FM, HistoryType.DEEP, States.FM, States.AM);
+		definition.in(States.Off).on(Events.TogglePower).goTo(States.On);
+		definition.in(States.On).on(Events.TogglePower).goTo(States.Off);
+		definition.in(States.FM).on(Events.ToggleMode).goTo(States.AM);
+		definition.in(States.AM).on(Events.ToggleMode).goTo(States.FM);
+		return definition;
+	}
+
+	private SimpleStateMachine<States, Events> create(final String key) {
+		this.created.incrementAndGet();
+		return this.definition.createPassiveStateMachine(key);
+	}
+
+	private EvictingStateMachineRegistry<States, Events> createTestee(final long idleTimeoutMillis) {
+		return new EvictingStateMachineRegistry<>(this.store, this::create, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * An idle state machine is evicted and reactivated with its state and history
+	 * on the next access.
+	 */
+	@Test
+	public void evictAndReactivate() throws InterruptedException {
+		final EvictingStateMachineRegistry<States, Events> testee = createTestee(0);
+		testee.fire("radio", Events.TogglePower);
+		testee.fire("radio", Events.ToggleMode);
+		testee.fire("radio", Events.TogglePower);
+		Thread.sleep(1);
+
+		Assertions.assertThat(testee.evictIdle()).isEqualTo(1);
+		Assertions.assertThat(testee.numberOfResidentStateMachines()).isZero();
+		Assertions.assertThat(testee.numberOfEvictedStateMachines()).isEqualTo(1);
+
+		final StateMachine<States, Events> radio = testee.get("radio");
+		Assertions.assertThat(radio.getCurrentState()).isEqualTo(States.Off);
+		radio.fire(Events.TogglePower);
+
+		Assertions.assertThat(radio.getCurrentState()).isEqualTo(States.AM);
+		Assertions.assertThat(testee.numberOfResidentStateMachines()).isEqualTo(1);
+		Assertions.assertThat(testee.numberOfEvictedStateMachines()).isZero();
+		Assertions.assertThat(this.created).hasValue(2);
+	}
+
+	/**
+	 * A state machine whose memento does not fit into a slot stays resident and
+	 * running, the other state machines are evicted.
+	 */
+	@Test
+	public void mementoLargerThanSlotIsNotEvicted() throws InterruptedException {
+		final OffHeapMementoStore<States, Events> small = new OffHeapMementoStore<>(
+				new MementoCodec<>(States.class, Events.class), 3);
+		final EvictingStateMachineRegistry<States, Events> testee = new EvictingStateMachineRegistry<>(small,
+				this::create, 0, TimeUnit.MILLISECONDS);
+		testee.fire("history", Events.TogglePower);
+		testee.fire("history", Events.ToggleMode);
+		testee.fire("history", Events.TogglePower);
+		testee.fire("off", Events.ToggleMode);
+		Thread.sleep(1);
+
+		Assertions.assertThat(testee.evictIdle()).isEqualTo(1);
+		Assertions.assertThat(testee.numberOfResidentStateMachines()).isEqualTo(1);
+
+		final StateMachine<States, Events> history = testee.get("history");
+		Assertions.assertThat(history.getStatus()).isEqualTo(StateMachine.LiveCycle.Running);
+		history.fire(Events.TogglePower);
+		Assertions.assertThat(history.getCurrentState()).isEqualTo(States.AM);
+		Assertions.assertThat(this.created).hasValue(2);
+	}
+
+	/**
+	 * Evicted state machines stay in the state index until they are removed.
+	 */
+	@Test
+	public void evictedStateMachinesAreIndexed() throws InterruptedException {
+		final StateIndex<States, Events> index = new StateIndex<>(States.class);
+		this.definition.addInstrumentation(index);
+		final EvictingStateMachineRegistry<States, Events> testee = createTestee(0);
+		testee.fire("radio", Events.TogglePower);
+		testee.fire("off", Events.ToggleMode);
+		Thread.sleep(1);
+
+		Assertions.assertThat(testee.evictIdle()).isEqualTo(2);
+		Assertions.assertThat(index.find(States.FM)).containsExactly("radio");
+		Assertions.assertThat(index.find(States.Off)).containsExactly("off");
+
+		testee.fire("radio", Events.ToggleMode);
+		testee.remove("off");
+
+		Assertions.assertThat(index.countByState()).containsOnlyKeys(States.AM);
+		Assertions.assertThat(index.find(States.AM)).containsExactly("radio");
+	}
+
+	/**
+	 * Recently accessed state machines are not evicted.
+	 */
+	@Test
+	public void keepRecentlyAccessed() {
+		final EvictingStateMachineRegistry<States, Events> testee = createTestee(TimeUnit.HOURS.toMillis(1));
+		testee.fire("radio", Events.TogglePower);
+
+		Assertions.assertThat(testee.evictIdle()).isZero();
+		Assertions.assertThat(testee.get("radio").getCurrentState()).isEqualTo(States.FM);
+		Assertions.assertThat(this.created).hasValue(1);
+	}
+
+	/**
+	 * A removed state machine is created again on the next access.
+	 */
+	@Test
+	public void remove() throws InterruptedException {
+		final EvictingStateMachineRegistry<States, Events> testee = createTestee(0);
+		testee.fire("evicted", Events.TogglePower);
+		Thread.sleep(1);
+		testee.evictIdle();
+		testee.fire("resident", Events.TogglePower);
+
+		testee.remove("evicted");
+		testee.get("resident").terminate();
+
+		Assertions.assertThat(testee.numberOfResidentStateMachines()).isZero();
+		Assertions.assertThat(testee.numberOfEvictedStateMachines()).isZero();
+		Assertions.assertThat(testee.get("evicted").getCurrentState()).isEqualTo(States.Off);
+	}
+
+	/**
+	 * The slots of taken mementos are reused.
+	 */
+	@Test
+	public void reuseSlots() {
+		for (int i = 0; i < 100; i++) {
+			final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+			memento.setCurrentState(States.values()[i % 4]);
+			this.store.put("fsm-" + i, memento);
+		}
+		final long allocated = this.store.allocatedBytes();
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertThat(this.store.take("fsm-" + i, memento)).isTrue();
+			Assertions.assertThat(memento.getCurrentState()).isEqualTo(States.values()[i % 4]);
+			this.store.put("other-" + i, memento);
+		}
+
+		Assertions.assertThat(this.store.size()).isEqualTo(100);
+		Assertions.assertThat(this.store.allocatedBytes()).isEqualTo(allocated);
+		Assertions.assertThat(this.store.take("fsm-0", memento)).isFalse();
+	}
+
+	/**
+	 * Threads storing and taking the mementos of different keys do not see each
+	 * other's mementos.
+	 */
+	@Test
+	public void concurrentStore() throws InterruptedException {
+		final AtomicInteger mismatches = new AtomicInteger();
+		final List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final int thread = t;
+			threads.add(new Thread(() -> {
+				final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+				for (int i = 0; i < 10_000; i++) {
+					final States state = States.values()[(thread + i) % 4];
+					memento.setCurrentState(state);
+					this.store.put(thread + "-" + i % 100, memento);
+					if (!this.store.take(thread + "-" + i % 100, memento) || memento.getCurrentState() != state) {
+						mismatches.incrementAndGet();
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		Assertions.assertThat(mismatches).hasValue(0);
+		Assertions.assertThat(this.store.size()).isZero();
+	}
+
+	/**
+	 * Mementos larger than a slot are rejected.
+	 */
+	@Test
+	public void mementoLargerThanSlot() {
+		final OffHeapMementoStore<States, Events> small = new OffHeapMementoStore<>(
+				new MementoCodec<>(States.class, Events.class), 3);
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+		memento.setCurrentState(States.Off);
+		memento.putHistoryState(States.On, States.AM);
+
+		Assertions.assertThatThrownBy(() -> small.put("fsm", memento)).isInstanceOf(IllegalArgumentException.class);
+		Assertions.assertThat(small.size()).isZero();
+	}
+}
@@ -0,0 +1,366 @@
+package ch.bbv.fsm.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.bbv.fsm.StateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+
+/**
+ * Tests the {@link Journal}.
+ */
+public class JournalTest {
+
+	private enum States {
+		Idle, Running, Stopped
+	}
+
+	private enum Events {
+		Start, Stop, Reset, Count
+	}
+
+	private enum OtherEvents {
+		Start, Stop
+	}
+
+	private Path directory;
+
+	/**
+	 * The number of times the count action was executed.
+	 */
+	private final AtomicInteger counted = new AtomicInteger();
+
+	/**
+	 * The arguments of the count events.
+	 */
+	private final List<Object> arguments = new ArrayList<>();
+
+	@BeforeEach
+	public void setUp(@TempDir final Path tempDirectory) {
+		this.directory = tempDirectory;
+	}
+
+	private SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.Idle);
+		definition.in(States.Idle).on(Events.Start).goTo(States.Running);
+		definition.in(States.Running).on(Events.Stop).goTo(States.Stopped);
+		definition.in(States.Stopped).on(Events.Reset).goTo(States.Idle);
+		definition.in(States.Running).on(Events.Count).goTo(States.Running).execute((SimpleStateMachine<States, Events> fsm, Object argument) -> {
+			this.counted.incrementAndGet();
+			this.arguments.add(argument);
+		});
+		return definition;
+	}
+
+	/**
+	 * A state machine is recovered by replaying its events with their arguments.
+	 */
+	@Test
+	public void recoverByReplay() throws IOException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 2)) {
+			final StateMachine<States, Events> fsm = testee.journal("first", definition.createPassiveStateMachine("first"));
+			fsm.start();
+			fsm.fire(Events.Start);
+			fsm.fire(Events.Count, "text");
+			fsm.fire(Events.Count, 42L);
+			fsm.fire(Events.Count, new Object[] { null });
+			final StateMachine<States, Events> other = testee.journal("second", definition.createPassiveStateMachine("second"));
+			other.start();
+			other.fire(Events.Start);
+			other.fire(Events.Stop);
+		}
+		this.counted.set(0);
+		this.arguments.clear();
+
+		final Map<String, JournaledStateMachine<States, Events>> recovered;
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 2)) {
+			recovered = testee.recover(definition::createPassiveStateMachine);
+		}
+
+		Assertions.assertThat(recovered).containsOnlyKeys("first", "second");
+		Assertions.assertThat(recovered.get("first").getCurrentState()).isEqualTo(States.Running);
+		Assertions.assertThat(recovered.get("second").getCurrentState()).isEqualTo(States.Stopped);
+		Assertions.assertThat(this.counted).hasValue(3);
+		Assertions.assertThat(this.arguments).containsExactly("text", 42L, null);
+	}
+
+	/**
+	 * Only the events after the last snapshot are replayed.
+	 */
+	@Test
+	public void recoverFromSnapshot() throws IOException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			testee.setSnapshotInterval(10);
+			final StateMachine<States, Events> fsm = testee.journal("fsm", definition.createPassiveStateMachine("fsm"));
+			fsm.start();
+			fsm.fire(Events.Start);
+			for (int i = 0; i < 12; i++) {
+				fsm.fire(Events.Count, i);
+			}
+		}
+		this.counted.set(0);
+		this.arguments.clear();
+
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			final Map<String, JournaledStateMachine<States, Events>> recovered = testee
+					.recover(definition::createPassiveStateMachine);
+
+			Assertions.assertThat(recovered.get("fsm").getCurrentState()).isEqualTo(States.Running);
+			Assertions.assertThat(this.arguments).containsExactly(9, 10, 11);
+
+			// the recovered state machine journals again
+			recovered.get("fsm").fire(Events.Stop);
+		}
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			Assertions.assertThat(testee.recover(definition::createPassiveStateMachine).get("fsm").getCurrentState())
+					.isEqualTo(States.Stopped);
+		}
+	}
+
+	/**
+	 * The records are appended to new segments when a segment is full, the
+	 * appends of concurrent threads are committed together.
+	 */
+	@Test
+	public void segmentsAndGroupCommit() throws IOException, InterruptedException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 2, 256,
+				new DefaultArgumentCodec(), true)) {
+			final List<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				final StateMachine<States, Events> fsm = testee.journal("fsm-" + t,
+						definition.createPassiveStateMachine("fsm-" + t));
+				fsm.start();
+				fsm.fire(Events.Start);
+				threads.add(new Thread(() -> {
+					for (int i = 0; i < 100; i++) {
+						fsm.fire(Events.Count, i);
+					}
+				}));
+			}
+			threads.forEach(Thread::start);
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+		}
+		this.counted.set(0);
+
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 2, 256,
+				new DefaultArgumentCodec(), true)) {
+			Assertions.assertThat(testee.recover(definition::createPassiveStateMachine)).hasSize(4);
+		}
+		Assertions.assertThat(this.counted).hasValue(400);
+		Assertions.assertThat(this.directory.toFile().list()).hasSizeGreaterThan(2);
+	}
+
+	/**
+	 * The segments older than the last snapshots are deleted, while appending and
+	 * when the journal is recovered.
+	 */
+	@Test
+	public void segmentsBeforeTheSnapshotsAreDeleted() throws IOException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1, 256,
+				new DefaultArgumentCodec(), false)) {
+			testee.setSnapshotInterval(5);
+			final StateMachine<States, Events> fsm = testee.journal("fsm", definition.createPassiveStateMachine("fsm"));
+			fsm.start();
+			fsm.fire(Events.Start);
+			for (int i = 0; i < 200; i++) {
+				fsm.fire(Events.Count, i);
+			}
+			Assertions.assertThat(this.directory.toFile().list()).hasSizeLessThanOrEqualTo(2);
+		}
+		this.counted.set(0);
+		this.arguments.clear();
+
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1, 256,
+				new DefaultArgumentCodec(), false)) {
+			testee.setSnapshotInterval(5);
+			final JournaledStateMachine<States, Events> recovered = testee.recover(definition::createPassiveStateMachine)
+					.get("fsm");
+			Assertions.assertThat(recovered.getCurrentState()).isEqualTo(States.Running);
+			Assertions.assertThat(this.arguments).containsExactly(199);
+			for (int i = 0; i < 100; i++) {
+				recovered.fire(Events.Count, i);
+			}
+			Assertions.assertThat(this.directory.toFile().list()).hasSizeLessThanOrEqualTo(2);
+		}
+	}
+
+	/**
+	 * Taking snapshots of an active state machine does not disturb its worker.
+	 */
+	@Test
+	public void snapshotOfActiveStateMachine() throws IOException, InterruptedException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			final JournaledStateMachine<States, Events> fsm = testee.journal("fsm", definition.createActiveStateMachine("fsm"));
+			fsm.start();
+			fsm.fire(Events.Start);
+			for (int i = 0; i < 20; i++) {
+				fsm.fire(Events.Count, i);
+				while (!fsm.isIdle()) {
+					Thread.sleep(1);
+				}
+				fsm.snapshot();
+			}
+			fsm.fire(Events.Stop);
+			while (!fsm.isIdle()) {
+				Thread.sleep(1);
+			}
+			Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.Stopped);
+			Assertions.assertThat(this.counted).hasValue(20);
+			fsm.terminate();
+		}
+	}
+
+	/**
+	 * A terminated or forgotten state machine is not recovered and does not keep
+	 * its segments.
+	 */
+	@Test
+	public void terminatedStateMachinesAreForgotten() throws IOException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1, 256,
+				new DefaultArgumentCodec(), false)) {
+			testee.setSnapshotInterval(5);
+			final StateMachine<States, Events> terminated = testee.journal("terminated",
+					definition.createPassiveStateMachine("terminated"));
+			terminated.start();
+			terminated.fire(Events.Start);
+			terminated.terminate();
+			testee.append("forgotten", Events.Start, new Object[0]);
+			testee.forget("forgotten");
+			final StateMachine<States, Events> fsm = testee.journal("fsm", definition.createPassiveStateMachine("fsm"));
+			fsm.start();
+			fsm.fire(Events.Start);
+			for (int i = 0; i < 200; i++) {
+				fsm.fire(Events.Count, i);
+			}
+			Assertions.assertThat(this.directory.toFile().list()).hasSizeLessThanOrEqualTo(2);
+		}
+
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1, 256,
+				new DefaultArgumentCodec(), false)) {
+			Assertions.assertThat(testee.recover(definition::createPassiveStateMachine)).containsOnlyKeys("fsm");
+		}
+	}
+
+	/**
+	 * The records are recovered up to the first corrupt record, the next record
+	 * is appended in its place.
+	 */
+	@Test
+	public void corruptRecordEndsTheJournal() throws IOException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			final StateMachine<States, Events> fsm = testee.journal("fsm", definition.createPassiveStateMachine("fsm"));
+			fsm.start();
+			fsm.fire(Events.Start);
+			fsm.fire(Events.Count, 1);
+			fsm.fire(Events.Count, 2);
+		}
+		corruptLastRecord(this.directory.resolve("0-0000000000.journal"));
+		this.arguments.clear();
+
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			testee.recover(definition::createPassiveStateMachine).get("fsm").fire(Events.Count, 3);
+		}
+		this.arguments.clear();
+
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			testee.recover(definition::createPassiveStateMachine);
+		}
+		Assertions.assertThat(this.arguments).containsExactly(1, 3);
+	}
+
+	/**
+	 * Flips a byte of the content of the last record of a segment.
+	 */
+	private static void corruptLastRecord(final Path segment) throws IOException {
+		final byte[] bytes = Files.readAllBytes(segment);
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int start = JournalPartition.HEADER_SIZE;
+		int last = start;
+		while (buffer.getInt(start) > 0) {
+			last = start;
+			start += JournalPartition.RECORD_OVERHEAD + buffer.getInt(start);
+		}
+		bytes[last + JournalPartition.RECORD_OVERHEAD + 1] ^= 1;
+		Files.write(segment, bytes);
+	}
+
+	/**
+	 * A journal written for other events is rejected.
+	 */
+	@Test
+	public void otherEvents() throws IOException {
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			testee.append("fsm", Events.Start, new Object[0]);
+		}
+
+		Assertions.assertThatThrownBy(() -> new Journal<>(this.directory, States.class, OtherEvents.class, 1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	/**
+	 * Unsupported arguments are rejected and not journaled.
+	 */
+	@Test
+	public void unsupportedArgument() throws IOException {
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			Assertions.assertThatThrownBy(() -> testee.append("fsm", Events.Count, new Object[] { new Object() }))
+					.isInstanceOf(IllegalArgumentException.class);
+			testee.append("fsm", Events.Start, new Object[0]);
+
+			final SimpleStateMachine<States, Events> fsm = createDefinition().createPassiveStateMachine("fsm");
+			testee.recover(name -> fsm);
+			Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.Running);
+		}
+	}
+
+	/**
+	 * An event with an unsupported argument is rejected before it is fired, so
+	 * the state machine does not diverge from its journal.
+	 */
+	@Test
+	public void unsupportedArgumentIsNotFired() throws IOException {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			final JournaledStateMachine<States, Events> fsm = testee.journal("fsm", definition.createPassiveStateMachine("fsm"));
+			fsm.start();
+			fsm.fire(Events.Start);
+
+			Assertions.assertThatThrownBy(() -> fsm.fire(Events.Count, new Object()))
+					.isInstanceOf(IllegalArgumentException.class);
+			Assertions.assertThatThrownBy(() -> fsm.tryFire(Events.Stop, new Object()))
+					.isInstanceOf(IllegalArgumentException.class);
+
+			Assertions.assertThat(this.counted).hasValue(0);
+			Assertions.assertThat(fsm.getCurrentState()).isEqualTo(States.Running);
+			fsm.fire(Events.Count, 1);
+		}
+		this.counted.set(0);
+
+		try (Journal<States, Events> testee = new Journal<>(this.directory, States.class, Events.class, 1)) {
+			Assertions.assertThat(testee.recover(definition::createPassiveStateMachine).get("fsm").getCurrentState())
+					.isEqualTo(States.Running);
+		}
+		Assertions.assertThat(this.counted).hasValue(1);
+	}
+}
@@ -0,0 +1,195 @@
+package ch.bbv.fsm.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import ch.bbv.fsm.HistoryType;
+import ch.bbv.fsm.impl.SimpleStateMachine;
+import ch.bbv.fsm.impl.SimpleStateMachineDefinition;
+import ch.bbv.fsm.memento.StateMachineMemento;
+
+/**
+ * Tests the {@link MementoCodec}.
+ */
+public class MementoCodecTest {
+
+	private enum States {
+		Off, On, FM, AM
+	}
+
+	private enum Events {
+		TogglePower, ToggleMode
+	}
+
+	private enum OtherStates {
+		Off, On, AM, FM
+	}
+
+	private final MementoCodec<States, Events> testee = new MementoCodec<>(States.class, Events.class);
+
+	private static SimpleStateMachineDefinition<States, Events> createDefinition() {
+		final SimpleStateMachineDefinition<States, Events> definition = new SimpleStateMachineDefinition<>(States.Off);
+		definition.defineHierarchyOn(States.On, States.FM, HistoryType.DEEP, States.FM, States.AM);
+		definition.in(States.Off).on(Events.TogglePower).goTo(States.On);
+		definition.in(States.On).on(Events.TogglePower).goTo(States.Off);
+		definition.in(States.FM).on(Events.ToggleMode).goTo(States.AM);
+		definition.in(States.AM).on(Events.ToggleMode).goTo(States.FM);
+		return definition;
+	}
+
+	private static StateMachineMemento<States, Events> memento(final States currentState) {
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+		memento.setCurrentState(currentState);
+		return memento;
+	}
+
+	/**
+	 * A memento is written as fingerprint and ordinals.
+	 */
+	@Test
+	public void roundTrip() {
+		final StateMachineMemento<States, Events> memento = memento(States.Off);
+		memento.putHistoryState(States.On, States.AM);
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+
+		this.testee.encode(memento, buffer);
+
+		Assertions.assertThat(buffer.position()).isEqualTo(8).isEqualTo(this.testee.encodedSize(memento));
+		buffer.flip();
+		final StateMachineMemento<States, Events> decoded = this.testee.decode(buffer);
+		Assertions.assertThat(decoded.getCurrentState()).isEqualTo(States.Off);
+		Assertions.assertThat(decoded.getSavedHistoryStates()).containsOnly(Assertions.entry(States.On, States.AM));
+		Assertions.assertThat(buffer.hasRemaining()).isFalse();
+	}
+
+	/**
+	 * A memento without current state is written.
+	 */
+	@Test
+	public void noCurrentState() {
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+
+		this.testee.encode(memento(null), buffer);
+		buffer.flip();
+
+		Assertions.assertThat(this.testee.decode(buffer).getCurrentState()).isNull();
+	}
+
+	/**
+	 * Decoding into an existing memento replaces its history states.
+	 */
+	@Test
+	public void decodeIntoExistingMemento() {
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+		this.testee.encode(memento(States.FM), buffer);
+		buffer.flip();
+		final StateMachineMemento<States, Events> existing = memento(States.Off);
+		existing.putHistoryState(States.On, States.AM);
+
+		this.testee.decode(buffer, existing);
+
+		Assertions.assertThat(existing.getCurrentState()).isEqualTo(States.FM);
+		Assertions.assertThat(existing.getSavedHistoryStates()).isEmpty();
+	}
+
+	/**
+	 * Many mementos are written into a single buffer with one fingerprint.
+	 */
+	@Test
+	public void batch() {
+		final List<StateMachineMemento<States, Events>> mementos = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			final StateMachineMemento<States, Events> memento = memento(States.values()[i % 4]);
+			if (i % 2 == 0) {
+				memento.putHistoryState(States.On, States.AM);
+			}
+			mementos.add(memento);
+		}
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(this.testee.encodedBatchSize(mementos));
+
+		this.testee.encodeBatch(mementos, buffer);
+
+		Assertions.assertThat(buffer.hasRemaining()).isFalse();
+		Assertions.assertThat(buffer.capacity()).isEqualTo(4 + 2 + 1000 * 2 + 500 * 2);
+		buffer.flip();
+		final List<StateMachineMemento<States, Events>> decoded = this.testee.decodeBatch(buffer);
+		Assertions.assertThat(decoded).hasSize(1000);
+		for (int i = 0; i < 1000; i++) {
+			Assertions.assertThat(decoded.get(i).getCurrentState()).isEqualTo(mementos.get(i).getCurrentState());
+			Assertions.assertThat(decoded.get(i).getSavedHistoryStates()).isEqualTo(mementos.get(i).getSavedHistoryStates());
+		}
+	}
+
+	/**
+	 * Mementos written for other states are rejected.
+	 */
+	@Test
+	public void otherStates() {
+		final MementoCodec<OtherStates, Events> other = new MementoCodec<>(OtherStates.class, Events.class);
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+		this.testee.encode(memento(States.AM), buffer);
+		buffer.flip();
+
+		Assertions.assertThat(other.getFingerprint()).isNotEqualTo(this.testee.getFingerprint());
+		Assertions.assertThatThrownBy(() -> other.decode(buffer)).isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("fingerprint");
+	}
+
+	/**
+	 * Invalid ordinals are rejected.
+	 */
+	@Test
+	public void invalidOrdinal() {
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+		buffer.putInt(this.testee.getFingerprint()).put((byte) 9).put((byte) 0).flip();
+
+		Assertions.assertThatThrownBy(() -> this.testee.decode(buffer)).isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("ordinal 8");
+	}
+
+	/**
+	 * Large values take more than one byte.
+	 */
+	@Test
+	public void varInts() {
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+		final int[] values = { 0, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1 };
+		for (final int value : values) {
+			VarInts.write(buffer, value);
+		}
+		buffer.flip();
+		for (final int value : values) {
+			final int position = buffer.position();
+			Assertions.assertThat(VarInts.read(buffer)).isEqualTo(value);
+			Assertions.assertThat(buffer.position() - position).isEqualTo(VarInts.size(value));
+		}
+	}
+
+	/**
+	 * A passivated state machine is restored from its encoded memento.
+	 */
+	@Test
+	public void passivateAndActivate() {
+		final SimpleStateMachineDefinition<States, Events> definition = createDefinition();
+		final SimpleStateMachine<States, Events> fsm = definition.createPassiveStateMachine("persisted");
+		fsm.start();
+		fsm.fire(Events.TogglePower);
+		fsm.fire(Events.ToggleMode);
+		fsm.fire(Events.TogglePower);
+		final StateMachineMemento<States, Events> memento = new StateMachineMemento<>();
+		fsm.passivate(memento);
+		final ByteBuffer buffer = ByteBuffer.allocate(this.testee.encodedSize(memento));
+		this.testee.encode(memento, buffer);
+		buffer.flip();
+
+		final SimpleStateMachine<States, Events> restored = definition.createPassiveStateMachine("restored");
+		restored.activate(this.testee.decode(buffer));
+		restored.fire(Events.TogglePower);
+
+		Assertions.assertThat(restored.getCurrentState()).isEqualTo(States.AM);
+	}
+}